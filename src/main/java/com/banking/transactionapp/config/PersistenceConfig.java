@@ -0,0 +1,46 @@
+package com.banking.transactionapp.config;
+
+import com.banking.transactionapp.persistence.SegmentArchive;
+import com.banking.transactionapp.persistence.TransactionArchive;
+import com.banking.transactionapp.persistence.TransactionJournal;
+import com.banking.transactionapp.persistence.WriteAheadLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class PersistenceConfig {
+    
+    @Bean
+    public TransactionJournal transactionJournal(
+            @Value("${banking.persistence.enabled:false}") boolean enabled,
+            @Value("${banking.persistence.directory:data}") Path directory,
+            @Value("${banking.persistence.fsync:true}") boolean fsync) {
+        if (!enabled) {
+            log.info("Transaction persistence is disabled, transactions are kept in memory only");
+            return TransactionJournal.disabled();
+        }
+        
+        log.info("Journaling transactions to {} (fsync: {})", directory.toAbsolutePath(), fsync);
+        return new WriteAheadLog(directory, fsync);
+    }
+    
+    @Bean
+    public TransactionArchive transactionArchive(
+            @Value("${banking.tiering.enabled:false}") boolean enabled,
+            @Value("${banking.tiering.directory:data/segments}") Path directory,
+            @Value("${banking.tiering.max-age:30d}") Duration maxAge,
+            @Value("${banking.tiering.block-size:256}") int blockSize) {
+        if (!enabled) {
+            return TransactionArchive.disabled();
+        }
+        
+        log.info("Archiving transactions older than {} to {}", maxAge, directory.toAbsolutePath());
+        return new SegmentArchive(directory, maxAge, blockSize);
+    }
+}
@@ -0,0 +1,45 @@
+package com.banking.transactionapp.config;
+
+import com.banking.transactionapp.model.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Velocity limits on new transactions, per account and transaction type, bound from
+ * {@code banking.velocity}. Types without an entry in {@code limits} are not limited.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "banking.velocity")
+public class VelocityLimitProperties {
+    
+    // Off unless switched on, whatever configuration is bound
+    private boolean enabled = false;
+    
+    private Duration window = Duration.ofMinutes(1);
+    
+    // Time buckets the window slides by
+    private int buckets = 12;
+    
+    private Map<TransactionType, Limit> limits = new EnumMap<>(TransactionType.class);
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        
+        // Transactions per window, or null for no limit
+        private Integer maxCount;
+        
+        // Total amount per window, or null for no limit
+        private BigDecimal maxAmount;
+    }
+}
@@ -0,0 +1,42 @@
+package com.banking.transactionapp.controller;
+
+import com.banking.transactionapp.dto.AccountBalanceDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
+import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.service.TransactionService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/accounts")
+@RequiredArgsConstructor
+@Validated
+@Slf4j
+public class AccountController {
+    
+    private final TransactionService transactionService;
+    
+    @GetMapping("/{accountNumber}/transactions")
+    public ResponseEntity<CursorPageResponseDTO<TransactionResponseDTO>> getAccountTransactions(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int size) {
+        log.info("REST request to get transactions of account: {} after cursor: {} with size: {}",
+                accountNumber, after, size);
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = 
+                transactionService.getTransactionsByAccount(accountNumber, after, size);
+        return ResponseEntity.ok(pageResponse);
+    }
+    
+    @GetMapping("/{accountNumber}/balance")
+    public ResponseEntity<AccountBalanceDTO> getAccountBalance(@PathVariable String accountNumber) {
+        log.info("REST request to get balance of account: {}", accountNumber);
+        AccountBalanceDTO balanceDTO = transactionService.getAccountBalance(accountNumber);
+        return ResponseEntity.ok(balanceDTO);
+    }
+}
@@ -1,21 +1,39 @@
 package com.banking.transactionapp.controller;
 
+import com.banking.transactionapp.dto.BatchCreateResponseDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
 import com.banking.transactionapp.dto.PageResponseDTO;
 import com.banking.transactionapp.dto.TransactionCreateDTO;
 import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.dto.TransactionStatsDTO;
 import com.banking.transactionapp.dto.TransactionUpdateDTO;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.service.IdempotencyCache;
 import com.banking.transactionapp.service.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/v1/transactions")
@@ -24,22 +42,41 @@ import java.util.UUID;
 @Slf4j
 public class TransactionController {
     
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    
     private final TransactionService transactionService;
     
+    private final IdempotencyCache idempotencyCache;
+    
+    private final ObjectMapper objectMapper;
+    
     @PostMapping
     public ResponseEntity<TransactionResponseDTO> createTransaction(
-            @Valid @RequestBody TransactionCreateDTO createDTO) {
+            @Valid @RequestBody TransactionCreateDTO createDTO,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) @Size(min = 1, max = 255) String idempotencyKey) {
         log.info("REST request to create a new transaction");
-        TransactionResponseDTO responseDTO = transactionService.createTransaction(createDTO);
+        TransactionResponseDTO responseDTO = idempotencyKey == null
+                ? transactionService.createTransaction(createDTO)
+                : idempotencyCache.execute(idempotencyKey, createDTO, () -> transactionService.createTransaction(createDTO));
         return new ResponseEntity<>(responseDTO, HttpStatus.CREATED);
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<BatchCreateResponseDTO> createTransactions(
+            @RequestBody @NotEmpty @Size(max = 1000) List<TransactionCreateDTO> createDTOs) {
+        log.info("REST request to create a batch of {} transactions", createDTOs.size());
+        BatchCreateResponseDTO responseDTO = transactionService.createTransactions(createDTOs);
+        return ResponseEntity.ok(responseDTO);
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<TransactionResponseDTO> getTransactionById(
             @PathVariable UUID id) {
         log.info("REST request to get transaction with ID: {}", id);
         TransactionResponseDTO responseDTO = transactionService.getTransactionById(id);
-        return ResponseEntity.ok(responseDTO);
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(responseDTO.getVersion()))
+                .body(responseDTO);
     }
     
     @GetMapping
@@ -49,6 +86,45 @@ public class TransactionController {
         return ResponseEntity.ok(transactions);
     }
     
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllTransactions() {
+        log.info("REST request to stream all transactions");
+        ObjectWriter writer = objectMapper.writerFor(TransactionResponseDTO.class);
+        
+        // Each transaction is written as one line as soon as it is read, in constant memory
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<TransactionResponseDTO> transactions = transactionService.streamAllTransactions()) {
+                Iterator<TransactionResponseDTO> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    outputStream.write(writer.writeValueAsBytes(iterator.next()));
+                    outputStream.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    @GetMapping(params = "status")
+    public ResponseEntity<CursorPageResponseDTO<TransactionResponseDTO>> getTransactionsByStatus(
+            @RequestParam TransactionStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int size) {
+        log.info("REST request to get {} transactions after cursor: {} with size: {}", status, after, size);
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = 
+                transactionService.getTransactionsByStatus(status, after, size);
+        return ResponseEntity.ok(pageResponse);
+    }
+    
+    @PostMapping("/claim")
+    public ResponseEntity<List<TransactionResponseDTO>> claimPendingTransactions(
+            @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int size) {
+        log.info("REST request to claim up to {} pending transactions", size);
+        List<TransactionResponseDTO> claimed = transactionService.claimPendingTransactions(size);
+        return ResponseEntity.ok(claimed);
+    }
+    
     @GetMapping("/paged")
     public ResponseEntity<PageResponseDTO<TransactionResponseDTO>> getTransactionsPaginated(
             @RequestParam(defaultValue = "0") @Min(0) int page,
@@ -59,13 +135,75 @@ public class TransactionController {
         return ResponseEntity.ok(pageResponse);
     }
     
+    @GetMapping("/stats")
+    public ResponseEntity<TransactionStatsDTO> getStatistics() {
+        log.info("REST request to get transaction statistics");
+        return ResponseEntity.ok(transactionService.getStatistics());
+    }
+    
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageResponseDTO<TransactionResponseDTO>> getTransactionsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int size) {
+        log.info("REST request to get transactions after cursor: {} with size: {}", after, size);
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = 
+                transactionService.getTransactionsAfter(after, size);
+        return ResponseEntity.ok(pageResponse);
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageResponseDTO<TransactionResponseDTO>> searchTransactions(
+            @RequestParam @NotBlank String q,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int size) {
+        log.info("REST request to search transactions for '{}' after cursor: {} with size: {}", q, after, size);
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = 
+                transactionService.searchTransactions(q, after, size);
+        return ResponseEntity.ok(pageResponse);
+    }
+    
+    @GetMapping("/range")
+    public ResponseEntity<CursorPageResponseDTO<TransactionResponseDTO>> getTransactionsBetween(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int size) {
+        log.info("REST request to get transactions between {} and {} after cursor: {} with size: {}",
+                from, to, after, size);
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = 
+                transactionService.getTransactionsBetween(from, to, after, size);
+        return ResponseEntity.ok(pageResponse);
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<TransactionResponseDTO> updateTransaction(
             @PathVariable UUID id,
-            @Valid @RequestBody TransactionUpdateDTO updateDTO) {
+            @Valid @RequestBody TransactionUpdateDTO updateDTO,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("REST request to update transaction with ID: {}", id);
-        TransactionResponseDTO responseDTO = transactionService.updateTransaction(id, updateDTO);
-        return ResponseEntity.ok(responseDTO);
+        TransactionResponseDTO responseDTO = transactionService.updateTransaction(id, updateDTO, expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(responseDTO.getVersion()))
+                .body(responseDTO);
+    }
+    
+    /**
+     * Reads the version out of an If-Match header; null when the header is absent or
+     * {@code *}, and a version that never matches when it is not one of our ETags.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.parseLong(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
     }
     
     @DeleteMapping("/{id}")
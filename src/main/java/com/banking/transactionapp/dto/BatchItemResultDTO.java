@@ -0,0 +1,18 @@
+package com.banking.transactionapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResultDTO {
+    
+    private int index;
+    private int status;
+    private TransactionResponseDTO transaction;
+    private String error;
+}
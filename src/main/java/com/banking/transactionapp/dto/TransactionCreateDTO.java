@@ -1,8 +1,10 @@
 package com.banking.transactionapp.dto;
 
+import com.banking.transactionapp.model.FixedPoint;
 import com.banking.transactionapp.model.TransactionType;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,6 +21,8 @@ public class TransactionCreateDTO {
     
     @NotNull(message = "Amount is required")
     @Positive(message = "Amount must be positive")
+    @Digits(integer = FixedPoint.MAX_AMOUNT_INTEGER_DIGITS, fraction = FixedPoint.AMOUNT_SCALE,
+            message = "Amount must have at most 14 integer digits and 4 decimal places")
     private BigDecimal amount;
     
     @NotBlank(message = "Description is required")
@@ -24,4 +24,5 @@ public class TransactionResponseDTO {
     private String accountNumber;
     private LocalDateTime timestamp;
     private TransactionStatus status;
+    private long version;
 }
@@ -0,0 +1,24 @@
+package com.banking.transactionapp.dto;
+
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionStatsDTO {
+    
+    private long totalCount;
+    private BigDecimal totalAmount;
+    private Map<TransactionType, Long> countByType;
+    private Map<TransactionType, BigDecimal> amountByType;
+    private Map<TransactionStatus, Long> countByStatus;
+}
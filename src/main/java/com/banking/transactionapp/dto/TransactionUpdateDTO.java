@@ -1,7 +1,9 @@
 package com.banking.transactionapp.dto;
 
+import com.banking.transactionapp.model.FixedPoint;
 import com.banking.transactionapp.model.TransactionStatus;
 import com.banking.transactionapp.model.TransactionType;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,6 +19,8 @@ import java.math.BigDecimal;
 public class TransactionUpdateDTO {
     
     @Positive(message = "Amount must be positive")
+    @Digits(integer = FixedPoint.MAX_AMOUNT_INTEGER_DIGITS, fraction = FixedPoint.AMOUNT_SCALE,
+            message = "Amount must have at most 14 integer digits and 4 decimal places")
     private BigDecimal amount;
     
     private String description;
@@ -0,0 +1,10 @@
+package com.banking.transactionapp.exception;
+
+import java.time.LocalDateTime;
+
+public class InvalidTimeRangeException extends RuntimeException {
+    
+    public InvalidTimeRangeException(LocalDateTime from, LocalDateTime to) {
+        super("Invalid time range: 'from' (" + from + ") must be before 'to' (" + to + ")");
+    }
+}
@@ -0,0 +1,10 @@
+package com.banking.transactionapp.exception;
+
+import java.util.UUID;
+
+public class TransactionVersionConflictException extends RuntimeException {
+    
+    public TransactionVersionConflictException(UUID id, long expectedVersion) {
+        super("Transaction " + id + " is no longer at version " + expectedVersion);
+    }
+}
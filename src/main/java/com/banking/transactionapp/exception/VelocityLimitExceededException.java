@@ -0,0 +1,13 @@
+package com.banking.transactionapp.exception;
+
+import com.banking.transactionapp.model.TransactionType;
+
+import java.time.Duration;
+
+public class VelocityLimitExceededException extends RuntimeException {
+    
+    public VelocityLimitExceededException(String accountNumber, TransactionType type, Duration window) {
+        super("Account " + accountNumber + " has reached its limit of " + type + " transactions within "
+                + window.toSeconds() + " seconds");
+    }
+}
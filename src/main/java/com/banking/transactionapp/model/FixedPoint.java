@@ -0,0 +1,66 @@
+package com.banking.transactionapp.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions between the API representation of amounts and timestamps and the compact
+ * primitive form used for storage, indexing and duplicate detection.
+ * <p>
+ * Amounts become a {@code long} count of minor units at a fixed scale of
+ * {@value #AMOUNT_SCALE} decimal places, and timestamps a {@code long} count of
+ * microseconds since the epoch, so comparing them is plain long arithmetic.
+ */
+public final class FixedPoint {
+    
+    public static final int AMOUNT_SCALE = 4;
+    
+    public static final int MAX_AMOUNT_INTEGER_DIGITS = 14;
+    
+    public static final long MICROS_PER_SECOND = 1_000_000L;
+    
+    private static final int NANOS_PER_MICRO = 1_000;
+    
+    // Unscaled values of at most this many digits fit in a long at any scale up to AMOUNT_SCALE
+    private static final int MAX_FAST_PRECISION = 18 - AMOUNT_SCALE;
+    
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+    
+    private FixedPoint() {
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the amount has more than {@value #AMOUNT_SCALE}
+     *         decimal places or does not fit in a long at that scale
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        // Valid amounts take the fast path: rescaling the unscaled value is long arithmetic,
+        // without the BigDecimal that setScale builds
+        int scale = amount.scale();
+        if (scale >= 0 && scale <= AMOUNT_SCALE && amount.precision() <= MAX_FAST_PRECISION) {
+            return amount.unscaledValue().longValue() * POWERS_OF_TEN[AMOUNT_SCALE - scale];
+        }
+        try {
+            return amount.setScale(AMOUNT_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount cannot be represented in minor units: " + amount, e);
+        }
+    }
+    
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, AMOUNT_SCALE);
+    }
+    
+    public static long toEpochMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + timestamp.getNano() / NANOS_PER_MICRO;
+    }
+    
+    public static LocalDateTime fromEpochMicros(long epochMicros) {
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(epochMicros, MICROS_PER_SECOND),
+                (int) Math.floorMod(epochMicros, MICROS_PER_SECOND) * NANOS_PER_MICRO,
+                ZoneOffset.UTC);
+    }
+}
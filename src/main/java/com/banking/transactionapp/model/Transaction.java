@@ -1,21 +1,26 @@
 package com.banking.transactionapp.model;
 
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.With;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
+/**
+ * One version of a transaction. Instances are immutable: an update builds the next version
+ * with {@link #toBuilder()} or a {@code with} method and replaces the stored one, so a
+ * reader never sees a half-applied change.
+ */
+@Value
+@With
+@Builder(toBuilder = true)
 public class Transaction {
     
     @Builder.Default
@@ -23,6 +28,8 @@ public class Transaction {
     
     @NotNull(message = "Amount is required")
     @Positive(message = "Amount must be positive")
+    @Digits(integer = FixedPoint.MAX_AMOUNT_INTEGER_DIGITS, fraction = FixedPoint.AMOUNT_SCALE,
+            message = "Amount must have at most 14 integer digits and 4 decimal places")
     private BigDecimal amount;
     
     @NotBlank(message = "Description is required")
@@ -34,19 +41,24 @@ public class Transaction {
     @NotBlank(message = "Account number is required")
     private String accountNumber;
     
+    // Microsecond precision, the resolution of the compact epoch-micros form
     @Builder.Default
-    private LocalDateTime timestamp = LocalDateTime.now();
+    private LocalDateTime timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     
     @Builder.Default
     private TransactionStatus status = TransactionStatus.PENDING;
     
+    // Starts at 1 and goes up by one with every update; the REST API exposes it as the ETag
+    @Builder.Default
+    private long version = 1;
+    
     // Custom equals method to check for duplicate transactions
     public boolean equalsForDuplication(Transaction other) {
         
         if (this == other) return true;
         if (other == null) return false;
         
-        return amount.equals(other.amount) &&
+        return amount.compareTo(other.amount) == 0 &&
                description.equals(other.description) &&
                type == other.type &&
                accountNumber.equals(other.accountNumber);
@@ -70,7 +82,7 @@ public class Transaction {
         }
         
         // Check if amount, description, and type match
-        boolean basicFieldsMatch = amount.equals(other.amount) &&
+        boolean basicFieldsMatch = amount.compareTo(other.amount) == 0 &&
                                   description.equals(other.description) &&
                                   type == other.type;
         
@@ -79,10 +91,10 @@ public class Transaction {
         }
         
         // Check if the transactions are within the specified time window
-        long secondsBetween = Math.abs(
-            java.time.Duration.between(timestamp, other.timestamp).getSeconds()
+        long microsBetween = Math.abs(
+            FixedPoint.toEpochMicros(timestamp) - FixedPoint.toEpochMicros(other.timestamp)
         );
         
-        return secondsBetween <= timeWindowSeconds;
+        return microsBetween <= timeWindowSeconds * FixedPoint.MICROS_PER_SECOND;
     }
 }
@@ -0,0 +1,50 @@
+package com.banking.transactionapp.model;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in the newest-first transaction listing, used for keyset pagination.
+ * <p>
+ * Clients only ever see the opaque token produced by {@link #encode()}; it identifies
+ * the last transaction of a page by its timestamp, in epoch microseconds, and id.
+ * Cursors compare in listing order: newest timestamp first, ties broken by id.
+ */
+public record TransactionCursor(long timestampMicros, UUID id) implements Comparable<TransactionCursor> {
+    
+    private static final int ENCODED_LENGTH = Long.BYTES + 2 * Long.BYTES;
+    
+    public static TransactionCursor of(Transaction transaction) {
+        return new TransactionCursor(FixedPoint.toEpochMicros(transaction.getTimestamp()), transaction.getId());
+    }
+    
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH)
+                .putLong(timestampMicros)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+    
+    /**
+     * Decodes a token produced by {@link #encode()}.
+     * 
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static TransactionCursor decode(String token) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Cursor has unexpected length: " + bytes.length);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new TransactionCursor(buffer.getLong(), new UUID(buffer.getLong(), buffer.getLong()));
+    }
+    
+    @Override
+    public int compareTo(TransactionCursor other) {
+        int byTimestamp = Long.compare(other.timestampMicros, timestampMicros);
+        return byTimestamp != 0 ? byTimestamp : other.id.compareTo(id);
+    }
+}
@@ -0,0 +1,12 @@
+package com.banking.transactionapp.persistence;
+
+public class ArchiveException extends RuntimeException {
+    
+    public ArchiveException(String message) {
+        super(message);
+    }
+    
+    public ArchiveException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,428 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable file of archived transactions, compressed in blocks.
+ * <p>
+ * Layout: a header (magic number and format version), the transactions in newest-first
+ * order split into blocks that are each Deflate-compressed on their own, then a block index,
+ * an id index and an account index, and finally a fixed-size footer that locates the indexes
+ * and holds a CRC32 of everything before it. Transactions are stored in the
+ * {@link TransactionCodec} format.
+ * <p>
+ * The block index (offset and time span of every block) and the account index (the blocks
+ * holding each account) are loaded onto the heap. The id index is sorted by id and searched
+ * in place in the memory-mapped file, so any read decompresses only the blocks it returns
+ * from. A segment is written to a temporary file and atomically renamed into place.
+ */
+final class ArchiveSegment {
+    
+    private static final int MAGIC = 0x54584753;
+    private static final int VERSION = 2;
+    // Segments of this version hold transactions in the unversioned layout
+    private static final int UNVERSIONED_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int ID_ENTRY_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final int FOOTER_SIZE = 3 * Long.BYTES + 2 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    
+    private final Path file;
+    private final long sequence;
+    private final MappedByteBuffer data;
+    private final int layout;
+    private final int transactionCount;
+    private final int idIndexOffset;
+    private final int[] blockOffsets;
+    private final int[] compressedLengths;
+    private final int[] uncompressedLengths;
+    private final int[] blockCounts;
+    private final TransactionCursor[] newestKeys;
+    private final TransactionCursor[] oldestKeys;
+    private final Map<String, int[]> blocksByAccount;
+    
+    // Ids whose copy in this segment was superseded by an update or a delete
+    private final Set<UUID> tombstones = ConcurrentHashMap.newKeySet();
+    
+    private ArchiveSegment(Path file, long sequence, MappedByteBuffer data) throws IOException {
+        this.file = file;
+        this.sequence = sequence;
+        this.data = data;
+        this.layout = data.getInt(Integer.BYTES) == UNVERSIONED_VERSION
+                ? TransactionCodec.UNVERSIONED_LAYOUT
+                : TransactionCodec.CURRENT_LAYOUT;
+        
+        ByteBuffer footer = data.slice(data.limit() - FOOTER_SIZE, FOOTER_SIZE);
+        int blockIndexOffset = (int) footer.getLong();
+        this.idIndexOffset = (int) footer.getLong();
+        int accountIndexOffset = (int) footer.getLong();
+        int blockCount = footer.getInt();
+        this.transactionCount = footer.getInt();
+        
+        this.blockOffsets = new int[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.uncompressedLengths = new int[blockCount];
+        this.blockCounts = new int[blockCount];
+        this.newestKeys = new TransactionCursor[blockCount];
+        this.oldestKeys = new TransactionCursor[blockCount];
+        ByteBuffer blockIndex = data.slice(blockIndexOffset, idIndexOffset - blockIndexOffset);
+        for (int block = 0; block < blockCount; block++) {
+            blockOffsets[block] = (int) blockIndex.getLong();
+            compressedLengths[block] = blockIndex.getInt();
+            uncompressedLengths[block] = blockIndex.getInt();
+            blockCounts[block] = blockIndex.getInt();
+            newestKeys[block] = new TransactionCursor(blockIndex.getLong(), new UUID(blockIndex.getLong(), blockIndex.getLong()));
+            oldestKeys[block] = new TransactionCursor(blockIndex.getLong(), new UUID(blockIndex.getLong(), blockIndex.getLong()));
+        }
+        
+        ByteBuffer accountIndex = data.slice(accountIndexOffset, data.limit() - FOOTER_SIZE - accountIndexOffset);
+        int accountCount = accountIndex.getInt();
+        this.blocksByAccount = new HashMap<>(accountCount * 2);
+        for (int i = 0; i < accountCount; i++) {
+            byte[] account = new byte[accountIndex.getInt()];
+            accountIndex.get(account);
+            int[] blocks = new int[accountIndex.getInt()];
+            for (int j = 0; j < blocks.length; j++) {
+                blocks[j] = accountIndex.getInt();
+            }
+            blocksByAccount.put(new String(account, StandardCharsets.UTF_8), blocks);
+        }
+    }
+    
+    /**
+     * Writes the transactions, which must be in newest-first order, to a new segment at the
+     * target path and opens it.
+     */
+    static ArchiveSegment write(Path target, long sequence, List<Transaction> transactions, int blockSize)
+            throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        int blockCount = (transactions.size() + blockSize - 1) / blockSize;
+        CRC32 crc = new CRC32();
+        
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temporary), crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            ByteArrayOutputStream blockIndexBytes = new ByteArrayOutputStream(blockCount * 64);
+            DataOutputStream blockIndex = new DataOutputStream(blockIndexBytes);
+            Map<String, BitSet> blocksByAccount = new LinkedHashMap<>();
+            Deflater deflater = new Deflater();
+            try {
+                for (int block = 0; block < blockCount; block++) {
+                    List<Transaction> blockTransactions = transactions.subList(
+                            block * blockSize, Math.min((block + 1) * blockSize, transactions.size()));
+                    byte[] raw = encodeBlock(blockTransactions);
+                    byte[] compressed = compress(deflater, raw);
+                    
+                    blockIndex.writeLong(out.size());
+                    blockIndex.writeInt(compressed.length);
+                    blockIndex.writeInt(raw.length);
+                    blockIndex.writeInt(blockTransactions.size());
+                    writeKey(blockIndex, TransactionCursor.of(blockTransactions.get(0)));
+                    writeKey(blockIndex, TransactionCursor.of(blockTransactions.get(blockTransactions.size() - 1)));
+                    out.write(compressed);
+                    
+                    for (Transaction transaction : blockTransactions) {
+                        if (transaction.getAccountNumber() != null) {
+                            blocksByAccount.computeIfAbsent(transaction.getAccountNumber(), account -> new BitSet())
+                                    .set(block);
+                        }
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+            
+            long blockIndexOffset = out.size();
+            blockIndexBytes.writeTo(out);
+            
+            long idIndexOffset = out.size();
+            Integer[] byId = new Integer[transactions.size()];
+            Arrays.setAll(byId, i -> i);
+            Arrays.sort(byId, (a, b) -> transactions.get(a).getId().compareTo(transactions.get(b).getId()));
+            for (int index : byId) {
+                UUID id = transactions.get(index).getId();
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+                out.writeInt(index / blockSize);
+            }
+            
+            long accountIndexOffset = out.size();
+            out.writeInt(blocksByAccount.size());
+            for (Map.Entry<String, BitSet> entry : blocksByAccount.entrySet()) {
+                byte[] account = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(account.length);
+                out.write(account);
+                out.writeInt(entry.getValue().cardinality());
+                for (int block : entry.getValue().stream().toArray()) {
+                    out.writeInt(block);
+                }
+            }
+            
+            out.flush();
+            long checksum = crc.getValue();
+            out.writeLong(blockIndexOffset);
+            out.writeLong(idIndexOffset);
+            out.writeLong(accountIndexOffset);
+            out.writeInt(blockCount);
+            out.writeInt(transactions.size());
+            out.writeLong(checksum);
+            out.writeInt(MAGIC);
+        }
+        
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(target, sequence);
+    }
+    
+    /**
+     * Opens the segment at the given path, after verifying its checksum.
+     */
+    static ArchiveSegment open(Path source, long sequence) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Segment " + source + " is truncated");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        int footer = data.limit() - FOOTER_SIZE;
+        int version = data.getInt(Integer.BYTES);
+        if (data.getInt(0) != MAGIC || (version != VERSION && version != UNVERSIONED_VERSION)
+                || data.getInt(data.limit() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Segment " + source + " has an unknown format");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(0, footer));
+        if (crc.getValue() != data.getLong(footer + 3 * Long.BYTES + 2 * Integer.BYTES)) {
+            throw new IOException("Segment " + source + " is corrupt");
+        }
+        return new ArchiveSegment(source, sequence, data);
+    }
+    
+    long sequence() {
+        return sequence;
+    }
+    
+    Path file() {
+        return file;
+    }
+    
+    long liveCount() {
+        return transactionCount - tombstones.size();
+    }
+    
+    /**
+     * Returns true if the timestamp lies within the time span of the segment.
+     */
+    boolean spans(long timestampMicros) {
+        return newestKeys.length > 0
+                && timestampMicros <= newestKeys[0].timestampMicros()
+                && timestampMicros >= oldestKeys[oldestKeys.length - 1].timestampMicros();
+    }
+    
+    /**
+     * Returns the live copy of the transaction, or null if the segment does not hold one.
+     */
+    Transaction find(UUID id) {
+        if (tombstones.contains(id)) {
+            return null;
+        }
+        
+        int low = 0;
+        int high = transactionCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = idIndexOffset + middle * ID_ENTRY_SIZE;
+            int comparison = Long.compare(data.getLong(offset), id.getMostSignificantBits());
+            if (comparison == 0) {
+                comparison = Long.compare(data.getLong(offset + Long.BYTES), id.getLeastSignificantBits());
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                for (Transaction transaction : readBlock(data.getInt(offset + 2 * Long.BYTES))) {
+                    if (transaction.getId().equals(id)) {
+                        return transaction;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Hides the copy of a transaction that has been updated or deleted since it was archived.
+     */
+    void hide(UUID id) {
+        tombstones.add(id);
+    }
+    
+    /**
+     * Adds to {@code out} the live transactions that follow {@code start} in newest-first order
+     * and are no older than {@code fromMicros}, until {@code out} holds {@code size} transactions.
+     *
+     * @param start Exclusive starting position, or null to start from the newest transaction
+     * @param accountNumber The account to read, or null for every account
+     */
+    void scan(TransactionCursor start, long fromMicros, String accountNumber, int size, List<Transaction> out) {
+        int[] blocks = null;
+        if (accountNumber != null) {
+            blocks = blocksByAccount.get(accountNumber);
+            if (blocks == null) {
+                return;
+            }
+        }
+        
+        int first = firstBlockAfter(start);
+        int candidates = blocks != null ? blocks.length : newestKeys.length;
+        for (int i = 0; i < candidates; i++) {
+            int block = blocks != null ? blocks[i] : i;
+            if (block < first) {
+                continue;
+            }
+            if (newestKeys[block].timestampMicros() < fromMicros) {
+                return;
+            }
+            for (Transaction transaction : readBlock(block)) {
+                TransactionCursor key = TransactionCursor.of(transaction);
+                if (start != null && key.compareTo(start) <= 0) {
+                    continue;
+                }
+                if (key.timestampMicros() < fromMicros) {
+                    return;
+                }
+                if ((accountNumber == null || accountNumber.equals(transaction.getAccountNumber()))
+                        && !tombstones.contains(transaction.getId())) {
+                    out.add(transaction);
+                    if (out.size() >= size) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+    
+    void forEach(Consumer<Transaction> action) {
+        for (int block = 0; block < newestKeys.length; block++) {
+            for (Transaction transaction : readBlock(block)) {
+                if (!tombstones.contains(transaction.getId())) {
+                    action.accept(transaction);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the first block holding a transaction after the start position.
+     */
+    private int firstBlockAfter(TransactionCursor start) {
+        if (start == null) {
+            return 0;
+        }
+        int low = 0;
+        int high = oldestKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (oldestKeys[middle].compareTo(start) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+    
+    private List<Transaction> readBlock(int block) {
+        byte[] raw = new byte[uncompressedLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice(blockOffsets[block], compressedLengths[block]));
+            int read = 0;
+            while (read < raw.length) {
+                int inflated = inflater.inflate(raw, read, raw.length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new ArchiveException("Segment " + file + " has a truncated block");
+                }
+                read += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new ArchiveException("Segment " + file + " has a corrupt block", e);
+        } finally {
+            inflater.end();
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        List<Transaction> transactions = new ArrayList<>(blockCounts[block]);
+        for (int i = 0; i < blockCounts[block]; i++) {
+            transactions.add(TransactionCodec.decode(buffer, layout));
+        }
+        return transactions;
+    }
+    
+    private static byte[] encodeBlock(List<Transaction> transactions) {
+        int size = 0;
+        for (Transaction transaction : transactions) {
+            size += TransactionCodec.encodedSize(transaction);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Transaction transaction : transactions) {
+            TransactionCodec.encode(transaction, buffer);
+        }
+        return buffer.array();
+    }
+    
+    private static byte[] compress(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return compressed.toByteArray();
+    }
+    
+    private static void writeKey(DataOutputStream out, TransactionCursor key) throws IOException {
+        out.writeLong(key.timestampMicros());
+        out.writeLong(key.id().getMostSignificantBits());
+        out.writeLong(key.id().getLeastSignificantBits());
+    }
+}
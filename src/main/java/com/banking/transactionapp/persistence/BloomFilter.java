@@ -0,0 +1,88 @@
+package com.banking.transactionapp.persistence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Bloom filter over transaction ids, stored with every {@link SSTable} so that a lookup
+ * can skip tables that certainly do not hold the id.
+ * <p>
+ * Ten bits per entry and seven probes give a false-positive rate of about 1%. The probes
+ * are derived from two hashes of the id by double hashing, so adding or testing an id
+ * never allocates.
+ */
+final class BloomFilter {
+    
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_COUNT = 7;
+    
+    private final long[] bits;
+    private final long bitCount;
+    
+    BloomFilter(int expectedEntries) {
+        this(new long[Math.max(1, (int) (((long) Math.max(1, expectedEntries) * BITS_PER_ENTRY + 63) / 64))]);
+    }
+    
+    private BloomFilter(long[] bits) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * Long.SIZE;
+    }
+    
+    void add(UUID id) {
+        long hash1 = hash1(id);
+        long hash2 = hash2(id);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+    
+    boolean mightContain(UUID id) {
+        long hash1 = hash1(id);
+        long hash2 = hash2(id);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+    
+    static BloomFilter readFrom(ByteBuffer buffer) {
+        long[] bits = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(bits);
+        buffer.position(buffer.position() + bits.length * Long.BYTES);
+        return new BloomFilter(bits);
+    }
+    
+    private static long hash1(UUID id) {
+        return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+    }
+    
+    private static long hash2(UUID id) {
+        // Odd, so that the probes of one id never collapse onto a single bit
+        return mix(id.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+    }
+    
+    /**
+     * Finalization step of MurmurHash3, which spreads every input bit over the whole result.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB93FE1A85EC9L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
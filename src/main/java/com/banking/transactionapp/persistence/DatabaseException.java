@@ -0,0 +1,12 @@
+package com.banking.transactionapp.persistence;
+
+public class DatabaseException extends RuntimeException {
+    
+    public DatabaseException(String message) {
+        super(message);
+    }
+    
+    public DatabaseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.banking.transactionapp.persistence;
+
+public class JournalException extends RuntimeException {
+    
+    public JournalException(String message) {
+        super(message);
+    }
+    
+    public JournalException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
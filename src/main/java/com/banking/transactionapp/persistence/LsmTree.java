@@ -0,0 +1,589 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded log-structured merge tree of transactions keyed by id.
+ * <p>
+ * Writes go to a {@link WriteAheadLog} and then to the memtable, a sorted in-memory map, so
+ * a write never touches a table on disk. Once the memtable holds {@code memtableBytes} of
+ * encoded transactions it is frozen, a fresh memtable with its own log takes over, and a
+ * background thread flushes the frozen one to an immutable {@link SSTable} and deletes its
+ * log. Deletes are written as tombstones.
+ * <p>
+ * Tables have a level: flushed tables start at level 0, and whenever
+ * {@code compactionThreshold} tables share a level they are merged into one table of the
+ * next level, keeping only the newest version of every transaction. Tombstones are dropped
+ * once they are merged into the oldest table, as nothing older is left for them to hide.
+ * The live tables and their order are recorded in a manifest that is replaced atomically,
+ * so a crash during a flush or a compaction leaves either the old or the new set of tables.
+ * <p>
+ * A lookup checks the memtables and then the tables from newest to oldest, and stops at the
+ * first version it finds; the tables' Bloom filters let it skip most of them without a read.
+ */
+@Slf4j
+public class LsmTree implements Closeable {
+    
+    public static final String MANIFEST_FILE_NAME = "MANIFEST";
+    
+    private static final String TABLE_PREFIX = "table-";
+    private static final String TABLE_SUFFIX = ".sst";
+    private static final String LOG_PREFIX = "wal-";
+    
+    // Merging stops at this size, which keeps every table well below the 2 GB a mapping covers
+    private static final long MAX_TABLE_BYTES = 1L << 30;
+    
+    // Approximate heap cost of a memtable entry on top of its encoded value
+    private static final int ENTRY_OVERHEAD = 64;
+    
+    private final Path directory;
+    private final boolean fsync;
+    private final long memtableBytes;
+    private final int compactionThreshold;
+    
+    private volatile Memtable active;
+    
+    // Frozen memtables waiting to be flushed, newest first
+    private final Deque<Memtable> flushing = new ConcurrentLinkedDeque<>();
+    
+    // Newest first; replaced as a whole, and only by the background thread after opening
+    private volatile List<SSTable> tables = List.of();
+    
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    
+    // Writers share the read lock; freezing the memtable takes the write lock, so that no
+    // write is between its log and its memtable while they are swapped
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    
+    private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsm-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public LsmTree(Path directory, boolean fsync, long memtableBytes, int compactionThreshold) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.memtableBytes = memtableBytes;
+        this.compactionThreshold = compactionThreshold;
+        try {
+            Files.createDirectories(directory);
+            openTables();
+            recoverLogs();
+            this.active = newMemtable();
+        } catch (IOException e) {
+            throw new JournalException("Failed to open LSM tree in " + directory, e);
+        }
+        log.info("Opened LSM tree in {} with {} tables", directory.toAbsolutePath(), tables.size());
+    }
+    
+    public void put(Transaction transaction) {
+        byte[] value = TransactionCodec.encode(transaction);
+        Memtable memtable;
+        rotationLock.readLock().lock();
+        try {
+            memtable = active;
+            memtable.log.recordSave(transaction);
+            memtable.put(transaction.getId(), value);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        rotateIfFull(memtable);
+    }
+    
+    /**
+     * Writes all transactions with a single log write.
+     */
+    public void putAll(List<Transaction> transactions) {
+        List<byte[]> values = transactions.stream().map(TransactionCodec::encode).toList();
+        Memtable memtable;
+        rotationLock.readLock().lock();
+        try {
+            memtable = active;
+            memtable.log.recordSaves(transactions);
+            for (int i = 0; i < transactions.size(); i++) {
+                memtable.put(transactions.get(i).getId(), values.get(i));
+            }
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        rotateIfFull(memtable);
+    }
+    
+    public void delete(UUID id) {
+        Memtable memtable;
+        rotationLock.readLock().lock();
+        try {
+            memtable = active;
+            memtable.log.recordDelete(id);
+            memtable.put(id, SSTable.TOMBSTONE);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        rotateIfFull(memtable);
+    }
+    
+    /**
+     * Returns the newest version of the transaction, or null if it does not exist.
+     */
+    public Transaction get(UUID id) {
+        // Memtables before tables, each newest first: a flush publishes its table before it
+        // drops the memtable, so a version is never missed while it moves
+        byte[] value = active.entries.get(id);
+        if (value == null) {
+            for (Memtable memtable : flushing) {
+                value = memtable.entries.get(id);
+                if (value != null) {
+                    break;
+                }
+            }
+        }
+        if (value == null) {
+            for (SSTable table : tables) {
+                value = table.get(id);
+                if (value != null) {
+                    break;
+                }
+            }
+        }
+        return value == null || value.length == 0 ? null : TransactionCodec.decode(ByteBuffer.wrap(value));
+    }
+    
+    /**
+     * Iterates over the newest version of every transaction, in id order.
+     */
+    public Iterator<Transaction> iterator() {
+        Iterator<SSTable.Entry> entries = new MergingIterator(sources(), true);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+            
+            @Override
+            public Transaction next() {
+                return TransactionCodec.decode(ByteBuffer.wrap(entries.next().value()));
+            }
+        };
+    }
+    
+    public int tableCount() {
+        return tables.size();
+    }
+    
+    /**
+     * Freezes the current memtable and waits until it and every earlier one is flushed and
+     * any compaction they trigger is finished.
+     */
+    public void flush() {
+        rotate(active);
+        try {
+            background.submit(this::flushPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JournalException("Interrupted while flushing " + directory, e);
+        } catch (ExecutionException e) {
+            throw new JournalException("Failed to flush " + directory, e.getCause());
+        }
+    }
+    
+    @Override
+    public void close() {
+        background.shutdown();
+        try {
+            if (!background.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Background flush of {} did not finish in time", directory);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Unflushed memtables are recovered from their logs on the next start
+        flushing.forEach(memtable -> memtable.log.close());
+        active.log.close();
+    }
+    
+    private void rotateIfFull(Memtable memtable) {
+        if (memtable.bytes.get() >= memtableBytes) {
+            rotate(memtable);
+        }
+    }
+    
+    private synchronized void rotate(Memtable full) {
+        if (active != full || full.entries.isEmpty()) {
+            // Another writer got here first
+            return;
+        }
+        rotationLock.writeLock().lock();
+        try {
+            // Queued before the swap, so readers that see the new memtable find the old one
+            flushing.addFirst(full);
+            active = newMemtable();
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+        background.execute(this::flushPending);
+    }
+    
+    /**
+     * Flushes the frozen memtables oldest first, so tables keep the order of their writes.
+     * A memtable that fails to flush stays readable and durable in its log, and is retried
+     * on the next flush.
+     */
+    private void flushPending() {
+        Memtable memtable;
+        while ((memtable = flushing.peekLast()) != null) {
+            try {
+                flush(memtable);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to flush memtable {} of {}", memtable.generation, directory, e);
+                return;
+            }
+        }
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to compact tables in {}", directory, e);
+        }
+    }
+    
+    private void flush(Memtable memtable) throws IOException {
+        long sequence = nextSequence.getAndIncrement();
+        SSTable table = SSTable.write(tableFile(sequence), sequence, 0,
+                entries(memtable), memtable.entries.size());
+        
+        List<SSTable> updated = new ArrayList<>(tables.size() + 1);
+        updated.add(table);
+        updated.addAll(tables);
+        publish(updated);
+        
+        flushing.removeLastOccurrence(memtable);
+        memtable.log.close();
+        deleteLog(memtable.generation);
+        log.debug("Flushed {} entries of memtable {} to {}", table.entryCount(), memtable.generation, table.file());
+    }
+    
+    /**
+     * Merges the tables of the lowest level that has reached the threshold into one table of
+     * the next level, until no level has. Levels never increase towards newer tables, so the
+     * tables of one level are always adjacent and merging them keeps the newest version.
+     */
+    private void compact() throws IOException {
+        while (true) {
+            List<SSTable> current = tables;
+            int start = -1;
+            int end = -1;
+            for (int i = 0; i < current.size(); ) {
+                int j = i;
+                long bytes = 0;
+                while (j < current.size() && current.get(j).level() == current.get(i).level()) {
+                    bytes += current.get(j).sizeInBytes();
+                    j++;
+                }
+                if (j - i >= compactionThreshold && bytes <= MAX_TABLE_BYTES) {
+                    start = i;
+                    end = j;
+                    break;
+                }
+                i = j;
+            }
+            if (start < 0) {
+                return;
+            }
+            
+            List<SSTable> inputs = current.subList(start, end);
+            boolean oldest = end == current.size();
+            long sequence = nextSequence.getAndIncrement();
+            List<Iterator<SSTable.Entry>> sources = inputs.stream().map(SSTable::iterator).toList();
+            SSTable merged = SSTable.write(tableFile(sequence), sequence, inputs.get(0).level() + 1,
+                    new MergingIterator(sources, oldest), inputs.stream().mapToInt(SSTable::entryCount).sum());
+            
+            List<SSTable> updated = new ArrayList<>(current.subList(0, start));
+            if (merged.entryCount() > 0) {
+                updated.add(merged);
+            }
+            updated.addAll(current.subList(end, current.size()));
+            publish(updated);
+            
+            if (merged.entryCount() == 0) {
+                Files.deleteIfExists(merged.file());
+            }
+            for (SSTable input : inputs) {
+                // Readers still holding the previous list keep reading the mapping
+                Files.deleteIfExists(input.file());
+            }
+            log.debug("Compacted {} level-{} tables into {} ({} entries)",
+                    inputs.size(), inputs.get(0).level(), merged.file(), merged.entryCount());
+        }
+    }
+    
+    private void publish(List<SSTable> updated) throws IOException {
+        writeManifest(updated);
+        tables = List.copyOf(updated);
+    }
+    
+    private List<Iterator<SSTable.Entry>> sources() {
+        List<Iterator<SSTable.Entry>> sources = new ArrayList<>();
+        sources.add(entries(active));
+        flushing.forEach(memtable -> sources.add(entries(memtable)));
+        tables.forEach(table -> sources.add(table.iterator()));
+        return sources;
+    }
+    
+    private static Iterator<SSTable.Entry> entries(Memtable memtable) {
+        return memtable.entries.entrySet().stream()
+                .map(entry -> new SSTable.Entry(entry.getKey(), entry.getValue()))
+                .iterator();
+    }
+    
+    private Memtable newMemtable() {
+        long generation = nextSequence.getAndIncrement();
+        return new Memtable(generation, new WriteAheadLog(logDirectory(generation), fsync));
+    }
+    
+    private Path tableFile(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", TABLE_PREFIX, sequence, TABLE_SUFFIX));
+    }
+    
+    private Path logDirectory(long generation) {
+        return directory.resolve(String.format("%s%016d", LOG_PREFIX, generation));
+    }
+    
+    /**
+     * Opens the tables listed in the manifest and deletes any other table, left behind by a
+     * flush or compaction that crashed before it was published.
+     */
+    private void openTables() throws IOException {
+        List<SSTable> opened = new ArrayList<>();
+        Set<Path> live = new HashSet<>();
+        Path manifest = directory.resolve(MANIFEST_FILE_NAME);
+        if (Files.exists(manifest)) {
+            byte[] bytes = Files.readAllBytes(manifest);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - Long.BYTES);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (bytes.length < Integer.BYTES + Long.BYTES
+                    || crc.getValue() != buffer.getLong(bytes.length - Long.BYTES)) {
+                throw new IOException("Manifest " + manifest + " is corrupt");
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long sequence = buffer.getLong();
+                int level = buffer.getInt();
+                Path file = tableFile(sequence);
+                opened.add(SSTable.open(file, sequence, level));
+                live.add(file);
+                nextSequence.set(Math.max(nextSequence.get(), sequence + 1));
+            }
+        }
+        
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path file : listing.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp") || (name.startsWith(TABLE_PREFIX) && !live.contains(file))) {
+                    Files.delete(file);
+                }
+            }
+        }
+        tables = List.copyOf(opened);
+    }
+    
+    /**
+     * Replays the logs of memtables that were not flushed before the last shutdown and
+     * flushes them, oldest first.
+     */
+    private void recoverLogs() throws IOException {
+        List<Long> generations;
+        try (Stream<Path> listing = Files.list(directory)) {
+            generations = listing
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(LOG_PREFIX))
+                    .map(name -> Long.parseLong(name.substring(LOG_PREFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        generations.forEach(generation -> nextSequence.set(Math.max(nextSequence.get(), generation + 1)));
+        
+        for (long generation : generations) {
+            Memtable memtable = new Memtable(generation, new WriteAheadLog(logDirectory(generation), fsync));
+            memtable.log.replay(new TransactionJournal.Replayer() {
+                @Override
+                public void save(Transaction transaction) {
+                    memtable.put(transaction.getId(), TransactionCodec.encode(transaction));
+                }
+                
+                @Override
+                public void delete(UUID id) {
+                    memtable.put(id, SSTable.TOMBSTONE);
+                }
+            });
+            if (memtable.entries.isEmpty()) {
+                memtable.log.close();
+                deleteLog(generation);
+            } else {
+                log.info("Recovered {} entries from the log of memtable {}", memtable.entries.size(), generation);
+                flush(memtable);
+            }
+        }
+        compact();
+    }
+    
+    private void writeManifest(List<SSTable> updated) throws IOException {
+        Path manifest = directory.resolve(MANIFEST_FILE_NAME);
+        Path temporary = directory.resolve(MANIFEST_FILE_NAME + ".tmp");
+        
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + updated.size() * (Long.BYTES + Integer.BYTES) + Long.BYTES);
+        buffer.putInt(updated.size());
+        for (SSTable table : updated) {
+            buffer.putLong(table.sequence());
+            buffer.putInt(table.level());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+            out.write(buffer.array());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void deleteLog(long generation) throws IOException {
+        Path logDirectory = logDirectory(generation);
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(logDirectory);
+    }
+    
+    private static final class Memtable {
+        
+        private final long generation;
+        private final ConcurrentSkipListMap<UUID, byte[]> entries = new ConcurrentSkipListMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private final WriteAheadLog log;
+        
+        private Memtable(long generation, WriteAheadLog log) {
+            this.generation = generation;
+            this.log = log;
+        }
+        
+        private void put(UUID id, byte[] value) {
+            entries.put(id, value);
+            bytes.addAndGet(value.length + ENTRY_OVERHEAD);
+        }
+    }
+    
+    /**
+     * Merges sources sorted by id into one sorted sequence. Where several sources hold the
+     * same id, the version from the earliest source, the newest, wins.
+     */
+    private static final class MergingIterator implements Iterator<SSTable.Entry> {
+        
+        private final PriorityQueue<Source> queue = new PriorityQueue<>(
+                Comparator.comparing((Source source) -> source.current.id()).thenComparingInt(source -> source.rank));
+        private final boolean dropTombstones;
+        private SSTable.Entry next;
+        
+        private MergingIterator(List<Iterator<SSTable.Entry>> sources, boolean dropTombstones) {
+            this.dropTombstones = dropTombstones;
+            for (int rank = 0; rank < sources.size(); rank++) {
+                Source source = new Source(rank, sources.get(rank));
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+            this.next = advance();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public SSTable.Entry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            SSTable.Entry entry = next;
+            next = advance();
+            return entry;
+        }
+        
+        private SSTable.Entry advance() {
+            while (!queue.isEmpty()) {
+                Source newest = queue.poll();
+                SSTable.Entry entry = newest.current;
+                requeue(newest);
+                // Older versions of the same id
+                while (!queue.isEmpty() && queue.peek().current.id().equals(entry.id())) {
+                    requeue(queue.poll());
+                }
+                if (!dropTombstones || !entry.isTombstone()) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+        
+        private void requeue(Source source) {
+            if (source.advance()) {
+                queue.add(source);
+            }
+        }
+        
+        private static final class Source {
+            
+            private final int rank;
+            private final Iterator<SSTable.Entry> entries;
+            private SSTable.Entry current;
+            
+            private Source(int rank, Iterator<SSTable.Entry> entries) {
+                this.rank = rank;
+                this.entries = entries;
+            }
+            
+            private boolean advance() {
+                current = entries.hasNext() ? entries.next() : null;
+                return current != null;
+            }
+        }
+    }
+}
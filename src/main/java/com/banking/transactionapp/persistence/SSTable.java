@@ -0,0 +1,297 @@
+package com.banking.transactionapp.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Immutable sorted string table: one flushed memtable, or the merge of several tables.
+ * <p>
+ * Layout: a header (magic number and format version), the entries sorted by id, a sparse
+ * index holding the id and offset of every {@value #INDEX_INTERVAL}th entry, a
+ * {@link BloomFilter} over all ids, and a fixed-size footer that locates the index and the
+ * filter and holds a CRC32 of everything before it. An entry is the id (16 bytes), the
+ * length of its value (4) and the value: a transaction in the {@link TransactionCodec}
+ * format (the unversioned layout in version 1 tables), or nothing for a tombstone that hides
+ * older versions of a deleted transaction.
+ * <p>
+ * The sparse index and the filter are loaded onto the heap; entries are read from the
+ * memory-mapped file, so a lookup costs a filter test, a binary search of the index and a
+ * scan of at most {@value #INDEX_INTERVAL} entries.
+ */
+final class SSTable {
+    
+    static final int INDEX_INTERVAL = 16;
+    
+    // The value of a tombstone; encoded transactions are never empty
+    static final byte[] TOMBSTONE = new byte[0];
+    
+    private static final int MAGIC = 0x4C534D54;
+    private static final int VERSION = 2;
+    // Tables of this version hold transactions in the unversioned layout
+    private static final int UNVERSIONED_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int FOOTER_SIZE = 2 * Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    
+    private final Path file;
+    private final long sequence;
+    private final int level;
+    private final MappedByteBuffer data;
+    private final boolean unversioned;
+    private final int dataEnd;
+    private final int entryCount;
+    private final long[] indexMostSignificant;
+    private final long[] indexLeastSignificant;
+    private final int[] indexOffsets;
+    private final BloomFilter bloomFilter;
+    
+    private SSTable(Path file, long sequence, int level, MappedByteBuffer data) {
+        this.file = file;
+        this.sequence = sequence;
+        this.level = level;
+        this.data = data;
+        this.unversioned = data.getInt(Integer.BYTES) == UNVERSIONED_VERSION;
+        
+        ByteBuffer footer = data.slice(data.limit() - FOOTER_SIZE, FOOTER_SIZE);
+        this.dataEnd = (int) footer.getLong();
+        int bloomOffset = (int) footer.getLong();
+        this.entryCount = footer.getInt();
+        
+        ByteBuffer index = data.slice(dataEnd, bloomOffset - dataEnd);
+        int indexSize = index.getInt();
+        this.indexMostSignificant = new long[indexSize];
+        this.indexLeastSignificant = new long[indexSize];
+        this.indexOffsets = new int[indexSize];
+        for (int i = 0; i < indexSize; i++) {
+            indexMostSignificant[i] = index.getLong();
+            indexLeastSignificant[i] = index.getLong();
+            indexOffsets[i] = index.getInt();
+        }
+        this.bloomFilter = BloomFilter.readFrom(data.slice(bloomOffset, data.limit() - FOOTER_SIZE - bloomOffset));
+    }
+    
+    /**
+     * Writes the entries, which must be sorted by id without repeats, to a new table at the
+     * target path and opens it.
+     *
+     * @param expectedEntries Upper bound of the number of entries, used to size the filter
+     */
+    static SSTable write(Path target, long sequence, int level, Iterator<Entry> entries, int expectedEntries)
+            throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temporary), crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            BloomFilter bloomFilter = new BloomFilter(expectedEntries);
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            int indexSize = 0;
+            int entryCount = 0;
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entryCount % INDEX_INTERVAL == 0) {
+                    index.writeLong(entry.id().getMostSignificantBits());
+                    index.writeLong(entry.id().getLeastSignificantBits());
+                    index.writeInt(out.size());
+                    indexSize++;
+                }
+                out.writeLong(entry.id().getMostSignificantBits());
+                out.writeLong(entry.id().getLeastSignificantBits());
+                out.writeInt(entry.value().length);
+                out.write(entry.value());
+                bloomFilter.add(entry.id());
+                entryCount++;
+                // size() stops counting at Integer.MAX_VALUE
+                if (out.size() == Integer.MAX_VALUE) {
+                    throw new IOException("Table " + target + " exceeds the 2 GB a single mapping can cover");
+                }
+            }
+            
+            long indexOffset = out.size();
+            out.writeInt(indexSize);
+            indexBytes.writeTo(out);
+            
+            long bloomOffset = out.size();
+            bloomFilter.writeTo(out);
+            
+            out.flush();
+            long checksum = crc.getValue();
+            out.writeLong(indexOffset);
+            out.writeLong(bloomOffset);
+            out.writeInt(entryCount);
+            out.writeLong(checksum);
+            out.writeInt(MAGIC);
+        }
+        
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(target, sequence, level);
+    }
+    
+    /**
+     * Opens the table at the given path, after verifying its checksum.
+     */
+    static SSTable open(Path source, long sequence, int level) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Table " + source + " is truncated");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        int footer = data.limit() - FOOTER_SIZE;
+        int version = data.getInt(Integer.BYTES);
+        if (data.getInt(0) != MAGIC || (version != VERSION && version != UNVERSIONED_VERSION)
+                || data.getInt(data.limit() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Table " + source + " has an unknown format");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(0, footer));
+        if (crc.getValue() != data.getLong(footer + 2 * Long.BYTES + Integer.BYTES)) {
+            throw new IOException("Table " + source + " is corrupt");
+        }
+        return new SSTable(source, sequence, level, data);
+    }
+    
+    long sequence() {
+        return sequence;
+    }
+    
+    int level() {
+        return level;
+    }
+    
+    Path file() {
+        return file;
+    }
+    
+    int entryCount() {
+        return entryCount;
+    }
+    
+    long sizeInBytes() {
+        return data.limit();
+    }
+    
+    /**
+     * Returns the value stored for the id: the encoded transaction, {@link #TOMBSTONE} if it
+     * was deleted, or null if this table knows nothing about it.
+     */
+    byte[] get(UUID id) {
+        if (!bloomFilter.mightContain(id)) {
+            return null;
+        }
+        
+        // Last indexed entry that is not after the id
+        int low = 0;
+        int high = indexOffsets.length - 1;
+        int start = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(indexMostSignificant[middle], indexLeastSignificant[middle], id) <= 0) {
+                start = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (start < 0) {
+            return null;
+        }
+        
+        int offset = indexOffsets[start];
+        for (int i = 0; i < INDEX_INTERVAL && offset < dataEnd; i++) {
+            int comparison = compare(data.getLong(offset), data.getLong(offset + Long.BYTES), id);
+            int length = data.getInt(offset + 2 * Long.BYTES);
+            if (comparison == 0) {
+                if (length == 0) {
+                    return TOMBSTONE;
+                }
+                byte[] value = new byte[length];
+                data.get(offset + 2 * Long.BYTES + Integer.BYTES, value);
+                return upgrade(value);
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            offset += 2 * Long.BYTES + Integer.BYTES + length;
+        }
+        return null;
+    }
+    
+    /**
+     * Iterates over all entries, tombstones included, in id order.
+     */
+    Iterator<Entry> iterator() {
+        return new Iterator<>() {
+            private int offset = HEADER_SIZE;
+            
+            @Override
+            public boolean hasNext() {
+                return offset < dataEnd;
+            }
+            
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                UUID id = new UUID(data.getLong(offset), data.getLong(offset + Long.BYTES));
+                int length = data.getInt(offset + 2 * Long.BYTES);
+                byte[] value = length == 0 ? TOMBSTONE : new byte[length];
+                data.get(offset + 2 * Long.BYTES + Integer.BYTES, value);
+                offset += 2 * Long.BYTES + Integer.BYTES + length;
+                return new Entry(id, length == 0 ? value : upgrade(value));
+            }
+        };
+    }
+    
+    /**
+     * Re-encodes a value of an unversioned table in the current layout, so callers only
+     * ever see one layout; compaction rewrites such tables in the current layout.
+     */
+    private byte[] upgrade(byte[] value) {
+        if (!unversioned) {
+            return value;
+        }
+        return TransactionCodec.encode(TransactionCodec.decode(ByteBuffer.wrap(value), TransactionCodec.UNVERSIONED_LAYOUT));
+    }
+    
+    /**
+     * Orders ids the same way as {@link UUID#compareTo(UUID)}.
+     */
+    private static int compare(long mostSignificant, long leastSignificant, UUID id) {
+        int byMost = Long.compare(mostSignificant, id.getMostSignificantBits());
+        return byMost != 0 ? byMost : Long.compare(leastSignificant, id.getLeastSignificantBits());
+    }
+    
+    /**
+     * A version of a transaction: its encoded form, or {@link #TOMBSTONE} if it was deleted.
+     */
+    record Entry(UUID id, byte[] value) {
+        
+        boolean isTombstone() {
+            return value.length == 0;
+        }
+    }
+}
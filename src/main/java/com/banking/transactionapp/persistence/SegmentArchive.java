@@ -0,0 +1,266 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Archive of immutable, compressed {@link ArchiveSegment} files in a local directory.
+ * <p>
+ * Every archiving run writes new segments; existing ones are never modified. When an
+ * archived transaction is updated or deleted, a tombstone naming the segment and the id is
+ * appended to a small log, and the copy in that segment is skipped from then on. Lookups by
+ * id search the segments' on-disk id indexes, and listings merge the newest-first pages
+ * read from each segment.
+ */
+@Slf4j
+public class SegmentArchive implements TransactionArchive, Closeable {
+    
+    public static final String TOMBSTONE_FILE_NAME = "tombstones.log";
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int TOMBSTONE_SIZE = 3 * Long.BYTES;
+    
+    // Keeps every segment well below the 2 GB a single memory mapping can cover
+    static final int MAX_SEGMENT_TRANSACTIONS = 1_000_000;
+    
+    private static final UUID LOWEST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    
+    private final Path directory;
+    private final Duration maxAge;
+    private final int blockSize;
+    
+    // Newest segment first, so the latest copy of a transaction is found first
+    private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final FileChannel tombstoneLog;
+    
+    public SegmentArchive(Path directory, Duration maxAge, int blockSize) {
+        this.directory = directory;
+        this.maxAge = maxAge;
+        this.blockSize = blockSize;
+        try {
+            Files.createDirectories(directory);
+            openSegments();
+            this.tombstoneLog = FileChannel.open(directory.resolve(TOMBSTONE_FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            loadTombstones();
+        } catch (IOException e) {
+            throw new ArchiveException("Failed to open transaction archive " + directory, e);
+        }
+        
+        if (!segments.isEmpty()) {
+            log.info("Opened {} archive segments holding {} transactions", segments.size(), count());
+        }
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+    
+    @Override
+    public Duration maxAge() {
+        return maxAge;
+    }
+    
+    @Override
+    public Pending write(List<Transaction> transactions) {
+        List<Transaction> sorted = new ArrayList<>(transactions);
+        sorted.sort(Comparator.comparing(TransactionCursor::of));
+        
+        List<ArchiveSegment> written = new ArrayList<>();
+        try {
+            for (int start = 0; start < sorted.size(); start += MAX_SEGMENT_TRANSACTIONS) {
+                long sequence = nextSequence.getAndIncrement();
+                written.add(ArchiveSegment.write(segmentFile(sequence), sequence,
+                        sorted.subList(start, Math.min(start + MAX_SEGMENT_TRANSACTIONS, sorted.size())), blockSize));
+            }
+        } catch (IOException e) {
+            // A segment left behind would hold a second copy once the batch is archived again
+            for (ArchiveSegment segment : written) {
+                try {
+                    Files.deleteIfExists(segment.file());
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new ArchiveException("Failed to write archive segment in " + directory, e);
+        }
+        
+        return () -> written.forEach(segment -> segments.add(0, segment));
+    }
+    
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        for (ArchiveSegment segment : segments) {
+            Transaction transaction = segment.find(id);
+            if (transaction != null) {
+                return Optional.of(transaction);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    @Override
+    public Optional<Transaction> findArchived(Transaction transaction) {
+        long timestampMicros = FixedPoint.toEpochMicros(transaction.getTimestamp());
+        for (ArchiveSegment segment : segments) {
+            if (segment.spans(timestampMicros)) {
+                Transaction archived = segment.find(transaction.getId());
+                if (archived != null) {
+                    return Optional.of(archived);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+    
+    @Override
+    public synchronized Optional<Transaction> remove(UUID id) {
+        for (ArchiveSegment segment : segments) {
+            Transaction archived = segment.find(id);
+            if (archived != null) {
+                appendTombstone(segment.sequence(), id);
+                segment.hide(id);
+                return Optional.of(archived);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    @Override
+    public List<Transaction> find(long fromMicros, long toMicros, TransactionCursor after,
+                                  String accountNumber, int size) {
+        if (fromMicros >= toMicros) {
+            return List.of();
+        }
+        // The lowest id sorts last within a timestamp, so this starts right before the first
+        // transaction older than toMicros
+        TransactionCursor start = new TransactionCursor(toMicros, LOWEST_ID);
+        if (after != null && after.compareTo(start) > 0) {
+            start = after;
+        }
+        
+        List<Transaction> transactions = new ArrayList<>();
+        for (ArchiveSegment segment : segments) {
+            List<Transaction> page = new ArrayList<>(size);
+            segment.scan(start, fromMicros, accountNumber, size, page);
+            transactions.addAll(page);
+        }
+        transactions.sort(Comparator.comparing(TransactionCursor::of));
+        return transactions.size() > size ? transactions.subList(0, size) : transactions;
+    }
+    
+    @Override
+    public long count() {
+        long count = 0;
+        for (ArchiveSegment segment : segments) {
+            count += segment.liveCount();
+        }
+        return count;
+    }
+    
+    @Override
+    public void forEach(Consumer<Transaction> action) {
+        segments.forEach(segment -> segment.forEach(action));
+    }
+    
+    @Override
+    public void close() {
+        try {
+            tombstoneLog.close();
+        } catch (IOException e) {
+            log.warn("Failed to close {}", directory.resolve(TOMBSTONE_FILE_NAME), e);
+        }
+    }
+    
+    private Path segmentFile(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+    
+    private void openSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.toList();
+        }
+        
+        List<ArchiveSegment> opened = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                // Left behind by a crash while a segment was being written
+                Files.delete(file);
+            } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                opened.add(ArchiveSegment.open(file, sequence));
+                nextSequence.set(Math.max(nextSequence.get(), sequence + 1));
+            }
+        }
+        opened.sort(Comparator.comparingLong(ArchiveSegment::sequence).reversed());
+        segments.addAll(opened);
+    }
+    
+    private void loadTombstones() throws IOException {
+        Map<Long, ArchiveSegment> bySequence = new HashMap<>();
+        segments.forEach(segment -> bySequence.put(segment.sequence(), segment));
+        
+        long validLength = tombstoneLog.size() - tombstoneLog.size() % TOMBSTONE_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate((int) validLength);
+        while (buffer.hasRemaining() && tombstoneLog.read(buffer, buffer.position()) >= 0) {
+            // Keep reading until the whole log is in the buffer
+        }
+        buffer.flip();
+        while (buffer.remaining() >= TOMBSTONE_SIZE) {
+            ArchiveSegment segment = bySequence.get(buffer.getLong());
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            if (segment != null) {
+                segment.hide(id);
+            }
+        }
+        
+        if (validLength < tombstoneLog.size()) {
+            log.warn("Discarding an incomplete tombstone at the end of {}", directory.resolve(TOMBSTONE_FILE_NAME));
+            tombstoneLog.truncate(validLength);
+        }
+        tombstoneLog.position(validLength);
+    }
+    
+    private void appendTombstone(long sequence, UUID id) {
+        ByteBuffer record = ByteBuffer.allocate(TOMBSTONE_SIZE)
+                .putLong(sequence)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .flip();
+        try {
+            while (record.hasRemaining()) {
+                tombstoneLog.write(record);
+            }
+            tombstoneLog.force(false);
+        } catch (IOException e) {
+            throw new ArchiveException("Failed to record tombstone in " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the transaction store, written and read through memory-mapped files.
+ * <p>
+ * Layout: a header holding a magic number, the format version, the number of transactions
+ * and a CRC32 of everything after the header, followed by length-prefixed records in the
+ * {@link TransactionCodec} format. Files are mapped in windows, so snapshots larger than
+ * 2 GB work too. A snapshot is written to a temporary file and atomically renamed into place,
+ * so readers only ever see a complete one.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x54584E53;
+    private static final int VERSION = 2;
+    // Snapshots of this version hold records in the unversioned layout
+    private static final int UNVERSIONED_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes every transaction returned by the iterator to a new snapshot at the target path.
+     *
+     * @return the number of transactions written
+     */
+    static long write(Path target, Iterator<Transaction> transactions) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        long count = 0;
+        CRC32 crc = new CRC32();
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long windowStart = HEADER_SIZE;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WINDOW_SIZE);
+
+            while (transactions.hasNext()) {
+                Transaction transaction = transactions.next();
+                int recordSize = TransactionCodec.encodedSize(transaction);
+
+                if (window.remaining() < Integer.BYTES + recordSize) {
+                    window.force();
+                    windowStart += window.position();
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart,
+                            Math.max(WINDOW_SIZE, Integer.BYTES + recordSize));
+                }
+
+                int recordStart = window.position();
+                window.putInt(recordSize);
+                TransactionCodec.encode(transaction, window);
+                crc.update(window.slice(recordStart, Integer.BYTES + recordSize));
+                count++;
+            }
+            window.force();
+            long length = windowStart + window.position();
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(crc.getValue());
+            header.force();
+
+            channel.truncate(length);
+            channel.force(true);
+        }
+
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Reads every transaction from the snapshot at the given path, after verifying its checksum.
+     *
+     * @return the number of transactions read
+     */
+    static long read(Path source, Consumer<Transaction> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Snapshot " + source + " is truncated");
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int version;
+            if (header.getInt() != MAGIC
+                    || ((version = header.getInt()) != VERSION && version != UNVERSIONED_VERSION)) {
+                throw new IOException("Snapshot " + source + " has an unknown format");
+            }
+            int layout = version == UNVERSIONED_VERSION
+                    ? TransactionCodec.UNVERSIONED_LAYOUT
+                    : TransactionCodec.CURRENT_LAYOUT;
+            long count = header.getLong();
+            long expectedCrc = header.getLong();
+
+            CRC32 crc = new CRC32();
+            for (long position = HEADER_SIZE; position < length; position += WINDOW_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_SIZE, length - position)));
+            }
+            if (crc.getValue() != expectedCrc) {
+                throw new IOException("Snapshot " + source + " is corrupt");
+            }
+
+            long windowStart = HEADER_SIZE;
+            MappedByteBuffer window = null;
+            for (long read = 0; read < count; read++) {
+                if (window == null || window.remaining() < Integer.BYTES
+                        || window.remaining() < Integer.BYTES + window.getInt(window.position())) {
+                    windowStart += window != null ? window.position() : 0;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(Math.max(WINDOW_SIZE, recordSizeAt(channel, windowStart)), length - windowStart));
+                }
+                window.getInt();
+                consumer.accept(TransactionCodec.decode(window, layout));
+            }
+            return count;
+        }
+    }
+
+    private static long recordSizeAt(FileChannel channel, long position) throws IOException {
+        return Integer.BYTES + channel.map(FileChannel.MapMode.READ_ONLY, position, Integer.BYTES).getInt();
+    }
+}
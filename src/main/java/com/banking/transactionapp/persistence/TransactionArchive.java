@@ -0,0 +1,126 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Cold tier for aged transactions, kept outside the heap.
+ * <p>
+ * The repository moves transactions older than {@link #maxAge()} here and falls back to
+ * the archive for anything it no longer holds in memory. Archived transactions are never
+ * rewritten: updating or deleting one hides the archived copy, and an updated transaction
+ * lives in memory again until it ages out once more.
+ */
+public interface TransactionArchive {
+    
+    boolean isEnabled();
+    
+    /**
+     * Age after which transactions move from memory to the archive.
+     */
+    Duration maxAge();
+    
+    /**
+     * Writes the transactions to the archive without making them visible yet, so the caller
+     * can publish them at the same moment it drops them from memory.
+     */
+    Pending write(List<Transaction> transactions);
+    
+    Optional<Transaction> findById(UUID id);
+    
+    /**
+     * Looks up the archived copy of a transaction that is being saved. Cheaper than
+     * {@link #findById(UUID)} for new transactions, as it only searches the parts of the
+     * archive whose time span covers the transaction's timestamp, which updates never change.
+     */
+    Optional<Transaction> findArchived(Transaction transaction);
+    
+    /**
+     * Hides the archived copy of a transaction that has been updated or deleted.
+     *
+     * @return the copy that was hidden, if the archive held one
+     */
+    Optional<Transaction> remove(UUID id);
+    
+    /**
+     * Returns the next archived transactions in newest-first order after the cursor with
+     * {@code fromMicros <= timestamp < toMicros}, optionally limited to one account.
+     *
+     * @param accountNumber The account to read, or null for every account
+     */
+    List<Transaction> find(long fromMicros, long toMicros, TransactionCursor after, String accountNumber, int size);
+    
+    long count();
+    
+    void forEach(Consumer<Transaction> action);
+    
+    /**
+     * Archived transactions that are written but not yet visible.
+     */
+    interface Pending {
+        
+        void publish();
+    }
+    
+    /**
+     * Archive that holds nothing, used when tiering is disabled.
+     */
+    static TransactionArchive disabled() {
+        return DisabledArchive.INSTANCE;
+    }
+    
+    enum DisabledArchive implements TransactionArchive {
+        INSTANCE;
+        
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+        
+        @Override
+        public Duration maxAge() {
+            return null;
+        }
+        
+        @Override
+        public Pending write(List<Transaction> transactions) {
+            throw new UnsupportedOperationException("Tiering is disabled");
+        }
+        
+        @Override
+        public Optional<Transaction> findById(UUID id) {
+            return Optional.empty();
+        }
+        
+        @Override
+        public Optional<Transaction> findArchived(Transaction transaction) {
+            return Optional.empty();
+        }
+        
+        @Override
+        public Optional<Transaction> remove(UUID id) {
+            return Optional.empty();
+        }
+        
+        @Override
+        public List<Transaction> find(long fromMicros, long toMicros, TransactionCursor after,
+                                      String accountNumber, int size) {
+            return List.of();
+        }
+        
+        @Override
+        public long count() {
+            return 0;
+        }
+        
+        @Override
+        public void forEach(Consumer<Transaction> action) {
+        }
+    }
+}
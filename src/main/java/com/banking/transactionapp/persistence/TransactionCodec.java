@@ -0,0 +1,151 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of a {@link Transaction}, shared by the on-disk formats.
+ * <p>
+ * Layout: id (16 bytes), amount scale (4) and unscaled value (length-prefixed bytes),
+ * description and account number (length-prefixed UTF-8), type and status ordinals
+ * (1 byte each), the timestamp as epoch seconds (8) plus nanos (4) and the version (8).
+ * Enum ordinals are persisted, so new constants must only ever be appended.
+ * <p>
+ * Records written before transactions had a version lack the last field. The formats that
+ * embed records know which layout they hold and pass it to {@link #decode(ByteBuffer, int)};
+ * such records are read as version 1.
+ */
+public final class TransactionCodec {
+    
+    /**
+     * Layout without the trailing version.
+     */
+    public static final int UNVERSIONED_LAYOUT = 1;
+    
+    /**
+     * Layout written by {@link #encode(Transaction, ByteBuffer)}.
+     */
+    public static final int CURRENT_LAYOUT = 2;
+    
+    private static final int NULL_LENGTH = -1;
+    
+    private TransactionCodec() {
+    }
+    
+    public static int encodedSize(Transaction transaction) {
+        return 2 * Long.BYTES
+                + Integer.BYTES + sizeOf(unscaledBytes(transaction.getAmount()))
+                + sizeOf(utf8(transaction.getDescription()))
+                + sizeOf(utf8(transaction.getAccountNumber()))
+                + 2
+                + Long.BYTES + Integer.BYTES
+                + Long.BYTES;
+    }
+    
+    public static void encode(Transaction transaction, ByteBuffer buffer) {
+        buffer.putLong(transaction.getId().getMostSignificantBits());
+        buffer.putLong(transaction.getId().getLeastSignificantBits());
+        
+        BigDecimal amount = transaction.getAmount();
+        buffer.putInt(amount != null ? amount.scale() : 0);
+        putBytes(buffer, unscaledBytes(amount));
+        
+        putBytes(buffer, utf8(transaction.getDescription()));
+        putBytes(buffer, utf8(transaction.getAccountNumber()));
+        buffer.put(ordinal(transaction.getType()));
+        buffer.put(ordinal(transaction.getStatus()));
+        
+        LocalDateTime timestamp = transaction.getTimestamp();
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(timestamp.getNano());
+        buffer.putLong(transaction.getVersion());
+    }
+    
+    public static byte[] encode(Transaction transaction) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(transaction));
+        encode(transaction, buffer);
+        return buffer.array();
+    }
+    
+    public static Transaction decode(ByteBuffer buffer) {
+        return decode(buffer, CURRENT_LAYOUT);
+    }
+    
+    /**
+     * Decodes a record written in the given layout, one of {@link #UNVERSIONED_LAYOUT} and
+     * {@link #CURRENT_LAYOUT}.
+     */
+    public static Transaction decode(ByteBuffer buffer, int layout) {
+        UUID id = new UUID(buffer.getLong(), buffer.getLong());
+        
+        int scale = buffer.getInt();
+        byte[] unscaled = getBytes(buffer);
+        BigDecimal amount = unscaled != null ? new BigDecimal(new BigInteger(unscaled), scale) : null;
+        
+        String description = string(getBytes(buffer));
+        String accountNumber = string(getBytes(buffer));
+        byte type = buffer.get();
+        byte status = buffer.get();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        long version = layout >= CURRENT_LAYOUT ? buffer.getLong() : 1;
+        
+        return Transaction.builder()
+                .id(id)
+                .amount(amount)
+                .description(description)
+                .accountNumber(accountNumber)
+                .type(type >= 0 ? TransactionType.values()[type] : null)
+                .status(status >= 0 ? TransactionStatus.values()[status] : null)
+                .timestamp(timestamp)
+                .version(version)
+                .build();
+    }
+    
+    private static byte ordinal(Enum<?> value) {
+        return value != null ? (byte) value.ordinal() : -1;
+    }
+    
+    private static byte[] unscaledBytes(BigDecimal amount) {
+        return amount != null ? amount.unscaledValue().toByteArray() : null;
+    }
+    
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    private static String string(byte[] bytes) {
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+    
+    private static int sizeOf(byte[] bytes) {
+        return Integer.BYTES + (bytes != null ? bytes.length : 0);
+    }
+    
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+    
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
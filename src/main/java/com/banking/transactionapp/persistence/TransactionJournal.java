@@ -0,0 +1,91 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Durable record of the changes applied to the transaction store.
+ * <p>
+ * The repository records every change before applying it in memory and replays the
+ * journal on startup to rebuild its state. The record methods return only once the
+ * change is durable.
+ */
+public interface TransactionJournal {
+    
+    void recordSave(Transaction transaction);
+    
+    /**
+     * Records several saves and returns once all of them are durable.
+     */
+    default void recordSaves(List<Transaction> transactions) {
+        transactions.forEach(this::recordSave);
+    }
+    
+    void recordDelete(UUID id);
+    
+    /**
+     * Replays the latest snapshot followed by every change recorded after it, oldest first.
+     */
+    void replay(Replayer replayer);
+    
+    /**
+     * Starts a checkpoint: changes recorded from now on are kept apart from the earlier ones,
+     * which the checkpoint's snapshot will replace. The caller must make sure no change is
+     * in flight between being recorded and being applied while this runs.
+     */
+    Checkpoint startCheckpoint();
+    
+    /**
+     * Receives the changes read back from the journal.
+     */
+    interface Replayer {
+        
+        void save(Transaction transaction);
+        
+        void delete(UUID id);
+    }
+    
+    /**
+     * A started checkpoint, completed by writing a snapshot of the current state.
+     */
+    interface Checkpoint {
+        
+        /**
+         * Writes the snapshot and drops the journaled changes it covers. The state may already
+         * include changes recorded after the checkpoint started; replaying them again is harmless.
+         */
+        void complete(Iterator<Transaction> state);
+    }
+    
+    /**
+     * Journal that keeps nothing, used when persistence is disabled.
+     */
+    static TransactionJournal disabled() {
+        return DisabledJournal.INSTANCE;
+    }
+    
+    enum DisabledJournal implements TransactionJournal {
+        INSTANCE;
+        
+        @Override
+        public void recordSave(Transaction transaction) {
+        }
+        
+        @Override
+        public void recordDelete(UUID id) {
+        }
+        
+        @Override
+        public void replay(Replayer replayer) {
+        }
+        
+        @Override
+        public Checkpoint startCheckpoint() {
+            return state -> {
+            };
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log with group commit.
+ * <p>
+ * Callers hand their record to a single writer thread and wait for it to become durable.
+ * The writer drains everything that queued up while the previous fsync was running, writes
+ * it in one go and syncs once for the whole batch, so concurrent requests share the cost
+ * of an fsync instead of paying one each.
+ * <p>
+ * Each record is framed as {@code [payload length][CRC32 of payload][payload]}, where the
+ * payload starts with the operation byte. A torn record at the tail, left behind by a
+ * crash in the middle of a write, is discarded when the log is opened. A batch that fails
+ * to be written is cut off again right away, so later records never end up behind a torn
+ * one; if even that fails, the log refuses every further write.
+ * <p>
+ * Checkpoints keep the log short: the current log is rotated out, a {@link SnapshotFile}
+ * of the store is written, and the rotated log is deleted. Recovery loads the snapshot and
+ * replays the rotated log, if a crash left one behind, followed by the current log.
+ */
+@Slf4j
+public class WriteAheadLog implements TransactionJournal, Closeable {
+    
+    // Saves logged before transactions had a version; only ever read
+    static final byte UNVERSIONED_SAVE = 1;
+    static final byte DELETE = 2;
+    static final byte SAVE = 3;
+    
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_BATCH_SIZE = 1024;
+    
+    public static final String LOG_FILE_NAME = "transactions.wal";
+    public static final String ROTATED_LOG_FILE_NAME = "transactions.wal.1";
+    public static final String SNAPSHOT_FILE_NAME = "transactions.snapshot";
+    
+    private static final PendingWrite SHUTDOWN = new PendingWrite(null);
+    
+    private final Path file;
+    private final Path rotatedFile;
+    private final Path snapshotFile;
+    private final boolean fsync;
+    
+    // Replaced by the writer thread when the log is rotated
+    private volatile FileChannel channel;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    
+    private volatile boolean closed;
+    
+    // Set by the writer thread when a failed batch could not be cut off the end of the log
+    private IOException failure;
+    
+    public WriteAheadLog(Path directory, boolean fsync) {
+        this.file = directory.resolve(LOG_FILE_NAME);
+        this.rotatedFile = directory.resolve(ROTATED_LOG_FILE_NAME);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE_NAME);
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            this.channel = openLog();
+            
+            long validLength = scan(file, null);
+            if (validLength < channel.size()) {
+                log.warn("Discarding {} bytes of incomplete records at the end of {}",
+                        channel.size() - validLength, file);
+                channel.truncate(validLength);
+            }
+            channel.position(validLength);
+        } catch (IOException e) {
+            throw new JournalException("Failed to open write-ahead log " + file, e);
+        }
+        
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    @Override
+    public void recordSave(Transaction transaction) {
+        submit(List.of(new PendingWrite(seal(saveRecord(transaction)))));
+    }
+    
+    /**
+     * Queues all the records at once, so a batch is usually made durable by a single fsync.
+     */
+    @Override
+    public void recordSaves(List<Transaction> transactions) {
+        List<PendingWrite> writes = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            writes.add(new PendingWrite(seal(saveRecord(transaction))));
+        }
+        submit(writes);
+    }
+    
+    @Override
+    public void recordDelete(UUID id) {
+        ByteBuffer record = frame(DELETE, 2 * Long.BYTES);
+        record.putLong(id.getMostSignificantBits());
+        record.putLong(id.getLeastSignificantBits());
+        submit(List.of(new PendingWrite(seal(record))));
+    }
+    
+    @Override
+    public void replay(Replayer replayer) {
+        try {
+            if (Files.exists(snapshotFile)) {
+                long loaded = SnapshotFile.read(snapshotFile, replayer::save);
+                log.info("Loaded {} transactions from snapshot {}", loaded, snapshotFile);
+            }
+            if (Files.exists(rotatedFile)) {
+                scan(rotatedFile, replayer);
+            }
+            scan(file, replayer);
+        } catch (IOException e) {
+            throw new JournalException("Failed to replay write-ahead log " + file, e);
+        }
+    }
+    
+    @Override
+    public Checkpoint startCheckpoint() {
+        try {
+            if (channel.size() == 0 && !Files.exists(rotatedFile)) {
+                // Nothing was recorded since the last snapshot
+                return state -> {
+                };
+            }
+        } catch (IOException e) {
+            throw new JournalException("Failed to read the size of write-ahead log " + file, e);
+        }
+        
+        submit(List.of(new PendingWrite(null)));
+        return this::completeCheckpoint;
+    }
+    
+    private void completeCheckpoint(Iterator<Transaction> state) {
+        try {
+            long startTime = System.currentTimeMillis();
+            long written = SnapshotFile.write(snapshotFile, state);
+            Files.deleteIfExists(rotatedFile);
+            log.info("Wrote snapshot of {} transactions to {} in {} ms",
+                    written, snapshotFile, System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            throw new JournalException("Failed to write snapshot " + snapshotFile, e);
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(SHUTDOWN);
+        try {
+            writer.join();
+            channel.force(false);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Failed to close write-ahead log {}", file, e);
+        }
+    }
+    
+    private ByteBuffer frame(byte operation, int bodySize) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + 1 + bodySize);
+        record.position(HEADER_SIZE);
+        record.put(operation);
+        return record;
+    }
+    
+    private ByteBuffer saveRecord(Transaction transaction) {
+        ByteBuffer record = frame(SAVE, TransactionCodec.encodedSize(transaction));
+        TransactionCodec.encode(transaction, record);
+        return record;
+    }
+    
+    private ByteBuffer seal(ByteBuffer record) {
+        record.flip();
+        int payloadLength = record.limit() - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record;
+    }
+    
+    /**
+     * Hands writes to the writer thread and waits for all of them to complete. A write without
+     * a record asks the writer to rotate the log once everything queued before it is durable.
+     */
+    private void submit(List<PendingWrite> writes) {
+        if (closed) {
+            throw new JournalException("Write-ahead log is closed");
+        }
+        queue.addAll(writes);
+        if (closed) {
+            // Writes still in the queue will never be taken by the writer
+            for (PendingWrite write : writes) {
+                if (queue.remove(write)) {
+                    write.durable.completeExceptionally(new IOException("Write-ahead log is closed"));
+                }
+            }
+        }
+        
+        try {
+            for (PendingWrite write : writes) {
+                write.durable.join();
+            }
+        } catch (CompletionException e) {
+            throw new JournalException("Failed to append to write-ahead log " + file, e.getCause());
+        }
+    }
+    
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        boolean running = true;
+        
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            
+            running = !batch.remove(SHUTDOWN);
+            process(batch);
+            batch.clear();
+        }
+        
+        // Anything queued after shutdown was requested will never be written
+        queue.drainTo(batch);
+        batch.forEach(write -> write.durable.completeExceptionally(
+                new IOException("Write-ahead log closed before the record was written")));
+    }
+    
+    private void process(List<PendingWrite> batch) {
+        int start = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            if (write.record == null) {
+                // Records queued before the rotation request belong to the old log
+                commit(batch.subList(start, i));
+                rotate(write);
+                start = i + 1;
+            }
+        }
+        commit(batch.subList(start, batch.size()));
+    }
+    
+    private void commit(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        if (failure != null) {
+            batch.forEach(write -> write.durable.completeExceptionally(failure));
+            return;
+        }
+        
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = batch.get(i).record;
+        }
+        
+        long start = -1;
+        try {
+            start = channel.position();
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            batch.forEach(write -> write.durable.complete(null));
+        } catch (IOException e) {
+            log.error("Failed to write {} records to {}", batch.size(), file, e);
+            discardFrom(start, e);
+            batch.forEach(write -> write.durable.completeExceptionally(e));
+        }
+    }
+    
+    /**
+     * Cuts off whatever part of a failed batch reached the log. Recovery stops at the first
+     * bad record, so a torn one left in place would hide every record written after it.
+     */
+    private void discardFrom(long start, IOException cause) {
+        try {
+            if (start < 0) {
+                throw cause;
+            }
+            channel.truncate(start);
+            channel.position(start);
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            log.error("Failed to discard a partly written batch from {}; refusing further writes", file, e);
+            failure = e;
+        }
+    }
+    
+    private void rotate(PendingWrite request) {
+        if (failure != null) {
+            request.durable.completeExceptionally(failure);
+            return;
+        }
+        try {
+            channel.force(true);
+            channel.close();
+            if (Files.exists(rotatedFile)) {
+                // An earlier checkpoint did not complete, so its log is still needed
+                try (FileChannel target = FileChannel.open(rotatedFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                     FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                    target.force(true);
+                }
+                Files.delete(file);
+            } else {
+                Files.move(file, rotatedFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+            request.durable.complete(null);
+        } catch (IOException e) {
+            log.error("Failed to rotate write-ahead log {}", file, e);
+            request.durable.completeExceptionally(e);
+        } finally {
+            try {
+                if (!channel.isOpen()) {
+                    channel = openLog();
+                    channel.position(channel.size());
+                }
+            } catch (IOException e) {
+                log.error("Failed to reopen write-ahead log {}", file, e);
+            }
+        }
+    }
+    
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    
+    /**
+     * Reads a log from the start, passing every intact record to the replayer if one is given.
+     * 
+     * @return the length of the log up to the end of the last intact record
+     */
+    private long scan(Path logFile, Replayer replayer) throws IOException {
+        long validLength = 0;
+        InputStream channelStream = Channels.newInputStream(FileChannel.open(logFile, StandardOpenOption.READ));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(channelStream, 64 * 1024))) {
+            while (true) {
+                int payloadLength;
+                int checksum;
+                byte[] payload;
+                try {
+                    payloadLength = in.readInt();
+                    checksum = in.readInt();
+                    if (payloadLength <= 0 || payloadLength > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    payload = new byte[payloadLength];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                
+                if (replayer != null) {
+                    apply(ByteBuffer.wrap(payload), replayer);
+                }
+                validLength += HEADER_SIZE + payloadLength;
+            }
+        }
+        return validLength;
+    }
+    
+    private void apply(ByteBuffer payload, Replayer replayer) {
+        byte operation = payload.get();
+        switch (operation) {
+            case SAVE -> replayer.save(TransactionCodec.decode(payload));
+            case UNVERSIONED_SAVE -> replayer.save(TransactionCodec.decode(payload, TransactionCodec.UNVERSIONED_LAYOUT));
+            case DELETE -> replayer.delete(new UUID(payload.getLong(), payload.getLong()));
+            default -> throw new IllegalStateException("Unknown write-ahead log operation: " + operation);
+        }
+    }
+    
+    private static final class PendingWrite {
+        
+        private final ByteBuffer record;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+        
+        private PendingWrite(ByteBuffer record) {
+            this.record = record;
+        }
+    }
+}
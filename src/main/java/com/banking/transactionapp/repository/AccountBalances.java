@@ -0,0 +1,122 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running balance of every account, kept in fixed-point minor units and maintained as
+ * transactions are saved and deleted.
+ * <p>
+ * Only completed transactions move a balance: deposits and credits add to it, withdrawals
+ * and debits subtract from it. The contribution each transaction last made is remembered,
+ * so an update that changes its amount, type, status or account only applies the
+ * difference, and reading a balance is a single lookup that never scans transactions.
+ */
+class AccountBalances {
+    
+    private final Map<String, Long> balances = new ConcurrentHashMap<>();
+    
+    // Only transactions that currently move a balance have an entry
+    private final Map<UUID, Contribution> contributions = new ConcurrentHashMap<>();
+    
+    void put(Transaction transaction) {
+        Contribution next = Contribution.of(transaction);
+        // compute() serializes concurrent writers for the same id
+        contributions.compute(transaction.getId(), (id, previous) -> {
+            if (previous != null) {
+                add(previous.accountNumber(), -previous.minorUnits());
+            }
+            if (next != null) {
+                add(next.accountNumber(), next.minorUnits());
+            }
+            return next;
+        });
+    }
+    
+    void remove(UUID id) {
+        contributions.computeIfPresent(id, (key, previous) -> {
+            add(previous.accountNumber(), -previous.minorUnits());
+            return null;
+        });
+    }
+    
+    /**
+     * Forgets the contribution of a transaction that moved to the archive, keeping its effect
+     * on the balance.
+     */
+    void archive(UUID id) {
+        contributions.remove(id);
+    }
+    
+    /**
+     * Remembers the contribution of an archived transaction again, without touching the
+     * balance, so that updating or deleting it only applies the difference.
+     */
+    void unarchive(Transaction archived) {
+        Contribution contribution = Contribution.of(archived);
+        if (contribution != null) {
+            contributions.put(archived.getId(), contribution);
+        }
+    }
+    
+    /**
+     * Adds an archived transaction to its balance without remembering its contribution.
+     */
+    void putArchived(Transaction archived) {
+        Contribution contribution = Contribution.of(archived);
+        if (contribution != null) {
+            add(contribution.accountNumber(), contribution.minorUnits());
+        }
+    }
+    
+    /**
+     * Returns the amount, in minor units, by which the transaction moves its account's
+     * balance: positive for completed deposits and credits, negative for completed
+     * withdrawals and debits, and zero otherwise.
+     */
+    static long balanceEffect(Transaction transaction) {
+        Contribution contribution = Contribution.of(transaction);
+        return contribution == null ? 0 : contribution.minorUnits();
+    }
+    
+    /**
+     * Same as {@link #balanceEffect(Transaction)}, for stores that keep the fields as columns.
+     */
+    static long balanceEffect(TransactionType type, TransactionStatus status, long amountMinorUnits) {
+        if (status != TransactionStatus.COMPLETED || type == null) {
+            return 0;
+        }
+        return switch (type) {
+            case DEPOSIT, CREDIT -> amountMinorUnits;
+            case WITHDRAWAL, DEBIT -> -amountMinorUnits;
+            default -> 0;
+        };
+    }
+    
+    long balanceMinorUnits(String accountNumber) {
+        return accountNumber == null ? 0 : balances.getOrDefault(accountNumber, 0L);
+    }
+    
+    private void add(String accountNumber, long minorUnits) {
+        // Accounts that net out to zero are dropped so the map only holds non-zero balances
+        balances.merge(accountNumber, minorUnits, (balance, delta) -> balance + delta == 0 ? null : balance + delta);
+    }
+    
+    private record Contribution(String accountNumber, long minorUnits) {
+        
+        static Contribution of(Transaction transaction) {
+            if (transaction.getAmount() == null || transaction.getAccountNumber() == null) {
+                return null;
+            }
+            long effect = balanceEffect(transaction.getType(), transaction.getStatus(),
+                    FixedPoint.toMinorUnits(transaction.getAmount()));
+            return effect == 0 ? null : new Contribution(transaction.getAccountNumber(), effect);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index from account number to that account's transactions, newest first.
+ * <p>
+ * Each account has its own {@link TimelineIndex}, so reading a page of one account's
+ * history seeks straight to it instead of filtering the whole store. The index remembers
+ * the account each transaction was filed under, so a transaction whose account number
+ * changes is moved rather than left behind under the old account.
+ */
+class AccountIndex {
+    
+    private final Map<String, TimelineIndex> timelines = new ConcurrentHashMap<>();
+    
+    private final Map<UUID, String> accountsById = new ConcurrentHashMap<>();
+    
+    void put(Transaction transaction) {
+        String accountNumber = transaction.getAccountNumber();
+        // compute() serializes concurrent writers for the same id
+        accountsById.compute(transaction.getId(), (id, previous) -> {
+            if (previous != null && !previous.equals(accountNumber)) {
+                removeFrom(previous, id);
+            }
+            if (accountNumber == null) {
+                return null;
+            }
+            // Adding under the account's map entry keeps it from being dropped as empty meanwhile
+            timelines.compute(accountNumber, (account, timeline) -> {
+                TimelineIndex target = timeline != null ? timeline : new TimelineIndex();
+                target.put(transaction);
+                return target;
+            });
+            return accountNumber;
+        });
+    }
+    
+    void remove(UUID id) {
+        accountsById.computeIfPresent(id, (key, accountNumber) -> {
+            removeFrom(accountNumber, id);
+            return null;
+        });
+    }
+    
+    List<Transaction> after(String accountNumber, TimelineIndex.TimelineKey after, int size) {
+        TimelineIndex timeline = accountNumber == null ? null : timelines.get(accountNumber);
+        return timeline == null ? List.of() : timeline.after(after, size);
+    }
+    
+    private void removeFrom(String accountNumber, UUID id) {
+        timelines.computeIfPresent(accountNumber, (account, timeline) -> {
+            timeline.remove(id);
+            return timeline.isEmpty() ? null : timeline;
+        });
+    }
+}
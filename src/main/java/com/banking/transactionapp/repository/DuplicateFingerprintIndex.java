@@ -0,0 +1,300 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Index of recent transactions keyed by their duplicate fingerprint
+ * (account number, amount, description and type).
+ * <p>
+ * Each fingerprint maps to the ids and timestamps of the transactions that share it,
+ * so a duplicate check only looks at the handful of transactions with the same
+ * fingerprint instead of scanning the whole store. Entries older than the retention
+ * period are dropped by {@link #purgeOlderThan(LocalDateTime)}.
+ * <p>
+ * Amounts and timestamps are held in their {@link FixedPoint} form, so matching
+ * fingerprints and checking the time window only compare longs.
+ * <p>
+ * Each bucket is an immutable {@link Bucket} swapped by compare-and-set, so
+ * {@link #tryClaim(Transaction, long)} can check for a duplicate and add the transaction
+ * as one atomic step without locking: of two identical concurrent claims, exactly one
+ * succeeds.
+ */
+class DuplicateFingerprintIndex {
+
+    private final Map<Fingerprint, AtomicReference<Bucket>> buckets = new ConcurrentHashMap<>();
+
+    // Reverse lookup, so the claim of a replaced version can be found from the id of the next
+    private final Map<UUID, Fingerprint> fingerprintsById = new ConcurrentHashMap<>();
+
+    private final Duration retention;
+
+    private volatile long purgedBeforeMicros = Long.MIN_VALUE;
+
+    DuplicateFingerprintIndex(Duration retention) {
+        this.retention = retention;
+    }
+
+    Duration getRetention() {
+        return retention;
+    }
+
+    void index(Transaction transaction) {
+        add(transaction, false, 0);
+    }
+
+    /**
+     * Adds the transaction unless another transaction in the index is a duplicate of it
+     * within the time window, atomically with respect to concurrent claims and updates.
+     *
+     * @param timeWindowSeconds The time window in seconds (0 or negative for exact match)
+     * @return true if the transaction was added, false if a duplicate is in the index
+     */
+    boolean tryClaim(Transaction transaction, long timeWindowSeconds) {
+        return add(transaction, true, windowMicros(timeWindowSeconds));
+    }
+
+    void remove(UUID id) {
+        Fingerprint fingerprint = fingerprintsById.remove(id);
+        if (fingerprint != null) {
+            removeFromBucket(fingerprint, id);
+        }
+    }
+
+    /**
+     * Returns whether the index still holds every transaction that could match the given
+     * transaction within the time window, i.e. whether {@link #containsDuplicate} can be
+     * trusted instead of a full scan.
+     */
+    boolean covers(Transaction transaction, long timeWindowSeconds) {
+        if (timeWindowSeconds <= 0 || timeWindowSeconds > retention.getSeconds()) {
+            return false;
+        }
+        long windowStart = FixedPoint.toEpochMicros(transaction.getTimestamp())
+                - timeWindowSeconds * FixedPoint.MICROS_PER_SECOND;
+        return windowStart >= purgedBeforeMicros;
+    }
+
+    boolean containsDuplicate(Transaction transaction, long timeWindowSeconds) {
+        AtomicReference<Bucket> reference = buckets.get(Fingerprint.of(transaction));
+        return reference != null && reference.get().containsOther(transaction.getId(),
+                FixedPoint.toEpochMicros(transaction.getTimestamp()), windowMicros(timeWindowSeconds));
+    }
+
+    /**
+     * Drops every entry with a timestamp before the cutoff.
+     */
+    void purgeOlderThan(LocalDateTime cutoff) {
+        long cutoffMicros = FixedPoint.toEpochMicros(cutoff);
+        // Publish the cutoff first so concurrent lookups stop trusting entries being purged
+        purgedBeforeMicros = cutoffMicros;
+
+        for (Map.Entry<Fingerprint, AtomicReference<Bucket>> entry : buckets.entrySet()) {
+            Bucket purged = update(entry.getKey(), entry.getValue(), bucket -> bucket.withoutOlderThan(cutoffMicros));
+            if (purged != null) {
+                for (UUID id : purged.ids) {
+                    if (purged.timestampOf(id) < cutoffMicros) {
+                        fingerprintsById.remove(id, entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        return fingerprintsById.size();
+    }
+
+    private boolean add(Transaction transaction, boolean checkDuplicates, long windowMicros) {
+        UUID id = transaction.getId();
+        Fingerprint fingerprint = Fingerprint.of(transaction);
+        long timestampMicros = FixedPoint.toEpochMicros(transaction.getTimestamp());
+
+        while (true) {
+            AtomicReference<Bucket> reference = buckets.computeIfAbsent(fingerprint,
+                    key -> new AtomicReference<>(Bucket.EMPTY));
+            Bucket current = reference.get();
+            if (current == Bucket.RETIRED) {
+                // Emptied by a concurrent removal; drop it and start over with a fresh bucket
+                buckets.remove(fingerprint, reference);
+                continue;
+            }
+            if (checkDuplicates && current.containsOther(id, timestampMicros, windowMicros)) {
+                return false;
+            }
+            if (reference.compareAndSet(current, current.with(id, timestampMicros))) {
+                break;
+            }
+        }
+
+        Fingerprint previous = fingerprintsById.put(id, fingerprint);
+        if (previous != null && !previous.equals(fingerprint)) {
+            removeFromBucket(previous, id);
+        }
+        return true;
+    }
+
+    private void removeFromBucket(Fingerprint fingerprint, UUID id) {
+        AtomicReference<Bucket> reference = buckets.get(fingerprint);
+        if (reference != null) {
+            update(fingerprint, reference, bucket -> bucket.without(id));
+        }
+    }
+
+    /**
+     * Applies the change to the bucket with compare-and-set, retiring and unlinking the
+     * bucket if the change leaves it empty.
+     *
+     * @return the bucket the change was applied to, or null if the bucket was already retired
+     */
+    private Bucket update(Fingerprint fingerprint, AtomicReference<Bucket> reference,
+                          UnaryOperator<Bucket> change) {
+        while (true) {
+            Bucket current = reference.get();
+            if (current == Bucket.RETIRED) {
+                return null;
+            }
+            Bucket next = change.apply(current);
+            if (next == current) {
+                return current;
+            }
+            // An empty bucket is retired rather than left in place, so a claim that read it
+            // before it was unlinked fails its compare-and-set and retries on a fresh bucket
+            if (reference.compareAndSet(current, next.isEmpty() ? Bucket.RETIRED : next)) {
+                if (next.isEmpty()) {
+                    buckets.remove(fingerprint, reference);
+                }
+                return current;
+            }
+        }
+    }
+
+    private static long windowMicros(long timeWindowSeconds) {
+        return timeWindowSeconds <= 0 ? Long.MAX_VALUE : timeWindowSeconds * FixedPoint.MICROS_PER_SECOND;
+    }
+
+    /**
+     * Immutable set of the ids and epoch micros of the transactions sharing a fingerprint.
+     * Buckets are compared by identity, which is what the compare-and-set relies on.
+     */
+    static final class Bucket {
+
+        static final Bucket EMPTY = new Bucket(new UUID[0], new long[0]);
+
+        // Marks a bucket that has been unlinked from the index and must not be modified
+        static final Bucket RETIRED = new Bucket(new UUID[0], new long[0]);
+
+        private final UUID[] ids;
+        private final long[] timestamps;
+
+        private Bucket(UUID[] ids, long[] timestamps) {
+            this.ids = ids;
+            this.timestamps = timestamps;
+        }
+
+        boolean isEmpty() {
+            return ids.length == 0;
+        }
+
+        boolean containsOther(UUID id, long timestampMicros, long windowMicros) {
+            for (int i = 0; i < ids.length; i++) {
+                if (!ids[i].equals(id) && (windowMicros == Long.MAX_VALUE
+                        || Math.abs(timestamps[i] - timestampMicros) <= windowMicros)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long timestampOf(UUID id) {
+            int index = indexOf(id);
+            return index >= 0 ? timestamps[index] : Long.MIN_VALUE;
+        }
+
+        Bucket with(UUID id, long timestampMicros) {
+            int index = indexOf(id);
+            if (index < 0) {
+                index = ids.length;
+                UUID[] newIds = Arrays.copyOf(ids, index + 1);
+                long[] newTimestamps = Arrays.copyOf(timestamps, index + 1);
+                newIds[index] = id;
+                newTimestamps[index] = timestampMicros;
+                return new Bucket(newIds, newTimestamps);
+            }
+            long[] newTimestamps = timestamps.clone();
+            newTimestamps[index] = timestampMicros;
+            return new Bucket(ids, newTimestamps);
+        }
+
+        Bucket without(UUID id) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return this;
+            }
+            UUID[] newIds = new UUID[ids.length - 1];
+            long[] newTimestamps = new long[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(ids, index + 1, newIds, index, newIds.length - index);
+            System.arraycopy(timestamps, 0, newTimestamps, 0, index);
+            System.arraycopy(timestamps, index + 1, newTimestamps, index, newTimestamps.length - index);
+            return new Bucket(newIds, newTimestamps);
+        }
+
+        Bucket withoutOlderThan(long cutoffMicros) {
+            int kept = 0;
+            for (long timestamp : timestamps) {
+                if (timestamp >= cutoffMicros) {
+                    kept++;
+                }
+            }
+            if (kept == ids.length) {
+                return this;
+            }
+
+            UUID[] newIds = new UUID[kept];
+            long[] newTimestamps = new long[kept];
+            int next = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (timestamps[i] >= cutoffMicros) {
+                    newIds[next] = ids[i];
+                    newTimestamps[next++] = timestamps[i];
+                }
+            }
+            return new Bucket(newIds, newTimestamps);
+        }
+
+        private int indexOf(UUID id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals(id)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The fields compared by {@link Transaction#equalsForDuplication(Transaction)},
+     * with the amount in minor units.
+     */
+    record Fingerprint(String accountNumber, long amountMinorUnits, String description, TransactionType type) {
+
+        static Fingerprint of(Transaction transaction) {
+            return new Fingerprint(
+                    transaction.getAccountNumber(),
+                    FixedPoint.toMinorUnits(transaction.getAmount()),
+                    transaction.getDescription(),
+                    transaction.getType());
+        }
+    }
+}
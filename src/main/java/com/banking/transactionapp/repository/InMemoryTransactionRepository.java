@@ -1,55 +1,288 @@
 package com.banking.transactionapp.repository;
 
+import com.banking.transactionapp.model.FixedPoint;
 import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.persistence.TransactionArchive;
+import com.banking.transactionapp.persistence.TransactionJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Repository
+@Profile("!offheap & !sharded & !lsm & !jdbc")
+@Slf4j
 public class InMemoryTransactionRepository implements TransactionRepository {
     
+    // How long fingerprints stay in the duplicate index; must cover the service's duplicate window
+    static final Duration FINGERPRINT_RETENTION = Duration.ofMinutes(1);
+    
+    // Transactions moved to the archive per segment write
+    static final int ARCHIVE_BATCH_SIZE = 100_000;
+    
     private final Map<UUID, Transaction> transactionStore = new ConcurrentHashMap<>();
     
+    private final DuplicateFingerprintIndex fingerprintIndex = new DuplicateFingerprintIndex(FINGERPRINT_RETENTION);
+    
+    private final TimelineIndex timelineIndex = new TimelineIndex();
+    
+    private final AccountIndex accountIndex = new AccountIndex();
+    
+    private final StatusIndex statusIndex = new StatusIndex();
+    
+    private final AccountBalances accountBalances = new AccountBalances();
+    
+    private final TransactionJournal journal;
+    
+    private final TransactionArchive archive;
+    
+    // Serializes replacements and deletes of one transaction
+    private final StripedLocks idLocks = new StripedLocks(64);
+    
+    // Writers share the read lock; a checkpoint takes the write lock so that no change is
+    // between being journaled and being applied while the journal is rotated
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    
+    public InMemoryTransactionRepository() {
+        this(TransactionJournal.disabled());
+    }
+    
+    public InMemoryTransactionRepository(TransactionJournal journal) {
+        this(journal, TransactionArchive.disabled());
+    }
+    
+    @Autowired
+    public InMemoryTransactionRepository(TransactionJournal journal, TransactionArchive archive) {
+        this.journal = journal;
+        this.archive = archive;
+        recover();
+    }
+    
     @Override
     public Transaction save(Transaction transaction) {
-        transactionStore.put(transaction.getId(), transaction);
+        checkpointLock.readLock().lock();
+        try {
+            // Write-ahead: the change is durable before it becomes visible
+            journal.recordSave(transaction);
+            apply(transaction);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
         return transaction;
     }
     
+    @Override
+    public Optional<Transaction> saveIfNotDuplicate(Transaction transaction, long timeWindowSeconds) {
+        // Duplicates older than the index retention are only found by a scan; two concurrent
+        // requests are never that old, so the claim below still settles any race between them
+        if (!fingerprintIndex.covers(transaction, timeWindowSeconds)
+                && scanForDuplicate(transaction, timeWindowSeconds)) {
+            return Optional.empty();
+        }
+        
+        // Claiming the fingerprint is the atomic check-and-insert: of two identical
+        // concurrent requests exactly one wins, without any lock on the create path
+        if (!fingerprintIndex.tryClaim(transaction, timeWindowSeconds)) {
+            return Optional.empty();
+        }
+        
+        checkpointLock.readLock().lock();
+        try {
+            journal.recordSave(transaction);
+            apply(transaction);
+        } catch (RuntimeException e) {
+            // Release the claim of a transaction that never became visible
+            if (!transactionStore.containsKey(transaction.getId())) {
+                fingerprintIndex.remove(transaction.getId());
+            }
+            throw e;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return Optional.of(transaction);
+    }
+    
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions, long timeWindowSeconds) {
+        // Claim every fingerprint first; an item duplicating an earlier one in the batch loses its claim
+        List<Transaction> claimed = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (!fingerprintIndex.covers(transaction, timeWindowSeconds)
+                    && scanForDuplicate(transaction, timeWindowSeconds)) {
+                continue;
+            }
+            if (fingerprintIndex.tryClaim(transaction, timeWindowSeconds)) {
+                claimed.add(transaction);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+        
+        checkpointLock.readLock().lock();
+        try {
+            // One journal call, so the whole batch shares a group commit
+            journal.recordSaves(claimed);
+            claimed.forEach(this::apply);
+        } catch (RuntimeException e) {
+            for (Transaction transaction : claimed) {
+                if (!transactionStore.containsKey(transaction.getId())) {
+                    fingerprintIndex.remove(transaction.getId());
+                }
+            }
+            throw e;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return claimed;
+    }
+    
+    @Override
+    public ReplaceResult replace(Transaction next, long expectedVersion, long timeWindowSeconds) {
+        UUID id = next.getId();
+        // The id's lock is the compare-and-set: replacements and deletes of one transaction
+        // are serialized, so the version checked below is still stored when it is swapped,
+        // while the archive lookup and the journal write keep the map itself unlocked
+        ReentrantLock idLock = idLocks.forKey(id);
+        idLock.lock();
+        checkpointLock.readLock().lock();
+        try {
+            Transaction current = transactionStore.get(id);
+            Transaction archived = current == null ? archive.findById(id).orElse(null) : null;
+            Transaction stored = current != null ? current : archived;
+            if (stored == null) {
+                return ReplaceResult.NOT_FOUND;
+            }
+            if (stored.getVersion() != expectedVersion) {
+                return ReplaceResult.VERSION_CONFLICT;
+            }
+            if ((!fingerprintIndex.covers(next, timeWindowSeconds) && scanForDuplicate(next, timeWindowSeconds))
+                    || !fingerprintIndex.tryClaim(next, timeWindowSeconds)) {
+                return ReplaceResult.DUPLICATE;
+            }
+            
+            try {
+                journal.recordSave(next);
+            } catch (RuntimeException e) {
+                // Hand the claim back to the version that stays
+                if (current != null) {
+                    fingerprintIndex.index(current);
+                } else {
+                    fingerprintIndex.remove(id);
+                }
+                throw e;
+            }
+            if (archived != null) {
+                // Updated, so it moves back to memory
+                archive.remove(id);
+                accountBalances.unarchive(archived);
+            }
+            store(next);
+            return ReplaceResult.REPLACED;
+        } finally {
+            checkpointLock.readLock().unlock();
+            idLock.unlock();
+        }
+    }
+    
     @Override
     public Optional<Transaction> findById(UUID id) {
-        return Optional.ofNullable(transactionStore.get(id));
+        Transaction transaction = transactionStore.get(id);
+        return transaction != null ? Optional.of(transaction) : archive.findById(id);
     }
     
     @Override
     public List<Transaction> findAll() {
-        return new ArrayList<>(transactionStore.values());
+        List<Transaction> transactions = new ArrayList<>(transactionStore.values());
+        archive.forEach(archived -> {
+            if (!transactionStore.containsKey(archived.getId())) {
+                transactions.add(archived);
+            }
+        });
+        return transactions;
     }
     
     @Override
     public List<Transaction> findAll(int page, int size) {
-        return transactionStore.values().stream()
-                .sorted(Comparator.comparing(Transaction::getTimestamp).reversed())
-                .skip((long) page * size)
-                .limit(size)
-                .collect(Collectors.toList());
+        if (archive.isEnabled()) {
+            // Offsets cannot be split between the tiers, so walk the merged listing
+            return streamAll().skip((long) page * size).limit(size).toList();
+        }
+        return timelineIndex.page((long) page * size, size);
+    }
+    
+    @Override
+    public List<Transaction> findAllAfter(TransactionCursor after, int size) {
+        return withArchived(timelineIndex.after(after == null ? null : TimelineIndex.TimelineKey.of(after), size),
+                Long.MIN_VALUE, Long.MAX_VALUE, after, null, size);
+    }
+    
+    @Override
+    public List<Transaction> findByTimestampBetween(LocalDateTime from, LocalDateTime to, TransactionCursor after, int size) {
+        long fromMicros = FixedPoint.toEpochMicros(from);
+        long toMicros = FixedPoint.toEpochMicros(to);
+        return withArchived(timelineIndex.between(fromMicros, toMicros,
+                        after == null ? null : TimelineIndex.TimelineKey.of(after), size),
+                fromMicros, toMicros, after, null, size);
+    }
+    
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int size) {
+        return withArchived(accountIndex.after(accountNumber, after == null ? null : TimelineIndex.TimelineKey.of(after), size),
+                Long.MIN_VALUE, Long.MAX_VALUE, after, accountNumber, size);
+    }
+    
+    // Only the in-memory tier is indexed by status: archived transactions are past the age
+    // at which anything still works on them
+    @Override
+    public List<Transaction> findByStatus(TransactionStatus status, TransactionCursor after, int size) {
+        return statusIndex.after(status, after == null ? null : TimelineIndex.TimelineKey.of(after), size);
+    }
+    
+    @Override
+    public List<Transaction> findOldestByStatus(TransactionStatus status, int size) {
+        return statusIndex.oldest(status, size);
+    }
+    
+    @Override
+    public BigDecimal getBalance(String accountNumber) {
+        return FixedPoint.fromMinorUnits(accountBalances.balanceMinorUnits(accountNumber));
     }
     
     @Override
     public long count() {
-        return transactionStore.size();
+        return transactionStore.size() + archive.count();
     }
     
     @Override
-    public void deleteById(UUID id) {
-        transactionStore.remove(id);
+    public Optional<Transaction> deleteById(UUID id) {
+        ReentrantLock idLock = idLocks.forKey(id);
+        idLock.lock();
+        checkpointLock.readLock().lock();
+        try {
+            journal.recordDelete(id);
+            return unapply(id);
+        } finally {
+            checkpointLock.readLock().unlock();
+            idLock.unlock();
+        }
     }
     
     @Override
     public boolean existsById(UUID id) {
-        return transactionStore.containsKey(id);
+        return transactionStore.containsKey(id) || archive.findById(id).isPresent();
     }
     
     @Override
@@ -60,6 +293,15 @@ public class InMemoryTransactionRepository implements TransactionRepository {
     
     @Override
     public boolean isDuplicateWithinTimeWindow(Transaction transaction, long timeWindowSeconds) {
+        if (fingerprintIndex.covers(transaction, timeWindowSeconds)) {
+            return fingerprintIndex.containsDuplicate(transaction, timeWindowSeconds);
+        }
+        
+        // Exact matches and windows reaching past the index retention need a full scan
+        return scanForDuplicate(transaction, timeWindowSeconds);
+    }
+    
+    private boolean scanForDuplicate(Transaction transaction, long timeWindowSeconds) {
         return transactionStore.values().stream()
                 .anyMatch(existingTransaction -> 
                         !existingTransaction.getId().equals(transaction.getId()) && 
@@ -67,4 +309,196 @@ public class InMemoryTransactionRepository implements TransactionRepository {
                             ? existingTransaction.equalsForDuplication(transaction)
                             : existingTransaction.isPotentialDuplicate(transaction, timeWindowSeconds)));
     }
+    
+    /**
+     * Merges a page read from memory with the next page of the archive, newest first.
+     */
+    private List<Transaction> withArchived(List<Transaction> hot, long fromMicros, long toMicros,
+                                           TransactionCursor after, String accountNumber, int size) {
+        if (!archive.isEnabled()) {
+            return hot;
+        }
+        List<Transaction> archived = archive.find(fromMicros, toMicros, after, accountNumber, size);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        
+        List<Transaction> merged = new ArrayList<>(hot.size() + archived.size());
+        merged.addAll(hot);
+        for (Transaction transaction : archived) {
+            // Skip copies just published by an archiving run that has not yet dropped them from memory
+            if (!transactionStore.containsKey(transaction.getId())) {
+                merged.add(transaction);
+            }
+        }
+        merged.sort(Comparator.comparing(TransactionCursor::of));
+        return merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+    }
+    
+    private void apply(Transaction transaction) {
+        if (archive.isEnabled() && !transactionStore.containsKey(transaction.getId())) {
+            Optional<Transaction> archived = archive.findArchived(transaction);
+            if (archived.isPresent()) {
+                if (archived.get().equals(transaction)) {
+                    // Saved unchanged, so it stays in the archive
+                    return;
+                }
+                // The transaction changed, so it moves back to memory
+                archive.remove(transaction.getId());
+                accountBalances.unarchive(archived.get());
+            }
+        }
+        store(transaction);
+    }
+    
+    private Optional<Transaction> unapply(UUID id) {
+        Optional<Transaction> removed = Optional.ofNullable(unstore(id));
+        if (removed.isEmpty()) {
+            removed = archive.remove(id);
+            removed.ifPresent(accountBalances::unarchive);
+        }
+        accountBalances.remove(id);
+        return removed;
+    }
+    
+    private void store(Transaction transaction) {
+        transactionStore.put(transaction.getId(), transaction);
+        index(transaction);
+    }
+    
+    private void index(Transaction transaction) {
+        fingerprintIndex.index(transaction);
+        timelineIndex.put(transaction);
+        accountIndex.put(transaction);
+        statusIndex.put(transaction);
+        accountBalances.put(transaction);
+    }
+    
+    /**
+     * Drops a transaction from memory and its indexes, leaving its balance to the caller.
+     *
+     * @return the transaction held in memory, or null if it was not
+     */
+    private Transaction unstore(UUID id) {
+        Transaction removed = transactionStore.remove(id);
+        fingerprintIndex.remove(id);
+        timelineIndex.remove(id);
+        accountIndex.remove(id);
+        statusIndex.remove(id);
+        return removed;
+    }
+    
+    private void recover() {
+        long startTime = System.currentTimeMillis();
+        // The journal may still hold saves of transactions archived since, so it is replayed
+        // into memory first and reconciled with the archive afterwards
+        journal.replay(new TransactionJournal.Replayer() {
+            @Override
+            public void save(Transaction transaction) {
+                store(transaction);
+            }
+            
+            @Override
+            public void delete(UUID id) {
+                unstore(id);
+                accountBalances.remove(id);
+                archive.remove(id);
+            }
+        });
+        
+        if (archive.isEnabled()) {
+            for (Transaction transaction : new ArrayList<>(transactionStore.values())) {
+                archive.findArchived(transaction).ifPresent(archived -> {
+                    if (archived.equals(transaction)) {
+                        unstore(transaction.getId());
+                        accountBalances.remove(transaction.getId());
+                    } else {
+                        archive.remove(transaction.getId());
+                    }
+                });
+            }
+            archive.forEach(accountBalances::putArchived);
+        }
+        
+        if (!transactionStore.isEmpty()) {
+            log.info("Recovered {} transactions from the journal in {} ms",
+                    transactionStore.size(), System.currentTimeMillis() - startTime);
+        }
+    }
+    
+    /**
+     * Periodically snapshots the store so the journal only has to keep the changes made since.
+     * Writers are paused only while the journal is rotated, not while the snapshot is written.
+     */
+    @Scheduled(fixedDelayString = "${banking.persistence.snapshot-interval-ms:300000}")
+    public synchronized void checkpoint() {
+        TransactionJournal.Checkpoint checkpoint;
+        checkpointLock.writeLock().lock();
+        try {
+            checkpoint = journal.startCheckpoint();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        checkpoint.complete(transactionStore.values().iterator());
+    }
+    
+    /**
+     * Periodically moves transactions older than the archive's maximum age out of memory.
+     * Each batch is written to the archive first and then swapped in while writers are
+     * paused, so readers always find a transaction in one of the tiers. A transaction that
+     * changed while its batch was written stays in memory.
+     */
+    @Scheduled(fixedDelayString = "${banking.tiering.interval-ms:3600000}")
+    public synchronized void archiveAgedTransactions() {
+        if (!archive.isEnabled()) {
+            return;
+        }
+        long cutoffMicros = FixedPoint.toEpochMicros(LocalDateTime.now().minus(archive.maxAge()));
+        long startTime = System.currentTimeMillis();
+        long archivedCount = 0;
+        
+        List<Transaction> aged;
+        do {
+            aged = timelineIndex.olderThan(cutoffMicros, ARCHIVE_BATCH_SIZE);
+            if (aged.isEmpty()) {
+                break;
+            }
+            TransactionArchive.Pending pending = archive.write(aged);
+            
+            int moved = 0;
+            checkpointLock.writeLock().lock();
+            try {
+                pending.publish();
+                for (Transaction transaction : aged) {
+                    // Versions are immutable, so an unchanged transaction is the same instance
+                    if (transactionStore.get(transaction.getId()) == transaction) {
+                        unstore(transaction.getId());
+                        accountBalances.archive(transaction.getId());
+                        moved++;
+                    } else {
+                        archive.remove(transaction.getId());
+                    }
+                }
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            archivedCount += moved;
+            if (moved == 0) {
+                break;
+            }
+        } while (aged.size() == ARCHIVE_BATCH_SIZE);
+        
+        if (archivedCount > 0) {
+            log.info("Archived {} transactions older than {} in {} ms",
+                    archivedCount, archive.maxAge(), System.currentTimeMillis() - startTime);
+        }
+    }
+    
+    /**
+     * Periodically drops fingerprints that have aged out of every duplicate window.
+     */
+    @Scheduled(fixedDelayString = "${banking.duplicate-detection.purge-interval-ms:5000}")
+    public void purgeExpiredFingerprints() {
+        fingerprintIndex.purgeOlderThan(LocalDateTime.now().minus(FINGERPRINT_RETENTION));
+    }
 }
@@ -0,0 +1,693 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.persistence.DatabaseException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable transaction store on an embedded relational database, for deployments that want
+ * SQL access to the data.
+ * <p>
+ * Transactions are rows of the {@code transactions} table, indexed by timeline, by account,
+ * by status and by duplicate fingerprint. Balances are rows of {@code account_balances}, updated in
+ * the same database transaction as the rows that move them. Listings are keyset queries
+ * over the indexes and duplicate checks are indexed queries, so nothing is held on the heap.
+ * <p>
+ * Duplicate checks with a time window first ask a {@link RecentFingerprintFilter} over the
+ * fingerprints written since startup, and only query the database when the filter cannot rule
+ * a duplicate out, which for almost every new transaction it can.
+ * <p>
+ * A fixed pool of connections is opened at startup. Each connection keeps the statements it
+ * has prepared, so every statement is parsed once per connection, and batches are written
+ * with JDBC batching in a single database transaction.
+ * <p>
+ * Active with the {@code jdbc} profile. The SQL is written for H2 in file mode, which logs
+ * its own changes, so the {@code banking.persistence} journal is not used.
+ */
+@Repository
+@Profile("jdbc")
+@Slf4j
+public class JdbcTransactionRepository implements TransactionRepository, MeterBinder {
+    
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS transactions ("
+                    + "id UUID PRIMARY KEY, "
+                    + "amount DECIMAL(18, 4), "
+                    // Scale the amount was saved with, so it reads back equal to what was saved
+                    + "amount_scale SMALLINT, "
+                    + "description VARCHAR, "
+                    + "type VARCHAR(16), "
+                    + "account_number VARCHAR, "
+                    + "created_at TIMESTAMP(6) NOT NULL, "
+                    + "status VARCHAR(16), "
+                    + "version BIGINT DEFAULT 1 NOT NULL, "
+                    + "fingerprint BIGINT NOT NULL)",
+            // Databases created before transactions were versioned
+            "ALTER TABLE transactions ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 1 NOT NULL",
+            "CREATE INDEX IF NOT EXISTS transactions_timeline ON transactions (created_at DESC, id DESC)",
+            "CREATE INDEX IF NOT EXISTS transactions_account ON transactions (account_number, created_at DESC, id DESC)",
+            "CREATE INDEX IF NOT EXISTS transactions_status ON transactions (status, created_at DESC, id DESC)",
+            "CREATE INDEX IF NOT EXISTS transactions_fingerprint ON transactions (fingerprint, created_at)",
+            "CREATE TABLE IF NOT EXISTS account_balances ("
+                    + "account_number VARCHAR PRIMARY KEY, "
+                    + "balance_minor_units BIGINT NOT NULL)"
+    };
+    
+    private static final String COLUMNS = "id, amount, amount_scale, description, type, account_number, created_at, status, version";
+    private static final String NEWEST_FIRST = " ORDER BY created_at DESC, id DESC";
+    // The bound on created_at alone lets the index seek to the cursor
+    private static final String AFTER_CURSOR = " AND created_at <= ? AND (created_at < ? OR id < ?)";
+    
+    private static final String MERGE = "MERGE INTO transactions (" + COLUMNS + ", fingerprint) KEY (id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM transactions WHERE id = ?";
+    private static final String LOCK_BY_ID = SELECT_BY_ID + " FOR UPDATE";
+    private static final String LOCK_BY_IDS = "SELECT " + COLUMNS + " FROM transactions WHERE id = ANY(?) FOR UPDATE";
+    private static final String EXISTS_BY_ID = "SELECT 1 FROM transactions WHERE id = ?";
+    private static final String DELETE_BY_ID = "DELETE FROM transactions WHERE id = ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM transactions";
+    
+    private static final String SELECT_ALL = "SELECT " + COLUMNS + " FROM transactions" + NEWEST_FIRST;
+    private static final String SELECT_PAGE = SELECT_ALL + " LIMIT ? OFFSET ?";
+    private static final String SELECT_AFTER = "SELECT " + COLUMNS + " FROM transactions WHERE TRUE"
+            + AFTER_CURSOR + NEWEST_FIRST + " LIMIT ?";
+    private static final String SELECT_RANGE = "SELECT " + COLUMNS + " FROM transactions "
+            + "WHERE created_at >= ? AND created_at < ?";
+    private static final String SELECT_ACCOUNT = "SELECT " + COLUMNS + " FROM transactions WHERE account_number = ?";
+    private static final String SELECT_STATUS = "SELECT " + COLUMNS + " FROM transactions WHERE status = ?";
+    private static final String SELECT_OLDEST_BY_STATUS = SELECT_STATUS + " ORDER BY created_at, id LIMIT ?";
+    
+    private static final String SELECT_DUPLICATE = "SELECT 1 FROM transactions "
+            + "WHERE fingerprint = ? AND account_number = ? AND amount = ? AND description = ? AND type = ? AND id <> ?";
+    private static final String SELECT_DUPLICATE_IN_WINDOW = SELECT_DUPLICATE + " AND created_at BETWEEN ? AND ?";
+    
+    private static final String SELECT_BALANCE = "SELECT balance_minor_units FROM account_balances WHERE account_number = ?";
+    private static final String UPDATE_BALANCE = "UPDATE account_balances "
+            + "SET balance_minor_units = balance_minor_units + ? WHERE account_number = ?";
+    private static final String INSERT_BALANCE = "INSERT INTO account_balances (account_number, balance_minor_units) VALUES (?, ?)";
+    
+    // Serializes the duplicate check and the insert of transactions with the same fingerprint
+    private static final int FINGERPRINT_LOCK_STRIPES = 64;
+    
+    // The fingerprint filter covers the last 16 minutes, far more than any duplicate window
+    private static final Duration FILTER_SLICE = Duration.ofMinutes(1);
+    private static final int FILTER_SLICES = 16;
+    
+    private final String url;
+    private final BlockingQueue<Session> sessions;
+    private final ReentrantLock[] fingerprintLocks = new ReentrantLock[FINGERPRINT_LOCK_STRIPES];
+    private final RecentFingerprintFilter fingerprintFilter;
+    
+    @Autowired
+    public JdbcTransactionRepository(
+            @Value("${banking.jdbc.url:jdbc:h2:file:./data/h2/transactions}") String url,
+            @Value("${banking.jdbc.username:sa}") String username,
+            @Value("${banking.jdbc.password:}") String password,
+            @Value("${banking.jdbc.pool-size:8}") int poolSize,
+            @Value("${banking.jdbc.duplicate-filter.expected-per-minute:100000}") int expectedPerMinute) {
+        this.url = url;
+        this.sessions = new ArrayBlockingQueue<>(poolSize);
+        // Transactions already stored are older than this; the filter sees every later write
+        this.fingerprintFilter = new RecentFingerprintFilter(FILTER_SLICE, FILTER_SLICES, expectedPerMinute,
+                LocalDateTime.now());
+        for (int i = 0; i < fingerprintLocks.length; i++) {
+            fingerprintLocks[i] = new ReentrantLock();
+        }
+        
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                Connection connection = DriverManager.getConnection(url, username, password);
+                connection.setAutoCommit(false);
+                sessions.add(new Session(connection));
+            }
+        } catch (SQLException e) {
+            close();
+            throw new DatabaseException("Failed to connect to " + url, e);
+        }
+        
+        execute("create schema", session -> {
+            try (Statement statement = session.connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            return null;
+        });
+        log.info("JDBC transaction store ready at {} with {} transactions", url, count());
+    }
+    
+    @Override
+    public Transaction save(Transaction transaction) {
+        return execute("save transaction " + transaction.getId(), session -> {
+            write(session, List.of(transaction));
+            return transaction;
+        });
+    }
+    
+    @Override
+    public Optional<Transaction> saveIfNotDuplicate(Transaction transaction, long timeWindowSeconds) {
+        long fingerprint = fingerprint(transaction);
+        ReentrantLock lock = fingerprintLock(fingerprint);
+        lock.lock();
+        try {
+            // The insert commits before the lock is released, so the next check sees it
+            return execute("save transaction " + transaction.getId(), session -> {
+                if (hasDuplicate(session, transaction, fingerprint, timeWindowSeconds)) {
+                    return Optional.empty();
+                }
+                write(session, List.of(transaction));
+                return Optional.of(transaction);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions, long timeWindowSeconds) {
+        if (transactions.isEmpty()) {
+            return List.of();
+        }
+        
+        // Stripes are taken in index order, so two batches never wait on each other in a cycle
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Transaction transaction : transactions) {
+            stripes.add(stripe(fingerprint(transaction)));
+        }
+        stripes.forEach(stripe -> fingerprintLocks[stripe].lock());
+        try {
+            return execute("save batch of " + transactions.size() + " transactions", session -> {
+                List<Transaction> accepted = new ArrayList<>(transactions.size());
+                for (Transaction transaction : transactions) {
+                    if (!hasDuplicate(session, transaction, fingerprint(transaction), timeWindowSeconds)
+                            && accepted.stream().noneMatch(earlier -> isBatchDuplicate(earlier, transaction, timeWindowSeconds))) {
+                        accepted.add(transaction);
+                    }
+                }
+                if (!accepted.isEmpty()) {
+                    write(session, accepted);
+                }
+                return accepted;
+            });
+        } finally {
+            stripes.descendingSet().forEach(stripe -> fingerprintLocks[stripe].unlock());
+        }
+    }
+    
+    @Override
+    public ReplaceResult replace(Transaction next, long expectedVersion, long timeWindowSeconds) {
+        long fingerprint = fingerprint(next);
+        ReentrantLock lock = fingerprintLock(fingerprint);
+        lock.lock();
+        try {
+            // The row lock holds off other writers of the transaction until the commit
+            return execute("replace transaction " + next.getId(), session -> {
+                Transaction current = lock(session, next.getId());
+                if (current == null) {
+                    return ReplaceResult.NOT_FOUND;
+                }
+                if (current.getVersion() != expectedVersion) {
+                    return ReplaceResult.VERSION_CONFLICT;
+                }
+                if (hasDuplicate(session, next, fingerprint, timeWindowSeconds)) {
+                    return ReplaceResult.DUPLICATE;
+                }
+                write(session, List.of(next));
+                return ReplaceResult.REPLACED;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        return execute("find transaction " + id, session -> {
+            PreparedStatement select = session.prepare(SELECT_BY_ID);
+            select.setObject(1, id);
+            return readAll(select).stream().findFirst();
+        });
+    }
+    
+    @Override
+    public List<Transaction> findAll() {
+        return execute("list transactions", session -> readAll(session.prepare(SELECT_ALL)));
+    }
+    
+    @Override
+    public List<Transaction> findAll(int page, int size) {
+        return execute("list transactions", session -> {
+            PreparedStatement select = session.prepare(SELECT_PAGE);
+            select.setInt(1, size);
+            select.setLong(2, (long) page * size);
+            return readAll(select);
+        });
+    }
+    
+    @Override
+    public List<Transaction> findAllAfter(TransactionCursor after, int size) {
+        if (after == null) {
+            return findAll(0, size);
+        }
+        return execute("list transactions", session -> {
+            PreparedStatement select = session.prepare(SELECT_AFTER);
+            int index = bindCursor(select, 1, after);
+            select.setInt(index, size);
+            return readAll(select);
+        });
+    }
+    
+    @Override
+    public List<Transaction> findByTimestampBetween(LocalDateTime from, LocalDateTime to, TransactionCursor after, int size) {
+        return execute("list transactions between " + from + " and " + to, session -> {
+            PreparedStatement select = session.prepare(after == null
+                    ? SELECT_RANGE + NEWEST_FIRST + " LIMIT ?"
+                    : SELECT_RANGE + AFTER_CURSOR + NEWEST_FIRST + " LIMIT ?");
+            select.setObject(1, from);
+            select.setObject(2, to);
+            int index = after == null ? 3 : bindCursor(select, 3, after);
+            select.setInt(index, size);
+            return readAll(select);
+        });
+    }
+    
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int size) {
+        if (accountNumber == null) {
+            return List.of();
+        }
+        return execute("list transactions of account " + accountNumber, session -> {
+            PreparedStatement select = session.prepare(after == null
+                    ? SELECT_ACCOUNT + NEWEST_FIRST + " LIMIT ?"
+                    : SELECT_ACCOUNT + AFTER_CURSOR + NEWEST_FIRST + " LIMIT ?");
+            select.setString(1, accountNumber);
+            int index = after == null ? 2 : bindCursor(select, 2, after);
+            select.setInt(index, size);
+            return readAll(select);
+        });
+    }
+    
+    @Override
+    public List<Transaction> findByStatus(TransactionStatus status, TransactionCursor after, int size) {
+        if (status == null) {
+            return List.of();
+        }
+        return execute("list " + status + " transactions", session -> {
+            PreparedStatement select = session.prepare(after == null
+                    ? SELECT_STATUS + NEWEST_FIRST + " LIMIT ?"
+                    : SELECT_STATUS + AFTER_CURSOR + NEWEST_FIRST + " LIMIT ?");
+            select.setString(1, status.name());
+            int index = after == null ? 2 : bindCursor(select, 2, after);
+            select.setInt(index, size);
+            return readAll(select);
+        });
+    }
+    
+    @Override
+    public List<Transaction> findOldestByStatus(TransactionStatus status, int size) {
+        if (status == null) {
+            return List.of();
+        }
+        return execute("list oldest " + status + " transactions", session -> {
+            // The status index is walked backwards
+            PreparedStatement select = session.prepare(SELECT_OLDEST_BY_STATUS);
+            select.setString(1, status.name());
+            select.setInt(2, size);
+            return readAll(select);
+        });
+    }
+    
+    @Override
+    public BigDecimal getBalance(String accountNumber) {
+        if (accountNumber == null) {
+            return FixedPoint.fromMinorUnits(0);
+        }
+        return execute("read balance of account " + accountNumber, session -> {
+            PreparedStatement select = session.prepare(SELECT_BALANCE);
+            select.setString(1, accountNumber);
+            try (ResultSet result = select.executeQuery()) {
+                return FixedPoint.fromMinorUnits(result.next() ? result.getLong(1) : 0);
+            }
+        });
+    }
+    
+    @Override
+    public long count() {
+        return execute("count transactions", session -> {
+            try (ResultSet result = session.prepare(COUNT).executeQuery()) {
+                result.next();
+                return result.getLong(1);
+            }
+        });
+    }
+    
+    @Override
+    public Optional<Transaction> deleteById(UUID id) {
+        // The row lock makes concurrent deletes of the transaction wait, and then find nothing
+        return execute("delete transaction " + id, session -> {
+            Transaction previous = lock(session, id);
+            if (previous == null) {
+                return Optional.empty();
+            }
+            PreparedStatement delete = session.prepare(DELETE_BY_ID);
+            delete.setObject(1, id);
+            delete.executeUpdate();
+            
+            Map<String, Long> deltas = new TreeMap<>();
+            addEffect(deltas, previous, -1);
+            adjustBalances(session, deltas);
+            return Optional.of(previous);
+        });
+    }
+    
+    @Override
+    public boolean existsById(UUID id) {
+        return execute("find transaction " + id, session -> {
+            PreparedStatement select = session.prepare(EXISTS_BY_ID);
+            select.setObject(1, id);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next();
+            }
+        });
+    }
+    
+    @Override
+    public boolean isDuplicate(Transaction transaction) {
+        return isDuplicateWithinTimeWindow(transaction, 0);
+    }
+    
+    @Override
+    public boolean isDuplicateWithinTimeWindow(Transaction transaction, long timeWindowSeconds) {
+        return execute("check transaction " + transaction.getId() + " for duplicates",
+                session -> hasDuplicate(session, transaction, fingerprint(transaction), timeWindowSeconds));
+    }
+    
+    /**
+     * Publishes how well the fingerprint filter saves duplicate queries, to size
+     * {@code banking.jdbc.duplicate-filter.expected-per-minute} by.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("banking.duplicate.filter.false.positive.rate", fingerprintFilter,
+                        RecentFingerprintFilter::falsePositiveRate)
+                .description("Share of duplicate checks without a duplicate that the filter failed to skip")
+                .register(registry);
+        FunctionCounter.builder("banking.duplicate.filter.skipped", fingerprintFilter,
+                        RecentFingerprintFilter::skippedCount)
+                .description("Duplicate queries skipped because the filter ruled a duplicate out")
+                .register(registry);
+    }
+    
+    @PreDestroy
+    public void close() {
+        Session session;
+        while ((session = sessions.poll()) != null) {
+            try {
+                // Closing a connection closes the statements it prepared
+                session.connection.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close connection to {}", url, e);
+            }
+        }
+    }
+    
+    /**
+     * Upserts the transactions and applies the difference they make to the balances of
+     * their accounts, holding row locks on any earlier versions until the commit.
+     */
+    private void write(Session session, List<Transaction> transactions) throws SQLException {
+        Map<UUID, Transaction> previous = new HashMap<>();
+        if (transactions.size() == 1) {
+            Transaction earlier = lock(session, transactions.get(0).getId());
+            if (earlier != null) {
+                previous.put(earlier.getId(), earlier);
+            }
+        } else {
+            PreparedStatement select = session.prepare(LOCK_BY_IDS);
+            select.setArray(1, session.connection.createArrayOf("UUID",
+                    transactions.stream().map(Transaction::getId).toArray()));
+            readAll(select).forEach(earlier -> previous.put(earlier.getId(), earlier));
+        }
+        
+        PreparedStatement merge = session.prepare(MERGE);
+        if (transactions.size() == 1) {
+            bind(merge, transactions.get(0));
+            merge.executeUpdate();
+        } else {
+            for (Transaction transaction : transactions) {
+                bind(merge, transaction);
+                merge.addBatch();
+            }
+            merge.executeBatch();
+        }
+        // Before the fingerprint lock is released, so the next check of the fingerprint sees it
+        for (Transaction transaction : transactions) {
+            fingerprintFilter.add(fingerprint(transaction), transaction.getTimestamp());
+        }
+        
+        // Sorted by account, so concurrent writers lock balance rows in the same order
+        Map<String, Long> deltas = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            Transaction earlier = previous.get(transaction.getId());
+            if (earlier != null) {
+                addEffect(deltas, earlier, -1);
+            }
+            addEffect(deltas, transaction, 1);
+        }
+        adjustBalances(session, deltas);
+    }
+    
+    private Transaction lock(Session session, UUID id) throws SQLException {
+        PreparedStatement select = session.prepare(LOCK_BY_ID);
+        select.setObject(1, id);
+        List<Transaction> rows = readAll(select);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+    
+    private static void addEffect(Map<String, Long> deltas, Transaction transaction, int sign) {
+        long effect = AccountBalances.balanceEffect(transaction);
+        if (effect != 0) {
+            deltas.merge(transaction.getAccountNumber(), sign * effect, Long::sum);
+        }
+    }
+    
+    private void adjustBalances(Session session, Map<String, Long> deltas) throws SQLException {
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            if (delta.getValue() == 0) {
+                continue;
+            }
+            PreparedStatement update = session.prepare(UPDATE_BALANCE);
+            update.setLong(1, delta.getValue());
+            update.setString(2, delta.getKey());
+            while (update.executeUpdate() == 0) {
+                PreparedStatement insert = session.prepare(INSERT_BALANCE);
+                insert.setString(1, delta.getKey());
+                insert.setLong(2, delta.getValue());
+                try {
+                    insert.executeUpdate();
+                    break;
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    // Another connection created the row first; add to it instead
+                }
+            }
+        }
+    }
+    
+    private boolean hasDuplicate(Session session, Transaction transaction, long fingerprint,
+                                 long timeWindowSeconds) throws SQLException {
+        boolean filtered = fingerprintFilter.covers(transaction.getTimestamp(), timeWindowSeconds);
+        if (filtered && !fingerprintFilter.mightContain(fingerprint, transaction.getTimestamp(), timeWindowSeconds)) {
+            return false;
+        }
+        
+        PreparedStatement select = session.prepare(timeWindowSeconds <= 0 ? SELECT_DUPLICATE : SELECT_DUPLICATE_IN_WINDOW);
+        select.setLong(1, fingerprint);
+        select.setString(2, transaction.getAccountNumber());
+        select.setBigDecimal(3, transaction.getAmount());
+        select.setString(4, transaction.getDescription());
+        select.setString(5, transaction.getType() != null ? transaction.getType().name() : null);
+        select.setObject(6, transaction.getId());
+        if (timeWindowSeconds > 0) {
+            select.setObject(7, transaction.getTimestamp().minusSeconds(timeWindowSeconds));
+            select.setObject(8, transaction.getTimestamp().plusSeconds(timeWindowSeconds));
+        }
+        select.setMaxRows(1);
+        try (ResultSet result = select.executeQuery()) {
+            boolean found = result.next();
+            if (filtered && !found) {
+                fingerprintFilter.recordFalsePositive();
+            }
+            return found;
+        }
+    }
+    
+    private static boolean isBatchDuplicate(Transaction earlier, Transaction transaction, long timeWindowSeconds) {
+        return earlier.getId().equals(transaction.getId())
+                || (timeWindowSeconds <= 0
+                    ? earlier.equalsForDuplication(transaction)
+                    : earlier.isPotentialDuplicate(transaction, timeWindowSeconds));
+    }
+    
+    /**
+     * Hash of the fields compared by {@link Transaction#equalsForDuplication(Transaction)}.
+     * It only narrows the duplicate query to an index range; the fields are compared too.
+     */
+    private static long fingerprint(Transaction transaction) {
+        long hash = Objects.hashCode(transaction.getAccountNumber());
+        hash = 31 * hash + (transaction.getAmount() != null ? FixedPoint.toMinorUnits(transaction.getAmount()) : 0);
+        hash = 31 * hash + Objects.hashCode(transaction.getDescription());
+        // The name rather than the enum's hash code, which differs between runs
+        return 31 * hash + (transaction.getType() != null ? transaction.getType().name().hashCode() : 0);
+    }
+    
+    private static int stripe(long fingerprint) {
+        return (int) ((fingerprint ^ (fingerprint >>> 32)) & (FINGERPRINT_LOCK_STRIPES - 1));
+    }
+    
+    private ReentrantLock fingerprintLock(long fingerprint) {
+        return fingerprintLocks[stripe(fingerprint)];
+    }
+    
+    private static void bind(PreparedStatement merge, Transaction transaction) throws SQLException {
+        merge.setObject(1, transaction.getId());
+        merge.setBigDecimal(2, transaction.getAmount());
+        if (transaction.getAmount() != null) {
+            merge.setInt(3, transaction.getAmount().scale());
+        } else {
+            merge.setNull(3, Types.SMALLINT);
+        }
+        merge.setString(4, transaction.getDescription());
+        merge.setString(5, transaction.getType() != null ? transaction.getType().name() : null);
+        merge.setString(6, transaction.getAccountNumber());
+        merge.setObject(7, transaction.getTimestamp());
+        merge.setString(8, transaction.getStatus() != null ? transaction.getStatus().name() : null);
+        merge.setLong(9, transaction.getVersion());
+        merge.setLong(10, fingerprint(transaction));
+    }
+    
+    private static int bindCursor(PreparedStatement select, int index, TransactionCursor after) throws SQLException {
+        LocalDateTime timestamp = FixedPoint.fromEpochMicros(after.timestampMicros());
+        select.setObject(index, timestamp);
+        select.setObject(index + 1, timestamp);
+        select.setObject(index + 2, after.id());
+        return index + 3;
+    }
+    
+    private static List<Transaction> readAll(PreparedStatement select) throws SQLException {
+        List<Transaction> transactions = new ArrayList<>();
+        try (ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+                transactions.add(read(result));
+            }
+        }
+        return transactions;
+    }
+    
+    private static Transaction read(ResultSet result) throws SQLException {
+        BigDecimal amount = result.getBigDecimal(2);
+        String type = result.getString(5);
+        String status = result.getString(8);
+        return Transaction.builder()
+                .id(result.getObject(1, UUID.class))
+                .amount(amount != null ? amount.setScale(result.getInt(3)) : null)
+                .description(result.getString(4))
+                .type(type != null ? TransactionType.valueOf(type) : null)
+                .accountNumber(result.getString(6))
+                .timestamp(result.getObject(7, LocalDateTime.class))
+                .status(status != null ? TransactionStatus.valueOf(status) : null)
+                .version(result.getLong(9))
+                .build();
+    }
+    
+    private <T> T execute(String action, SqlWork<T> work) {
+        Session session;
+        try {
+            session = sessions.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for a connection to " + url, e);
+        }
+        
+        try {
+            T result = work.run(session);
+            session.connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                session.connection.rollback();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof SQLException) {
+                throw new DatabaseException("Failed to " + action, e);
+            }
+            throw (RuntimeException) e;
+        } finally {
+            sessions.add(session);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(Session session) throws SQLException;
+    }
+    
+    /**
+     * A pooled connection and the statements prepared on it.
+     */
+    private static final class Session {
+        
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        
+        Session(Connection connection) {
+            this.connection = connection;
+        }
+        
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.persistence.LsmTree;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable transaction store backed by an embedded {@link LsmTree}.
+ * <p>
+ * Transactions live on disk in the tree, which absorbs write bursts by appending to its log
+ * and sorted memtable and merging tables in the background. Only the timeline, account and
+ * status indexes are kept in memory, as keys without the transactions, and they are rebuilt from
+ * the tree on startup. Listings walk the indexes and read each transaction from the tree.
+ * <p>
+ * Active with the {@code lsm} profile. The tree has its own write-ahead logs, so the
+ * {@code banking.persistence} journal is not used.
+ */
+@Repository
+@Profile("lsm")
+@Slf4j
+public class LsmTransactionRepository implements TransactionRepository {
+    
+    private final LsmTree store;
+    
+    // Values are the transaction ids, so listings read the tree without decoding the keys
+    private final ConcurrentNavigableMap<TimelineIndex.TimelineKey, UUID> timeline = new ConcurrentSkipListMap<>();
+    
+    private final Map<String, ConcurrentNavigableMap<TimelineIndex.TimelineKey, UUID>> accountTimelines = new ConcurrentHashMap<>();
+    
+    private final Map<TransactionStatus, ConcurrentNavigableMap<TimelineIndex.TimelineKey, UUID>> statusTimelines = new ConcurrentHashMap<>();
+    
+    // Where each stored transaction is indexed, so the old entries can be found when it changes
+    private final Map<UUID, Position> positions = new ConcurrentHashMap<>();
+    
+    private final DuplicateFingerprintIndex fingerprintIndex =
+            new DuplicateFingerprintIndex(InMemoryTransactionRepository.FINGERPRINT_RETENTION);
+    
+    private final AccountBalances accountBalances = new AccountBalances();
+    
+    // Serializes replacements and deletes of one transaction
+    private final StripedLocks idLocks = new StripedLocks(64);
+    
+    @Autowired
+    public LsmTransactionRepository(
+            @Value("${banking.lsm.directory:data/lsm}") Path directory,
+            @Value("${banking.lsm.fsync:true}") boolean fsync,
+            @Value("${banking.lsm.memtable-size:8MB}") DataSize memtableSize,
+            @Value("${banking.lsm.compaction-threshold:4}") int compactionThreshold) {
+        this.store = new LsmTree(directory, fsync, memtableSize.toBytes(), compactionThreshold);
+        
+        long startTime = System.currentTimeMillis();
+        store.iterator().forEachRemaining(this::index);
+        log.info("LSM transaction store ready with {} transactions, indexed in {} ms",
+                positions.size(), System.currentTimeMillis() - startTime);
+    }
+    
+    @Override
+    public Transaction save(Transaction transaction) {
+        store.put(transaction);
+        index(transaction);
+        return transaction;
+    }
+    
+    @Override
+    public Optional<Transaction> saveIfNotDuplicate(Transaction transaction, long timeWindowSeconds) {
+        if (!fingerprintIndex.covers(transaction, timeWindowSeconds)
+                && scanForDuplicate(transaction, timeWindowSeconds)) {
+            return Optional.empty();
+        }
+        // Same atomic claim as InMemoryTransactionRepository
+        if (!fingerprintIndex.tryClaim(transaction, timeWindowSeconds)) {
+            return Optional.empty();
+        }
+        
+        try {
+            store.put(transaction);
+        } catch (RuntimeException e) {
+            // Release the claim of a transaction that never became visible
+            if (!positions.containsKey(transaction.getId())) {
+                fingerprintIndex.remove(transaction.getId());
+            }
+            throw e;
+        }
+        index(transaction);
+        return Optional.of(transaction);
+    }
+    
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions, long timeWindowSeconds) {
+        List<Transaction> claimed = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (!fingerprintIndex.covers(transaction, timeWindowSeconds)
+                    && scanForDuplicate(transaction, timeWindowSeconds)) {
+                continue;
+            }
+            if (fingerprintIndex.tryClaim(transaction, timeWindowSeconds)) {
+                claimed.add(transaction);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+        
+        try {
+            // One log write for the whole batch
+            store.putAll(claimed);
+        } catch (RuntimeException e) {
+            for (Transaction transaction : claimed) {
+                if (!positions.containsKey(transaction.getId())) {
+                    fingerprintIndex.remove(transaction.getId());
+                }
+            }
+            throw e;
+        }
+        claimed.forEach(this::index);
+        return claimed;
+    }
+    
+    @Override
+    public ReplaceResult replace(Transaction next, long expectedVersion, long timeWindowSeconds) {
+        ReentrantLock idLock = idLocks.forKey(next.getId());
+        idLock.lock();
+        try {
+            Optional<Transaction> current = findById(next.getId());
+            if (current.isEmpty()) {
+                return ReplaceResult.NOT_FOUND;
+            }
+            if (current.get().getVersion() != expectedVersion) {
+                return ReplaceResult.VERSION_CONFLICT;
+            }
+            if ((!fingerprintIndex.covers(next, timeWindowSeconds) && scanForDuplicate(next, timeWindowSeconds))
+                    || !fingerprintIndex.tryClaim(next, timeWindowSeconds)) {
+                return ReplaceResult.DUPLICATE;
+            }
+            
+            try {
+                store.put(next);
+            } catch (RuntimeException e) {
+                // Hand the claim back to the version that stays
+                fingerprintIndex.index(current.get());
+                throw e;
+            }
+            index(next);
+            return ReplaceResult.REPLACED;
+        } finally {
+            idLock.unlock();
+        }
+    }
+    
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        // The index answers for unknown ids without touching the tree
+        return positions.containsKey(id) ? Optional.ofNullable(store.get(id)) : Optional.empty();
+    }
+    
+    @Override
+    public List<Transaction> findAll() {
+        List<Transaction> transactions = new ArrayList<>(positions.size());
+        store.iterator().forEachRemaining(transactions::add);
+        return transactions;
+    }
+    
+    @Override
+    public List<Transaction> findAll(int page, int size) {
+        return read(timeline.values().stream().skip((long) page * size).iterator(), size);
+    }
+    
+    @Override
+    public List<Transaction> findAllAfter(TransactionCursor after, int size) {
+        NavigableMap<TimelineIndex.TimelineKey, UUID> tail = after == null
+                ? timeline
+                : timeline.tailMap(TimelineIndex.TimelineKey.of(after), false);
+        return read(tail.values().iterator(), size);
+    }
+    
+    @Override
+    public List<Transaction> findByTimestampBetween(LocalDateTime from, LocalDateTime to, TransactionCursor after, int size) {
+        NavigableMap<TimelineIndex.TimelineKey, UUID> range = TimelineIndex.range(timeline,
+                FixedPoint.toEpochMicros(from), FixedPoint.toEpochMicros(to),
+                after == null ? null : TimelineIndex.TimelineKey.of(after));
+        return read(range.values().iterator(), size);
+    }
+    
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int size) {
+        NavigableMap<TimelineIndex.TimelineKey, UUID> accountTimeline =
+                accountNumber == null ? null : accountTimelines.get(accountNumber);
+        if (accountTimeline == null) {
+            return List.of();
+        }
+        NavigableMap<TimelineIndex.TimelineKey, UUID> tail = after == null
+                ? accountTimeline
+                : accountTimeline.tailMap(TimelineIndex.TimelineKey.of(after), false);
+        return read(tail.values().iterator(), size);
+    }
+    
+    @Override
+    public List<Transaction> findByStatus(TransactionStatus status, TransactionCursor after, int size) {
+        NavigableMap<TimelineIndex.TimelineKey, UUID> statusTimeline = status == null ? null : statusTimelines.get(status);
+        if (statusTimeline == null) {
+            return List.of();
+        }
+        NavigableMap<TimelineIndex.TimelineKey, UUID> tail = after == null
+                ? statusTimeline
+                : statusTimeline.tailMap(TimelineIndex.TimelineKey.of(after), false);
+        return read(tail.values().iterator(), size);
+    }
+    
+    @Override
+    public List<Transaction> findOldestByStatus(TransactionStatus status, int size) {
+        NavigableMap<TimelineIndex.TimelineKey, UUID> statusTimeline = status == null ? null : statusTimelines.get(status);
+        return statusTimeline == null ? List.of() : read(statusTimeline.descendingMap().values().iterator(), size);
+    }
+    
+    @Override
+    public BigDecimal getBalance(String accountNumber) {
+        return FixedPoint.fromMinorUnits(accountBalances.balanceMinorUnits(accountNumber));
+    }
+    
+    @Override
+    public long count() {
+        return positions.size();
+    }
+    
+    @Override
+    public Optional<Transaction> deleteById(UUID id) {
+        ReentrantLock idLock = idLocks.forKey(id);
+        idLock.lock();
+        try {
+            // Replacements hold the same lock, so the version read here is the one removed
+            Optional<Transaction> removed = findById(id);
+            if (removed.isEmpty()) {
+                return removed;
+            }
+            store.delete(id);
+            positions.computeIfPresent(id, (key, position) -> {
+                unindex(position);
+                return null;
+            });
+            fingerprintIndex.remove(id);
+            accountBalances.remove(id);
+            return removed;
+        } finally {
+            idLock.unlock();
+        }
+    }
+    
+    @Override
+    public boolean existsById(UUID id) {
+        return positions.containsKey(id);
+    }
+    
+    @Override
+    public boolean isDuplicate(Transaction transaction) {
+        return isDuplicateWithinTimeWindow(transaction, 0);
+    }
+    
+    @Override
+    public boolean isDuplicateWithinTimeWindow(Transaction transaction, long timeWindowSeconds) {
+        if (fingerprintIndex.covers(transaction, timeWindowSeconds)) {
+            return fingerprintIndex.containsDuplicate(transaction, timeWindowSeconds);
+        }
+        return scanForDuplicate(transaction, timeWindowSeconds);
+    }
+    
+    @Scheduled(fixedDelayString = "${banking.duplicate-detection.purge-interval-ms:5000}")
+    public void purgeExpiredFingerprints() {
+        fingerprintIndex.purgeOlderThan(LocalDateTime.now().minus(InMemoryTransactionRepository.FINGERPRINT_RETENTION));
+    }
+    
+    /**
+     * Flushes the memtable to a table on disk; writes are durable without it, through the log.
+     */
+    public void flush() {
+        store.flush();
+    }
+    
+    @PreDestroy
+    public void close() {
+        store.close();
+    }
+    
+    private boolean scanForDuplicate(Transaction transaction, long timeWindowSeconds) {
+        Iterator<Transaction> transactions = store.iterator();
+        while (transactions.hasNext()) {
+            Transaction existingTransaction = transactions.next();
+            if (!existingTransaction.getId().equals(transaction.getId())
+                    && (timeWindowSeconds <= 0
+                        ? existingTransaction.equalsForDuplication(transaction)
+                        : existingTransaction.isPotentialDuplicate(transaction, timeWindowSeconds))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private List<Transaction> read(Iterator<UUID> ids, int size) {
+        List<Transaction> transactions = new ArrayList<>(size);
+        while (transactions.size() < size && ids.hasNext()) {
+            Transaction transaction = store.get(ids.next());
+            // Null if it was deleted since the index was read
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+    
+    private void index(Transaction transaction) {
+        TimelineIndex.TimelineKey key = TimelineIndex.TimelineKey.of(transaction);
+        String accountNumber = transaction.getAccountNumber();
+        TransactionStatus status = transaction.getStatus();
+        // compute() serializes concurrent writers for the same id
+        positions.compute(transaction.getId(), (id, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+            }
+            timeline.put(key, id);
+            if (accountNumber != null) {
+                accountTimelines.compute(accountNumber, (account, accountTimeline) -> {
+                    ConcurrentNavigableMap<TimelineIndex.TimelineKey, UUID> target =
+                            accountTimeline != null ? accountTimeline : new ConcurrentSkipListMap<>();
+                    target.put(key, id);
+                    return target;
+                });
+            }
+            if (status != null) {
+                statusTimelines.compute(status, (state, statusTimeline) -> {
+                    ConcurrentNavigableMap<TimelineIndex.TimelineKey, UUID> target =
+                            statusTimeline != null ? statusTimeline : new ConcurrentSkipListMap<>();
+                    target.put(key, id);
+                    return target;
+                });
+            }
+            return new Position(key, accountNumber, status);
+        });
+        fingerprintIndex.index(transaction);
+        accountBalances.put(transaction);
+    }
+    
+    private void unindex(Position position) {
+        timeline.remove(position.key());
+        if (position.accountNumber() != null) {
+            accountTimelines.computeIfPresent(position.accountNumber(), (account, accountTimeline) -> {
+                accountTimeline.remove(position.key());
+                return accountTimeline.isEmpty() ? null : accountTimeline;
+            });
+        }
+        if (position.status() != null) {
+            statusTimelines.computeIfPresent(position.status(), (status, statusTimeline) -> {
+                statusTimeline.remove(position.key());
+                return statusTimeline.isEmpty() ? null : statusTimeline;
+            });
+        }
+    }
+    
+    private record Position(TimelineIndex.TimelineKey key, String accountNumber, TransactionStatus status) {
+    }
+}
@@ -0,0 +1,120 @@
+package com.banking.transactionapp.repository;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Open-addressing hash table from transaction id to row number, stored in a direct buffer.
+ * <p>
+ * Each slot holds the two halves of the id and the row number plus one, where 0 marks an
+ * empty slot and -1 a removed one. Not thread-safe; callers synchronize access.
+ */
+class OffHeapIdIndex {
+
+    private static final int SLOT_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+    private static final double MAX_LOAD = 0.6;
+
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+    private int occupied;
+
+    OffHeapIdIndex(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1);
+    }
+
+    int get(UUID id) {
+        int slot = find(id);
+        return slot >= 0 ? rowAt(slot) - 1 : -1;
+    }
+
+    void put(UUID id, int row) {
+        if (occupied + 1 > capacity * MAX_LOAD) {
+            resize(size + 1 > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity);
+        }
+
+        int slot = find(id);
+        if (slot >= 0) {
+            table.putInt(slot * SLOT_SIZE + 2 * Long.BYTES, row + 1);
+            return;
+        }
+
+        int index = indexFor(id);
+        while (rowAt(index) > 0) {
+            index = (index + 1) & (capacity - 1);
+        }
+        if (rowAt(index) == EMPTY) {
+            occupied++;
+        }
+        int offset = index * SLOT_SIZE;
+        table.putLong(offset, id.getMostSignificantBits());
+        table.putLong(offset + Long.BYTES, id.getLeastSignificantBits());
+        table.putInt(offset + 2 * Long.BYTES, row + 1);
+        size++;
+    }
+
+    void remove(UUID id) {
+        int slot = find(id);
+        if (slot >= 0) {
+            table.putInt(slot * SLOT_SIZE + 2 * Long.BYTES, REMOVED);
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int find(UUID id) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        int index = indexFor(id);
+
+        while (true) {
+            int row = rowAt(index);
+            if (row == EMPTY) {
+                return -1;
+            }
+            int offset = index * SLOT_SIZE;
+            if (row != REMOVED && table.getLong(offset) == most && table.getLong(offset + Long.BYTES) == least) {
+                return index;
+            }
+            index = (index + 1) & (capacity - 1);
+        }
+    }
+
+    private int indexFor(UUID id) {
+        long hash = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & (capacity - 1);
+    }
+
+    private int rowAt(int index) {
+        return table.getInt(index * SLOT_SIZE + 2 * Long.BYTES);
+    }
+
+    private void allocate(int newCapacity) {
+        table = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+        size = 0;
+        occupied = 0;
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer oldTable = table;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+
+        for (int index = 0; index < oldCapacity; index++) {
+            int offset = index * SLOT_SIZE;
+            int row = oldTable.getInt(offset + 2 * Long.BYTES);
+            if (row > 0) {
+                put(new UUID(oldTable.getLong(offset), oldTable.getLong(offset + Long.BYTES)), row - 1);
+            }
+        }
+    }
+}
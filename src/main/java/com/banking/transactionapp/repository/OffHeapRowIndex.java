@@ -0,0 +1,328 @@
+package com.banking.transactionapp.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Ordered index of row numbers stored in direct buffers, used by
+ * {@link OffHeapTransactionRepository} for its timelines.
+ * <p>
+ * Entries are only row numbers; their order comes from the row's columns, read through
+ * {@link RowKeys}: a prefix (such as an account code or a status) ascending, then the
+ * timestamp and id newest first, like {@link TimelineIndex.TimelineKey}. The sorted row
+ * numbers are split into blocks of up to {@link #BLOCK_ROWS} entries, so an insert or a
+ * removal is a binary search plus a copy within one block, and a stored row costs four
+ * bytes of direct memory per index with no object on the heap. Not thread-safe; callers
+ * synchronize access.
+ */
+final class OffHeapRowIndex {
+
+    static final int BLOCK_ROWS = 4096;
+
+    /**
+     * Reads the key of a row from the columns.
+     */
+    interface RowKeys {
+
+        long prefix(int row);
+
+        long timestampMicros(int row);
+
+        long idMost(int row);
+
+        long idLeast(int row);
+    }
+
+    /**
+     * Position in the index order. The highest timestamp and id sort first within a prefix.
+     */
+    record Key(long prefix, long timestampMicros, long idMost, long idLeast) {
+
+        static Key first(long prefix) {
+            return new Key(prefix, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+        }
+
+        static Key last(long prefix) {
+            return new Key(prefix, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE);
+        }
+    }
+
+    private final RowKeys keys;
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+
+    OffHeapRowIndex(RowKeys keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Adds a row; its columns must already hold the key it is indexed under.
+     */
+    void add(int row) {
+        // Blocks are never left empty, so the searches below can read each block's last row
+        if (blocks.isEmpty()) {
+            Block first = new Block();
+            first.insert(0, row);
+            blocks.add(first);
+            size++;
+            return;
+        }
+        int blockIndex = blockFor(row);
+        Block block = blocks.get(blockIndex);
+        if (block.size == BLOCK_ROWS) {
+            Block upper = block.split();
+            blocks.add(blockIndex + 1, upper);
+            if (compare(row, upper.rows.get(0)) > 0) {
+                block = upper;
+            }
+        }
+        block.insert(block.search(this, row), row);
+        size++;
+    }
+
+    /**
+     * Removes a row; its columns must still hold the key it was indexed under.
+     */
+    void remove(int row) {
+        int blockIndex = blockFor(row);
+        if (blockIndex == blocks.size()) {
+            return;
+        }
+        Block block = blocks.get(blockIndex);
+        int slot = block.search(this, row);
+        if (slot == block.size || block.rows.get(slot) != row) {
+            return;
+        }
+        block.delete(slot);
+        size--;
+
+        // Merge neighbours that fit into half a block, so deletes cannot leave the index
+        // spread over nearly empty blocks
+        if (block.size == 0) {
+            blocks.remove(blockIndex);
+        } else if (blockIndex + 1 < blocks.size() && block.size + blocks.get(blockIndex + 1).size <= BLOCK_ROWS / 2) {
+            block.append(blocks.remove(blockIndex + 1));
+        } else if (blockIndex > 0 && block.size + blocks.get(blockIndex - 1).size <= BLOCK_ROWS / 2) {
+            blocks.get(blockIndex - 1).append(blocks.remove(blockIndex));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Iterates in index order over the rows after {@code from} (or from {@code from} on, if
+     * inclusive) up to and including {@code to}, skipping the first {@code skip} of them.
+     */
+    PrimitiveIterator.OfInt ascending(Key from, boolean inclusive, Key to, long skip) {
+        int blockIndex = blockFor(from, inclusive);
+        int slot = blockIndex < blocks.size() ? blocks.get(blockIndex).search(this, from, inclusive) : 0;
+        // Whole blocks are skipped by their size
+        while (blockIndex < blocks.size() && skip >= blocks.get(blockIndex).size - slot) {
+            skip -= blocks.get(blockIndex).size - slot;
+            blockIndex++;
+            slot = 0;
+        }
+        return new Ascending(blockIndex, slot + (int) skip, to);
+    }
+
+    /**
+     * Iterates in reverse index order over the rows from {@code from} down to and including
+     * {@code to}.
+     */
+    PrimitiveIterator.OfInt descending(Key from, Key to) {
+        // The last row at or before from is the one before the first row after it
+        int blockIndex = blockFor(from, false);
+        int slot = blockIndex < blocks.size() ? blocks.get(blockIndex).search(this, from, false) : 0;
+        return new Descending(blockIndex, slot - 1, to);
+    }
+
+    private int blockFor(int row) {
+        // First block whose last row does not sort before the row
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Block block = blocks.get(middle);
+            if (compare(block.rows.get(block.size - 1), row) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        // Rows past the last block go into it
+        return Math.min(low, Math.max(blocks.size() - 1, 0));
+    }
+
+    private int blockFor(Key key, boolean inclusive) {
+        // First block holding a row at or after the key (after it, if not inclusive)
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Block block = blocks.get(middle);
+            int comparison = compare(key, block.rows.get(block.size - 1));
+            if (comparison > 0 || (comparison == 0 && !inclusive)) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int row, int other) {
+        if (row == other) {
+            return 0;
+        }
+        return compare(keys.prefix(row), keys.timestampMicros(row), keys.idMost(row), keys.idLeast(row), other);
+    }
+
+    private int compare(Key key, int row) {
+        return compare(key.prefix(), key.timestampMicros(), key.idMost(), key.idLeast(), row);
+    }
+
+    private int compare(long prefix, long timestampMicros, long idMost, long idLeast, int row) {
+        int byPrefix = Long.compare(prefix, keys.prefix(row));
+        if (byPrefix != 0) {
+            return byPrefix;
+        }
+        int byTimestamp = Long.compare(keys.timestampMicros(row), timestampMicros);
+        if (byTimestamp != 0) {
+            return byTimestamp;
+        }
+        int byMost = Long.compare(keys.idMost(row), idMost);
+        return byMost != 0 ? byMost : Long.compare(keys.idLeast(row), idLeast);
+    }
+
+    /**
+     * Up to {@link #BLOCK_ROWS} row numbers in index order.
+     */
+    private static final class Block {
+
+        private final IntBuffer rows =
+                ByteBuffer.allocateDirect(BLOCK_ROWS * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        private int size;
+
+        private int search(OffHeapRowIndex index, int row) {
+            // First slot whose row does not sort before the row
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (index.compare(rows.get(middle), row) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        private int search(OffHeapRowIndex index, Key key, boolean inclusive) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = index.compare(key, rows.get(middle));
+                if (comparison > 0 || (comparison == 0 && !inclusive)) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        private void insert(int slot, int row) {
+            rows.put(slot + 1, rows, slot, size - slot);
+            rows.put(slot, row);
+            size++;
+        }
+
+        private void delete(int slot) {
+            rows.put(slot, rows, slot + 1, size - slot - 1);
+            size--;
+        }
+
+        private Block split() {
+            Block upper = new Block();
+            int half = size / 2;
+            upper.rows.put(0, rows, half, size - half);
+            upper.size = size - half;
+            size = half;
+            return upper;
+        }
+
+        private void append(Block next) {
+            rows.put(size, next.rows, 0, next.size);
+            size += next.size;
+        }
+    }
+
+    private final class Ascending implements PrimitiveIterator.OfInt {
+
+        private final Key to;
+        private int blockIndex;
+        private int slot;
+
+        private Ascending(int blockIndex, int slot, Key to) {
+            this.blockIndex = blockIndex;
+            this.slot = slot;
+            this.to = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (blockIndex < blocks.size() && slot == blocks.get(blockIndex).size) {
+                blockIndex++;
+                slot = 0;
+            }
+            return blockIndex < blocks.size() && compare(to, blocks.get(blockIndex).rows.get(slot)) >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return blocks.get(blockIndex).rows.get(slot++);
+        }
+    }
+
+    private final class Descending implements PrimitiveIterator.OfInt {
+
+        private final Key to;
+        private int blockIndex;
+        private int slot;
+
+        private Descending(int blockIndex, int slot, Key to) {
+            this.blockIndex = blockIndex;
+            this.slot = slot;
+            this.to = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (slot < 0 && blockIndex > 0) {
+                blockIndex--;
+                slot = blocks.get(blockIndex).size - 1;
+            }
+            return slot >= 0 && blockIndex < blocks.size() && compare(to, blocks.get(blockIndex).rows.get(slot)) <= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return blocks.get(blockIndex).rows.get(slot--);
+        }
+    }
+}
@@ -0,0 +1,737 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.persistence.TransactionJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Transaction store that keeps rows in off-heap columnar buffers instead of as objects on the heap.
+ * <p>
+ * Every column has a fixed width: id, amount (minor units and display scale), timestamp
+ * (epoch micros), type, status and version are stored as primitives, and account numbers
+ * and descriptions as codes into a {@link StringDictionary}. Rows live in chunks of direct
+ * buffers, the id lookup is an off-heap hash table and the timelines (overall, per account
+ * and per status) are {@link OffHeapRowIndex}es of row numbers. Balances are kept per
+ * account code in a direct buffer, and the contribution of a row is read back from its
+ * columns, so nothing is remembered per transaction. A stored transaction costs about 100
+ * bytes of direct memory and no heap objects; what remains on the heap grows with the
+ * distinct account numbers and descriptions in the dictionary and with the fingerprints of
+ * recent transactions kept for duplicate detection, not with the number of rows.
+ * {@link Transaction} objects are only created when rows are read.
+ * <p>
+ * Active with the {@code offheap} profile. Direct memory is bounded by
+ * {@code -XX:MaxDirectMemorySize}, which should be sized alongside the heap.
+ */
+@Repository
+@Profile("offheap")
+@Slf4j
+public class OffHeapTransactionRepository implements TransactionRepository {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    private static final byte FREE = -1;
+
+    private final List<ColumnChunk> chunks = new ArrayList<>();
+    private final OffHeapIdIndex idIndex = new OffHeapIdIndex(CHUNK_ROWS);
+    private final StringDictionary dictionary = new StringDictionary();
+    private final OffHeapRowIndex timeline = new OffHeapRowIndex(rowKeys(row -> 0));
+    // Per-account timelines, one range of this index per account's dictionary code
+    private final OffHeapRowIndex accountTimelines = new OffHeapRowIndex(rowKeys(this::accountAt));
+    // Per-status timelines, one range per value of the status column
+    private final OffHeapRowIndex statusTimelines = new OffHeapRowIndex(rowKeys(this::statusAt));
+    private int rowLimit;
+    // Freed rows are chained through their version column, so reusing them needs no heap
+    private int freeRowHead = -1;
+
+    private final DuplicateFingerprintIndex fingerprintIndex =
+            new DuplicateFingerprintIndex(InMemoryTransactionRepository.FINGERPRINT_RETENTION);
+
+    // Balance in minor units of every account, at the account's dictionary code
+    private LongBuffer balances = allocateBalances(1024);
+
+    // Guards the columns and the structures above
+    private final ReadWriteLock dataLock = new ReentrantReadWriteLock();
+
+    // Serializes replacements and deletes of one transaction, while the columns stay readable
+    private final StripedLocks idLocks = new StripedLocks(64);
+
+    private final TransactionJournal journal;
+
+    // Same role as in InMemoryTransactionRepository: lets a checkpoint rotate the journal
+    // while no change is between being journaled and being applied
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    public OffHeapTransactionRepository() {
+        this(TransactionJournal.disabled());
+    }
+
+    @Autowired
+    public OffHeapTransactionRepository(TransactionJournal journal) {
+        this.journal = journal;
+        journal.replay(new TransactionJournal.Replayer() {
+            @Override
+            public void save(Transaction transaction) {
+                apply(transaction);
+            }
+
+            @Override
+            public void delete(UUID id) {
+                unapply(id);
+            }
+        });
+        log.info("Off-heap transaction store ready with {} transactions", count());
+    }
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        checkStorable(transaction);
+
+        checkpointLock.readLock().lock();
+        try {
+            journal.recordSave(transaction);
+            apply(transaction);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return transaction;
+    }
+
+    @Override
+    public Optional<Transaction> saveIfNotDuplicate(Transaction transaction, long timeWindowSeconds) {
+        checkStorable(transaction);
+
+        if (!fingerprintIndex.covers(transaction, timeWindowSeconds)
+                && isDuplicateWithinTimeWindow(transaction, timeWindowSeconds)) {
+            return Optional.empty();
+        }
+        // Same atomic claim as InMemoryTransactionRepository, so creates only serialize on
+        // the short column write and not on the duplicate check
+        if (!fingerprintIndex.tryClaim(transaction, timeWindowSeconds)) {
+            return Optional.empty();
+        }
+
+        checkpointLock.readLock().lock();
+        try {
+            journal.recordSave(transaction);
+            apply(transaction);
+        } catch (RuntimeException e) {
+            if (!existsById(transaction.getId())) {
+                fingerprintIndex.remove(transaction.getId());
+            }
+            throw e;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return Optional.of(transaction);
+    }
+
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions, long timeWindowSeconds) {
+        transactions.forEach(this::checkStorable);
+
+        List<Transaction> claimed = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (!fingerprintIndex.covers(transaction, timeWindowSeconds)
+                    && isDuplicateWithinTimeWindow(transaction, timeWindowSeconds)) {
+                continue;
+            }
+            if (fingerprintIndex.tryClaim(transaction, timeWindowSeconds)) {
+                claimed.add(transaction);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+
+        checkpointLock.readLock().lock();
+        try {
+            journal.recordSaves(claimed);
+            // Write all rows under one acquisition of the data lock
+            dataLock.writeLock().lock();
+            try {
+                claimed.forEach(this::apply);
+            } finally {
+                dataLock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            for (Transaction transaction : claimed) {
+                if (!existsById(transaction.getId())) {
+                    fingerprintIndex.remove(transaction.getId());
+                }
+            }
+            throw e;
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        return claimed;
+    }
+
+    @Override
+    public ReplaceResult replace(Transaction next, long expectedVersion, long timeWindowSeconds) {
+        checkStorable(next);
+
+        ReentrantLock idLock = idLocks.forKey(next.getId());
+        idLock.lock();
+        try {
+            Optional<Transaction> current = findById(next.getId());
+            if (current.isEmpty()) {
+                return ReplaceResult.NOT_FOUND;
+            }
+            if (current.get().getVersion() != expectedVersion) {
+                return ReplaceResult.VERSION_CONFLICT;
+            }
+            if ((!fingerprintIndex.covers(next, timeWindowSeconds) && isDuplicateWithinTimeWindow(next, timeWindowSeconds))
+                    || !fingerprintIndex.tryClaim(next, timeWindowSeconds)) {
+                return ReplaceResult.DUPLICATE;
+            }
+
+            checkpointLock.readLock().lock();
+            try {
+                journal.recordSave(next);
+                apply(next);
+            } catch (RuntimeException e) {
+                // Hand the claim back to the version that stays
+                fingerprintIndex.index(current.get());
+                throw e;
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            return ReplaceResult.REPLACED;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        dataLock.readLock().lock();
+        try {
+            int row = idIndex.get(id);
+            return row >= 0 ? Optional.of(readRow(row)) : Optional.empty();
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAll() {
+        dataLock.readLock().lock();
+        try {
+            List<Transaction> transactions = new ArrayList<>(idIndex.size());
+            for (int row = 0; row < rowLimit; row++) {
+                if (isLive(row)) {
+                    transactions.add(readRow(row));
+                }
+            }
+            return transactions;
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAll(int page, int size) {
+        dataLock.readLock().lock();
+        try {
+            return readRows(timeline.ascending(OffHeapRowIndex.Key.first(0), true,
+                    OffHeapRowIndex.Key.last(0), (long) page * size), size);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAllAfter(TransactionCursor after, int size) {
+        dataLock.readLock().lock();
+        try {
+            return readRows(tail(timeline, 0, after), size);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findByTimestampBetween(LocalDateTime from, LocalDateTime to, TransactionCursor after, int size) {
+        dataLock.readLock().lock();
+        try {
+            long fromMicros = FixedPoint.toEpochMicros(from);
+            long toMicros = FixedPoint.toEpochMicros(to);
+            // Same bounds as TimelineIndex.range: the lowest id sorts last within a timestamp
+            TimelineIndex.TimelineKey start = new TimelineIndex.TimelineKey(toMicros, TimelineIndex.TimelineKey.LOWEST_ID);
+            TimelineIndex.TimelineKey end = new TimelineIndex.TimelineKey(fromMicros, TimelineIndex.TimelineKey.LOWEST_ID);
+            if (after != null && TimelineIndex.TimelineKey.of(after).compareTo(start) > 0) {
+                start = TimelineIndex.TimelineKey.of(after);
+            }
+            if (fromMicros >= toMicros || start.compareTo(end) >= 0) {
+                return List.of();
+            }
+            return readRows(timeline.ascending(key(0, start), false, key(0, end), 0), size);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int size) {
+        dataLock.readLock().lock();
+        try {
+            int account = dictionary.lookup(accountNumber);
+            if (account < StringDictionary.NULL_CODE) {
+                return List.of();
+            }
+            return readRows(tail(accountTimelines, account, after), size);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findByStatus(TransactionStatus status, TransactionCursor after, int size) {
+        dataLock.readLock().lock();
+        try {
+            return readRows(tail(statusTimelines, ordinal(status), after), size);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findOldestByStatus(TransactionStatus status, int size) {
+        dataLock.readLock().lock();
+        try {
+            byte prefix = ordinal(status);
+            return readRows(statusTimelines.descending(
+                    OffHeapRowIndex.Key.last(prefix), OffHeapRowIndex.Key.first(prefix)), size);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public BigDecimal getBalance(String accountNumber) {
+        dataLock.readLock().lock();
+        try {
+            int account = dictionary.lookup(accountNumber);
+            long balance = account > StringDictionary.NULL_CODE && account < balances.capacity() ? balances.get(account) : 0;
+            return FixedPoint.fromMinorUnits(balance);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        dataLock.readLock().lock();
+        try {
+            return idIndex.size();
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Transaction> deleteById(UUID id) {
+        ReentrantLock idLock = idLocks.forKey(id);
+        idLock.lock();
+        checkpointLock.readLock().lock();
+        try {
+            journal.recordDelete(id);
+            return unapply(id);
+        } finally {
+            checkpointLock.readLock().unlock();
+            idLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(UUID id) {
+        dataLock.readLock().lock();
+        try {
+            return idIndex.get(id) >= 0;
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isDuplicate(Transaction transaction) {
+        return isDuplicateWithinTimeWindow(transaction, 0);
+    }
+
+    @Override
+    public boolean isDuplicateWithinTimeWindow(Transaction transaction, long timeWindowSeconds) {
+        if (fingerprintIndex.covers(transaction, timeWindowSeconds)) {
+            return fingerprintIndex.containsDuplicate(transaction, timeWindowSeconds);
+        }
+
+        dataLock.readLock().lock();
+        try {
+            return scanForDuplicate(transaction, timeWindowSeconds);
+        } finally {
+            dataLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${banking.duplicate-detection.purge-interval-ms:5000}")
+    public void purgeExpiredFingerprints() {
+        fingerprintIndex.purgeOlderThan(LocalDateTime.now().minus(InMemoryTransactionRepository.FINGERPRINT_RETENTION));
+    }
+
+    @Scheduled(fixedDelayString = "${banking.persistence.snapshot-interval-ms:300000}")
+    public synchronized void checkpoint() {
+        TransactionJournal.Checkpoint checkpoint;
+        checkpointLock.writeLock().lock();
+        try {
+            checkpoint = journal.startCheckpoint();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        checkpoint.complete(liveRows());
+    }
+
+    /**
+     * Reads the live rows one at a time, each under the read lock, so a checkpoint never holds
+     * the whole store on the heap or blocks writers for the length of the snapshot. A row keeps
+     * its number until it is deleted, and deletes after the checkpoint started are journaled,
+     * so every row the snapshot must cover is still found by the scan.
+     */
+    private Iterator<Transaction> liveRows() {
+        return new Iterator<>() {
+            private int row = -1;
+            private Transaction next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    dataLock.readLock().lock();
+                    try {
+                        while (next == null && ++row < rowLimit) {
+                            if (isLive(row)) {
+                                next = readRow(row);
+                            }
+                        }
+                    } finally {
+                        dataLock.readLock().unlock();
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Transaction transaction = next;
+                next = null;
+                return transaction;
+            }
+        };
+    }
+
+    private void apply(Transaction transaction) {
+        dataLock.writeLock().lock();
+        try {
+            int row = idIndex.get(transaction.getId());
+            if (row >= 0) {
+                unindexRow(row);
+                releaseStrings(row);
+            } else {
+                row = allocateRow();
+                idIndex.put(transaction.getId(), row);
+            }
+            writeRow(row, transaction);
+            indexRow(row);
+            fingerprintIndex.index(transaction);
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+    }
+
+    private Optional<Transaction> unapply(UUID id) {
+        dataLock.writeLock().lock();
+        try {
+            int row = idIndex.get(id);
+            if (row < 0) {
+                return Optional.empty();
+            }
+            // Read before the row is freed, so the caller gets exactly what was removed
+            Transaction removed = readRow(row);
+            unindexRow(row);
+            releaseStrings(row);
+            idIndex.remove(id);
+            chunk(row).statuses.put(slot(row), FREE);
+            chunk(row).versions.putLong(slot(row) * Long.BYTES, freeRowHead);
+            freeRowHead = row;
+            fingerprintIndex.remove(id);
+            return Optional.of(removed);
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+    }
+
+    private void checkStorable(Transaction transaction) {
+        BigDecimal amount = transaction.getAmount();
+        if (amount == null) {
+            return;
+        }
+        if (amount.scale() <= Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount cannot be stored off-heap: " + amount);
+        }
+        FixedPoint.toMinorUnits(amount);
+    }
+
+    private int allocateRow() {
+        if (freeRowHead >= 0) {
+            int row = freeRowHead;
+            freeRowHead = (int) chunk(row).versions.getLong(slot(row) * Long.BYTES);
+            return row;
+        }
+        if (rowLimit == chunks.size() * CHUNK_ROWS) {
+            chunks.add(new ColumnChunk());
+        }
+        return rowLimit++;
+    }
+
+    private void writeRow(int row, Transaction transaction) {
+        ColumnChunk chunk = chunk(row);
+        int slot = slot(row);
+
+        chunk.ids.putLong(slot * 2 * Long.BYTES, transaction.getId().getMostSignificantBits());
+        chunk.ids.putLong(slot * 2 * Long.BYTES + Long.BYTES, transaction.getId().getLeastSignificantBits());
+
+        BigDecimal amount = transaction.getAmount();
+        chunk.amounts.putLong(slot * Long.BYTES, amount != null ? FixedPoint.toMinorUnits(amount) : 0);
+        chunk.amountScales.put(slot, amount != null ? (byte) amount.scale() : Byte.MIN_VALUE);
+        chunk.timestamps.putLong(slot * Long.BYTES, FixedPoint.toEpochMicros(transaction.getTimestamp()));
+
+        chunk.types.put(slot, ordinal(transaction.getType()));
+        chunk.statuses.put(slot, ordinal(transaction.getStatus()));
+        chunk.versions.putLong(slot * Long.BYTES, transaction.getVersion());
+        chunk.descriptions.putInt(slot * Integer.BYTES, dictionary.acquire(transaction.getDescription()));
+        chunk.accounts.putInt(slot * Integer.BYTES, dictionary.acquire(transaction.getAccountNumber()));
+    }
+
+    private Transaction readRow(int row) {
+        ColumnChunk chunk = chunk(row);
+        int slot = slot(row);
+
+        byte scale = chunk.amountScales.get(slot);
+        BigDecimal amount = scale == Byte.MIN_VALUE
+                ? null
+                : FixedPoint.fromMinorUnits(chunk.amounts.getLong(slot * Long.BYTES)).setScale(scale);
+        byte type = chunk.types.get(slot);
+        byte status = chunk.statuses.get(slot);
+
+        return Transaction.builder()
+                .id(idAt(row))
+                .amount(amount)
+                .description(dictionary.get(chunk.descriptions.getInt(slot * Integer.BYTES)))
+                .type(type >= 0 ? TransactionType.values()[type] : null)
+                .accountNumber(dictionary.get(chunk.accounts.getInt(slot * Integer.BYTES)))
+                .timestamp(timestampAt(row))
+                .status(status >= 0 ? TransactionStatus.values()[status] : null)
+                .version(chunk.versions.getLong(slot * Long.BYTES))
+                .build();
+    }
+
+    private List<Transaction> readRows(PrimitiveIterator.OfInt rows, int size) {
+        List<Transaction> transactions = new ArrayList<>(size);
+        while (transactions.size() < size && rows.hasNext()) {
+            transactions.add(readRow(rows.nextInt()));
+        }
+        return transactions;
+    }
+
+    /**
+     * Rows of one prefix of the index that come after the cursor, or all of them without one.
+     */
+    private static PrimitiveIterator.OfInt tail(OffHeapRowIndex index, long prefix, TransactionCursor after) {
+        return after == null
+                ? index.ascending(OffHeapRowIndex.Key.first(prefix), true, OffHeapRowIndex.Key.last(prefix), 0)
+                : index.ascending(key(prefix, TimelineIndex.TimelineKey.of(after)), false, OffHeapRowIndex.Key.last(prefix), 0);
+    }
+
+    private static OffHeapRowIndex.Key key(long prefix, TimelineIndex.TimelineKey key) {
+        return new OffHeapRowIndex.Key(prefix, key.timestampMicros(),
+                key.id().getMostSignificantBits(), key.id().getLeastSignificantBits());
+    }
+
+    private boolean scanForDuplicate(Transaction transaction, long timeWindowSeconds) {
+        int account = dictionary.lookup(transaction.getAccountNumber());
+        int description = dictionary.lookup(transaction.getDescription());
+        if (account < StringDictionary.NULL_CODE || description < StringDictionary.NULL_CODE) {
+            // A value that is not in the dictionary cannot match any stored row
+            return false;
+        }
+
+        long amount = FixedPoint.toMinorUnits(transaction.getAmount());
+        byte type = ordinal(transaction.getType());
+        long timestamp = FixedPoint.toEpochMicros(transaction.getTimestamp());
+        long windowMicros = timeWindowSeconds * FixedPoint.MICROS_PER_SECOND;
+
+        for (int row = 0; row < rowLimit; row++) {
+            ColumnChunk chunk = chunk(row);
+            int slot = slot(row);
+            if (chunk.statuses.get(slot) == FREE
+                    || chunk.accounts.getInt(slot * Integer.BYTES) != account
+                    || chunk.descriptions.getInt(slot * Integer.BYTES) != description
+                    || chunk.types.get(slot) != type
+                    || chunk.amounts.getLong(slot * Long.BYTES) != amount
+                    || chunk.amountScales.get(slot) == Byte.MIN_VALUE
+                    || idAt(row).equals(transaction.getId())) {
+                continue;
+            }
+            if (timeWindowSeconds <= 0
+                    || Math.abs(timestamp - chunk.timestamps.getLong(slot * Long.BYTES)) <= windowMicros) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void releaseStrings(int row) {
+        ColumnChunk chunk = chunk(row);
+        int slot = slot(row);
+        dictionary.release(chunk.descriptions.getInt(slot * Integer.BYTES));
+        dictionary.release(chunk.accounts.getInt(slot * Integer.BYTES));
+    }
+
+    private void indexRow(int row) {
+        timeline.add(row);
+        accountTimelines.add(row);
+        statusTimelines.add(row);
+        addToBalance(accountAt(row), balanceEffectAt(row));
+    }
+
+    private void unindexRow(int row) {
+        timeline.remove(row);
+        accountTimelines.remove(row);
+        statusTimelines.remove(row);
+        addToBalance(accountAt(row), -balanceEffectAt(row));
+    }
+
+    private long balanceEffectAt(int row) {
+        ColumnChunk chunk = chunk(row);
+        int slot = slot(row);
+        if (chunk.amountScales.get(slot) == Byte.MIN_VALUE) {
+            return 0;
+        }
+        byte type = chunk.types.get(slot);
+        byte status = chunk.statuses.get(slot);
+        return AccountBalances.balanceEffect(
+                type >= 0 ? TransactionType.values()[type] : null,
+                status >= 0 ? TransactionStatus.values()[status] : null,
+                chunk.amounts.getLong(slot * Long.BYTES));
+    }
+
+    private void addToBalance(int account, long minorUnits) {
+        if (account == StringDictionary.NULL_CODE || minorUnits == 0) {
+            return;
+        }
+        if (account >= balances.capacity()) {
+            LongBuffer grown = allocateBalances(Math.max(balances.capacity() * 2, account + 1));
+            grown.put(0, balances, 0, balances.capacity());
+            balances = grown;
+        }
+        // A code is only reused once every row of its account is gone, which leaves its balance at zero
+        balances.put(account, balances.get(account) + minorUnits);
+    }
+
+    private static LongBuffer allocateBalances(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private OffHeapRowIndex.RowKeys rowKeys(IntToLongFunction prefix) {
+        return new OffHeapRowIndex.RowKeys() {
+            @Override
+            public long prefix(int row) {
+                return prefix.applyAsLong(row);
+            }
+
+            @Override
+            public long timestampMicros(int row) {
+                return chunk(row).timestamps.getLong(slot(row) * Long.BYTES);
+            }
+
+            @Override
+            public long idMost(int row) {
+                return chunk(row).ids.getLong(slot(row) * 2 * Long.BYTES);
+            }
+
+            @Override
+            public long idLeast(int row) {
+                return chunk(row).ids.getLong(slot(row) * 2 * Long.BYTES + Long.BYTES);
+            }
+        };
+    }
+
+    private int accountAt(int row) {
+        return chunk(row).accounts.getInt(slot(row) * Integer.BYTES);
+    }
+
+    private byte statusAt(int row) {
+        return chunk(row).statuses.get(slot(row));
+    }
+
+    private boolean isLive(int row) {
+        return chunk(row).statuses.get(slot(row)) != FREE;
+    }
+
+    private UUID idAt(int row) {
+        ColumnChunk chunk = chunk(row);
+        int slot = slot(row);
+        return new UUID(chunk.ids.getLong(slot * 2 * Long.BYTES), chunk.ids.getLong(slot * 2 * Long.BYTES + Long.BYTES));
+    }
+
+    private LocalDateTime timestampAt(int row) {
+        return FixedPoint.fromEpochMicros(chunk(row).timestamps.getLong(slot(row) * Long.BYTES));
+    }
+
+    private ColumnChunk chunk(int row) {
+        return chunks.get(row >>> CHUNK_BITS);
+    }
+
+    private static int slot(int row) {
+        return row & (CHUNK_ROWS - 1);
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value != null ? (byte) value.ordinal() : FREE - 1;
+    }
+
+    /**
+     * One column buffer per field for {@link #CHUNK_ROWS} rows.
+     */
+    private static final class ColumnChunk {
+
+        private final ByteBuffer ids = ByteBuffer.allocateDirect(CHUNK_ROWS * 2 * Long.BYTES);
+        private final ByteBuffer amounts = ByteBuffer.allocateDirect(CHUNK_ROWS * Long.BYTES);
+        private final ByteBuffer amountScales = ByteBuffer.allocateDirect(CHUNK_ROWS);
+        private final ByteBuffer timestamps = ByteBuffer.allocateDirect(CHUNK_ROWS * Long.BYTES);
+        private final ByteBuffer types = ByteBuffer.allocateDirect(CHUNK_ROWS);
+        private final ByteBuffer statuses = ByteBuffer.allocateDirect(CHUNK_ROWS);
+        private final ByteBuffer versions = ByteBuffer.allocateDirect(CHUNK_ROWS * Long.BYTES);
+        private final ByteBuffer descriptions = ByteBuffer.allocateDirect(CHUNK_ROWS * Integer.BYTES);
+        private final ByteBuffer accounts = ByteBuffer.allocateDirect(CHUNK_ROWS * Integer.BYTES);
+    }
+}
@@ -0,0 +1,189 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rotating bloom filter over the duplicate fingerprints of recent transactions, so that a
+ * duplicate check can skip the exact lookup when no transaction with the same fingerprint
+ * falls within the time window.
+ * <p>
+ * The filter is a ring of slices, each a bloom filter over the transactions whose timestamps
+ * fall into one slice of time. A transaction of a newer slice takes over the ring position of
+ * the oldest one and starts it afresh, so the filter never fills up and covers the last
+ * {@code slices} slice lengths. Fingerprints cannot be removed; a deleted or updated
+ * transaction only costs an exact lookup it did not need.
+ * <p>
+ * The filter knows nothing of transactions older than itself or than its oldest slice, so
+ * callers check {@link #covers(LocalDateTime, long)} first, like
+ * {@link DuplicateFingerprintIndex#covers}.
+ */
+final class RecentFingerprintFilter {
+    
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_COUNT = 7;
+    
+    private final long sliceMicros;
+    private final long wordsPerSlice;
+    private final AtomicReferenceArray<Slice> ring;
+    private final long trustedFromMicros;
+    
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    
+    /**
+     * @param expectedPerSlice Transactions per slice at which the false-positive rate is about 1%
+     * @param trustedFrom Time from which every written transaction is added to the filter
+     */
+    RecentFingerprintFilter(Duration sliceLength, int slices, int expectedPerSlice, LocalDateTime trustedFrom) {
+        this.sliceMicros = sliceLength.toNanos() / 1000;
+        this.wordsPerSlice = Math.max(1, ((long) Math.max(1, expectedPerSlice) * BITS_PER_ENTRY + 63) / 64);
+        this.ring = new AtomicReferenceArray<>(slices);
+        this.trustedFromMicros = FixedPoint.toEpochMicros(trustedFrom);
+    }
+    
+    void add(long fingerprint, LocalDateTime timestamp) {
+        long epoch = Math.floorDiv(FixedPoint.toEpochMicros(timestamp), sliceMicros);
+        int position = (int) Math.floorMod(epoch, ring.length());
+        while (true) {
+            Slice slice = ring.get(position);
+            if (slice != null && slice.epoch > epoch) {
+                // Rotated out; checks in that slice are not covered any more
+                return;
+            }
+            if (slice != null && slice.epoch == epoch) {
+                slice.add(fingerprint);
+                return;
+            }
+            ring.compareAndSet(position, slice, new Slice(epoch, wordsPerSlice));
+        }
+    }
+    
+    /**
+     * Returns whether every transaction that could fall into the time window around the
+     * timestamp has been added to the filter, i.e. whether {@link #mightContain} can be trusted.
+     */
+    boolean covers(LocalDateTime timestamp, long timeWindowSeconds) {
+        if (timeWindowSeconds <= 0) {
+            return false;
+        }
+        long windowMicros = timeWindowSeconds * FixedPoint.MICROS_PER_SECOND;
+        long fromMicros = FixedPoint.toEpochMicros(timestamp) - windowMicros;
+        if (fromMicros < trustedFromMicros) {
+            return false;
+        }
+        long firstEpoch = Math.floorDiv(fromMicros, sliceMicros);
+        long lastEpoch = Math.floorDiv(fromMicros + 2 * windowMicros, sliceMicros);
+        if (lastEpoch - firstEpoch >= ring.length()) {
+            return false;
+        }
+        for (long epoch = firstEpoch; epoch <= lastEpoch; epoch++) {
+            Slice slice = ring.get((int) Math.floorMod(epoch, ring.length()));
+            if (slice != null && slice.epoch > epoch) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns false only if no transaction with the fingerprint was added with a timestamp
+     * in the slices spanned by the time window, counting the check as skipped.
+     */
+    boolean mightContain(long fingerprint, LocalDateTime timestamp, long timeWindowSeconds) {
+        long windowMicros = timeWindowSeconds * FixedPoint.MICROS_PER_SECOND;
+        long fromMicros = FixedPoint.toEpochMicros(timestamp) - windowMicros;
+        long lastEpoch = Math.floorDiv(fromMicros + 2 * windowMicros, sliceMicros);
+        for (long epoch = Math.floorDiv(fromMicros, sliceMicros); epoch <= lastEpoch; epoch++) {
+            Slice slice = ring.get((int) Math.floorMod(epoch, ring.length()));
+            if (slice == null || slice.epoch < epoch) {
+                // Nothing has been added to that slice yet
+                continue;
+            }
+            // A slice rotated out since covers() was checked might have held the fingerprint
+            if (slice.epoch > epoch || slice.mightContain(fingerprint)) {
+                return true;
+            }
+        }
+        skipped.increment();
+        return false;
+    }
+    
+    /**
+     * Records that the exact check found no duplicate after {@link #mightContain} answered
+     * true.
+     */
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+    
+    long skippedCount() {
+        return skipped.sum();
+    }
+    
+    /**
+     * Share of the covered checks without a duplicate that the filter failed to rule out.
+     */
+    double falsePositiveRate() {
+        long falsePositiveCount = falsePositives.sum();
+        long negatives = falsePositiveCount + skipped.sum();
+        return negatives == 0 ? 0 : (double) falsePositiveCount / negatives;
+    }
+    
+    /**
+     * Bloom filter over the fingerprints of one slice of time. The probes are derived from
+     * two hashes of the fingerprint by double hashing, as in the table filters.
+     */
+    private static final class Slice {
+        
+        private final long epoch;
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        
+        private Slice(long epoch, long words) {
+            this.epoch = epoch;
+            this.bits = new AtomicLongArray((int) words);
+            this.bitCount = words * Long.SIZE;
+        }
+        
+        private void add(long fingerprint) {
+            long hash1 = mix(fingerprint);
+            // Odd, so that the probes of one fingerprint never collapse onto a single bit
+            long hash2 = mix(fingerprint + 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                long mask = 1L << bit;
+                bits.getAndUpdate((int) (bit >>> 6), word -> word | mask);
+            }
+        }
+        
+        private boolean mightContain(long fingerprint) {
+            long hash1 = mix(fingerprint);
+            long hash2 = mix(fingerprint + 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Finalization step of MurmurHash3, which spreads every input bit over the whole result.
+         */
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xFF51AFD7ED558CCDL;
+            value ^= value >>> 33;
+            value *= 0xC4CEB93FE1A85EC9L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}
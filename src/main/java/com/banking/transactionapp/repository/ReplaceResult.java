@@ -0,0 +1,19 @@
+package com.banking.transactionapp.repository;
+
+/**
+ * Outcome of {@link TransactionRepository#replace}.
+ */
+public enum ReplaceResult {
+    
+    /** The new version is stored. */
+    REPLACED,
+    
+    /** No transaction with the id is stored. */
+    NOT_FOUND,
+    
+    /** The stored version is no longer the expected one: another update got there first. */
+    VERSION_CONFLICT,
+    
+    /** The new version would duplicate another transaction within the time window. */
+    DUPLICATE
+}
@@ -0,0 +1,493 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.persistence.TransactionJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Transaction store partitioned by account number into independent in-memory shards.
+ * <p>
+ * Each shard is an {@link InMemoryTransactionRepository} with its own map and indexes,
+ * guarded by its own lock, so writes for accounts in different shards never contend.
+ * Duplicates always share an account number and therefore a shard, which makes
+ * {@link #saveIfNotDuplicate(Transaction, long)} atomic by holding only that shard's lock
+ * across the check and the insert. Lookups by id probe every shard, and ordered reads
+ * merge the shards' timelines.
+ * <p>
+ * Writes of the same transaction are serialized by a lock striped over its id, taken
+ * before the shard locks. Finding the shard that holds a transaction probes the shards one
+ * after another without their locks, which a concurrent move of the transaction could slip
+ * past; with the id's lock held no such move is in flight, so the answer is exact.
+ * <p>
+ * Active with the {@code sharded} profile. The number of shards is set by
+ * {@code banking.repository.shards} and defaults to the number of processors.
+ */
+@Repository
+@Profile("sharded")
+@Slf4j
+public class ShardedTransactionRepository implements TransactionRepository {
+    
+    // Transactions fetched from each shard at a time while merging ordered reads
+    private static final int MERGE_BATCH_SIZE = 256;
+    
+    private final InMemoryTransactionRepository[] shards;
+    
+    private final ReentrantLock[] shardLocks;
+    
+    // Serializes writes of one transaction, so the shard holding it cannot change underneath
+    private final StripedLocks idLocks = new StripedLocks(64);
+    
+    private final TransactionJournal journal;
+    
+    // Same role as in InMemoryTransactionRepository: lets a checkpoint rotate the journal
+    // while no change is between being journaled and being applied
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    
+    public ShardedTransactionRepository(int shardCount) {
+        this(shardCount, TransactionJournal.disabled());
+    }
+    
+    @Autowired
+    public ShardedTransactionRepository(
+            @Value("${banking.repository.shards:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int shardCount,
+            TransactionJournal journal) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        
+        this.shards = new InMemoryTransactionRepository[shardCount];
+        this.shardLocks = new ReentrantLock[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            // The shards keep no journal of their own; this repository journals for all of them
+            shards[shard] = new InMemoryTransactionRepository();
+            shardLocks[shard] = new ReentrantLock();
+        }
+        this.journal = journal;
+        recover();
+        log.info("Sharded transaction store ready with {} shards", shardCount);
+    }
+    
+    @Override
+    public Transaction save(Transaction transaction) {
+        ReentrantLock idLock = idLocks.forKey(transaction.getId());
+        checkpointLock.readLock().lock();
+        idLock.lock();
+        try {
+            int target = shardFor(transaction);
+            int previous = shardContaining(transaction.getId());
+            lockShards(target, previous);
+            try {
+                journal.recordSave(transaction);
+                apply(transaction, target, previous);
+            } finally {
+                unlockShards(target, previous);
+            }
+        } finally {
+            idLock.unlock();
+            checkpointLock.readLock().unlock();
+        }
+        return transaction;
+    }
+    
+    @Override
+    public Optional<Transaction> saveIfNotDuplicate(Transaction transaction, long timeWindowSeconds) {
+        ReentrantLock idLock = idLocks.forKey(transaction.getId());
+        checkpointLock.readLock().lock();
+        idLock.lock();
+        try {
+            int target = shardFor(transaction);
+            int previous = shardContaining(transaction.getId());
+            lockShards(target, previous);
+            try {
+                // Every insert into the target shard holds its lock, so nothing can slip in
+                // between the check and the save
+                if (shards[target].isDuplicateWithinTimeWindow(transaction, timeWindowSeconds)) {
+                    return Optional.empty();
+                }
+                journal.recordSave(transaction);
+                apply(transaction, target, previous);
+                return Optional.of(transaction);
+            } finally {
+                unlockShards(target, previous);
+            }
+        } finally {
+            idLock.unlock();
+            checkpointLock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Transaction> saveAll(List<Transaction> transactions, long timeWindowSeconds) {
+        List<ReentrantLock> batchIdLocks = idLocks.forKeys(transactions.stream().map(Transaction::getId).toList());
+        checkpointLock.readLock().lock();
+        batchIdLocks.forEach(ReentrantLock::lock);
+        try {
+            int[] targets = new int[transactions.size()];
+            int[] previous = new int[transactions.size()];
+            boolean[] involved = new boolean[shards.length];
+            for (int i = 0; i < transactions.size(); i++) {
+                targets[i] = shardFor(transactions.get(i));
+                previous[i] = shardContaining(transactions.get(i).getId());
+                involved[targets[i]] = true;
+                if (previous[i] >= 0) {
+                    involved[previous[i]] = true;
+                }
+            }
+            
+            // Hold every shard the batch touches, taken in shard order, so the whole batch
+            // is checked, journaled with one group commit and applied without interleaving
+            for (int shard = 0; shard < shards.length; shard++) {
+                if (involved[shard]) {
+                    shardLocks[shard].lock();
+                }
+            }
+            try {
+                List<Integer> accepted = new ArrayList<>(transactions.size());
+                Map<DuplicateFingerprintIndex.Fingerprint, List<Transaction>> acceptedByFingerprint = new HashMap<>();
+                for (int i = 0; i < transactions.size(); i++) {
+                    Transaction transaction = transactions.get(i);
+                    if (shards[targets[i]].isDuplicateWithinTimeWindow(transaction, timeWindowSeconds)) {
+                        continue;
+                    }
+                    List<Transaction> sameFingerprint = acceptedByFingerprint.computeIfAbsent(
+                            DuplicateFingerprintIndex.Fingerprint.of(transaction), key -> new ArrayList<>());
+                    if (sameFingerprint.stream().anyMatch(earlier -> !earlier.getId().equals(transaction.getId())
+                            && (timeWindowSeconds <= 0 || earlier.isPotentialDuplicate(transaction, timeWindowSeconds)))) {
+                        continue;
+                    }
+                    sameFingerprint.add(transaction);
+                    accepted.add(i);
+                }
+                
+                List<Transaction> saved = new ArrayList<>(accepted.size());
+                accepted.forEach(i -> saved.add(transactions.get(i)));
+                journal.recordSaves(saved);
+                accepted.forEach(i -> apply(transactions.get(i), targets[i], previous[i]));
+                return saved;
+            } finally {
+                for (int shard = shards.length - 1; shard >= 0; shard--) {
+                    if (involved[shard]) {
+                        shardLocks[shard].unlock();
+                    }
+                }
+            }
+        } finally {
+            batchIdLocks.forEach(ReentrantLock::unlock);
+            checkpointLock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public ReplaceResult replace(Transaction next, long expectedVersion, long timeWindowSeconds) {
+        ReentrantLock idLock = idLocks.forKey(next.getId());
+        checkpointLock.readLock().lock();
+        idLock.lock();
+        try {
+            int target = shardFor(next);
+            int previous = shardContaining(next.getId());
+            if (previous < 0) {
+                return ReplaceResult.NOT_FOUND;
+            }
+            lockShards(target, previous);
+            try {
+                // Holding the id's lock, the version cannot change between the check and the save
+                Transaction current = shards[previous].findById(next.getId()).orElseThrow();
+                if (current.getVersion() != expectedVersion) {
+                    return ReplaceResult.VERSION_CONFLICT;
+                }
+                if (shards[target].isDuplicateWithinTimeWindow(next, timeWindowSeconds)) {
+                    return ReplaceResult.DUPLICATE;
+                }
+                journal.recordSave(next);
+                apply(next, target, previous);
+                return ReplaceResult.REPLACED;
+            } finally {
+                unlockShards(target, previous);
+            }
+        } finally {
+            idLock.unlock();
+            checkpointLock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        for (InMemoryTransactionRepository shard : shards) {
+            Optional<Transaction> transaction = shard.findById(id);
+            if (transaction.isPresent()) {
+                return transaction;
+            }
+        }
+        return Optional.empty();
+    }
+    
+    @Override
+    public List<Transaction> findAll() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (InMemoryTransactionRepository shard : shards) {
+            transactions.addAll(shard.findAll());
+        }
+        return transactions;
+    }
+    
+    @Override
+    public List<Transaction> findAll(int page, int size) {
+        return merge(shard -> shard::findAllAfter, null, (long) page * size, size);
+    }
+    
+    @Override
+    public List<Transaction> findAllAfter(TransactionCursor after, int size) {
+        return merge(shard -> shard::findAllAfter, after, 0, size);
+    }
+    
+    @Override
+    public List<Transaction> findByTimestampBetween(LocalDateTime from, LocalDateTime to, TransactionCursor after, int size) {
+        return merge(shard -> (cursor, batchSize) -> shard.findByTimestampBetween(from, to, cursor, batchSize),
+                after, 0, size);
+    }
+    
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int size) {
+        // All of an account's transactions live in the shard its number hashes to
+        return shards[shardFor(accountNumber)].findByAccountNumber(accountNumber, after, size);
+    }
+    
+    @Override
+    public List<Transaction> findByStatus(TransactionStatus status, TransactionCursor after, int size) {
+        return merge(shard -> (cursor, batchSize) -> shard.findByStatus(status, cursor, batchSize), after, 0, size);
+    }
+    
+    @Override
+    public List<Transaction> findOldestByStatus(TransactionStatus status, int size) {
+        // The oldest overall are among the oldest of each shard
+        List<Transaction> oldest = new ArrayList<>();
+        for (InMemoryTransactionRepository shard : shards) {
+            oldest.addAll(shard.findOldestByStatus(status, size));
+        }
+        oldest.sort(Comparator.comparing(TimelineIndex.TimelineKey::of, Comparator.reverseOrder()));
+        return oldest.size() > size ? new ArrayList<>(oldest.subList(0, size)) : oldest;
+    }
+    
+    @Override
+    public BigDecimal getBalance(String accountNumber) {
+        return shards[shardFor(accountNumber)].getBalance(accountNumber);
+    }
+    
+    @Override
+    public long count() {
+        long count = 0;
+        for (InMemoryTransactionRepository shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+    
+    @Override
+    public Optional<Transaction> deleteById(UUID id) {
+        ReentrantLock idLock = idLocks.forKey(id);
+        checkpointLock.readLock().lock();
+        idLock.lock();
+        try {
+            int shard = shardContaining(id);
+            lockShards(shard, -1);
+            try {
+                journal.recordDelete(id);
+                return shard >= 0 ? shards[shard].deleteById(id) : Optional.empty();
+            } finally {
+                unlockShards(shard, -1);
+            }
+        } finally {
+            idLock.unlock();
+            checkpointLock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean existsById(UUID id) {
+        return shardContaining(id) >= 0;
+    }
+    
+    @Override
+    public boolean isDuplicate(Transaction transaction) {
+        return isDuplicateWithinTimeWindow(transaction, 0);
+    }
+    
+    @Override
+    public boolean isDuplicateWithinTimeWindow(Transaction transaction, long timeWindowSeconds) {
+        // Duplicates share the account number, so only the transaction's own shard can hold one
+        return shards[shardFor(transaction)].isDuplicateWithinTimeWindow(transaction, timeWindowSeconds);
+    }
+    
+    int shardFor(Transaction transaction) {
+        return shardFor(transaction.getAccountNumber());
+    }
+    
+    int shardFor(String accountNumber) {
+        if (accountNumber == null) {
+            return 0;
+        }
+        int hash = accountNumber.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+    
+    private int shardContaining(UUID id) {
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (shards[shard].existsById(id)) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+    
+    private void apply(Transaction transaction, int target, int previous) {
+        // An update that changes the account number moves the transaction to another shard
+        if (previous >= 0 && previous != target) {
+            shards[previous].deleteById(transaction.getId());
+        }
+        shards[target].save(transaction);
+    }
+    
+    // Locks are always taken in shard order so that moves between shards cannot deadlock
+    private void lockShards(int first, int second) {
+        int lower = Math.min(first, second);
+        int higher = Math.max(first, second);
+        if (lower >= 0 && lower != higher) {
+            shardLocks[lower].lock();
+        }
+        if (higher >= 0) {
+            shardLocks[higher].lock();
+        }
+    }
+    
+    private void unlockShards(int first, int second) {
+        int lower = Math.min(first, second);
+        int higher = Math.max(first, second);
+        if (higher >= 0) {
+            shardLocks[higher].unlock();
+        }
+        if (lower >= 0 && lower != higher) {
+            shardLocks[lower].unlock();
+        }
+    }
+    
+    /**
+     * Merges the newest-first pages that {@code source} reads from each shard, skipping the
+     * first {@code skip} transactions after the cursor and returning up to {@code size} of the rest.
+     */
+    private List<Transaction> merge(Function<InMemoryTransactionRepository, TransactionPageIterator.PageSource> source,
+                                    TransactionCursor after, long skip, int size) {
+        int batchSize = (int) Math.max(1, Math.min(skip + size, MERGE_BATCH_SIZE));
+        PriorityQueue<ShardReader> readers = new PriorityQueue<>(Comparator.comparing(ShardReader::headKey));
+        for (InMemoryTransactionRepository shard : shards) {
+            ShardReader reader = new ShardReader(source.apply(shard), after, batchSize);
+            if (reader.advance()) {
+                readers.add(reader);
+            }
+        }
+        
+        List<Transaction> transactions = new ArrayList<>(size);
+        while (transactions.size() < size && !readers.isEmpty()) {
+            ShardReader reader = readers.poll();
+            if (skip > 0) {
+                skip--;
+            } else {
+                transactions.add(reader.head);
+            }
+            if (reader.advance()) {
+                readers.add(reader);
+            }
+        }
+        return transactions;
+    }
+    
+    private void recover() {
+        journal.replay(new TransactionJournal.Replayer() {
+            @Override
+            public void save(Transaction transaction) {
+                apply(transaction, shardFor(transaction), shardContaining(transaction.getId()));
+            }
+            
+            @Override
+            public void delete(UUID id) {
+                int shard = shardContaining(id);
+                if (shard >= 0) {
+                    shards[shard].deleteById(id);
+                }
+            }
+        });
+        
+        long count = count();
+        if (count > 0) {
+            log.info("Recovered {} transactions from the journal", count);
+        }
+    }
+    
+    /**
+     * Periodically snapshots every shard so the journal only has to keep the changes made since.
+     */
+    @Scheduled(fixedDelayString = "${banking.persistence.snapshot-interval-ms:300000}")
+    public synchronized void checkpoint() {
+        TransactionJournal.Checkpoint checkpoint;
+        checkpointLock.writeLock().lock();
+        try {
+            checkpoint = journal.startCheckpoint();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        checkpoint.complete(Arrays.stream(shards)
+                .flatMap(shard -> shard.findAll().stream())
+                .iterator());
+    }
+    
+    /**
+     * Periodically drops fingerprints that have aged out of every duplicate window.
+     */
+    @Scheduled(fixedDelayString = "${banking.duplicate-detection.purge-interval-ms:5000}")
+    public void purgeExpiredFingerprints() {
+        for (InMemoryTransactionRepository shard : shards) {
+            shard.purgeExpiredFingerprints();
+        }
+    }
+    
+    /**
+     * Reads one shard's timeline in batches, exposing the next transaction to the merge.
+     */
+    private static final class ShardReader {
+        
+        private final Iterator<Transaction> transactions;
+        private Transaction head;
+        private TimelineIndex.TimelineKey headKey;
+        
+        ShardReader(TransactionPageIterator.PageSource source, TransactionCursor after, int batchSize) {
+            this.transactions = new TransactionPageIterator(source, after, batchSize);
+        }
+        
+        TimelineIndex.TimelineKey headKey() {
+            return headKey;
+        }
+        
+        boolean advance() {
+            if (!transactions.hasNext()) {
+                return false;
+            }
+            head = transactions.next();
+            headKey = TimelineIndex.TimelineKey.of(head);
+            return true;
+        }
+    }
+}
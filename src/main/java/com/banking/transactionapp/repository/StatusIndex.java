@@ -0,0 +1,62 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index from status to the transactions in that status, newest first.
+ * <p>
+ * Each status has its own {@link TimelineIndex}, so a worker looking for pending work reads
+ * the oldest pending transactions directly, in O(batch), instead of scanning the store. The
+ * index remembers the status each transaction was filed under, so a status change moves the
+ * transaction from one timeline to the other.
+ */
+class StatusIndex {
+    
+    // Filled once in the constructor and only read afterwards
+    private final Map<TransactionStatus, TimelineIndex> timelines = new EnumMap<>(TransactionStatus.class);
+    
+    private final Map<UUID, TransactionStatus> statusesById = new ConcurrentHashMap<>();
+    
+    StatusIndex() {
+        for (TransactionStatus status : TransactionStatus.values()) {
+            timelines.put(status, new TimelineIndex());
+        }
+    }
+    
+    void put(Transaction transaction) {
+        TransactionStatus status = transaction.getStatus();
+        // compute() serializes concurrent writers for the same id
+        statusesById.compute(transaction.getId(), (id, previous) -> {
+            if (previous != null && previous != status) {
+                timelines.get(previous).remove(id);
+            }
+            if (status == null) {
+                return null;
+            }
+            timelines.get(status).put(transaction);
+            return status;
+        });
+    }
+    
+    void remove(UUID id) {
+        statusesById.computeIfPresent(id, (key, status) -> {
+            timelines.get(status).remove(id);
+            return null;
+        });
+    }
+    
+    List<Transaction> after(TransactionStatus status, TimelineIndex.TimelineKey after, int size) {
+        return status == null ? List.of() : timelines.get(status).after(after, size);
+    }
+    
+    List<Transaction> oldest(TransactionStatus status, int size) {
+        return status == null ? List.of() : timelines.get(status).oldest(size);
+    }
+}
@@ -0,0 +1,83 @@
+package com.banking.transactionapp.repository;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference-counted dictionary that encodes repeated strings as int codes.
+ * <p>
+ * Account numbers and merchant descriptions repeat across many transactions, so storing
+ * each distinct value once and referring to it by code keeps string columns fixed-width.
+ * Codes of values that are no longer referenced are reused. Not thread-safe; callers
+ * synchronize access.
+ */
+class StringDictionary {
+
+    static final int NULL_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final Deque<Integer> freeCodes = new ArrayDeque<>();
+    private int[] referenceCounts = new int[16];
+
+    /**
+     * Returns the code for the value and counts one more reference to it.
+     */
+    int acquire(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = freeCodes.isEmpty() ? values.size() : freeCodes.pop();
+            if (code == values.size()) {
+                values.add(value);
+            } else {
+                values.set(code, value);
+            }
+            codes.put(value, code);
+            if (code >= referenceCounts.length) {
+                referenceCounts = Arrays.copyOf(referenceCounts, referenceCounts.length * 2);
+            }
+        }
+        referenceCounts[code]++;
+        return code;
+    }
+
+    void release(int code) {
+        if (code == NULL_CODE) {
+            return;
+        }
+        if (--referenceCounts[code] == 0) {
+            codes.remove(values.get(code));
+            values.set(code, null);
+            freeCodes.push(code);
+        }
+    }
+
+    /**
+     * Returns the code of the value without adding a reference, or {@link #NULL_CODE}
+     * minus one if the value is not in the dictionary.
+     */
+    int lookup(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : NULL_CODE - 1;
+    }
+
+    String get(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    int size() {
+        return codes.size();
+    }
+}
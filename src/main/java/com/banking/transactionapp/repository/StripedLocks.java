@@ -0,0 +1,50 @@
+package com.banking.transactionapp.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks picked by the hash of a key, so writers of the same key are
+ * serialized without keeping a lock per key. Writers of different keys only wait for each
+ * other when their keys share a stripe.
+ */
+final class StripedLocks {
+    
+    private final ReentrantLock[] locks;
+    
+    StripedLocks(int stripes) {
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    ReentrantLock forKey(Object key) {
+        return locks[stripe(key)];
+    }
+    
+    /**
+     * The locks of all the keys, each listed once and always in the same order, so writers
+     * that take several of them in this order cannot deadlock.
+     */
+    List<ReentrantLock> forKeys(Collection<?> keys) {
+        boolean[] needed = new boolean[locks.length];
+        for (Object key : keys) {
+            needed[stripe(key)] = true;
+        }
+        List<ReentrantLock> ordered = new ArrayList<>();
+        for (int i = 0; i < locks.length; i++) {
+            if (needed[i]) {
+                ordered.add(locks[i]);
+            }
+        }
+        return ordered;
+    }
+    
+    private int stripe(Object key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), locks.length);
+    }
+}
@@ -0,0 +1,158 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Concurrent index of transactions ordered by timestamp, newest first.
+ * <p>
+ * Keys combine the timestamp with the transaction id so that transactions created
+ * at the same instant keep a stable order. Reading a page walks the skip list from
+ * the head, so it costs O(offset + size) and never copies or sorts the whole store.
+ */
+class TimelineIndex {
+
+    private final ConcurrentNavigableMap<TimelineKey, Transaction> timeline = new ConcurrentSkipListMap<>();
+
+    // Current key of each transaction, so the old entry can be found when the timestamp changes
+    private final Map<UUID, TimelineKey> keysById = new ConcurrentHashMap<>();
+
+    void put(Transaction transaction) {
+        TimelineKey key = TimelineKey.of(transaction);
+        // compute() serializes concurrent writers for the same id
+        keysById.compute(transaction.getId(), (id, previous) -> {
+            if (previous != null && !previous.equals(key)) {
+                timeline.remove(previous);
+            }
+            timeline.put(key, transaction);
+            return key;
+        });
+    }
+
+    void remove(UUID id) {
+        keysById.computeIfPresent(id, (key, previous) -> {
+            timeline.remove(previous);
+            return null;
+        });
+    }
+
+    boolean isEmpty() {
+        return keysById.isEmpty();
+    }
+
+    List<Transaction> page(long offset, int size) {
+        List<Transaction> page = new ArrayList<>(size);
+        Iterator<Transaction> iterator = timeline.values().iterator();
+
+        for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (page.size() < size && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    List<Transaction> after(TimelineKey after, int size) {
+        ConcurrentNavigableMap<TimelineKey, Transaction> tail =
+                after == null ? timeline : timeline.tailMap(after, false);
+
+        List<Transaction> page = new ArrayList<>(size);
+        Iterator<Transaction> iterator = tail.values().iterator();
+        while (page.size() < size && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * Returns up to {@code size} transactions with {@code fromMicros <= timestamp < toMicros}
+     * that follow the cursor. The walk starts with a seek, so it costs O(log n + size).
+     */
+    List<Transaction> between(long fromMicros, long toMicros, TimelineKey after, int size) {
+        List<Transaction> page = new ArrayList<>(size);
+        Iterator<Transaction> iterator = range(timeline, fromMicros, toMicros, after).values().iterator();
+        while (page.size() < size && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * Returns up to {@code limit} transactions older than {@code cutoffMicros}, oldest first.
+     */
+    List<Transaction> olderThan(long cutoffMicros, int limit) {
+        List<Transaction> aged = new ArrayList<>(Math.min(limit, keysById.size()));
+        Iterator<Transaction> iterator = timeline.tailMap(new TimelineKey(cutoffMicros, TimelineKey.LOWEST_ID), false)
+                .descendingMap().values().iterator();
+        while (aged.size() < limit && iterator.hasNext()) {
+            aged.add(iterator.next());
+        }
+        return aged;
+    }
+
+    /**
+     * Returns up to {@code limit} of the oldest transactions, oldest first.
+     */
+    List<Transaction> oldest(int limit) {
+        List<Transaction> oldest = new ArrayList<>(Math.min(limit, keysById.size()));
+        Iterator<Transaction> iterator = timeline.descendingMap().values().iterator();
+        while (oldest.size() < limit && iterator.hasNext()) {
+            oldest.add(iterator.next());
+        }
+        return oldest;
+    }
+
+    /**
+     * Narrows a newest-first timeline to the keys with {@code fromMicros <= timestamp < toMicros}
+     * that come after the cursor, as a view without copying.
+     */
+    static <V> NavigableMap<TimelineKey, V> range(NavigableMap<TimelineKey, V> timeline,
+                                                 long fromMicros, long toMicros, TimelineKey after) {
+        // The lowest id sorts last within a timestamp, so these keys bound whole instants
+        TimelineKey start = new TimelineKey(toMicros, TimelineKey.LOWEST_ID);
+        TimelineKey end = new TimelineKey(fromMicros, TimelineKey.LOWEST_ID);
+        if (after != null && after.compareTo(start) > 0) {
+            start = after;
+        }
+        if (fromMicros >= toMicros || start.compareTo(end) >= 0) {
+            return Collections.emptyNavigableMap();
+        }
+        return timeline.subMap(start, false, end, true);
+    }
+
+    /**
+     * Position of a transaction in the timeline: newest timestamp first, ties broken by id.
+     * Timestamps are epoch microseconds, so comparing keys never allocates.
+     */
+    record TimelineKey(long timestampMicros, UUID id) implements Comparable<TimelineKey> {
+
+        static final UUID LOWEST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        static TimelineKey of(Transaction transaction) {
+            return new TimelineKey(FixedPoint.toEpochMicros(transaction.getTimestamp()), transaction.getId());
+        }
+
+        static TimelineKey of(TransactionCursor cursor) {
+            return new TimelineKey(cursor.timestampMicros(), cursor.id());
+        }
+
+        @Override
+        public int compareTo(TimelineKey other) {
+            int byTimestamp = Long.compare(other.timestampMicros, timestampMicros);
+            return byTimestamp != 0 ? byTimestamp : other.id.compareTo(id);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a repository in newest-first order by fetching one page at a time through
+ * a cursor query such as {@link TransactionRepository#findAllAfter(TransactionCursor, int)},
+ * so only a single page is held in memory however large the store is.
+ */
+final class TransactionPageIterator implements Iterator<Transaction> {
+    
+    static final int DEFAULT_PAGE_SIZE = 512;
+    
+    private final PageSource source;
+    private final int pageSize;
+    private TransactionCursor cursor;
+    private List<Transaction> page = List.of();
+    private int position;
+    private boolean lastPage;
+    
+    TransactionPageIterator(PageSource source, TransactionCursor after, int pageSize) {
+        this.source = source;
+        this.cursor = after;
+        this.pageSize = pageSize;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (position < page.size()) {
+            return true;
+        }
+        if (lastPage) {
+            return false;
+        }
+        
+        page = source.fetch(cursor, pageSize);
+        position = 0;
+        lastPage = page.size() < pageSize;
+        if (!page.isEmpty()) {
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        return !page.isEmpty();
+    }
+    
+    @Override
+    public Transaction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(position++);
+    }
+    
+    /**
+     * Fetches the next page of transactions following a cursor.
+     */
+    @FunctionalInterface
+    interface PageSource {
+        
+        List<Transaction> fetch(TransactionCursor after, int size);
+    }
+}
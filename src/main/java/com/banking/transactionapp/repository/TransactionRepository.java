@@ -1,10 +1,19 @@
 package com.banking.transactionapp.repository;
 
 import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface TransactionRepository {
     
@@ -16,9 +25,89 @@ public interface TransactionRepository {
     
     List<Transaction> findAll(int page, int size);
     
+    /**
+     * Returns the next transactions in newest-first order after the given cursor.
+     * 
+     * @param after The position of the last transaction already seen, or null to start from the newest
+     * @param size The maximum number of transactions to return
+     * @return up to {@code size} transactions following the cursor
+     */
+    List<Transaction> findAllAfter(TransactionCursor after, int size);
+    
+    /**
+     * Returns the next transactions in newest-first order after the given cursor whose
+     * timestamp falls within the range.
+     * 
+     * @param from The start of the range, inclusive
+     * @param to The end of the range, exclusive
+     * @param after The position of the last transaction already seen, or null to start from the newest
+     * @param size The maximum number of transactions to return
+     * @return up to {@code size} transactions in the range following the cursor
+     */
+    List<Transaction> findByTimestampBetween(LocalDateTime from, LocalDateTime to, TransactionCursor after, int size);
+    
+    /**
+     * Returns the next transactions of one account in newest-first order after the given cursor.
+     * 
+     * @param accountNumber The account whose transactions to return
+     * @param after The position of the last transaction already seen, or null to start from the newest
+     * @param size The maximum number of transactions to return
+     * @return up to {@code size} of the account's transactions following the cursor
+     */
+    List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int size);
+    
+    /**
+     * Returns the next transactions in one status in newest-first order after the given cursor.
+     * 
+     * @param status The status whose transactions to return
+     * @param after The position of the last transaction already seen, or null to start from the newest
+     * @param size The maximum number of transactions to return
+     * @return up to {@code size} of the transactions in that status following the cursor
+     */
+    List<Transaction> findByStatus(TransactionStatus status, TransactionCursor after, int size);
+    
+    /**
+     * Returns the oldest transactions in one status, oldest first, so work waiting in that
+     * status is picked up in arrival order. The status is indexed, so this costs O(size)
+     * rather than a scan of the store.
+     * 
+     * @param status The status whose transactions to return
+     * @param size The maximum number of transactions to return
+     * @return up to {@code size} of the oldest transactions in that status
+     */
+    List<Transaction> findOldestByStatus(TransactionStatus status, int size);
+    
+    /**
+     * Returns the balance of an account: completed deposits and credits minus completed
+     * withdrawals and debits. The balance is maintained as transactions change, so this
+     * never scans the account's transactions.
+     * 
+     * @param accountNumber The account whose balance to return
+     * @return the balance, zero for an account without completed transactions
+     */
+    BigDecimal getBalance(String accountNumber);
+    
+    /**
+     * Streams every transaction in newest-first order. Transactions are fetched a page at a
+     * time, so memory use does not grow with the size of the store.
+     */
+    default Stream<Transaction> streamAll() {
+        Iterator<Transaction> transactions = new TransactionPageIterator(this::findAllAfter, null, TransactionPageIterator.DEFAULT_PAGE_SIZE);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(transactions, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    
     long count();
     
-    void deleteById(UUID id);
+    /**
+     * Deletes a transaction as one atomic step: of two concurrent deletes of the same id, only
+     * one gets the transaction back, and it is the version that was actually removed, so a
+     * replacement racing the delete is either removed with it or not applied at all.
+     * 
+     * @param id The id of the transaction to delete
+     * @return the deleted transaction, or empty if none was stored under the id
+     */
+    Optional<Transaction> deleteById(UUID id);
     
     boolean existsById(UUID id);
     
@@ -32,4 +121,39 @@ public interface TransactionRepository {
      * @return true if a duplicate exists, false otherwise
      */
     boolean isDuplicateWithinTimeWindow(Transaction transaction, long timeWindowSeconds);
+    
+    /**
+     * Saves the transaction unless it is a duplicate within the time window, as one atomic
+     * step: of two identical concurrent calls, at most one saves.
+     * 
+     * @param transaction The transaction to save
+     * @param timeWindowSeconds The time window in seconds (0 or negative for exact match)
+     * @return the saved transaction, or empty if a duplicate exists
+     */
+    Optional<Transaction> saveIfNotDuplicate(Transaction transaction, long timeWindowSeconds);
+    
+    /**
+     * Replaces a stored transaction with its next version, as one atomic step, if the stored
+     * version is still the one the update was computed from and the new version is not a
+     * duplicate within the time window. Of two concurrent replacements of the same version,
+     * at most one succeeds; the other sees {@link ReplaceResult#VERSION_CONFLICT} and can
+     * re-read and retry.
+     * 
+     * @param next The new version of the transaction
+     * @param expectedVersion The version the new one was computed from
+     * @param timeWindowSeconds The time window in seconds (0 or negative for exact match)
+     * @return whether the new version was stored, and why not if it was not
+     */
+    ReplaceResult replace(Transaction next, long expectedVersion, long timeWindowSeconds);
+    
+    /**
+     * Saves every transaction of the batch that is not a duplicate within the time window,
+     * with the same atomicity as {@link #saveIfNotDuplicate(Transaction, long)}. A transaction
+     * that duplicates an earlier one in the same batch is not saved either.
+     * 
+     * @param transactions The transactions to save
+     * @param timeWindowSeconds The time window in seconds (0 or negative for exact match)
+     * @return the transactions that were saved, in batch order
+     */
+    List<Transaction> saveAll(List<Transaction> transactions, long timeWindowSeconds);
 }
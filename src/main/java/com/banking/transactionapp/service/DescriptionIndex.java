@@ -0,0 +1,255 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.persistence.TransactionArchive;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from the words of transaction descriptions to the transactions whose
+ * description contains them.
+ * <p>
+ * Each word has a posting list of transaction positions kept in listing order, newest first,
+ * so a search walks the shortest posting list of its words from the cursor and checks the
+ * others by lookup, and a page costs O(size log n) when the words occur together, instead of
+ * matching every description in the store. The service records every create, update and
+ * delete here as it happens.
+ * <p>
+ * The index lives on the heap, so it only covers transactions younger than a maximum age:
+ * {@code banking.search.max-age}, or with tiering the archive's maximum age, so that it
+ * holds the hot tier and cold history stays out of the heap. Transactions that age out are
+ * dropped in the background. Without either setting every transaction is indexed.
+ */
+@Component
+@Slf4j
+public class DescriptionIndex {
+    
+    // Words are runs of letters and digits; everything else separates them
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    
+    private final Map<String, PostingList> postings = new ConcurrentHashMap<>();
+    
+    // Position and words each transaction is filed under, so a change can unfile it
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    
+    // Age after which transactions are not indexed, or null to index all of them
+    private final Duration maxAge;
+    
+    public DescriptionIndex() {
+        this((Duration) null);
+    }
+    
+    public DescriptionIndex(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+    
+    @Autowired
+    public DescriptionIndex(@Value("${banking.search.max-age:#{null}}") Duration maxAge, TransactionArchive archive) {
+        this(maxAge != null ? maxAge : archive.isEnabled() ? archive.maxAge() : null);
+        if (this.maxAge != null) {
+            log.info("Indexing the descriptions of transactions younger than {}", this.maxAge);
+        }
+    }
+    
+    /**
+     * Splits text into its distinct lower-case words, in order of first occurrence.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+    
+    /**
+     * Files a new transaction, or refiles a changed one under its current description.
+     */
+    public void put(Transaction transaction) {
+        if (maxAge != null && transaction.getTimestamp().isBefore(LocalDateTime.now().minus(maxAge))) {
+            // Aged out; an earlier version may still be filed
+            remove(transaction.getId());
+            return;
+        }
+        Entry entry = new Entry(TransactionCursor.of(transaction), tokenize(transaction.getDescription()),
+                transaction.getVersion());
+        // compute() serializes concurrent writers for the same id
+        entries.compute(transaction.getId(), (id, previous) -> {
+            if (previous != null) {
+                // Writers of two versions may arrive out of order
+                if (previous.version() > entry.version()) {
+                    return previous;
+                }
+                if (previous.position().equals(entry.position()) && previous.words().equals(entry.words())) {
+                    return entry;
+                }
+                unfile(previous);
+            }
+            entry.words().forEach(word -> postings.compute(word, (key, list) -> {
+                PostingList filed = list != null ? list : new PostingList();
+                filed.add(entry.position());
+                return filed;
+            }));
+            return entry;
+        });
+    }
+    
+    public void remove(UUID id) {
+        entries.computeIfPresent(id, (key, previous) -> {
+            unfile(previous);
+            return null;
+        });
+    }
+    
+    /**
+     * Returns the ids of the next transactions, newest first after the cursor, whose
+     * description contains every one of the words.
+     *
+     * @param words Words as produced by {@link #tokenize(String)}; no words match nothing
+     * @param after The position of the last transaction already seen, or null to start from the newest
+     * @param size The maximum number of ids to return
+     */
+    public List<UUID> search(Set<String> words, TransactionCursor after, int size) {
+        return searchPositions(words, after, size).stream().map(TransactionCursor::id).toList();
+    }
+    
+    /**
+     * Same as {@link #search(Set, TransactionCursor, int)}, but returns the positions the
+     * transactions are filed at, so a caller that drops some of them can read on after the last.
+     */
+    public List<TransactionCursor> searchPositions(Set<String> words, TransactionCursor after, int size) {
+        List<PostingList> others = new ArrayList<>(words.size());
+        PostingList shortestList = null;
+        for (String word : words) {
+            PostingList list = postings.get(word);
+            if (list == null) {
+                return List.of();
+            }
+            if (shortestList == null || list.size() < shortestList.size()) {
+                if (shortestList != null) {
+                    others.add(shortestList);
+                }
+                shortestList = list;
+            } else {
+                others.add(list);
+            }
+        }
+        if (shortestList == null) {
+            return List.of();
+        }
+        
+        NavigableSet<TransactionCursor> shortest = shortestList.positions;
+        Iterator<TransactionCursor> candidates =
+                (after == null ? shortest : shortest.tailSet(after, false)).iterator();
+        List<TransactionCursor> matches = new ArrayList<>(size);
+        while (matches.size() < size && candidates.hasNext()) {
+            TransactionCursor candidate = candidates.next();
+            if (others.stream().allMatch(list -> list.positions.contains(candidate))) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    @Scheduled(fixedDelayString = "${banking.search.purge-interval-ms:60000}")
+    public void purgeAged() {
+        if (maxAge != null) {
+            purgeOlderThan(LocalDateTime.now().minus(maxAge));
+        }
+    }
+    
+    /**
+     * Unfiles the transactions older than the cutoff. Posting lists are newest first, so only
+     * their aged tails are read.
+     */
+    void purgeOlderThan(LocalDateTime cutoff) {
+        long cutoffMicros = FixedPoint.toEpochMicros(cutoff);
+        Set<UUID> aged = new HashSet<>();
+        for (PostingList list : postings.values()) {
+            Iterator<TransactionCursor> oldestFirst = list.positions.descendingIterator();
+            while (oldestFirst.hasNext()) {
+                TransactionCursor position = oldestFirst.next();
+                if (position.timestampMicros() >= cutoffMicros) {
+                    break;
+                }
+                aged.add(position.id());
+            }
+        }
+        for (UUID id : aged) {
+            entries.computeIfPresent(id, (key, entry) -> {
+                // Refiled under a newer position since it was read
+                if (entry.position().timestampMicros() >= cutoffMicros) {
+                    return entry;
+                }
+                unfile(entry);
+                return null;
+            });
+        }
+    }
+    
+    private void unfile(Entry entry) {
+        entry.words().forEach(word -> postings.computeIfPresent(word, (key, list) -> {
+            list.remove(entry.position());
+            return list.size() == 0 ? null : list;
+        }));
+    }
+    
+    private record Entry(TransactionCursor position, Set<String> words, long version) {
+    }
+    
+    /**
+     * Positions of the transactions containing one word. Only changed inside compute() on
+     * the word, so the count stays exact without counting the skip list, which is O(n).
+     */
+    private static final class PostingList {
+        
+        private final NavigableSet<TransactionCursor> positions = new ConcurrentSkipListSet<>();
+        private volatile int size;
+        
+        private void add(TransactionCursor position) {
+            if (positions.add(position)) {
+                size++;
+            }
+        }
+        
+        private void remove(TransactionCursor position) {
+            if (positions.remove(position)) {
+                size--;
+            }
+        }
+        
+        private int size() {
+            return size;
+        }
+    }
+}
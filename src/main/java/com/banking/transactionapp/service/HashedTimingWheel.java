@@ -0,0 +1,142 @@
+package com.banking.transactionapp.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel: a ring of buckets, one per tick, that each timeout is hashed into by
+ * its deadline tick. Scheduling and cancelling a timeout cost O(1), and a tick only visits
+ * its own bucket, so expiring a timeout costs O(1) no matter how many others are waiting.
+ * A timeout more than one turn of the wheel away stays in its bucket and counts down the
+ * remaining turns. Deadlines are rounded up to whole ticks.
+ * <p>
+ * Any thread may schedule or cancel. Only {@link #advance(long)} touches the buckets: new
+ * timeouts reach them through a queue, and cancelled ones are only flagged and dropped when
+ * their bucket comes round.
+ *
+ * @param <K> Key of a timeout; scheduling a key again replaces its timeout
+ * @param <V> Value handed back when the timeout expires
+ */
+final class HashedTimingWheel<K, V> {
+    
+    private final long tickMillis;
+    private final long startMillis;
+    private final int mask;
+    private final List<List<Timeout<K, V>>> buckets;
+    
+    private final Map<K, Timeout<K, V>> timeouts = new ConcurrentHashMap<>();
+    private final Queue<Timeout<K, V>> scheduled = new ConcurrentLinkedQueue<>();
+    
+    // Next tick to process, guarded by advance()
+    private long tick;
+    
+    /**
+     * @param wheelSize Number of buckets, rounded up to a power of two
+     * @param startMillis Time of tick 0
+     */
+    HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+    
+    void schedule(K key, V value, long deadlineMillis) {
+        Timeout<K, V> timeout = new Timeout<>(key, value, deadlineMillis);
+        Timeout<K, V> previous = timeouts.put(key, timeout);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        scheduled.add(timeout);
+    }
+    
+    /**
+     * @return whether a timeout was pending for the key
+     */
+    boolean cancel(K key) {
+        Timeout<K, V> previous = timeouts.remove(key);
+        if (previous == null) {
+            return false;
+        }
+        previous.cancelled = true;
+        return true;
+    }
+    
+    int size() {
+        return timeouts.size();
+    }
+    
+    /**
+     * Processes every tick that has passed by the given time.
+     *
+     * @return the timeouts that expired, in deadline order up to tick granularity
+     */
+    synchronized List<Expiry<K, V>> advance(long nowMillis) {
+        Timeout<K, V> timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (!timeout.cancelled) {
+                place(timeout);
+            }
+        }
+        
+        List<Expiry<K, V>> expired = new ArrayList<>();
+        long lastTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        for (; tick <= lastTick; tick++) {
+            Iterator<Timeout<K, V>> bucket = buckets.get((int) (tick & mask)).iterator();
+            while (bucket.hasNext()) {
+                timeout = bucket.next();
+                if (timeout.cancelled) {
+                    bucket.remove();
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                } else {
+                    bucket.remove();
+                    // Loses to a cancel or reschedule that got in first
+                    if (timeouts.remove(timeout.key, timeout)) {
+                        expired.add(new Expiry<>(timeout.key, timeout.value));
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+    
+    private void place(Timeout<K, V> timeout) {
+        // Deadlines already passed expire on the next tick processed
+        long deadlineTick = Math.max(tick,
+                Math.floorDiv(timeout.deadlineMillis - startMillis + tickMillis - 1, tickMillis));
+        timeout.rounds = (deadlineTick - tick) / buckets.size();
+        buckets.get((int) (deadlineTick & mask)).add(timeout);
+    }
+    
+    record Expiry<K, V>(K key, V value) {
+    }
+    
+    private static final class Timeout<K, V> {
+        
+        private final K key;
+        private final V value;
+        private final long deadlineMillis;
+        // Turns of the wheel left before the deadline tick, only touched by advance()
+        private long rounds;
+        private volatile boolean cancelled;
+        
+        private Timeout(K key, V value, long deadlineMillis) {
+            this.key = key;
+            this.value = value;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.dto.TransactionCreateDTO;
+import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.exception.IdempotencyKeyReusedException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Responses of creates made with an {@code Idempotency-Key}, so that a client retrying a
+ * create gets the original response instead of a duplicate error.
+ * <p>
+ * The cache holds the response as a future from the moment the first request with a key
+ * arrives: a request with the same key waits for that future instead of creating again,
+ * so concurrent retries are coalesced into one create. A create that fails is not
+ * remembered, and the next request with its key tries again. Keys are kept for
+ * {@code banking.idempotency.ttl} after their create, up to {@code maximum-size} keys.
+ */
+@Component
+@Slf4j
+public class IdempotencyCache {
+    
+    private final Cache<String, Execution> executions;
+    
+    public IdempotencyCache(
+            @Value("${banking.idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${banking.idempotency.ttl:24h}") Duration ttl) {
+        this.executions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+    
+    /**
+     * Returns the response of the first create made with the key, running {@code create}
+     * only if there is none yet.
+     *
+     * @throws IdempotencyKeyReusedException if the key was used for a different request
+     */
+    public TransactionResponseDTO execute(String key, TransactionCreateDTO request,
+                                          Supplier<TransactionResponseDTO> create) {
+        Execution execution = new Execution(request, new CompletableFuture<>());
+        Execution first = executions.asMap().putIfAbsent(key, execution);
+        if (first != null) {
+            if (!sameRequest(first.request(), request)) {
+                throw new IdempotencyKeyReusedException(key);
+            }
+            log.info("Replaying the response for idempotency key {}", key);
+            return await(first.response());
+        }
+        
+        try {
+            TransactionResponseDTO response = create.get();
+            execution.response().complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // Requests waiting on this one fail alike; later ones create afresh
+            executions.asMap().remove(key, execution);
+            execution.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Compares amounts by value, as the store does, so a retry sending {@code 100.0} for
+     * {@code 100.00} is the same request.
+     */
+    private static boolean sameRequest(TransactionCreateDTO first, TransactionCreateDTO retry) {
+        boolean sameAmount = first.getAmount() == null || retry.getAmount() == null
+                ? first.getAmount() == retry.getAmount()
+                : first.getAmount().compareTo(retry.getAmount()) == 0;
+        return sameAmount
+                && Objects.equals(first.getDescription(), retry.getDescription())
+                && first.getType() == retry.getType()
+                && Objects.equals(first.getAccountNumber(), retry.getAccountNumber());
+    }
+    
+    long size() {
+        executions.cleanUp();
+        return executions.estimatedSize();
+    }
+    
+    private static TransactionResponseDTO await(CompletableFuture<TransactionResponseDTO> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    private record Execution(TransactionCreateDTO request, CompletableFuture<TransactionResponseDTO> response) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Timers of the transactions still open, that is {@link TransactionStatus#PENDING} or
+ * {@link TransactionStatus#PROCESSING}, held on a {@link HashedTimingWheel}.
+ * <p>
+ * The service starts a timer whenever a transaction enters an open status and cancels it
+ * when the transaction leaves, so finding the transactions that overstayed their timeout
+ * never scans the store. A timer remembers the status it was started for; an expired timer
+ * only counts if the transaction is still in that status.
+ */
+@Component
+@Slf4j
+public class PendingTransactionTimeouts {
+    
+    private static final int WHEEL_SIZE = 512;
+    
+    private final boolean enabled;
+    private final Duration timeout;
+    private final TransactionStatus expiredStatus;
+    private final HashedTimingWheel<UUID, TransactionStatus> wheel;
+    
+    public PendingTransactionTimeouts(
+            @Value("${banking.pending-timeout.enabled:true}") boolean enabled,
+            @Value("${banking.pending-timeout.timeout:30m}") Duration timeout,
+            @Value("${banking.pending-timeout.expired-status:FAILED}") TransactionStatus expiredStatus,
+            @Value("${banking.pending-timeout.tick-ms:1000}") long tickMillis) {
+        if (expiredStatus != TransactionStatus.FAILED && expiredStatus != TransactionStatus.CANCELLED) {
+            throw new IllegalArgumentException("Timed out transactions can only move to FAILED or CANCELLED, not "
+                    + expiredStatus);
+        }
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.expiredStatus = expiredStatus;
+        this.wheel = new HashedTimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+        if (enabled) {
+            log.info("Moving transactions open for longer than {} to {}", timeout, expiredStatus);
+        }
+    }
+    
+    public static boolean isOpen(TransactionStatus status) {
+        return status == TransactionStatus.PENDING || status == TransactionStatus.PROCESSING;
+    }
+    
+    /**
+     * Starts the timer of a transaction that entered its status at the given time, replacing
+     * any earlier timer, or cancels it if the status is not open.
+     */
+    public void track(Transaction transaction, LocalDateTime since) {
+        if (!enabled) {
+            return;
+        }
+        if (!isOpen(transaction.getStatus())) {
+            wheel.cancel(transaction.getId());
+            return;
+        }
+        long sinceMillis = since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        wheel.schedule(transaction.getId(), transaction.getStatus(), sinceMillis + timeout.toMillis());
+    }
+    
+    public void cancel(UUID id) {
+        wheel.cancel(id);
+    }
+    
+    /**
+     * Returns the timers that ran out, each with the status it was started for.
+     */
+    List<HashedTimingWheel.Expiry<UUID, TransactionStatus>> expire() {
+        return enabled ? wheel.advance(System.currentTimeMillis()) : List.of();
+    }
+    
+    public TransactionStatus expiredStatus() {
+        return expiredStatus;
+    }
+    
+    public int size() {
+        return wheel.size();
+    }
+}
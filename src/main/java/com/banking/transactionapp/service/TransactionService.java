@@ -1,24 +1,90 @@
 package com.banking.transactionapp.service;
 
+import com.banking.transactionapp.dto.AccountBalanceDTO;
+import com.banking.transactionapp.dto.BatchCreateResponseDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
 import com.banking.transactionapp.dto.PageResponseDTO;
 import com.banking.transactionapp.dto.TransactionCreateDTO;
 import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.dto.TransactionStatsDTO;
 import com.banking.transactionapp.dto.TransactionUpdateDTO;
+import com.banking.transactionapp.model.TransactionStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface TransactionService {
     
     TransactionResponseDTO createTransaction(TransactionCreateDTO createDTO);
     
+    BatchCreateResponseDTO createTransactions(List<TransactionCreateDTO> createDTOs);
+    
     TransactionResponseDTO getTransactionById(UUID id);
     
     List<TransactionResponseDTO> getAllTransactions();
     
+    /**
+     * Streams every transaction newest first without materializing the whole list.
+     * The stream reads the repository lazily and must be closed by the caller.
+     */
+    Stream<TransactionResponseDTO> streamAllTransactions();
+    
+    TransactionStatsDTO getStatistics();
+    
     PageResponseDTO<TransactionResponseDTO> getTransactionsPaginated(int page, int size);
     
+    CursorPageResponseDTO<TransactionResponseDTO> getTransactionsAfter(String cursor, int size);
+    
+    CursorPageResponseDTO<TransactionResponseDTO> getTransactionsBetween(
+            LocalDateTime from, LocalDateTime to, String cursor, int size);
+    
+    CursorPageResponseDTO<TransactionResponseDTO> getTransactionsByAccount(String accountNumber, String cursor, int size);
+    
+    CursorPageResponseDTO<TransactionResponseDTO> getTransactionsByStatus(TransactionStatus status, String cursor, int size);
+    
+    /**
+     * Returns the next transactions, newest first after the cursor, whose description
+     * contains every word of the query. Words are runs of letters and digits and match
+     * regardless of case; a query without words matches nothing.
+     */
+    CursorPageResponseDTO<TransactionResponseDTO> searchTransactions(String query, String cursor, int size);
+    
+    /**
+     * Hands the oldest pending transactions to a worker by moving them to
+     * {@link TransactionStatus#PROCESSING}. Each transaction is claimed with a
+     * compare-and-set on its version, so concurrent workers never receive the same one.
+     *
+     * @param size The maximum number of transactions to claim
+     * @return the claimed transactions, oldest first; fewer than {@code size} when less work is pending
+     */
+    List<TransactionResponseDTO> claimPendingTransactions(int size);
+    
+    AccountBalanceDTO getAccountBalance(String accountNumber);
+    
+    /**
+     * Applies the non-null fields of the update to whatever version of the transaction is current.
+     */
     TransactionResponseDTO updateTransaction(UUID id, TransactionUpdateDTO updateDTO);
     
+    /**
+     * Applies the non-null fields of the update as a new version of the transaction.
+     *
+     * @param expectedVersion Version the caller last read, or null to update whatever version is current
+     * @throws com.banking.transactionapp.exception.TransactionVersionConflictException if the
+     *         transaction has moved past the expected version
+     */
+    TransactionResponseDTO updateTransaction(UUID id, TransactionUpdateDTO updateDTO, Long expectedVersion);
+    
     void deleteTransaction(UUID id);
+    
+    /**
+     * Moves the transactions that stayed pending or processing longer than the configured
+     * timeout to the configured final status. Only the transactions whose timers ran out are
+     * read, so a run costs O(1) per expired transaction however many are stored.
+     *
+     * @return the number of transactions moved
+     */
+    int expireStaleTransactions();
 }
@@ -1,33 +1,89 @@
 package com.banking.transactionapp.service;
 
 import com.banking.transactionapp.config.CacheConfig;
+import com.banking.transactionapp.dto.AccountBalanceDTO;
+import com.banking.transactionapp.dto.BatchCreateResponseDTO;
+import com.banking.transactionapp.dto.BatchItemResultDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
 import com.banking.transactionapp.dto.PageResponseDTO;
 import com.banking.transactionapp.dto.TransactionCreateDTO;
 import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.dto.TransactionStatsDTO;
 import com.banking.transactionapp.dto.TransactionUpdateDTO;
 import com.banking.transactionapp.exception.DuplicateTransactionException;
+import com.banking.transactionapp.exception.InvalidCursorException;
+import com.banking.transactionapp.exception.InvalidTimeRangeException;
 import com.banking.transactionapp.exception.TransactionNotFoundException;
+import com.banking.transactionapp.exception.TransactionVersionConflictException;
+import com.banking.transactionapp.exception.VelocityLimitExceededException;
 import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.repository.ReplaceResult;
 import com.banking.transactionapp.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionServiceImpl implements TransactionService {
     
+    // Rounds of reading candidates before a claim returns with fewer than requested
+    private static final int MAX_CLAIM_ROUNDS = 4;
+    
     private final TransactionRepository transactionRepository;
     
+    private final Validator validator;
+    
+    private final TransactionStatistics statistics;
+    
+    private final PendingTransactionTimeouts timeouts;
+    
+    private final DescriptionIndex descriptionIndex;
+    
+    private final VelocityLimiter velocityLimiter;
+    
+    /**
+     * Seeds the statistics, the timeouts and the description index with the transactions the repository recovered
+     * at startup. Pending transactions time out counting from their creation; when a
+     * transaction started processing is not stored, so those start counting again.
+     */
+    @PostConstruct
+    void loadStatistics() {
+        LocalDateTime now = LocalDateTime.now();
+        try (Stream<Transaction> transactions = transactionRepository.streamAll()) {
+            transactions.forEach(transaction -> {
+                statistics.recordCreated(transaction);
+                descriptionIndex.put(transaction);
+                timeouts.track(transaction, transaction.getStatus() == TransactionStatus.PENDING
+                        ? transaction.getTimestamp() : now);
+            });
+        }
+    }
+    
     @Override
     @Caching(
         evict = { @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true) },
@@ -43,18 +99,110 @@ public class TransactionServiceImpl implements TransactionService {
                 .accountNumber(createDTO.getAccountNumber())
                 .build();
         
-        // Check for duplicates within a 10-second window
-        if (transactionRepository.isDuplicateWithinTimeWindow(transaction, 10)) {
-            log.error("Duplicate transaction detected within 10-second window");
-            throw new DuplicateTransactionException(10);
-        }
+        // Counted against the account's velocity limits before anything is stored
+        VelocityLimiter.Permit permit = velocityLimiter.acquire(transaction);
         
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        // Save unless a duplicate exists within a 10-second window
+        Optional<Transaction> saved;
+        try {
+            saved = transactionRepository.saveIfNotDuplicate(transaction, 10);
+        } catch (RuntimeException e) {
+            // Nothing was created, so nothing counts towards the limits
+            velocityLimiter.release(permit);
+            throw e;
+        }
+        Transaction savedTransaction = saved.orElseThrow(() -> {
+            log.error("Duplicate transaction detected within 10-second window");
+            velocityLimiter.release(permit);
+            return new DuplicateTransactionException(10);
+        });
+        statistics.recordCreated(savedTransaction);
+        descriptionIndex.put(savedTransaction);
+        timeouts.track(savedTransaction, savedTransaction.getTimestamp());
         log.info("Transaction created with ID: {}", savedTransaction.getId());
         
         return mapToResponseDTO(savedTransaction);
     }
     
+    @Override
+    @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true)
+    public BatchCreateResponseDTO createTransactions(List<TransactionCreateDTO> createDTOs) {
+        log.info("Creating batch of {} transactions", createDTOs.size());
+        
+        // Items are validated one by one so that an invalid item fails alone
+        BatchItemResultDTO[] results = new BatchItemResultDTO[createDTOs.size()];
+        List<Transaction> transactions = new ArrayList<>(createDTOs.size());
+        List<Integer> indexes = new ArrayList<>(createDTOs.size());
+        List<VelocityLimiter.Permit> permits = new ArrayList<>(createDTOs.size());
+        for (int i = 0; i < createDTOs.size(); i++) {
+            TransactionCreateDTO createDTO = createDTOs.get(i);
+            String error = validate(createDTO);
+            if (error != null) {
+                results[i] = failedItem(i, HttpStatus.BAD_REQUEST, error);
+                continue;
+            }
+            
+            Transaction transaction = Transaction.builder()
+                    .amount(createDTO.getAmount())
+                    .description(createDTO.getDescription())
+                    .type(createDTO.getType())
+                    .accountNumber(createDTO.getAccountNumber())
+                    .build();
+            try {
+                permits.add(velocityLimiter.acquire(transaction));
+            } catch (VelocityLimitExceededException e) {
+                results[i] = failedItem(i, HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+                continue;
+            }
+            transactions.add(transaction);
+            indexes.add(i);
+        }
+        
+        // Duplicate checks and writes for the whole batch in one repository call
+        Set<UUID> savedIds = new HashSet<>();
+        if (!transactions.isEmpty()) {
+            List<Transaction> savedTransactions;
+            try {
+                savedTransactions = transactionRepository.saveAll(transactions, 10);
+            } catch (RuntimeException e) {
+                permits.forEach(velocityLimiter::release);
+                throw e;
+            }
+            savedTransactions.forEach(saved -> {
+                statistics.recordCreated(saved);
+                descriptionIndex.put(saved);
+                timeouts.track(saved, saved.getTimestamp());
+                savedIds.add(saved.getId());
+            });
+        }
+        
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            int index = indexes.get(i);
+            boolean saved = savedIds.contains(transaction.getId());
+            if (!saved) {
+                // A duplicate was not created, so it does not count towards the limits
+                velocityLimiter.release(permits.get(i));
+            }
+            results[index] = saved
+                    ? BatchItemResultDTO.builder()
+                            .index(index)
+                            .status(HttpStatus.CREATED.value())
+                            .transaction(mapToResponseDTO(transaction))
+                            .build()
+                    : failedItem(index, HttpStatus.CONFLICT, new DuplicateTransactionException(10).getMessage());
+        }
+        
+        int created = savedIds.size();
+        log.info("Batch created {} of {} transactions", created, createDTOs.size());
+        
+        return BatchCreateResponseDTO.builder()
+                .created(created)
+                .failed(createDTOs.size() - created)
+                .results(List.of(results))
+                .build();
+    }
+    
     @Override
     @Cacheable(value = CacheConfig.TRANSACTION_CACHE, key = "#id")
     public TransactionResponseDTO getTransactionById(UUID id) {
@@ -79,6 +227,21 @@ public class TransactionServiceImpl implements TransactionService {
                 .collect(Collectors.toList());
     }
     
+    @Override
+    public Stream<TransactionResponseDTO> streamAllTransactions() {
+        log.info("Streaming all transactions");
+        
+        // Not cached: the point is to never hold the whole list in memory
+        return transactionRepository.streamAll().map(this::mapToResponseDTO);
+    }
+    
+    @Override
+    public TransactionStatsDTO getStatistics() {
+        log.info("Fetching transaction statistics");
+        
+        return statistics.snapshot();
+    }
+    
     @Override
     public PageResponseDTO<TransactionResponseDTO> getTransactionsPaginated(int page, int size) {
         log.info("Fetching transactions page {} with size {}", page, size);
@@ -101,6 +264,127 @@ public class TransactionServiceImpl implements TransactionService {
                 .build();
     }
     
+    @Override
+    public CursorPageResponseDTO<TransactionResponseDTO> getTransactionsAfter(String cursor, int size) {
+        log.info("Fetching {} transactions after cursor {}", size, cursor);
+        
+        TransactionCursor after = decodeCursor(cursor);
+        
+        // Fetch one extra transaction to find out whether another page follows
+        return toCursorPage(transactionRepository.findAllAfter(after, size + 1), size);
+    }
+    
+    @Override
+    public CursorPageResponseDTO<TransactionResponseDTO> getTransactionsBetween(
+            LocalDateTime from, LocalDateTime to, String cursor, int size) {
+        log.info("Fetching {} transactions between {} and {} after cursor {}", size, from, to, cursor);
+        
+        if (!from.isBefore(to)) {
+            log.error("Invalid time range: {} to {}", from, to);
+            throw new InvalidTimeRangeException(from, to);
+        }
+        TransactionCursor after = decodeCursor(cursor);
+        
+        return toCursorPage(transactionRepository.findByTimestampBetween(from, to, after, size + 1), size);
+    }
+    
+    @Override
+    public CursorPageResponseDTO<TransactionResponseDTO> getTransactionsByAccount(
+            String accountNumber, String cursor, int size) {
+        log.info("Fetching {} transactions of account {} after cursor {}", size, accountNumber, cursor);
+        
+        TransactionCursor after = decodeCursor(cursor);
+        
+        return toCursorPage(transactionRepository.findByAccountNumber(accountNumber, after, size + 1), size);
+    }
+    
+    @Override
+    public CursorPageResponseDTO<TransactionResponseDTO> getTransactionsByStatus(
+            TransactionStatus status, String cursor, int size) {
+        log.info("Fetching {} {} transactions after cursor {}", size, status, cursor);
+        
+        TransactionCursor after = decodeCursor(cursor);
+        
+        return toCursorPage(transactionRepository.findByStatus(status, after, size + 1), size);
+    }
+    
+    @Override
+    public CursorPageResponseDTO<TransactionResponseDTO> searchTransactions(String query, String cursor, int size) {
+        log.info("Searching {} transactions matching '{}' after cursor {}", size, query, cursor);
+        
+        Set<String> words = DescriptionIndex.tokenize(query);
+        TransactionCursor after = decodeCursor(cursor);
+        
+        // The index is updated after the store, so a hit is checked against the stored description.
+        // Stale hits are dropped and replaced by reading on, so a short page still means the last one
+        List<Transaction> matches = new ArrayList<>(size + 1);
+        TransactionCursor position = after;
+        while (matches.size() <= size) {
+            int wanted = size + 1 - matches.size();
+            List<TransactionCursor> hits = descriptionIndex.searchPositions(words, position, wanted);
+            for (TransactionCursor hit : hits) {
+                transactionRepository.findById(hit.id())
+                        .filter(transaction -> DescriptionIndex.tokenize(transaction.getDescription()).containsAll(words))
+                        .ifPresent(matches::add);
+            }
+            if (hits.size() < wanted) {
+                break;
+            }
+            position = hits.get(hits.size() - 1);
+        }
+        
+        return toCursorPage(matches, size);
+    }
+    
+    @Override
+    @Caching(
+        evict = {
+            @CacheEvict(value = CacheConfig.TRANSACTION_CACHE, allEntries = true),
+            @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true)
+        }
+    )
+    public List<TransactionResponseDTO> claimPendingTransactions(int size) {
+        log.info("Claiming up to {} pending transactions", size);
+        
+        List<TransactionResponseDTO> claimed = new ArrayList<>(size);
+        for (int round = 0; round < MAX_CLAIM_ROUNDS && claimed.size() < size; round++) {
+            List<Transaction> candidates =
+                    transactionRepository.findOldestByStatus(TransactionStatus.PENDING, size - claimed.size());
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (Transaction candidate : candidates) {
+                Transaction processing = candidate.toBuilder()
+                        .status(TransactionStatus.PROCESSING)
+                        .version(candidate.getVersion() + 1)
+                        .build();
+                // Fails if another worker claimed or updated it first; the next round reads
+                // on from the transactions still pending
+                if (transactionRepository.replace(processing, candidate.getVersion(), 10) == ReplaceResult.REPLACED) {
+                    statistics.recordUpdated(TransactionStatistics.Snapshot.of(candidate), processing);
+                    timeouts.track(processing, LocalDateTime.now());
+                    claimed.add(mapToResponseDTO(processing));
+                }
+            }
+        }
+        log.info("Claimed {} pending transactions", claimed.size());
+        
+        return claimed;
+    }
+    
+    @Override
+    public AccountBalanceDTO getAccountBalance(String accountNumber) {
+        log.info("Fetching balance of account {}", accountNumber);
+        
+        BigDecimal balance = transactionRepository.getBalance(accountNumber).stripTrailingZeros();
+        
+        // Show at least cents rather than the fixed-point storage scale
+        return AccountBalanceDTO.builder()
+                .accountNumber(accountNumber)
+                .balance(balance.scale() < 2 ? balance.setScale(2) : balance)
+                .build();
+    }
+    
     @Override
     @Caching(
         evict = { 
@@ -111,64 +395,225 @@ public class TransactionServiceImpl implements TransactionService {
         }
     )
     public TransactionResponseDTO updateTransaction(UUID id, TransactionUpdateDTO updateDTO) {
+        // Called on this instance, so the caching above is what applies
+        return updateTransaction(id, updateDTO, null);
+    }
+    
+    @Override
+    @Caching(
+        evict = { 
+            @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true)
+        },
+        put = { 
+            @CachePut(value = CacheConfig.TRANSACTION_CACHE, key = "#id") 
+        }
+    )
+    public TransactionResponseDTO updateTransaction(UUID id, TransactionUpdateDTO updateDTO, Long expectedVersion) {
         log.info("Updating transaction with ID: {}", id);
         
-        Transaction transaction = transactionRepository.findById(id)
+        // Without an expected version a lost race is retried against the newer version
+        while (true) {
+            Transaction transaction = transactionRepository.findById(id)
+                    .orElseThrow(() -> {
+                        log.error("Transaction not found with ID: {}", id);
+                        return new TransactionNotFoundException(id);
+                    });
+            if (expectedVersion != null && transaction.getVersion() != expectedVersion) {
+                throw new TransactionVersionConflictException(id, expectedVersion);
+            }
+            
+            // Update fields if provided
+            Transaction.TransactionBuilder next = transaction.toBuilder().version(transaction.getVersion() + 1);
+            if (updateDTO.getAmount() != null) {
+                next.amount(updateDTO.getAmount());
+            }
+            
+            if (updateDTO.getDescription() != null) {
+                next.description(updateDTO.getDescription());
+            }
+            
+            if (updateDTO.getType() != null) {
+                next.type(updateDTO.getType());
+            }
+            
+            if (updateDTO.getAccountNumber() != null) {
+                next.accountNumber(updateDTO.getAccountNumber());
+            }
+            
+            if (updateDTO.getStatus() != null) {
+                next.status(updateDTO.getStatus());
+            }
+            
+            // Replace unless the update would create a duplicate within a 10-second window
+            Transaction updatedTransaction = next.build();
+            switch (transactionRepository.replace(updatedTransaction, transaction.getVersion(), 10)) {
+                case REPLACED -> {
+                    statistics.recordUpdated(TransactionStatistics.Snapshot.of(transaction), updatedTransaction);
+                    descriptionIndex.put(updatedTransaction);
+                    // A status change restarts the timeout, or ends it if the new status is final
+                    if (updatedTransaction.getStatus() != transaction.getStatus()) {
+                        timeouts.track(updatedTransaction, LocalDateTime.now());
+                    }
+                    log.info("Transaction updated with ID: {} to version {}", id, updatedTransaction.getVersion());
+                    return mapToResponseDTO(updatedTransaction);
+                }
+                case DUPLICATE -> {
+                    log.error("Update would create a duplicate transaction within 10-second window");
+                    throw new DuplicateTransactionException(10);
+                }
+                case NOT_FOUND -> {
+                    log.error("Transaction not found with ID: {}", id);
+                    throw new TransactionNotFoundException(id);
+                }
+                case VERSION_CONFLICT -> {
+                    if (expectedVersion != null) {
+                        throw new TransactionVersionConflictException(id, expectedVersion);
+                    }
+                    log.debug("Transaction {} changed concurrently, retrying the update", id);
+                }
+            }
+        }
+    }
+    
+    @Override
+    @Caching(
+        evict = { 
+            @CacheEvict(value = CacheConfig.TRANSACTION_CACHE, key = "#id"),
+            @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true)
+        }
+    )
+    public void deleteTransaction(UUID id) {
+        log.info("Deleting transaction with ID: {}", id);
+        
+        // Only the delete that removed the transaction accounts for it, with the version it removed
+        Transaction deleted = transactionRepository.deleteById(id)
                 .orElseThrow(() -> {
                     log.error("Transaction not found with ID: {}", id);
                     return new TransactionNotFoundException(id);
                 });
         
-        // Update fields if provided
-        if (updateDTO.getAmount() != null) {
-            transaction.setAmount(updateDTO.getAmount());
+        statistics.recordDeleted(deleted);
+        descriptionIndex.remove(id);
+        timeouts.cancel(id);
+        log.info("Transaction deleted with ID: {}", id);
+    }
+    
+    @Override
+    @Caching(
+        evict = {
+            @CacheEvict(value = CacheConfig.TRANSACTION_CACHE, allEntries = true, condition = "#result > 0"),
+            @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true, condition = "#result > 0")
         }
-        
-        if (updateDTO.getDescription() != null) {
-            transaction.setDescription(updateDTO.getDescription());
+    )
+    public int expireStaleTransactions() {
+        TransactionStatus expiredStatus = timeouts.expiredStatus();
+        int expired = 0;
+        for (HashedTimingWheel.Expiry<UUID, TransactionStatus> timeout : timeouts.expire()) {
+            if (expire(timeout.key(), timeout.value(), expiredStatus)) {
+                expired++;
+            }
         }
-        
-        if (updateDTO.getType() != null) {
-            transaction.setType(updateDTO.getType());
+        if (expired > 0) {
+            log.info("Moved {} timed out transactions to {}", expired, expiredStatus);
         }
         
-        if (updateDTO.getAccountNumber() != null) {
-            transaction.setAccountNumber(updateDTO.getAccountNumber());
+        return expired;
+    }
+    
+    /**
+     * Moves a transaction whose timer ran out to the expired status, unless it has left the
+     * status the timer was started for in the meantime.
+     */
+    private boolean expire(UUID id, TransactionStatus timedOutStatus, TransactionStatus expiredStatus) {
+        while (true) {
+            Transaction transaction = transactionRepository.findById(id).orElse(null);
+            if (transaction == null || transaction.getStatus() != timedOutStatus) {
+                return false;
+            }
+            
+            Transaction expired = transaction.toBuilder()
+                    .status(expiredStatus)
+                    .version(transaction.getVersion() + 1)
+                    .build();
+            switch (transactionRepository.replace(expired, transaction.getVersion(), 10)) {
+                case REPLACED -> {
+                    statistics.recordUpdated(TransactionStatistics.Snapshot.of(transaction), expired);
+                    log.debug("Transaction {} timed out in status {}", id, timedOutStatus);
+                    return true;
+                }
+                // Updated concurrently; check the status again
+                case VERSION_CONFLICT -> { }
+                default -> {
+                    return false;
+                }
+            }
         }
-        
-        if (updateDTO.getStatus() != null) {
-            transaction.setStatus(updateDTO.getStatus());
+    }
+    
+    /**
+     * Returns the validation error of a batch item in the same format as a single create,
+     * or null if the item is valid.
+     */
+    private String validate(TransactionCreateDTO createDTO) {
+        if (createDTO == null) {
+            return "Transaction is required";
         }
         
-        // Check for duplicates within a 10-second window after update
-        if (transactionRepository.isDuplicateWithinTimeWindow(transaction, 10)) {
-            log.error("Update would create a duplicate transaction within 10-second window");
-            throw new DuplicateTransactionException(10);
+        Set<ConstraintViolation<TransactionCreateDTO>> violations = validator.validate(createDTO);
+        if (violations.isEmpty()) {
+            return null;
         }
         
-        Transaction updatedTransaction = transactionRepository.save(transaction);
-        log.info("Transaction updated with ID: {}", updatedTransaction.getId());
-        
-        return mapToResponseDTO(updatedTransaction);
+        Map<String, String> errors = new TreeMap<>();
+        violations.forEach(violation -> 
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+        return "Validation failed: " + errors;
     }
     
-    @Override
-    @Caching(
-        evict = { 
-            @CacheEvict(value = CacheConfig.TRANSACTION_CACHE, key = "#id"),
-            @CacheEvict(value = CacheConfig.TRANSACTIONS_CACHE, allEntries = true)
+    private BatchItemResultDTO failedItem(int index, HttpStatus status, String error) {
+        return BatchItemResultDTO.builder()
+                .index(index)
+                .status(status.value())
+                .error(error)
+                .build();
+    }
+    
+    private TransactionCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
         }
-    )
-    public void deleteTransaction(UUID id) {
-        log.info("Deleting transaction with ID: {}", id);
-        
-        if (!transactionRepository.existsById(id)) {
-            log.error("Transaction not found with ID: {}", id);
-            throw new TransactionNotFoundException(id);
+        try {
+            return TransactionCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid pagination cursor: {}", cursor);
+            throw new InvalidCursorException(cursor);
+        }
+    }
+    
+    /**
+     * Builds a page from up to {@code size + 1} transactions; the extra one only signals
+     * that another page follows.
+     */
+    private CursorPageResponseDTO<TransactionResponseDTO> toCursorPage(List<Transaction> transactions, int size) {
+        boolean hasNext = transactions.size() > size;
+        if (hasNext) {
+            transactions = transactions.subList(0, size);
         }
         
-        transactionRepository.deleteById(id);
-        log.info("Transaction deleted with ID: {}", id);
+        List<TransactionResponseDTO> content = transactions.stream()
+                .map(this::mapToResponseDTO)
+                .collect(Collectors.toList());
+        
+        String nextCursor = hasNext
+                ? TransactionCursor.of(transactions.get(transactions.size() - 1)).encode()
+                : null;
+        
+        return CursorPageResponseDTO.<TransactionResponseDTO>builder()
+                .content(content)
+                .pageSize(size)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
     }
     
     private TransactionResponseDTO mapToResponseDTO(Transaction transaction) {
@@ -180,6 +625,7 @@ public class TransactionServiceImpl implements TransactionService {
                 .accountNumber(transaction.getAccountNumber())
                 .timestamp(transaction.getTimestamp())
                 .status(transaction.getStatus())
+                .version(transaction.getVersion())
                 .build();
     }
 }
@@ -0,0 +1,101 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.dto.TransactionStatsDTO;
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counts and amount totals of the stored transactions by type and by status.
+ * <p>
+ * The service records every create, update and delete here as it happens. Counters are
+ * {@link LongAdder}s, which spread concurrent increments over separate cells instead of
+ * contending on one value, and amounts are summed as fixed-point minor units, so the write
+ * path never blocks and reading the statistics never touches the store.
+ */
+@Component
+public class TransactionStatistics {
+    
+    private final LongAdder[] countsByType = adders(TransactionType.values().length);
+    private final LongAdder[] minorUnitsByType = adders(TransactionType.values().length);
+    private final LongAdder[] countsByStatus = adders(TransactionStatus.values().length);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMinorUnits = new LongAdder();
+    
+    public void recordCreated(Transaction transaction) {
+        add(Snapshot.of(transaction), 1);
+    }
+    
+    /**
+     * @param previous The transaction as it was before the update, see {@link Snapshot#of(Transaction)}
+     */
+    public void recordUpdated(Snapshot previous, Transaction transaction) {
+        add(previous, -1);
+        add(Snapshot.of(transaction), 1);
+    }
+    
+    public void recordDeleted(Transaction transaction) {
+        add(Snapshot.of(transaction), -1);
+    }
+    
+    public TransactionStatsDTO snapshot() {
+        Map<TransactionType, Long> countByType = new EnumMap<>(TransactionType.class);
+        Map<TransactionType, BigDecimal> amountByType = new EnumMap<>(TransactionType.class);
+        for (TransactionType type : TransactionType.values()) {
+            countByType.put(type, countsByType[type.ordinal()].sum());
+            amountByType.put(type, FixedPoint.fromMinorUnits(minorUnitsByType[type.ordinal()].sum()));
+        }
+        
+        Map<TransactionStatus, Long> countByStatus = new EnumMap<>(TransactionStatus.class);
+        for (TransactionStatus status : TransactionStatus.values()) {
+            countByStatus.put(status, countsByStatus[status.ordinal()].sum());
+        }
+        
+        return TransactionStatsDTO.builder()
+                .totalCount(totalCount.sum())
+                .totalAmount(FixedPoint.fromMinorUnits(totalMinorUnits.sum()))
+                .countByType(countByType)
+                .amountByType(amountByType)
+                .countByStatus(countByStatus)
+                .build();
+    }
+    
+    private void add(Snapshot snapshot, int sign) {
+        totalCount.add(sign);
+        totalMinorUnits.add(sign * snapshot.minorUnits());
+        if (snapshot.type() != null) {
+            countsByType[snapshot.type().ordinal()].add(sign);
+            minorUnitsByType[snapshot.type().ordinal()].add(sign * snapshot.minorUnits());
+        }
+        if (snapshot.status() != null) {
+            countsByStatus[snapshot.status().ordinal()].add(sign);
+        }
+    }
+    
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+    
+    /**
+     * The fields of a transaction that the statistics depend on, taken from the version an
+     * update replaces.
+     */
+    public record Snapshot(TransactionType type, TransactionStatus status, long minorUnits) {
+        
+        public static Snapshot of(Transaction transaction) {
+            return new Snapshot(transaction.getType(), transaction.getStatus(),
+                    transaction.getAmount() == null ? 0 : FixedPoint.toMinorUnits(transaction.getAmount()));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.banking.transactionapp.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns the timing wheel of {@link PendingTransactionTimeouts} once per tick. Calls go
+ * through the service bean so that expiring transactions evicts the caches.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionTimeoutScheduler {
+    
+    private final TransactionService transactionService;
+    
+    @Scheduled(fixedDelayString = "${banking.pending-timeout.tick-ms:1000}")
+    public void expireStaleTransactions() {
+        transactionService.expireStaleTransactions();
+    }
+}
@@ -0,0 +1,208 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.config.VelocityLimitProperties;
+import com.banking.transactionapp.exception.VelocityLimitExceededException;
+import com.banking.transactionapp.model.FixedPoint;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-account velocity limits: how many transactions of a type an account may create, and
+ * for how much in total, within a sliding window.
+ * <p>
+ * Each account and type has a ring of time buckets covering the window, so a check sums a
+ * fixed number of buckets instead of reading the account's transactions from the store.
+ * The ring is immutable and swapped as a whole by compare-and-set, which makes checking the
+ * limits and counting the transaction one atomic step without locking: a create is only
+ * counted if no bucket changed since it summed them, so concurrent creates of one account
+ * can never overshoot a limit together, even when their clocks fall into different buckets.
+ */
+@Component
+@Slf4j
+public class VelocityLimiter {
+    
+    private final VelocityLimitProperties properties;
+    private final Clock clock;
+    private final long bucketMillis;
+    
+    private final Map<WindowKey, SlidingWindow> windows = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public VelocityLimiter(VelocityLimitProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+    
+    VelocityLimiter(VelocityLimitProperties properties, Clock clock) {
+        if (properties.getBuckets() <= 0 || properties.getWindow().toMillis() < properties.getBuckets()) {
+            throw new IllegalArgumentException("Velocity window " + properties.getWindow()
+                    + " cannot be split into " + properties.getBuckets() + " buckets");
+        }
+        this.properties = properties;
+        this.clock = clock;
+        this.bucketMillis = properties.getWindow().toMillis() / properties.getBuckets();
+        if (properties.isEnabled() && !properties.getLimits().isEmpty()) {
+            log.info("Limiting {} per account within {}", properties.getLimits(), properties.getWindow());
+        }
+    }
+    
+    /**
+     * Counts the transaction against the limits of its account and type.
+     *
+     * @return the permit to {@link #release(Permit)} if the transaction is not created after all,
+     *         or null if no limit applies
+     * @throws VelocityLimitExceededException if the transaction would exceed a limit
+     */
+    public Permit acquire(Transaction transaction) {
+        VelocityLimitProperties.Limit limit = properties.isEnabled() && transaction.getType() != null
+                ? properties.getLimits().get(transaction.getType())
+                : null;
+        if (limit == null || (limit.getMaxCount() == null && limit.getMaxAmount() == null)) {
+            return null;
+        }
+        
+        WindowKey key = new WindowKey(transaction.getAccountNumber(), transaction.getType());
+        long epoch = Math.floorDiv(clock.millis(), bucketMillis);
+        long minorUnits = transaction.getAmount() != null ? FixedPoint.toMinorUnits(transaction.getAmount()) : 0;
+        long maxCount = limit.getMaxCount() != null ? limit.getMaxCount() : Long.MAX_VALUE;
+        long maxMinorUnits = limit.getMaxAmount() != null ? FixedPoint.toMinorUnits(limit.getMaxAmount()) : Long.MAX_VALUE;
+        
+        SlidingWindow window = windows.computeIfAbsent(key, k -> new SlidingWindow(properties.getBuckets()));
+        long counted = window.tryAdd(epoch, minorUnits, maxCount, maxMinorUnits);
+        if (counted == Long.MIN_VALUE) {
+            log.warn("Account {} exceeded its {} velocity limit", key.accountNumber(), key.type());
+            throw new VelocityLimitExceededException(key.accountNumber(), key.type(), properties.getWindow());
+        }
+        return new Permit(key, counted, minorUnits);
+    }
+    
+    /**
+     * Takes back a transaction counted by {@link #acquire(Transaction)} that was not created.
+     */
+    public void release(Permit permit) {
+        if (permit == null) {
+            return;
+        }
+        SlidingWindow window = windows.get(permit.key());
+        if (window != null) {
+            window.remove(permit.epoch(), permit.minorUnits());
+        }
+    }
+    
+    /**
+     * Drops the windows of accounts that created nothing within the window, so only
+     * recently active accounts hold memory.
+     */
+    @Scheduled(fixedDelayString = "${banking.velocity.purge-interval-ms:60000}")
+    public void purgeIdleWindows() {
+        long epoch = Math.floorDiv(clock.millis(), bucketMillis);
+        // A create that fetched the window just before it is dropped goes uncounted; the
+        // window was empty, so that is at most one transaction
+        windows.entrySet().removeIf(entry -> entry.getValue().isIdle(epoch));
+    }
+    
+    int windowCount() {
+        return windows.size();
+    }
+    
+    /**
+     * A transaction counted in the bucket of the given epoch.
+     */
+    public record Permit(WindowKey key, long epoch, long minorUnits) {
+    }
+    
+    record WindowKey(String accountNumber, TransactionType type) {
+    }
+    
+    /**
+     * Ring of buckets, one per bucket length, holding the count and amount of the
+     * transactions created in it; a bucket whose epoch has left the window counts as empty.
+     */
+    private static final class SlidingWindow {
+        
+        // Never changed once published; every update swaps in a changed copy
+        private final AtomicReference<Bucket[]> ring;
+        
+        private SlidingWindow(int size) {
+            this.ring = new AtomicReference<>(new Bucket[size]);
+        }
+        
+        /**
+         * Adds a transaction to the bucket of the epoch unless the window would exceed a limit.
+         *
+         * @return the epoch of the bucket counted in, or {@link Long#MIN_VALUE} if a limit would be exceeded
+         */
+        private long tryAdd(long epoch, long minorUnits, long maxCount, long maxMinorUnits) {
+            while (true) {
+                Bucket[] buckets = ring.get();
+                int size = buckets.length;
+                int position = (int) Math.floorMod(epoch, size);
+                long count = 0;
+                long total = 0;
+                for (int i = 0; i < size; i++) {
+                    Bucket bucket = buckets[i];
+                    if (i != position && bucket != null && bucket.epoch > epoch - size) {
+                        count += bucket.count;
+                        total += bucket.minorUnits;
+                    }
+                }
+                
+                Bucket current = buckets[position];
+                // A concurrent create with a slightly later clock may have moved the bucket on already
+                Bucket next = current != null && current.epoch >= epoch
+                        ? new Bucket(current.epoch, current.count + 1, current.minorUnits + minorUnits)
+                        : new Bucket(epoch, 1, minorUnits);
+                if (count + next.count > maxCount || total + next.minorUnits > maxMinorUnits) {
+                    return Long.MIN_VALUE;
+                }
+                // Fails if any bucket was counted in since the sum above, not only this one
+                if (ring.compareAndSet(buckets, with(buckets, position, next))) {
+                    return next.epoch;
+                }
+            }
+        }
+        
+        private void remove(long epoch, long minorUnits) {
+            while (true) {
+                Bucket[] buckets = ring.get();
+                int position = (int) Math.floorMod(epoch, buckets.length);
+                Bucket current = buckets[position];
+                if (current == null || current.epoch != epoch) {
+                    // Already slid out of the window
+                    return;
+                }
+                Bucket next = new Bucket(epoch, current.count - 1, current.minorUnits - minorUnits);
+                if (ring.compareAndSet(buckets, with(buckets, position, next))) {
+                    return;
+                }
+            }
+        }
+        
+        private boolean isIdle(long epoch) {
+            Bucket[] buckets = ring.get();
+            for (Bucket bucket : buckets) {
+                if (bucket != null && bucket.epoch > epoch - buckets.length) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static Bucket[] with(Bucket[] buckets, int position, Bucket bucket) {
+            Bucket[] updated = buckets.clone();
+            updated[position] = bucket;
+            return updated;
+        }
+    }
+    
+    private record Bucket(long epoch, long count, long minorUnits) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.banking.transactionapp.controller;
+
+import com.banking.transactionapp.dto.AccountBalanceDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
+import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.exception.InvalidCursorException;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AccountController.class)
+class AccountControllerTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @MockBean
+    private TransactionService transactionService;
+    
+    private UUID transactionId;
+    private TransactionResponseDTO responseDTO;
+    
+    @BeforeEach
+    void setUp() {
+        transactionId = UUID.randomUUID();
+        
+        responseDTO = TransactionResponseDTO.builder()
+                .id(transactionId)
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+    
+    @Test
+    void getAccountTransactions_Success() throws Exception {
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = CursorPageResponseDTO.<TransactionResponseDTO>builder()
+                .content(List.of(responseDTO))
+                .pageSize(1)
+                .nextCursor("next-token")
+                .hasNext(true)
+                .build();
+        
+        when(transactionService.getTransactionsByAccount("123456789", null, 1)).thenReturn(pageResponse);
+        
+        mockMvc.perform(get("/api/v1/accounts/{accountNumber}/transactions", "123456789")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].accountNumber").value("123456789"))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"))
+                .andExpect(jsonPath("$.hasNext").value(true));
+        
+        verify(transactionService).getTransactionsByAccount("123456789", null, 1);
+    }
+    
+    @Test
+    void getAccountTransactions_InvalidCursor() throws Exception {
+        when(transactionService.getTransactionsByAccount("123456789", "bad", 10))
+                .thenThrow(new InvalidCursorException("bad"));
+        
+        mockMvc.perform(get("/api/v1/accounts/{accountNumber}/transactions", "123456789")
+                .param("after", "bad"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid pagination cursor: bad"));
+    }
+
+    @Test
+    void getAccountBalance_Success() throws Exception {
+        AccountBalanceDTO balanceDTO = AccountBalanceDTO.builder()
+                .accountNumber("123456789")
+                .balance(new BigDecimal("149.75"))
+                .build();
+        
+        when(transactionService.getAccountBalance("123456789")).thenReturn(balanceDTO);
+
+        mockMvc.perform(get("/api/v1/accounts/{accountNumber}/balance", "123456789"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber").value("123456789"))
+                .andExpect(jsonPath("$.balance").value(149.75));
+        
+        verify(transactionService).getAccountBalance("123456789");
+    }
+}
@@ -1,13 +1,21 @@
 package com.banking.transactionapp.controller;
 
+import com.banking.transactionapp.dto.BatchCreateResponseDTO;
+import com.banking.transactionapp.dto.BatchItemResultDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
 import com.banking.transactionapp.dto.PageResponseDTO;
 import com.banking.transactionapp.dto.TransactionCreateDTO;
 import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.dto.TransactionStatsDTO;
 import com.banking.transactionapp.dto.TransactionUpdateDTO;
 import com.banking.transactionapp.exception.DuplicateTransactionException;
+import com.banking.transactionapp.exception.InvalidCursorException;
+import com.banking.transactionapp.exception.InvalidTimeRangeException;
 import com.banking.transactionapp.exception.TransactionNotFoundException;
+import com.banking.transactionapp.exception.TransactionVersionConflictException;
 import com.banking.transactionapp.model.TransactionStatus;
 import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.service.IdempotencyCache;
 import com.banking.transactionapp.service.TransactionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,16 +23,22 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -32,6 +46,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(TransactionController.class)
+@Import(IdempotencyCache.class)
 class TransactionControllerTest {
 
     @Autowired
@@ -127,6 +142,80 @@ class TransactionControllerTest {
         verify(transactionService).createTransaction(any(TransactionCreateDTO.class));
     }
 
+    @Test
+    void createTransaction_IdempotencyKeyReplaysResponse() throws Exception {
+        when(transactionService.createTransaction(any(TransactionCreateDTO.class))).thenReturn(responseDTO);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/v1/transactions")
+                    .header("Idempotency-Key", "create-" + transactionId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(createDTO)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value(transactionId.toString()));
+        }
+        
+        verify(transactionService, times(1)).createTransaction(any(TransactionCreateDTO.class));
+    }
+
+    @Test
+    void createTransaction_IdempotencyKeyReusedForDifferentRequest() throws Exception {
+        when(transactionService.createTransaction(any(TransactionCreateDTO.class))).thenReturn(responseDTO);
+        String key = "create-" + transactionId;
+        mockMvc.perform(post("/api/v1/transactions")
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createDTO)))
+                .andExpect(status().isCreated());
+        createDTO.setAmount(new BigDecimal("200.00"));
+
+        mockMvc.perform(post("/api/v1/transactions")
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createDTO)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message").value("Idempotency key " + key + " was already used for a different request"));
+        
+        verify(transactionService, times(1)).createTransaction(any(TransactionCreateDTO.class));
+    }
+
+    @Test
+    void createTransactions_Success() throws Exception {
+        BatchCreateResponseDTO batchResponse = BatchCreateResponseDTO.builder()
+                .created(1)
+                .failed(1)
+                .results(Arrays.asList(
+                        BatchItemResultDTO.builder().index(0).status(201).transaction(responseDTO).build(),
+                        BatchItemResultDTO.builder().index(1).status(409)
+                                .error("A duplicate transaction was detected within 10 seconds").build()))
+                .build();
+        when(transactionService.createTransactions(anyList())).thenReturn(batchResponse);
+
+        mockMvc.perform(post("/api/v1/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(createDTO, createDTO))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.results", hasSize(2)))
+                .andExpect(jsonPath("$.results[0].status").value(201))
+                .andExpect(jsonPath("$.results[0].transaction.id").value(transactionId.toString()))
+                .andExpect(jsonPath("$.results[1].status").value(409))
+                .andExpect(jsonPath("$.results[1].transaction").doesNotExist());
+        
+        verify(transactionService).createTransactions(anyList());
+    }
+
+    @Test
+    void createTransactions_EmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+        
+        verify(transactionService, never()).createTransactions(anyList());
+    }
+
     @Test
     void getTransactionById_Success() throws Exception {
         when(transactionService.getTransactionById(transactionId)).thenReturn(responseDTO);
@@ -177,6 +266,37 @@ class TransactionControllerTest {
         verify(transactionService).getAllTransactions();
     }
 
+    @Test
+    void streamAllTransactions_WritesOneJsonObjectPerLine() throws Exception {
+        TransactionResponseDTO responseDTO2 = TransactionResponseDTO.builder()
+                .id(UUID.randomUUID())
+                .amount(new BigDecimal("200.00"))
+                .description("Another Transaction")
+                .type(TransactionType.DEPOSIT)
+                .accountNumber("987654321")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        
+        when(transactionService.streamAllTransactions()).thenReturn(Stream.of(responseDTO, responseDTO2));
+
+        MvcResult asyncResult = mockMvc.perform(get("/api/v1/transactions")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(transactionId, objectMapper.readValue(lines[0], TransactionResponseDTO.class).getId());
+        assertEquals(responseDTO2.getId(), objectMapper.readValue(lines[1], TransactionResponseDTO.class).getId());
+        
+        verify(transactionService, never()).getAllTransactions();
+    }
+
     @Test
     void getTransactionsPaginated_Success() throws Exception {
         TransactionResponseDTO responseDTO2 = TransactionResponseDTO.builder()
@@ -218,6 +338,162 @@ class TransactionControllerTest {
         verify(transactionService).getTransactionsPaginated(0, 10);
     }
 
+    @Test
+    void getTransactionsAfter_Success() throws Exception {
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = CursorPageResponseDTO.<TransactionResponseDTO>builder()
+                .content(List.of(responseDTO))
+                .pageSize(1)
+                .nextCursor("next-token")
+                .hasNext(true)
+                .build();
+        
+        when(transactionService.getTransactionsAfter("some-token", 1)).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/api/v1/transactions/cursor")
+                .param("after", "some-token")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].id").value(transactionId.toString()))
+                .andExpect(jsonPath("$.pageSize").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"))
+                .andExpect(jsonPath("$.hasNext").value(true));
+        
+        verify(transactionService).getTransactionsAfter("some-token", 1);
+    }
+
+    @Test
+    void getTransactionsByStatus_Success() throws Exception {
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = CursorPageResponseDTO.<TransactionResponseDTO>builder()
+                .content(List.of(responseDTO))
+                .pageSize(1)
+                .hasNext(false)
+                .build();
+        
+        when(transactionService.getTransactionsByStatus(TransactionStatus.PENDING, null, 10)).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/api/v1/transactions")
+                .param("status", "PENDING"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].id").value(transactionId.toString()));
+        
+        verify(transactionService).getTransactionsByStatus(TransactionStatus.PENDING, null, 10);
+        verify(transactionService, never()).getAllTransactions();
+    }
+
+    @Test
+    void searchTransactions_Success() throws Exception {
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = CursorPageResponseDTO.<TransactionResponseDTO>builder()
+                .content(List.of(responseDTO))
+                .pageSize(5)
+                .hasNext(false)
+                .build();
+        
+        when(transactionService.searchTransactions("test transaction", null, 5)).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/api/v1/transactions/search")
+                .param("q", "test transaction")
+                .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].id").value(transactionId.toString()));
+        
+        verify(transactionService).searchTransactions("test transaction", null, 5);
+    }
+
+    @Test
+    void searchTransactions_BlankQuery() throws Exception {
+        mockMvc.perform(get("/api/v1/transactions/search")
+                .param("q", " "))
+                .andExpect(status().isBadRequest());
+        
+        verify(transactionService, never()).searchTransactions(anyString(), any(), anyInt());
+    }
+
+    @Test
+    void claimPendingTransactions_Success() throws Exception {
+        when(transactionService.claimPendingTransactions(5)).thenReturn(List.of(responseDTO));
+
+        mockMvc.perform(post("/api/v1/transactions/claim")
+                .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(transactionId.toString()));
+        
+        verify(transactionService).claimPendingTransactions(5);
+    }
+
+    @Test
+    void getTransactionsAfter_InvalidCursor() throws Exception {
+        when(transactionService.getTransactionsAfter("bad", 10))
+                .thenThrow(new InvalidCursorException("bad"));
+
+        mockMvc.perform(get("/api/v1/transactions/cursor")
+                .param("after", "bad"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid pagination cursor: bad"));
+    }
+
+    @Test
+    void getTransactionsBetween_Success() throws Exception {
+        CursorPageResponseDTO<TransactionResponseDTO> pageResponse = CursorPageResponseDTO.<TransactionResponseDTO>builder()
+                .content(List.of(responseDTO))
+                .pageSize(10)
+                .hasNext(false)
+                .build();
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        
+        when(transactionService.getTransactionsBetween(from, to, null, 10)).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/api/v1/transactions/range")
+                .param("from", "2024-01-01T00:00:00")
+                .param("to", "2024-02-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].id").value(transactionId.toString()))
+                .andExpect(jsonPath("$.hasNext").value(false));
+        
+        verify(transactionService).getTransactionsBetween(from, to, null, 10);
+    }
+
+    @Test
+    void getTransactionsBetween_InvalidRange() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2024, 2, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(transactionService.getTransactionsBetween(from, to, null, 10))
+                .thenThrow(new InvalidTimeRangeException(from, to));
+
+        mockMvc.perform(get("/api/v1/transactions/range")
+                .param("from", "2024-02-01T00:00:00")
+                .param("to", "2024-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getStatistics_Success() throws Exception {
+        TransactionStatsDTO statsDTO = TransactionStatsDTO.builder()
+                .totalCount(2)
+                .totalAmount(new BigDecimal("300.00"))
+                .countByType(Map.of(TransactionType.PAYMENT, 2L))
+                .amountByType(Map.of(TransactionType.PAYMENT, new BigDecimal("300.00")))
+                .countByStatus(Map.of(TransactionStatus.PENDING, 2L))
+                .build();
+        
+        when(transactionService.getStatistics()).thenReturn(statsDTO);
+
+        mockMvc.perform(get("/api/v1/transactions/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount").value(2))
+                .andExpect(jsonPath("$.totalAmount").value(300.0))
+                .andExpect(jsonPath("$.countByType.PAYMENT").value(2))
+                .andExpect(jsonPath("$.amountByType.PAYMENT").value(300.0))
+                .andExpect(jsonPath("$.countByStatus.PENDING").value(2));
+        
+        verify(transactionService).getStatistics();
+    }
+
     @Test
     void updateTransaction_Success() throws Exception {
         TransactionResponseDTO updatedResponseDTO = TransactionResponseDTO.builder()
@@ -228,15 +504,17 @@ class TransactionControllerTest {
                 .accountNumber("987654321")
                 .timestamp(LocalDateTime.now())
                 .status(TransactionStatus.COMPLETED)
+                .version(2)
                 .build();
         
-        when(transactionService.updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class)))
+        when(transactionService.updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class), isNull()))
                 .thenReturn(updatedResponseDTO);
 
         mockMvc.perform(put("/api/v1/transactions/{id}", transactionId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updateDTO)))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
                 .andExpect(jsonPath("$.id").value(transactionId.toString()))
                 .andExpect(jsonPath("$.amount").value(200.0))
                 .andExpect(jsonPath("$.description").value("Updated Transaction"))
@@ -244,12 +522,27 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.accountNumber").value("987654321"))
                 .andExpect(jsonPath("$.status").value("COMPLETED"));
         
-        verify(transactionService).updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class));
+        verify(transactionService).updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class), isNull());
+    }
+
+    @Test
+    void updateTransaction_IfMatchMismatch() throws Exception {
+        when(transactionService.updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class), eq(1L)))
+                .thenThrow(new TransactionVersionConflictException(transactionId, 1L));
+
+        mockMvc.perform(put("/api/v1/transactions/{id}", transactionId)
+                .header(HttpHeaders.IF_MATCH, "W/\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.status").value(412));
+        
+        verify(transactionService).updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class), eq(1L));
     }
 
     @Test
     void updateTransaction_NotFound() throws Exception {
-        when(transactionService.updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class)))
+        when(transactionService.updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class), isNull()))
                 .thenThrow(new TransactionNotFoundException(transactionId));
 
         mockMvc.perform(put("/api/v1/transactions/{id}", transactionId)
@@ -258,7 +551,7 @@ class TransactionControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.message").value("Transaction not found with id: " + transactionId));
         
-        verify(transactionService).updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class));
+        verify(transactionService).updateTransaction(eq(transactionId), any(TransactionUpdateDTO.class), isNull());
     }
 
     @Test
@@ -1,6 +1,7 @@
 package com.banking.transactionapp.exception;
 
 import com.banking.transactionapp.dto.ErrorResponseDTO;
+import com.banking.transactionapp.model.TransactionType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -11,6 +12,7 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +90,31 @@ class GlobalExceptionHandlerTest {
         assertEquals("A duplicate transaction was detected within " + timeWindowSeconds + " seconds", response.getBody().getMessage());
     }
 
+    @Test
+    void handleVelocityLimitExceededException() {
+        VelocityLimitExceededException exception =
+                new VelocityLimitExceededException("ACC123", TransactionType.WITHDRAWAL, Duration.ofMinutes(1));
+
+        ResponseEntity<ErrorResponseDTO> response = exceptionHandler.handleVelocityLimitExceededException(exception, webRequest);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(429, response.getBody().getStatus());
+        assertEquals("Account ACC123 has reached its limit of WITHDRAWAL transactions within 60 seconds",
+                response.getBody().getMessage());
+    }
+
+    @Test
+    void handleIdempotencyKeyReusedException() {
+        IdempotencyKeyReusedException exception = new IdempotencyKeyReusedException("order-42");
+
+        ResponseEntity<ErrorResponseDTO> response = exceptionHandler.handleIdempotencyKeyReusedException(exception, webRequest);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("Idempotency key order-42 was already used for a different request", response.getBody().getMessage());
+    }
+
     @Test
     void handleValidationExceptions() {
         MethodArgumentNotValidException exception = mock(MethodArgumentNotValidException.class);
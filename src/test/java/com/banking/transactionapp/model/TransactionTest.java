@@ -199,4 +199,51 @@ class TransactionTest {
         
         assertFalse(transaction1.isPotentialDuplicate(transaction2, 10));
     }
+    
+    @Test
+    void isPotentialDuplicate_SameAmountDifferentScale() {
+        LocalDateTime now = LocalDateTime.now();
+        
+        Transaction transaction1 = Transaction.builder()
+                .id(UUID.randomUUID())
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(now)
+                .status(TransactionStatus.PENDING)
+                .build();
+        
+        Transaction transaction2 = Transaction.builder()
+                .id(UUID.randomUUID())
+                .amount(new BigDecimal("100.0")) // Same value, different scale
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(now.plusSeconds(5))
+                .status(TransactionStatus.PENDING)
+                .build();
+        
+        assertTrue(transaction1.isPotentialDuplicate(transaction2, 10));
+    }
+    
+    @Test
+    void fixedPoint_RoundTrip() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 15, 10, 30, 0, 123_456_000);
+        
+        assertEquals(1_000_500L, FixedPoint.toMinorUnits(new BigDecimal("100.05")));
+        assertEquals(1_000_500L, FixedPoint.toMinorUnits(new BigDecimal("100.0500")));
+        assertEquals(-1_000_000L, FixedPoint.toMinorUnits(new BigDecimal("-100")));
+        assertEquals(10_000_000L, FixedPoint.toMinorUnits(new BigDecimal("1E+3")));
+        assertEquals(99_999_999_999_999_9999L, FixedPoint.toMinorUnits(new BigDecimal("99999999999999.9999")));
+        assertEquals(1_000_500L, FixedPoint.toMinorUnits(new BigDecimal("100.050000")));
+        assertEquals(new BigDecimal("100.0500"), FixedPoint.fromMinorUnits(1_000_500L));
+        assertEquals(timestamp, FixedPoint.fromEpochMicros(FixedPoint.toEpochMicros(timestamp)));
+        assertEquals(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000), FixedPoint.fromEpochMicros(-1));
+    }
+    
+    @Test
+    void fixedPoint_AmountTooPrecise() {
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.toMinorUnits(new BigDecimal("0.00001")));
+    }
 }
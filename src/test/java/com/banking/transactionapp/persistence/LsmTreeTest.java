@@ -0,0 +1,209 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmTreeTest {
+    
+    // Small memtables, so a few hundred writes produce several tables and compactions
+    private static final long MEMTABLE_BYTES = 8 * 1024;
+    private static final int COMPACTION_THRESHOLD = 4;
+    
+    @TempDir
+    Path tempDir;
+    
+    private LsmTree tree;
+    
+    @BeforeEach
+    void setUp() {
+        tree = open();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        tree.close();
+    }
+    
+    @Test
+    void get_ReturnsNewestVersion() {
+        Transaction transaction = createTransaction("First Version");
+        tree.put(transaction);
+        tree.flush();
+        
+        transaction = transaction.withStatus(TransactionStatus.COMPLETED);
+        tree.put(transaction);
+        
+        assertEquals(transaction, tree.get(transaction.getId()));
+        assertNull(tree.get(UUID.randomUUID()));
+    }
+    
+    @Test
+    void delete_TombstoneHidesFlushedVersion() {
+        Transaction transaction = createTransaction("Deleted");
+        tree.put(transaction);
+        tree.flush();
+        
+        tree.delete(transaction.getId());
+        assertNull(tree.get(transaction.getId()));
+        
+        tree.flush();
+        assertNull(tree.get(transaction.getId()));
+        assertFalse(tree.iterator().hasNext());
+    }
+    
+    @Test
+    void flush_MergesTablesOnceALevelIsFull() {
+        Map<UUID, Transaction> expected = new HashMap<>();
+        for (int round = 0; round < COMPACTION_THRESHOLD; round++) {
+            for (int i = 0; i < 10; i++) {
+                Transaction transaction = createTransaction("Round " + round + " - " + i);
+                tree.put(transaction);
+                expected.put(transaction.getId(), transaction);
+            }
+            tree.flush();
+        }
+        
+        // The four level-0 tables were merged into a single level-1 table
+        assertEquals(1, tree.tableCount());
+        expected.values().forEach(transaction -> assertEquals(transaction, tree.get(transaction.getId())));
+        assertEquals(expected, collect(tree.iterator()));
+    }
+    
+    @Test
+    void iterator_ReturnsNewestVersionsInIdOrder() {
+        Map<UUID, Transaction> expected = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            Transaction transaction = createTransaction("Transaction " + i);
+            tree.put(transaction);
+            expected.put(transaction.getId(), transaction);
+        }
+        List<UUID> ids = new ArrayList<>(expected.keySet());
+        for (int i = 0; i < 100; i++) {
+            Transaction updated = expected.get(ids.get(i)).withStatus(TransactionStatus.FAILED);
+            tree.put(updated);
+            expected.put(updated.getId(), updated);
+        }
+        for (int i = 100; i < 150; i++) {
+            tree.delete(ids.get(i));
+            expected.remove(ids.get(i));
+        }
+        tree.flush();
+        
+        List<UUID> iterated = new ArrayList<>();
+        Iterator<Transaction> transactions = tree.iterator();
+        while (transactions.hasNext()) {
+            Transaction transaction = transactions.next();
+            assertEquals(expected.get(transaction.getId()), transaction);
+            iterated.add(transaction.getId());
+        }
+        assertEquals(expected.size(), iterated.size());
+        assertEquals(iterated.stream().sorted().toList(), iterated);
+    }
+    
+    @Test
+    void reopen_RecoversUnflushedWritesFromTheLog() {
+        Transaction flushed = createTransaction("Flushed");
+        tree.put(flushed);
+        tree.flush();
+        Transaction logged = createTransaction("Logged");
+        tree.put(logged);
+        tree.delete(flushed.getId());
+        tree.close();
+        
+        tree = open();
+        
+        assertNull(tree.get(flushed.getId()));
+        assertEquals(logged, tree.get(logged.getId()));
+        assertEquals(Map.of(logged.getId(), logged), collect(tree.iterator()));
+    }
+    
+    @Test
+    void reopen_DeletesTablesMissingFromTheManifest() throws IOException {
+        Transaction transaction = createTransaction("Kept");
+        tree.put(transaction);
+        tree.flush();
+        tree.close();
+        
+        // A table written by a flush that crashed before it updated the manifest
+        Path orphan = tempDir.resolve("table-9999999999999999.sst");
+        Files.write(orphan, new byte[] { 1, 2, 3 });
+        
+        tree = open();
+        
+        assertFalse(Files.exists(orphan));
+        assertEquals(transaction, tree.get(transaction.getId()));
+    }
+    
+    @Test
+    void put_ConcurrentWritersAreAllStored() throws InterruptedException, IOException {
+        int numThreads = 8;
+        int writesPerThread = 250;
+        List<Transaction> written = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        
+        for (int i = 0; i < numThreads; i++) {
+            executorService.submit(() -> {
+                for (int j = 0; j < writesPerThread; j++) {
+                    Transaction transaction = createTransaction("Concurrent Transaction " + j);
+                    tree.put(transaction);
+                    written.add(transaction);
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        tree.flush();
+        
+        assertEquals(numThreads * writesPerThread, collect(tree.iterator()).size());
+        written.forEach(transaction -> assertEquals(transaction, tree.get(transaction.getId())));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            // Every flushed memtable's log is gone; only the active one remains
+            assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("wal-")).count());
+        }
+    }
+    
+    private LsmTree open() {
+        return new LsmTree(tempDir, false, MEMTABLE_BYTES, COMPACTION_THRESHOLD);
+    }
+    
+    private static Map<UUID, Transaction> collect(Iterator<Transaction> transactions) {
+        Map<UUID, Transaction> collected = new HashMap<>();
+        transactions.forEachRemaining(transaction -> collected.put(transaction.getId(), transaction));
+        return collected;
+    }
+    
+    private Transaction createTransaction(String description) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description(description)
+                .type(TransactionType.PAYMENT)
+                .accountNumber("ACC123456")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
@@ -0,0 +1,226 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.repository.InMemoryTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentArchiveTest {
+    
+    // Small blocks, so every test reads across several compressed blocks
+    private static final int BLOCK_SIZE = 4;
+    
+    @TempDir
+    Path tempDir;
+    
+    private WriteAheadLog wal;
+    private SegmentArchive archive;
+    private InMemoryTransactionRepository repository;
+    private LocalDateTime now;
+    
+    @BeforeEach
+    void setUp() {
+        wal = new WriteAheadLog(tempDir.resolve("journal"), true);
+        archive = new SegmentArchive(tempDir.resolve("segments"), Duration.ofDays(30), BLOCK_SIZE);
+        repository = new InMemoryTransactionRepository(wal, archive);
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        wal.close();
+        archive.close();
+    }
+    
+    @Test
+    void archiveAgedTransactions_MovesOldTransactionsToSegments() {
+        List<Transaction> old = saveDaily("ACC1", 40, 20);
+        Transaction recent = repository.save(createTransaction("ACC1", now.minusDays(1)));
+        
+        repository.archiveAgedTransactions();
+        
+        assertEquals(20, archive.count());
+        assertEquals(21, repository.count());
+        for (Transaction transaction : old) {
+            assertEquals(transaction, archive.findById(transaction.getId()).orElseThrow());
+            assertEquals(transaction, repository.findById(transaction.getId()).orElseThrow());
+            assertTrue(repository.existsById(transaction.getId()));
+        }
+        assertFalse(archive.findById(recent.getId()).isPresent());
+        assertFalse(repository.findById(UUID.randomUUID()).isPresent());
+    }
+    
+    @Test
+    void listings_MergeMemoryAndArchive() {
+        saveDaily("ACC1", 40, 10);
+        repository.archiveAgedTransactions();
+        saveDaily("ACC1", 5, 5);
+        
+        List<Transaction> seen = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<Transaction> page;
+        while (!(page = repository.findAllAfter(cursor, 3)).isEmpty()) {
+            seen.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        
+        assertEquals(15, seen.size());
+        for (int i = 1; i < seen.size(); i++) {
+            assertTrue(seen.get(i - 1).getTimestamp().isAfter(seen.get(i).getTimestamp()));
+        }
+        assertEquals(seen.subList(6, 9), repository.findAll(2, 3));
+        assertEquals(15, repository.findAll().size());
+    }
+    
+    @Test
+    void findByTimestampBetween_ReadsAcrossTiers() {
+        List<Transaction> old = saveDaily("ACC1", 40, 10);
+        repository.archiveAgedTransactions();
+        List<Transaction> recent = saveDaily("ACC1", 5, 5);
+        
+        List<Transaction> range = repository.findByTimestampBetween(now.minusDays(43), now.minusDays(2), null, 100);
+        
+        // Days 5 to 9 are in memory, days 40 to 43 in the archive
+        List<Transaction> expected = new ArrayList<>(recent);
+        expected.addAll(old.subList(0, 4));
+        assertEquals(expected, range);
+        assertTrue(repository.findByTimestampBetween(now.minusDays(39), now.minusDays(10), null, 100).isEmpty());
+    }
+    
+    @Test
+    void findByAccountNumber_ReadsAcrossTiers() {
+        saveDaily("ACC1", 40, 10);
+        List<Transaction> oldSecond = saveDaily("ACC2", 40, 10);
+        repository.archiveAgedTransactions();
+        List<Transaction> recentSecond = saveDaily("ACC2", 5, 2);
+        
+        List<Transaction> firstPage = repository.findByAccountNumber("ACC2", null, 5);
+        List<Transaction> secondPage = repository.findByAccountNumber("ACC2",
+                TransactionCursor.of(firstPage.get(4)), 10);
+        
+        assertEquals(List.of(recentSecond.get(0), recentSecond.get(1),
+                oldSecond.get(0), oldSecond.get(1), oldSecond.get(2)), firstPage);
+        assertEquals(oldSecond.subList(3, 10), secondPage);
+        assertTrue(repository.findByAccountNumber("ACC3", null, 10).isEmpty());
+    }
+    
+    @Test
+    void save_UpdatedArchivedTransactionMovesBackToMemory() {
+        Transaction deposit = createTransaction("ACC1", now.minusDays(40));
+        deposit = deposit.withType(TransactionType.DEPOSIT).withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        repository.archiveAgedTransactions();
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance("ACC1")));
+        
+        Transaction archived = repository.findById(deposit.getId()).orElseThrow();
+        archived = archived.withAmount(new BigDecimal("250.00"));
+        repository.save(archived);
+        
+        assertEquals(0, archive.count());
+        assertEquals(1, repository.count());
+        assertEquals(new BigDecimal("250.00"), repository.findById(deposit.getId()).orElseThrow().getAmount());
+        assertEquals(0, new BigDecimal("250.00").compareTo(repository.getBalance("ACC1")));
+    }
+    
+    @Test
+    void deleteById_RemovesArchivedTransaction() {
+        Transaction deposit = createTransaction("ACC1", now.minusDays(40));
+        deposit = deposit.withType(TransactionType.DEPOSIT).withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        repository.archiveAgedTransactions();
+        
+        repository.deleteById(deposit.getId());
+        
+        assertFalse(repository.existsById(deposit.getId()));
+        assertEquals(0, repository.count());
+        assertTrue(repository.findAllAfter(null, 10).isEmpty());
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("ACC1")));
+    }
+    
+    @Test
+    void restart_RestoresArchiveBalancesAndTombstones() {
+        List<Transaction> old = saveDaily("ACC1", 40, 10).stream()
+                .map(transaction -> repository.save(transaction.toBuilder()
+                        .type(TransactionType.DEPOSIT)
+                        .status(TransactionStatus.COMPLETED)
+                        .build()))
+                .toList();
+        repository.archiveAgedTransactions();
+        repository.deleteById(old.get(0).getId());
+        Transaction recent = repository.save(createTransaction("ACC1", now));
+        wal.close();
+        archive.close();
+        
+        // The journal still holds the saves of the archived transactions; replaying them must not duplicate them
+        wal = new WriteAheadLog(tempDir.resolve("journal"), true);
+        archive = new SegmentArchive(tempDir.resolve("segments"), Duration.ofDays(30), BLOCK_SIZE);
+        InMemoryTransactionRepository restarted = new InMemoryTransactionRepository(wal, archive);
+        
+        assertEquals(10, restarted.count());
+        assertEquals(9, archive.count());
+        assertFalse(restarted.existsById(old.get(0).getId()));
+        assertEquals(old.get(5), restarted.findById(old.get(5).getId()).orElseThrow());
+        assertEquals(recent, restarted.findById(recent.getId()).orElseThrow());
+        assertEquals(0, new BigDecimal("900.00").compareTo(restarted.getBalance("ACC1")));
+    }
+    
+    @Test
+    void open_DiscardsTornTombstoneAtTheEnd() throws IOException {
+        List<Transaction> old = saveDaily("ACC1", 40, 10);
+        repository.archiveAgedTransactions();
+        repository.deleteById(old.get(3).getId());
+        archive.close();
+        
+        // Simulate a crash in the middle of writing the next tombstone
+        Files.write(tempDir.resolve("segments").resolve(SegmentArchive.TOMBSTONE_FILE_NAME),
+                new byte[] { 0, 0, 0, 1 }, StandardOpenOption.APPEND);
+        
+        archive = new SegmentArchive(tempDir.resolve("segments"), Duration.ofDays(30), BLOCK_SIZE);
+        
+        assertEquals(9, archive.count());
+        assertFalse(archive.findById(old.get(3).getId()).isPresent());
+        assertTrue(archive.remove(old.get(4).getId()).isPresent());
+        assertEquals(8, archive.count());
+    }
+    
+    /**
+     * Saves one transaction per day, starting {@code daysAgo} days back and going further into the past.
+     */
+    private List<Transaction> saveDaily(String accountNumber, int daysAgo, int count) {
+        List<Transaction> saved = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            saved.add(repository.save(createTransaction(accountNumber, now.minusDays(daysAgo + i))));
+        }
+        return saved;
+    }
+    
+    private Transaction createTransaction(String accountNumber, LocalDateTime timestamp) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber(accountNumber)
+                .timestamp(timestamp)
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
@@ -0,0 +1,232 @@
+package com.banking.transactionapp.persistence;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.repository.InMemoryTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private WriteAheadLog wal;
+
+    @BeforeEach
+    void setUp() {
+        wal = new WriteAheadLog(tempDir, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wal.close();
+    }
+
+    @Test
+    void replay_RestoresSavesAndDeletes() {
+        Transaction kept = createTransaction("Kept Transaction");
+        Transaction deleted = createTransaction("Deleted Transaction");
+        
+        wal.recordSave(kept);
+        wal.recordSave(deleted);
+        kept = kept.withStatus(TransactionStatus.COMPLETED);
+        wal.recordSave(kept);
+        wal.recordDelete(deleted.getId());
+        wal.close();
+        
+        Map<UUID, Transaction> replayed = replay(new WriteAheadLog(tempDir, true));
+        
+        assertEquals(1, replayed.size());
+        Transaction restored = replayed.get(kept.getId());
+        assertEquals(kept, restored);
+        assertEquals(TransactionStatus.COMPLETED, restored.getStatus());
+    }
+
+    @Test
+    void recordSave_ConcurrentWritersAreAllDurable() throws InterruptedException {
+        int numThreads = 16;
+        int writesPerThread = 200;
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        
+        for (int i = 0; i < numThreads; i++) {
+            executorService.submit(() -> {
+                for (int j = 0; j < writesPerThread; j++) {
+                    wal.recordSave(createTransaction("Concurrent Transaction " + j));
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        wal.close();
+        
+        assertEquals(numThreads * writesPerThread, replay(new WriteAheadLog(tempDir, true)).size());
+    }
+
+    @Test
+    void open_DiscardsTornRecordAtTheEnd() throws IOException {
+        Transaction transaction = createTransaction("Before Crash");
+        wal.recordSave(transaction);
+        wal.close();
+        
+        // Simulate a crash in the middle of writing the next record
+        Files.write(tempDir.resolve(WriteAheadLog.LOG_FILE_NAME), new byte[] { 0, 0, 0, 42, 1, 2, 3 }, StandardOpenOption.APPEND);
+        
+        wal = new WriteAheadLog(tempDir, true);
+        Transaction afterRestart = createTransaction("After Restart");
+        wal.recordSave(afterRestart);
+        wal.close();
+        
+        Map<UUID, Transaction> replayed = replay(new WriteAheadLog(tempDir, true));
+        assertEquals(2, replayed.size());
+        assertTrue(replayed.containsKey(transaction.getId()));
+        assertTrue(replayed.containsKey(afterRestart.getId()));
+    }
+
+    @Test
+    void recordSave_AfterCloseFails() {
+        wal.close();
+        
+        assertThrows(JournalException.class, () -> wal.recordSave(createTransaction("Too Late")));
+    }
+
+    @Test
+    void repository_RecoversFromJournalOnStartup() {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(wal);
+        Transaction first = repository.save(createTransaction("First"));
+        Transaction second = repository.save(createTransaction("Second"));
+        repository.deleteById(second.getId());
+        wal.close();
+        
+        wal = new WriteAheadLog(tempDir, true);
+        InMemoryTransactionRepository restarted = new InMemoryTransactionRepository(wal);
+        
+        assertEquals(1, restarted.count());
+        assertEquals(first, restarted.findById(first.getId()).orElseThrow());
+        assertEquals(first.getId(), restarted.findAll(0, 10).get(0).getId());
+    }
+
+    @Test
+    void repository_RecoversBatchFromJournal() {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(wal);
+        List<Transaction> saved = repository.saveAll(
+                List.of(createTransaction("First"), createTransaction("Second"), createTransaction("Third")), 10);
+        wal.close();
+        
+        wal = new WriteAheadLog(tempDir, true);
+        InMemoryTransactionRepository restarted = new InMemoryTransactionRepository(wal);
+        
+        assertEquals(3, restarted.count());
+        saved.forEach(transaction -> assertTrue(restarted.existsById(transaction.getId())));
+    }
+
+    @Test
+    void checkpoint_WritesSnapshotAndTruncatesLog() throws IOException {
+        InMemoryTransactionRepository repository = new InMemoryTransactionRepository(wal);
+        Transaction first = repository.save(createTransaction("First"));
+        Transaction second = repository.save(createTransaction("Second"));
+        
+        repository.checkpoint();
+        
+        assertTrue(Files.exists(tempDir.resolve(WriteAheadLog.SNAPSHOT_FILE_NAME)));
+        assertFalse(Files.exists(tempDir.resolve(WriteAheadLog.ROTATED_LOG_FILE_NAME)));
+        assertEquals(0, Files.size(tempDir.resolve(WriteAheadLog.LOG_FILE_NAME)));
+        
+        // Changes after the checkpoint go to the fresh log
+        repository.deleteById(second.getId());
+        Transaction third = repository.save(createTransaction("Third"));
+        wal.close();
+        
+        wal = new WriteAheadLog(tempDir, true);
+        InMemoryTransactionRepository restarted = new InMemoryTransactionRepository(wal);
+        
+        assertEquals(2, restarted.count());
+        assertEquals(first, restarted.findById(first.getId()).orElseThrow());
+        assertEquals(third, restarted.findById(third.getId()).orElseThrow());
+        assertFalse(restarted.existsById(second.getId()));
+    }
+
+    @Test
+    void replay_CrashBeforeSnapshotCompleted() {
+        Transaction beforeRotation = createTransaction("Before Rotation");
+        wal.recordSave(beforeRotation);
+        
+        // The process dies after rotating the log but before the snapshot is written
+        wal.startCheckpoint();
+        Transaction afterRotation = createTransaction("After Rotation");
+        wal.recordSave(afterRotation);
+        wal.close();
+        
+        Map<UUID, Transaction> replayed = replay(new WriteAheadLog(tempDir, true));
+        
+        assertEquals(2, replayed.size());
+        assertTrue(replayed.containsKey(beforeRotation.getId()));
+        assertTrue(replayed.containsKey(afterRotation.getId()));
+    }
+
+    @Test
+    void replay_LargeSnapshot() {
+        Map<UUID, Transaction> state = new LinkedHashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            Transaction transaction = createTransaction("Snapshot Transaction " + i);
+            state.put(transaction.getId(), transaction);
+        }
+        // The checkpoint only runs when something was logged since the last one
+        wal.recordSave(state.values().iterator().next());
+        
+        wal.startCheckpoint().complete(state.values().iterator());
+        wal.close();
+        
+        assertEquals(state, replay(new WriteAheadLog(tempDir, true)));
+    }
+
+    private Map<UUID, Transaction> replay(WriteAheadLog log) {
+        Map<UUID, Transaction> state = new LinkedHashMap<>();
+        try {
+            log.replay(new TransactionJournal.Replayer() {
+                @Override
+                public void save(Transaction transaction) {
+                    state.put(transaction.getId(), transaction);
+                }
+
+                @Override
+                public void delete(UUID id) {
+                    state.remove(id);
+                }
+            });
+        } finally {
+            log.close();
+        }
+        return state;
+    }
+
+    private Transaction createTransaction(String description) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.50"))
+                .description(description)
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 package com.banking.transactionapp.repository;
 
 import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
 import com.banking.transactionapp.model.TransactionStatus;
 import com.banking.transactionapp.model.TransactionType;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,9 +9,15 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -103,6 +110,199 @@ class InMemoryTransactionRepositoryTest {
         assertEquals(2, transactions.size());
     }
     
+    @Test
+    void findAll_Paginated_NewestFirst() {
+        repository.save(transaction2);
+        repository.save(transaction3);
+        
+        List<Transaction> firstPage = repository.findAll(0, 2);
+        List<Transaction> secondPage = repository.findAll(1, 2);
+        
+        // transaction2 is 5 seconds newer than the others
+        assertEquals(transaction2.getId(), firstPage.get(0).getId());
+        assertFalse(firstPage.get(0).getTimestamp().isBefore(firstPage.get(1).getTimestamp()));
+        assertEquals(1, secondPage.size());
+        assertTrue(repository.findAll(2, 2).isEmpty());
+    }
+    
+    @Test
+    void findAll_Paginated_AfterDelete() {
+        repository.save(transaction2);
+        repository.deleteById(transaction2.getId());
+        
+        List<Transaction> transactions = repository.findAll(0, 10);
+        
+        assertEquals(1, transactions.size());
+        assertEquals(transaction1.getId(), transactions.get(0).getId());
+    }
+    
+    @Test
+    void findAllAfter_WalksPagesWithCursor() {
+        repository.save(transaction2);
+        repository.save(transaction3);
+        
+        List<Transaction> firstPage = repository.findAllAfter(null, 2);
+        List<Transaction> secondPage = repository.findAllAfter(TransactionCursor.of(firstPage.get(1)), 2);
+        
+        assertEquals(2, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertTrue(repository.findAllAfter(TransactionCursor.of(secondPage.get(0)), 2).isEmpty());
+        
+        // Every transaction is returned exactly once across the pages
+        assertNotEquals(firstPage.get(0).getId(), secondPage.get(0).getId());
+        assertNotEquals(firstPage.get(1).getId(), secondPage.get(0).getId());
+    }
+    
+    @Test
+    void findAllAfter_CursorTransactionDeleted() {
+        repository.save(transaction2);
+        repository.save(transaction3);
+        
+        List<Transaction> firstPage = repository.findAllAfter(null, 1);
+        repository.deleteById(firstPage.get(0).getId());
+        
+        // The cursor still positions correctly after its transaction is gone
+        List<Transaction> nextPage = repository.findAllAfter(TransactionCursor.of(firstPage.get(0)), 10);
+        assertEquals(2, nextPage.size());
+    }
+    
+    @Test
+    void findByTimestampBetween_WalksRangeNewestFirst() {
+        LocalDateTime base = transaction1.getTimestamp().minusHours(1);
+        for (int i = 0; i < 10; i++) {
+            repository.save(Transaction.builder()
+                    .amount(new BigDecimal("1.00"))
+                    .description("Range Transaction " + i)
+                    .type(TransactionType.PAYMENT)
+                    .accountNumber("555")
+                    .timestamp(base.minusSeconds(i))
+                    .build());
+        }
+        
+        // From is inclusive and to is exclusive: seconds 2 to 7 before the base
+        LocalDateTime from = base.minusSeconds(7);
+        LocalDateTime to = base.minusSeconds(1);
+        List<Transaction> firstPage = repository.findByTimestampBetween(from, to, null, 4);
+        List<Transaction> secondPage = repository.findByTimestampBetween(
+                from, to, TransactionCursor.of(firstPage.get(3)), 4);
+        
+        assertEquals(4, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertEquals("Range Transaction 2", firstPage.get(0).getDescription());
+        assertEquals("Range Transaction 7", secondPage.get(1).getDescription());
+        
+        assertTrue(repository.findByTimestampBetween(to, from, null, 10).isEmpty());
+        assertTrue(repository.findByTimestampBetween(
+                from, to, TransactionCursor.of(secondPage.get(1)), 10).isEmpty());
+    }
+    
+    @Test
+    void findByAccountNumber_PagesOnlyThatAccount() {
+        repository.save(transaction2);
+        repository.save(transaction3);
+        
+        List<Transaction> firstPage = repository.findByAccountNumber("123456789", null, 1);
+        List<Transaction> secondPage = repository.findByAccountNumber(
+                "123456789", TransactionCursor.of(firstPage.get(0)), 10);
+        
+        assertEquals(List.of(transaction2), firstPage);
+        assertEquals(List.of(transaction1), secondPage);
+        assertEquals(List.of(transaction3), repository.findByAccountNumber("987654321", null, 10));
+        assertTrue(repository.findByAccountNumber("000000000", null, 10).isEmpty());
+    }
+    
+    @Test
+    void findByAccountNumber_FollowsAccountChangeAndDelete() {
+        repository.save(transaction3);
+        
+        transaction1 = transaction1.withAccountNumber("987654321");
+        repository.save(transaction1);
+        
+        assertTrue(repository.findByAccountNumber("123456789", null, 10).isEmpty());
+        assertEquals(2, repository.findByAccountNumber("987654321", null, 10).size());
+        
+        repository.deleteById(transaction3.getId());
+        
+        assertEquals(List.of(transaction1), repository.findByAccountNumber("987654321", null, 10));
+    }
+    
+    @Test
+    void findOldestByStatus_FollowsStatusChangeAndDelete() {
+        transaction2 = transaction2.withDescription("Next Transaction");
+        repository.save(transaction2);
+        repository.save(transaction3);
+        
+        assertEquals(List.of(transaction1, transaction2), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(transaction1), repository.findOldestByStatus(TransactionStatus.PENDING, 1));
+        assertEquals(List.of(transaction2), repository.findByStatus(TransactionStatus.PENDING, null, 1));
+        assertEquals(List.of(transaction3), repository.findByStatus(TransactionStatus.COMPLETED, null, 10));
+        
+        Transaction processing = transaction1.toBuilder().status(TransactionStatus.PROCESSING).version(2).build();
+        assertEquals(ReplaceResult.REPLACED, repository.replace(processing, 1, 10));
+        repository.deleteById(transaction3.getId());
+        
+        assertEquals(List.of(transaction2), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(processing), repository.findByStatus(TransactionStatus.PROCESSING, null, 10));
+        assertTrue(repository.findByStatus(TransactionStatus.COMPLETED, null, 10).isEmpty());
+    }
+    
+    @Test
+    void getBalance_FollowsCreateUpdateAndDelete() {
+        // transaction3 is a completed deposit; transaction1 is still pending
+        repository.save(transaction3);
+        assertEquals(0, new BigDecimal("200.00").compareTo(repository.getBalance("987654321")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("123456789")));
+        
+        Transaction withdrawal = Transaction.builder()
+                .amount(new BigDecimal("50.25"))
+                .description("Cash withdrawal")
+                .type(TransactionType.WITHDRAWAL)
+                .accountNumber("987654321")
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        repository.save(withdrawal);
+        assertEquals(0, new BigDecimal("149.75").compareTo(repository.getBalance("987654321")));
+        
+        // Updates modify the stored instance in place; only the difference is applied
+        withdrawal = withdrawal.withAmount(new BigDecimal("20.00"));
+        repository.save(withdrawal);
+        assertEquals(0, new BigDecimal("180.00").compareTo(repository.getBalance("987654321")));
+        
+        withdrawal = withdrawal.withStatus(TransactionStatus.CANCELLED);
+        repository.save(withdrawal);
+        assertEquals(0, new BigDecimal("200.00").compareTo(repository.getBalance("987654321")));
+        
+        transaction3 = transaction3.withAccountNumber("123456789");
+        repository.save(transaction3);
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("987654321")));
+        assertEquals(0, new BigDecimal("200.00").compareTo(repository.getBalance("123456789")));
+        
+        repository.deleteById(transaction3.getId());
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("123456789")));
+    }
+    
+    @Test
+    void streamAll_ReadsEveryTransactionNewestFirst() {
+        // More than one page of the underlying cursor walk
+        for (int i = 1; i <= 1200; i++) {
+            repository.save(Transaction.builder()
+                    .amount(new BigDecimal("1.00"))
+                    .description("Bulk Transaction")
+                    .type(TransactionType.PAYMENT)
+                    .accountNumber("555")
+                    .timestamp(transaction1.getTimestamp().minusSeconds(i))
+                    .build());
+        }
+        
+        List<Transaction> streamed = repository.streamAll().toList();
+        
+        assertEquals(1201, streamed.size());
+        assertEquals(transaction1.getId(), streamed.get(0).getId());
+        for (int i = 1; i < streamed.size(); i++) {
+            assertTrue(streamed.get(i).getTimestamp().isBefore(streamed.get(i - 1).getTimestamp()));
+        }
+    }
+    
     @Test
     void count_Success() {
         repository.save(transaction2);
@@ -113,12 +313,21 @@ class InMemoryTransactionRepositoryTest {
     
     @Test
     void deleteById_Success() {
-        repository.deleteById(transaction1.getId());
+        assertEquals(Optional.of(transaction1), repository.deleteById(transaction1.getId()));
         
         assertFalse(repository.existsById(transaction1.getId()));
         assertEquals(0, repository.count());
     }
     
+    @Test
+    void deleteById_ReturnsRemovedVersionOnlyOnce() {
+        Transaction next = transaction1.toBuilder().status(TransactionStatus.COMPLETED).version(2).build();
+        assertEquals(ReplaceResult.REPLACED, repository.replace(next, 1, 10));
+        
+        assertEquals(Optional.of(next), repository.deleteById(transaction1.getId()));
+        assertTrue(repository.deleteById(transaction1.getId()).isEmpty());
+    }
+    
     @Test
     void existsById_Success() {
         assertTrue(repository.existsById(transaction1.getId()));
@@ -165,6 +374,21 @@ class InMemoryTransactionRepositoryTest {
         assertFalse(repository.isDuplicateWithinTimeWindow(laterTransaction, 10));
     }
     
+    @Test
+    void isDuplicateWithinTimeWindow_SameAmountDifferentScale() {
+        Transaction differentScaleTransaction = Transaction.builder()
+                .amount(new BigDecimal("100.0000"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(LocalDateTime.now().plusSeconds(5))
+                .status(TransactionStatus.PENDING)
+                .build();
+        
+        // Amounts are compared in minor units, so 100.0000 matches 100.00
+        assertTrue(repository.isDuplicateWithinTimeWindow(differentScaleTransaction, 10));
+    }
+    
     @Test
     void isDuplicateWithinTimeWindow_DifferentAccount() {
         // Create a transaction with different account number
@@ -180,4 +404,211 @@ class InMemoryTransactionRepositoryTest {
         // Should not detect as duplicate (different account)
         assertFalse(repository.isDuplicateWithinTimeWindow(differentAccountTransaction, 10));
     }
+    
+    @Test
+    void isDuplicateWithinTimeWindow_AfterUpdateChangesFingerprint() {
+        // Update the stored transaction in place, the way the service does
+        transaction1 = transaction1.withDescription("Changed Description");
+        repository.save(transaction1);
+        
+        // The old fingerprint should no longer match
+        assertFalse(repository.isDuplicateWithinTimeWindow(transaction2, 10));
+        
+        // The new fingerprint should
+        Transaction matchingNewFingerprint = Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Changed Description")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(LocalDateTime.now())
+                .build();
+        assertTrue(repository.isDuplicateWithinTimeWindow(matchingNewFingerprint, 10));
+    }
+    
+    @Test
+    void isDuplicateWithinTimeWindow_AfterDelete() {
+        repository.deleteById(transaction1.getId());
+        
+        assertFalse(repository.isDuplicateWithinTimeWindow(transaction2, 10));
+    }
+    
+    @Test
+    void saveIfNotDuplicate_Success() {
+        Optional<Transaction> saved = repository.saveIfNotDuplicate(transaction3, 10);
+        
+        assertTrue(saved.isPresent());
+        assertTrue(repository.existsById(transaction3.getId()));
+    }
+    
+    @Test
+    void saveIfNotDuplicate_Duplicate() {
+        Optional<Transaction> saved = repository.saveIfNotDuplicate(transaction2, 10);
+        
+        assertFalse(saved.isPresent());
+        assertFalse(repository.existsById(transaction2.getId()));
+        assertEquals(1, repository.count());
+    }
+    
+    @Test
+    void saveIfNotDuplicate_UpdateOfSameTransaction() {
+        // A transaction is never a duplicate of itself
+        transaction1 = transaction1.withStatus(TransactionStatus.COMPLETED);
+        
+        assertTrue(repository.saveIfNotDuplicate(transaction1, 10).isPresent());
+        assertEquals(1, repository.count());
+    }
+    
+    @Test
+    void replace_AppliesOnlyOnExpectedVersion() {
+        Transaction next = transaction1.toBuilder().status(TransactionStatus.COMPLETED).version(2).build();
+        
+        assertEquals(ReplaceResult.VERSION_CONFLICT, repository.replace(next, 2, 10));
+        assertEquals(ReplaceResult.REPLACED, repository.replace(next, 1, 10));
+        assertEquals(ReplaceResult.VERSION_CONFLICT, repository.replace(next.withVersion(3), 1, 10));
+        
+        assertEquals(next, repository.findById(transaction1.getId()).orElseThrow());
+        assertEquals(ReplaceResult.NOT_FOUND, repository.replace(transaction3, 1, 10));
+        assertFalse(repository.existsById(transaction3.getId()));
+    }
+    
+    @Test
+    void replace_RejectsDuplicateAndKeepsCurrentVersion() {
+        repository.save(transaction3);
+        Transaction next = transaction3.toBuilder()
+                .amount(transaction1.getAmount())
+                .description(transaction1.getDescription())
+                .type(transaction1.getType())
+                .accountNumber(transaction1.getAccountNumber())
+                .timestamp(transaction1.getTimestamp())
+                .version(2)
+                .build();
+        
+        assertEquals(ReplaceResult.DUPLICATE, repository.replace(next, 1, 10));
+        assertEquals(transaction3, repository.findById(transaction3.getId()).orElseThrow());
+        // The claim of the current version is kept
+        assertTrue(repository.isDuplicateWithinTimeWindow(transaction3.withId(UUID.randomUUID()), 10));
+    }
+    
+    @Test
+    void replace_ConcurrentUpdatesOfSameVersion() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        try {
+            List<Future<ReplaceResult>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Transaction next = transaction1.toBuilder().description("Update " + i).version(2).build();
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return repository.replace(next, 1, 10);
+                }));
+            }
+            start.countDown();
+            
+            int replaced = 0;
+            for (Future<ReplaceResult> result : results) {
+                if (result.get(10, TimeUnit.SECONDS) == ReplaceResult.REPLACED) {
+                    replaced++;
+                }
+            }
+            
+            // Exactly one update wins; the others see a newer version
+            assertEquals(1, replaced);
+            assertEquals(2, repository.findById(transaction1.getId()).orElseThrow().getVersion());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void saveIfNotDuplicate_ConcurrentIdenticalRequests() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Transaction duplicate = Transaction.builder()
+                        .amount(new BigDecimal("200.00"))
+                        .description("Another Transaction")
+                        .type(TransactionType.DEPOSIT)
+                        .accountNumber("987654321")
+                        .timestamp(LocalDateTime.now())
+                        .build();
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return repository.saveIfNotDuplicate(duplicate, 10).isPresent();
+                }));
+            }
+            start.countDown();
+            
+            int saved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    saved++;
+                }
+            }
+            
+            // Exactly one of the identical requests is stored
+            assertEquals(1, saved);
+            assertEquals(2, repository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void saveAll_SkipsDuplicates() {
+        Transaction batchDuplicate = Transaction.builder()
+                .amount(new BigDecimal("200.00"))
+                .description("Another Transaction")
+                .type(TransactionType.DEPOSIT)
+                .accountNumber("987654321")
+                .timestamp(LocalDateTime.now().plusSeconds(1))
+                .build();
+        
+        List<Transaction> saved = repository.saveAll(List.of(transaction2, transaction3, batchDuplicate), 10);
+        
+        // transaction2 duplicates the stored transaction1, batchDuplicate the earlier transaction3
+        assertEquals(List.of(transaction3), saved);
+        assertEquals(2, repository.count());
+        assertTrue(repository.existsById(transaction3.getId()));
+        assertFalse(repository.existsById(transaction2.getId()));
+        assertFalse(repository.existsById(batchDuplicate.getId()));
+    }
+    
+    @Test
+    void purgeExpiredFingerprints_KeepsRecentTransactions() {
+        repository.purgeExpiredFingerprints();
+        
+        // Recent transactions are still in the index after a purge
+        assertTrue(repository.isDuplicateWithinTimeWindow(transaction2, 10));
+    }
+    
+    @Test
+    void isDuplicateWithinTimeWindow_OlderThanRetention() {
+        LocalDateTime oldTimestamp = LocalDateTime.now().minusHours(1);
+        Transaction oldTransaction = Transaction.builder()
+                .amount(new BigDecimal("300.00"))
+                .description("Old Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(oldTimestamp)
+                .build();
+        repository.save(oldTransaction);
+        repository.purgeExpiredFingerprints();
+        
+        Transaction oldDuplicate = Transaction.builder()
+                .amount(new BigDecimal("300.00"))
+                .description("Old Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(oldTimestamp.plusSeconds(5))
+                .build();
+        
+        // Purged from the index, but still detected through the fallback scan
+        assertTrue(repository.isDuplicateWithinTimeWindow(oldDuplicate, 10));
+    }
 }
@@ -0,0 +1,283 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcTransactionRepositoryTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private JdbcTransactionRepository repository;
+    private LocalDateTime now;
+    
+    @BeforeEach
+    void setUp() {
+        repository = open();
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+    
+    @Test
+    void save_ReadsBackEqualTransaction() {
+        Transaction transaction = createTransaction("ACC1", now);
+        transaction = transaction.withAmount(new BigDecimal("12.5"));
+        repository.save(transaction);
+        
+        assertEquals(1, repository.count());
+        assertEquals(transaction, repository.findById(transaction.getId()).orElseThrow());
+        assertTrue(repository.existsById(transaction.getId()));
+        assertFalse(repository.findById(UUID.randomUUID()).isPresent());
+        assertEquals(List.of(transaction), repository.findAll());
+    }
+    
+    @Test
+    void findAllAfter_WalksTimelineNewestFirst() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+        }
+        
+        List<Transaction> seen = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<Transaction> page;
+        while (!(page = repository.findAllAfter(cursor, 3)).isEmpty()) {
+            seen.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        
+        assertEquals(20, seen.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ACC" + i, seen.get(i).getAccountNumber());
+        }
+        assertEquals(seen.subList(5, 10), repository.findAll(1, 5));
+    }
+    
+    @Test
+    void findAllAfter_BreaksTimestampTiesById() {
+        for (int i = 0; i < 10; i++) {
+            repository.save(createTransaction("ACC" + i, now));
+        }
+        
+        List<Transaction> seen = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<Transaction> page;
+        while (!(page = repository.findAllAfter(cursor, 4)).isEmpty()) {
+            seen.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        
+        assertEquals(repository.findAll(), seen);
+    }
+    
+    @Test
+    void findByTimestampBetween_ReturnsRangeNewestFirst() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+        }
+        
+        List<Transaction> range = repository.findByTimestampBetween(now.minusSeconds(15), now.minusSeconds(4), null, 100);
+        List<Transaction> rest = repository.findByTimestampBetween(now.minusSeconds(15), now.minusSeconds(4),
+                TransactionCursor.of(range.get(5)), 100);
+        
+        assertEquals(11, range.size());
+        for (int i = 0; i < 11; i++) {
+            assertEquals("ACC" + (5 + i), range.get(i).getAccountNumber());
+        }
+        assertEquals(range.subList(6, 11), rest);
+    }
+    
+    @Test
+    void findByAccountNumber_FollowsAccountChange() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        Transaction older = repository.save(createTransaction("ACC1", now.minusSeconds(1)));
+        
+        Transaction moved = repository.findById(transaction.getId()).orElseThrow();
+        moved = moved.withAccountNumber("ACC2");
+        repository.save(moved);
+        
+        assertEquals(List.of(older), repository.findByAccountNumber("ACC1", null, 10));
+        assertEquals(List.of(moved), repository.findByAccountNumber("ACC2", null, 10));
+        assertEquals(2, repository.count());
+    }
+    
+    @Test
+    void findOldestByStatus_FollowsStatusChange() {
+        Transaction newer = repository.save(createTransaction("ACC1", now.minusSeconds(1)));
+        Transaction older = repository.save(createTransaction("ACC2", now.minusSeconds(2)));
+        Transaction completed = repository.save(createTransaction("ACC3", now).withStatus(TransactionStatus.COMPLETED));
+        
+        assertEquals(List.of(older, newer), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(newer, older), repository.findByStatus(TransactionStatus.PENDING, null, 10));
+        assertEquals(List.of(completed), repository.findByStatus(TransactionStatus.COMPLETED, null, 10));
+        
+        Transaction processing = repository.save(older.withStatus(TransactionStatus.PROCESSING));
+        
+        assertEquals(List.of(newer), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(processing), repository.findByStatus(TransactionStatus.PROCESSING, null, 10));
+    }
+    
+    @Test
+    void getBalance_TracksCompletedTransactions() {
+        Transaction deposit = createTransaction("ACC1", now);
+        deposit = deposit.withType(TransactionType.DEPOSIT);
+        repository.save(deposit);
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("ACC1")));
+        
+        deposit = deposit.withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        Transaction withdrawal = createTransaction("ACC1", now.plusSeconds(1));
+        withdrawal = withdrawal.withType(TransactionType.WITHDRAWAL)
+                .withStatus(TransactionStatus.COMPLETED)
+                .withAmount(new BigDecimal("30.00"));
+        repository.save(withdrawal);
+        
+        assertEquals(0, new BigDecimal("70.00").compareTo(repository.getBalance("ACC1")));
+        
+        assertEquals(Optional.of(withdrawal), repository.deleteById(withdrawal.getId()));
+        assertTrue(repository.deleteById(withdrawal.getId()).isEmpty());
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance("ACC1")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("ACC2")));
+    }
+    
+    @Test
+    void isDuplicateWithinTimeWindow_MatchesFieldsAndWindow() {
+        repository.save(createTransaction("ACC1", now));
+        
+        Transaction nearby = createTransaction("ACC1", now.plusSeconds(10));
+        Transaction later = createTransaction("ACC1", now.plusSeconds(11));
+        Transaction otherAmount = createTransaction("ACC1", now);
+        otherAmount = otherAmount.withAmount(new BigDecimal("100.01"));
+        Transaction sameAmount = createTransaction("ACC1", now.plusHours(1));
+        sameAmount = sameAmount.withAmount(new BigDecimal("100.0000"));
+        
+        assertTrue(repository.isDuplicateWithinTimeWindow(nearby, 10));
+        assertFalse(repository.isDuplicateWithinTimeWindow(later, 10));
+        assertFalse(repository.isDuplicateWithinTimeWindow(otherAmount, 10));
+        assertTrue(repository.isDuplicate(sameAmount));
+    }
+    
+    @Test
+    void isDuplicateWithinTimeWindow_SkipsQueryWhenFilterRulesDuplicateOut() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        repository.bindTo(registry);
+        // Windows reaching back before the repository was opened are always queried
+        LocalDateTime later = now.plusSeconds(20);
+        repository.save(createTransaction("ACC1", later));
+        
+        assertFalse(repository.isDuplicateWithinTimeWindow(createTransaction("ACC2", later), 10));
+        assertFalse(repository.isDuplicateWithinTimeWindow(createTransaction("ACC3", later), 10));
+        assertTrue(repository.isDuplicateWithinTimeWindow(createTransaction("ACC1", later.plusSeconds(5)), 10));
+        
+        assertEquals(2, registry.get("banking.duplicate.filter.skipped").functionCounter().count());
+        assertEquals(0, registry.get("banking.duplicate.filter.false.positive.rate").gauge().value());
+    }
+    
+    @Test
+    void saveIfNotDuplicate_SavesOnceUnderConcurrency() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                Transaction transaction = createTransaction("ACC1", now);
+                results.add(executor.submit(() -> repository.saveIfNotDuplicate(transaction, 10).isPresent()));
+            }
+            
+            int saved = 0;
+            for (Future<Boolean> result : results) {
+                saved += result.get() ? 1 : 0;
+            }
+            assertEquals(1, saved);
+            assertEquals(1, repository.count());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    void saveAll_SkipsDuplicatesWithinBatchAndStore() {
+        repository.save(createTransaction("ACC3", now));
+        List<Transaction> batch = List.of(
+                createTransaction("ACC1", now),
+                createTransaction("ACC2", now),
+                createTransaction("ACC1", now.plusSeconds(1)),
+                createTransaction("ACC3", now.plusSeconds(1)));
+        
+        List<Transaction> saved = repository.saveAll(batch, 10);
+        
+        assertEquals(List.of(batch.get(0), batch.get(1)), saved);
+        assertEquals(3, repository.count());
+    }
+    
+    @Test
+    void replace_AppliesOnlyOnExpectedVersion() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        Transaction next = transaction.toBuilder().status(TransactionStatus.COMPLETED).version(2).build();
+        
+        assertEquals(ReplaceResult.VERSION_CONFLICT, repository.replace(next, 2, 10));
+        assertEquals(ReplaceResult.REPLACED, repository.replace(next, 1, 10));
+        assertEquals(ReplaceResult.VERSION_CONFLICT, repository.replace(next.withVersion(3), 1, 10));
+        assertEquals(ReplaceResult.NOT_FOUND, repository.replace(createTransaction("ACC2", now), 1, 10));
+        
+        assertEquals(next, repository.findById(transaction.getId()).orElseThrow());
+    }
+    
+    @Test
+    void restart_KeepsTransactionsAndBalances() {
+        Transaction deposit = createTransaction("ACC1", now);
+        deposit = deposit.withType(TransactionType.DEPOSIT).withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        Transaction kept = repository.save(createTransaction("ACC2", now.minusSeconds(1)));
+        Transaction deleted = repository.save(createTransaction("ACC3", now.minusSeconds(2)));
+        repository.deleteById(deleted.getId());
+        repository.close();
+        
+        repository = open();
+        
+        assertEquals(2, repository.count());
+        assertEquals(List.of(deposit, kept), repository.findAllAfter(null, 10));
+        assertFalse(repository.existsById(deleted.getId()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance("ACC1")));
+        // Transactions stored before the restart are not in the new filter, so they are queried
+        assertTrue(repository.isDuplicateWithinTimeWindow(createTransaction("ACC2", now), 10));
+    }
+    
+    private JdbcTransactionRepository open() {
+        return new JdbcTransactionRepository("jdbc:h2:file:" + tempDir.resolve("transactions"), "sa", "", 4, 1000);
+    }
+    
+    private Transaction createTransaction(String accountNumber, LocalDateTime timestamp) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber(accountNumber)
+                .timestamp(timestamp)
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
@@ -0,0 +1,225 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmTransactionRepositoryTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private LsmTransactionRepository repository;
+    private LocalDateTime now;
+    
+    @BeforeEach
+    void setUp() {
+        repository = open();
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+    
+    @Test
+    void save_FindsTransactionInMemtableAndTables() {
+        Transaction flushed = repository.save(createTransaction("ACC1", now));
+        repository.flush();
+        Transaction buffered = repository.save(createTransaction("ACC2", now));
+        
+        assertEquals(2, repository.count());
+        assertEquals(flushed, repository.findById(flushed.getId()).orElseThrow());
+        assertEquals(buffered, repository.findById(buffered.getId()).orElseThrow());
+        assertTrue(repository.existsById(flushed.getId()));
+        assertFalse(repository.findById(UUID.randomUUID()).isPresent());
+        assertEquals(2, repository.findAll().size());
+    }
+    
+    @Test
+    void findAllAfter_WalksTimelineNewestFirst() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+            if (i % 7 == 0) {
+                repository.flush();
+            }
+        }
+        
+        List<Transaction> seen = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<Transaction> page;
+        while (!(page = repository.findAllAfter(cursor, 3)).isEmpty()) {
+            seen.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        
+        assertEquals(20, seen.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ACC" + i, seen.get(i).getAccountNumber());
+        }
+        assertEquals(seen.subList(5, 10), repository.findAll(1, 5));
+    }
+    
+    @Test
+    void findByTimestampBetween_ReturnsRangeNewestFirst() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+        }
+        
+        List<Transaction> range = repository.findByTimestampBetween(now.minusSeconds(15), now.minusSeconds(4), null, 100);
+        
+        assertEquals(11, range.size());
+        for (int i = 0; i < 11; i++) {
+            assertEquals("ACC" + (5 + i), range.get(i).getAccountNumber());
+        }
+    }
+    
+    @Test
+    void findByAccountNumber_FollowsAccountChange() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        repository.save(createTransaction("ACC1", now.minusSeconds(1)));
+        
+        Transaction moved = repository.findById(transaction.getId()).orElseThrow();
+        moved = moved.withAccountNumber("ACC2");
+        repository.save(moved);
+        
+        assertEquals(1, repository.findByAccountNumber("ACC1", null, 10).size());
+        assertEquals(List.of(moved), repository.findByAccountNumber("ACC2", null, 10));
+        assertEquals(2, repository.count());
+    }
+    
+    @Test
+    void replace_AppliesOnlyOnExpectedVersion() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        repository.flush();
+        Transaction next = transaction.toBuilder().status(TransactionStatus.COMPLETED).version(2).build();
+        
+        assertEquals(ReplaceResult.VERSION_CONFLICT, repository.replace(next, 2, 10));
+        assertEquals(ReplaceResult.REPLACED, repository.replace(next, 1, 10));
+        assertEquals(ReplaceResult.NOT_FOUND, repository.replace(createTransaction("ACC2", now), 1, 10));
+        
+        assertEquals(next, repository.findById(transaction.getId()).orElseThrow());
+    }
+    
+    @Test
+    void findOldestByStatus_FollowsStatusChange() {
+        Transaction newer = repository.save(createTransaction("ACC1", now.minusSeconds(1)));
+        Transaction older = repository.save(createTransaction("ACC2", now.minusSeconds(2)));
+        Transaction completed = repository.save(createTransaction("ACC3", now).withStatus(TransactionStatus.COMPLETED));
+        
+        assertEquals(List.of(older, newer), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(newer, older), repository.findByStatus(TransactionStatus.PENDING, null, 10));
+        assertEquals(List.of(completed), repository.findByStatus(TransactionStatus.COMPLETED, null, 10));
+        
+        Transaction processing = repository.save(older.withStatus(TransactionStatus.PROCESSING));
+        
+        assertEquals(List.of(newer), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(processing), repository.findByStatus(TransactionStatus.PROCESSING, null, 10));
+    }
+    
+    @Test
+    void getBalance_TracksCompletedTransactions() {
+        Transaction deposit = createTransaction("ACC1", now);
+        deposit = deposit.withType(TransactionType.DEPOSIT).withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        Transaction withdrawal = createTransaction("ACC1", now.plusSeconds(1));
+        withdrawal = withdrawal.withType(TransactionType.WITHDRAWAL)
+                .withStatus(TransactionStatus.COMPLETED)
+                .withAmount(new BigDecimal("30.00"));
+        repository.save(withdrawal);
+        
+        assertEquals(0, new BigDecimal("70.00").compareTo(repository.getBalance("ACC1")));
+        
+        repository.deleteById(withdrawal.getId());
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance("ACC1")));
+    }
+    
+    @Test
+    void deleteById_RemovesFlushedTransaction() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        repository.flush();
+        
+        assertEquals(Optional.of(transaction), repository.deleteById(transaction.getId()));
+        assertTrue(repository.deleteById(transaction.getId()).isEmpty());
+        
+        assertFalse(repository.existsById(transaction.getId()));
+        assertFalse(repository.findById(transaction.getId()).isPresent());
+        assertEquals(0, repository.count());
+        assertTrue(repository.findAllAfter(null, 10).isEmpty());
+    }
+    
+    @Test
+    void saveIfNotDuplicate_RejectsDuplicate() {
+        assertTrue(repository.saveIfNotDuplicate(createTransaction("ACC1", now), 10).isPresent());
+        
+        assertFalse(repository.saveIfNotDuplicate(createTransaction("ACC1", now.plusSeconds(5)), 10).isPresent());
+        assertTrue(repository.saveIfNotDuplicate(createTransaction("ACC2", now.plusSeconds(5)), 10).isPresent());
+        assertEquals(2, repository.count());
+    }
+    
+    @Test
+    void saveAll_SkipsDuplicatesWithinBatch() {
+        List<Transaction> batch = List.of(
+                createTransaction("ACC1", now),
+                createTransaction("ACC2", now),
+                createTransaction("ACC1", now.plusSeconds(1)));
+        
+        List<Transaction> saved = repository.saveAll(batch, 10);
+        
+        assertEquals(List.of(batch.get(0), batch.get(1)), saved);
+        assertEquals(2, repository.count());
+    }
+    
+    @Test
+    void restart_RebuildsIndexesFromTree() {
+        Transaction deposit = createTransaction("ACC1", now);
+        deposit = deposit.withType(TransactionType.DEPOSIT).withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        repository.flush();
+        Transaction logged = repository.save(createTransaction("ACC2", now.minusSeconds(1)));
+        Transaction deleted = repository.save(createTransaction("ACC3", now.minusSeconds(2)));
+        repository.deleteById(deleted.getId());
+        repository.close();
+        
+        repository = open();
+        
+        assertEquals(2, repository.count());
+        assertEquals(List.of(deposit, logged), repository.findAllAfter(null, 10));
+        assertEquals(List.of(logged), repository.findByAccountNumber("ACC2", null, 10));
+        assertFalse(repository.existsById(deleted.getId()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance("ACC1")));
+    }
+    
+    private LsmTransactionRepository open() {
+        return new LsmTransactionRepository(tempDir, false, DataSize.ofKilobytes(16), 4);
+    }
+    
+    private Transaction createTransaction(String accountNumber, LocalDateTime timestamp) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber(accountNumber)
+                .timestamp(timestamp)
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
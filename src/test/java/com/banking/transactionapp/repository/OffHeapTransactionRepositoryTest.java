@@ -0,0 +1,273 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.persistence.WriteAheadLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTransactionRepositoryTest {
+
+    private OffHeapTransactionRepository repository;
+    private Transaction transaction1;
+    private Transaction transaction2;
+
+    @BeforeEach
+    void setUp() {
+        repository = new OffHeapTransactionRepository();
+        
+        transaction1 = Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .status(TransactionStatus.PENDING)
+                .build();
+        
+        repository.save(transaction1);
+        
+        transaction2 = Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .timestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS).plusSeconds(5))
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+
+    @Test
+    void findById_ReturnsEqualTransaction() {
+        Optional<Transaction> found = repository.findById(transaction1.getId());
+        
+        assertTrue(found.isPresent());
+        assertEquals(transaction1, found.get());
+        assertNotSame(transaction1, found.get());
+    }
+
+    @Test
+    void findById_NotFound() {
+        assertFalse(repository.findById(UUID.randomUUID()).isPresent());
+    }
+
+    @Test
+    void save_OverwritesExistingRow() {
+        transaction1 = transaction1.withDescription("Updated Description").withStatus(TransactionStatus.COMPLETED);
+        repository.save(transaction1);
+        
+        Transaction found = repository.findById(transaction1.getId()).orElseThrow();
+        assertEquals("Updated Description", found.getDescription());
+        assertEquals(TransactionStatus.COMPLETED, found.getStatus());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void replace_StoresVersionColumn() {
+        Transaction next = transaction1.toBuilder().status(TransactionStatus.COMPLETED).version(2).build();
+        
+        assertEquals(ReplaceResult.VERSION_CONFLICT, repository.replace(next, 2, 10));
+        assertEquals(ReplaceResult.REPLACED, repository.replace(next, 1, 10));
+        assertEquals(ReplaceResult.NOT_FOUND, repository.replace(transaction2, 1, 10));
+        
+        assertEquals(next, repository.findById(transaction1.getId()).orElseThrow());
+        assertEquals(2, repository.findAll().get(0).getVersion());
+    }
+
+    @Test
+    void save_RejectsAmountTooLargeForColumn() {
+        Transaction huge = Transaction.builder()
+                .amount(new BigDecimal("123456789012345678901234567890"))
+                .description("Huge")
+                .type(TransactionType.DEPOSIT)
+                .accountNumber("123456789")
+                .build();
+        
+        assertThrows(IllegalArgumentException.class, () -> repository.save(huge));
+        assertFalse(repository.existsById(huge.getId()));
+    }
+
+    @Test
+    void deleteById_ReusesRow() {
+        assertEquals(Optional.of(transaction1), repository.deleteById(transaction1.getId()));
+        assertTrue(repository.deleteById(transaction1.getId()).isEmpty());
+        
+        assertFalse(repository.existsById(transaction1.getId()));
+        assertEquals(0, repository.count());
+        assertTrue(repository.findAll().isEmpty());
+        
+        repository.save(transaction2);
+        assertEquals(List.of(transaction2), repository.findAll());
+    }
+
+    @Test
+    void findAll_Paginated_NewestFirst() {
+        repository.save(transaction2);
+        
+        List<Transaction> page = repository.findAll(0, 10);
+        
+        assertEquals(2, page.size());
+        assertEquals(transaction2.getId(), page.get(0).getId());
+        assertEquals(transaction1.getId(), page.get(1).getId());
+        assertEquals(List.of(transaction1), repository.findAllAfter(TransactionCursor.of(transaction2), 10));
+    }
+
+    @Test
+    void findOldestByStatus_FollowsStatusChange() {
+        repository.save(transaction2);
+        assertEquals(List.of(transaction1, transaction2), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        
+        Transaction processing = transaction1.withStatus(TransactionStatus.PROCESSING);
+        repository.save(processing);
+        
+        assertEquals(List.of(transaction2), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(processing), repository.findByStatus(TransactionStatus.PROCESSING, null, 10));
+        assertTrue(repository.findByStatus(TransactionStatus.PROCESSING, TransactionCursor.of(processing), 10).isEmpty());
+    }
+
+    @Test
+    void findByTimestampBetween_ExcludesUpperBound() {
+        repository.save(transaction2);
+        
+        assertEquals(List.of(transaction1), repository.findByTimestampBetween(
+                transaction1.getTimestamp(), transaction2.getTimestamp(), null, 10));
+        assertEquals(List.of(transaction2, transaction1), repository.findByTimestampBetween(
+                transaction1.getTimestamp(), transaction2.getTimestamp().plusNanos(1000), null, 10));
+        assertEquals(List.of(transaction1), repository.findByTimestampBetween(
+                transaction1.getTimestamp(), transaction2.getTimestamp().plusNanos(1000),
+                TransactionCursor.of(transaction2), 10));
+    }
+
+    @Test
+    void findByAccountNumber_FollowsAccountChange() {
+        repository.save(transaction2);
+        
+        assertEquals(List.of(transaction2, transaction1), repository.findByAccountNumber("123456789", null, 10));
+        assertEquals(List.of(transaction1), repository.findByAccountNumber(
+                "123456789", TransactionCursor.of(transaction2), 10));
+        
+        transaction2 = transaction2.withAccountNumber("987654321");
+        repository.save(transaction2);
+        
+        assertEquals(List.of(transaction1), repository.findByAccountNumber("123456789", null, 10));
+        assertEquals(List.of(transaction2), repository.findByAccountNumber("987654321", null, 10));
+        assertTrue(repository.findByAccountNumber("000000000", null, 10).isEmpty());
+    }
+
+    @Test
+    void getBalance_FollowsUpdateAndDelete() {
+        Transaction credit = Transaction.builder()
+                .amount(new BigDecimal("75.50"))
+                .description("Salary")
+                .type(TransactionType.CREDIT)
+                .accountNumber("123456789")
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        repository.save(credit);
+        assertEquals(0, new BigDecimal("75.50").compareTo(repository.getBalance("123456789")));
+        
+        credit = credit.withType(TransactionType.DEBIT);
+        repository.save(credit);
+        assertEquals(0, new BigDecimal("-75.50").compareTo(repository.getBalance("123456789")));
+        
+        repository.deleteById(credit.getId());
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("123456789")));
+    }
+
+    @Test
+    void isDuplicateWithinTimeWindow_UsesIndexAndScan() {
+        // Recent transactions are found through the fingerprint index
+        assertTrue(repository.isDuplicateWithinTimeWindow(transaction2, 10));
+        assertFalse(repository.isDuplicateWithinTimeWindow(transaction1, 10));
+        
+        // Exact matches are found by scanning the columns
+        assertTrue(repository.isDuplicate(transaction2));
+        
+        Transaction differentAccount = Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("000000000")
+                .build();
+        assertFalse(repository.isDuplicate(differentAccount));
+    }
+
+    @Test
+    void save_ManyRowsAcrossChunks() {
+        int numTransactions = 70_000;
+        for (int i = 0; i < numTransactions; i++) {
+            repository.save(Transaction.builder()
+                    .amount(new BigDecimal(i + 1).movePointLeft(2))
+                    .description("Merchant " + (i % 100))
+                    .type(TransactionType.DEBIT)
+                    .accountNumber("ACC-" + (i % 1000))
+                    .timestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS).minusSeconds(i))
+                    .build());
+        }
+        
+        assertEquals(numTransactions + 1, repository.count());
+        assertEquals(numTransactions + 1, repository.findAll().size());
+        assertEquals(10, repository.findAll(6_999, 10).size());
+    }
+
+    @Test
+    void findAll_Paginated_OrderedAcrossIndexBlocks() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<Transaction> saved = new ArrayList<>();
+        // Shuffled timestamps split the index blocks in the middle, deletes merge them again
+        for (int i = 0; i < 3 * OffHeapRowIndex.BLOCK_ROWS; i++) {
+            saved.add(repository.save(Transaction.builder()
+                    .amount(new BigDecimal("1.00"))
+                    .description("Merchant")
+                    .type(TransactionType.DEBIT)
+                    .accountNumber("ACC-" + (i % 3))
+                    .timestamp(now.minusSeconds((i * 7919L) % (3 * OffHeapRowIndex.BLOCK_ROWS) + 1))
+                    .build()));
+        }
+        for (int i = 0; i < saved.size(); i += 2) {
+            repository.deleteById(saved.get(i).getId());
+        }
+        
+        List<Transaction> all = repository.findAll(0, saved.size());
+        assertEquals(saved.size() / 2 + 1, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertFalse(all.get(i).getTimestamp().isAfter(all.get(i - 1).getTimestamp()));
+        }
+        assertEquals(all.subList(100, 110), repository.findAll(10, 10));
+        assertEquals(all.subList(101, 111), repository.findAllAfter(TransactionCursor.of(all.get(100)), 10));
+    }
+
+    @Test
+    void checkpoint_SnapshotRestoresRows(@TempDir Path tempDir) {
+        WriteAheadLog wal = new WriteAheadLog(tempDir, true);
+        OffHeapTransactionRepository journaled = new OffHeapTransactionRepository(wal);
+        journaled.save(transaction1);
+        journaled.save(transaction2);
+        
+        journaled.checkpoint();
+        journaled.deleteById(transaction1.getId());
+        wal.close();
+        
+        wal = new WriteAheadLog(tempDir, true);
+        try {
+            OffHeapTransactionRepository restarted = new OffHeapTransactionRepository(wal);
+            assertEquals(List.of(transaction2), restarted.findAll());
+        } finally {
+            wal.close();
+        }
+    }
+}
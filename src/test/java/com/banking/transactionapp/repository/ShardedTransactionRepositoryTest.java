@@ -0,0 +1,292 @@
+package com.banking.transactionapp.repository;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTransactionRepositoryTest {
+    
+    private ShardedTransactionRepository repository;
+    private LocalDateTime now;
+    
+    @BeforeEach
+    void setUp() {
+        repository = new ShardedTransactionRepository(4);
+        now = LocalDateTime.now();
+    }
+    
+    @Test
+    void save_FindsTransactionInAnyShard() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            transactions.add(repository.save(createTransaction("ACC" + i, now.minusSeconds(i))));
+        }
+        
+        assertEquals(20, repository.count());
+        assertEquals(20, repository.findAll().size());
+        for (Transaction transaction : transactions) {
+            assertTrue(repository.existsById(transaction.getId()));
+            assertEquals(transaction, repository.findById(transaction.getId()).orElseThrow());
+        }
+        assertFalse(repository.findById(UUID.randomUUID()).isPresent());
+    }
+    
+    @Test
+    void findAll_Paginated_MergesShardsNewestFirst() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+        }
+        
+        List<Transaction> secondPage = repository.findAll(1, 5);
+        
+        assertEquals(5, secondPage.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ACC" + (5 + i), secondPage.get(i).getAccountNumber());
+        }
+        assertEquals(0, repository.findAll(4, 5).size());
+    }
+    
+    @Test
+    void findAllAfter_WalksPagesAcrossShards() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+        }
+        
+        List<Transaction> seen = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<Transaction> page;
+        while (!(page = repository.findAllAfter(cursor, 3)).isEmpty()) {
+            seen.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        
+        assertEquals(20, seen.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ACC" + i, seen.get(i).getAccountNumber());
+        }
+    }
+    
+    @Test
+    void findByTimestampBetween_MergesRangeAcrossShards() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + i, now.minusSeconds(i)));
+        }
+        
+        List<Transaction> seen = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<Transaction> page;
+        while (!(page = repository.findByTimestampBetween(now.minusSeconds(15), now.minusSeconds(4), cursor, 3)).isEmpty()) {
+            seen.addAll(page);
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        
+        assertEquals(11, seen.size());
+        for (int i = 0; i < 11; i++) {
+            assertEquals("ACC" + (5 + i), seen.get(i).getAccountNumber());
+        }
+    }
+    
+    @Test
+    void findByAccountNumber_ReadsFromOwningShard() {
+        for (int i = 0; i < 20; i++) {
+            repository.save(createTransaction("ACC" + (i % 4), now.minusSeconds(i)));
+        }
+        
+        List<Transaction> transactions = repository.findByAccountNumber("ACC1", null, 10);
+        
+        assertEquals(5, transactions.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ACC1", transactions.get(i).getAccountNumber());
+            assertEquals(now.minusSeconds(1 + 4 * i), transactions.get(i).getTimestamp());
+        }
+    }
+    
+    @Test
+    void save_AccountChangeMovesTransactionToItsNewShard() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        
+        // Find an account that lives in another shard
+        String otherAccount;
+        int suffix = 2;
+        do {
+            otherAccount = "ACC" + suffix++;
+        } while (repository.shardFor(createTransaction(otherAccount, now)) == repository.shardFor(transaction));
+        transaction = transaction.withAccountNumber(otherAccount);
+        repository.save(transaction);
+        
+        assertEquals(1, repository.count());
+        assertEquals(otherAccount, repository.findById(transaction.getId()).orElseThrow().getAccountNumber());
+        assertTrue(repository.isDuplicateWithinTimeWindow(createTransaction(otherAccount, now), 10));
+        assertFalse(repository.isDuplicateWithinTimeWindow(createTransaction("ACC1", now), 10));
+    }
+    
+    @Test
+    void findOldestByStatus_FollowsStatusChange() {
+        Transaction newer = repository.save(createTransaction("ACC1", now.minusSeconds(1)));
+        Transaction older = repository.save(createTransaction("ACC2", now.minusSeconds(2)));
+        Transaction completed = repository.save(createTransaction("ACC3", now).withStatus(TransactionStatus.COMPLETED));
+        
+        assertEquals(List.of(older, newer), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(newer, older), repository.findByStatus(TransactionStatus.PENDING, null, 10));
+        assertEquals(List.of(completed), repository.findByStatus(TransactionStatus.COMPLETED, null, 10));
+        
+        Transaction processing = repository.save(older.withStatus(TransactionStatus.PROCESSING));
+        
+        assertEquals(List.of(newer), repository.findOldestByStatus(TransactionStatus.PENDING, 10));
+        assertEquals(List.of(processing), repository.findByStatus(TransactionStatus.PROCESSING, null, 10));
+    }
+    
+    @Test
+    void getBalance_FollowsTransactionToItsNewShard() {
+        Transaction deposit = createTransaction("ACC1", now);
+        deposit = deposit.withType(TransactionType.DEPOSIT).withStatus(TransactionStatus.COMPLETED);
+        repository.save(deposit);
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance("ACC1")));
+        
+        String otherAccount;
+        int suffix = 2;
+        do {
+            otherAccount = "ACC" + suffix++;
+        } while (repository.shardFor(otherAccount) == repository.shardFor("ACC1"));
+        deposit = deposit.withAccountNumber(otherAccount);
+        repository.save(deposit);
+        
+        assertEquals(0, BigDecimal.ZERO.compareTo(repository.getBalance("ACC1")));
+        assertEquals(0, new BigDecimal("100.00").compareTo(repository.getBalance(otherAccount)));
+    }
+    
+    @Test
+    void deleteById_Success() {
+        Transaction transaction = repository.save(createTransaction("ACC1", now));
+        
+        assertEquals(Optional.of(transaction), repository.deleteById(transaction.getId()));
+        assertTrue(repository.deleteById(transaction.getId()).isEmpty());
+        
+        assertFalse(repository.existsById(transaction.getId()));
+        assertEquals(0, repository.count());
+    }
+    
+    @Test
+    void saveIfNotDuplicate_RejectsDuplicate() {
+        assertTrue(repository.saveIfNotDuplicate(createTransaction("ACC1", now), 10).isPresent());
+        
+        assertFalse(repository.saveIfNotDuplicate(createTransaction("ACC1", now.plusSeconds(5)), 10).isPresent());
+        assertTrue(repository.saveIfNotDuplicate(createTransaction("ACC2", now.plusSeconds(5)), 10).isPresent());
+        assertEquals(2, repository.count());
+    }
+    
+    @Test
+    void saveAll_SkipsDuplicatesAcrossShards() {
+        repository.save(createTransaction("ACC1", now));
+        
+        List<Transaction> batch = List.of(
+                createTransaction("ACC1", now.plusSeconds(1)),
+                createTransaction("ACC2", now),
+                createTransaction("ACC3", now),
+                createTransaction("ACC2", now.plusSeconds(2)));
+        List<Transaction> saved = repository.saveAll(batch, 10);
+        
+        assertEquals(List.of(batch.get(1), batch.get(2)), saved);
+        assertEquals(3, repository.count());
+    }
+    
+    @Test
+    void saveIfNotDuplicate_ConcurrentIdenticalRequests_StoresOne() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return repository.saveIfNotDuplicate(createTransaction("ACC1", now), 10).isPresent();
+                }));
+            }
+            start.countDown();
+            
+            int saved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    saved++;
+                }
+            }
+            assertEquals(1, saved);
+            assertEquals(1, repository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void save_ConcurrentMovesBetweenShards_KeepsOneCopy() throws Exception {
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; accounts.size() < 4; i++) {
+            String account = "ACC" + i;
+            if (accounts.stream().noneMatch(other -> repository.shardFor(other) == repository.shardFor(account))) {
+                accounts.add(account);
+            }
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            transactions.add(repository.save(createTransaction(accounts.get(0), now.minusSeconds(i))));
+        }
+        
+        // Every thread moves every transaction to its own shard, so moves of the same
+        // transaction keep racing each other
+        ExecutorService executor = Executors.newFixedThreadPool(accounts.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (String account : accounts) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (Transaction transaction : transactions) {
+                        repository.save(transaction.withAccountNumber(account));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // A save that missed a concurrent move would leave a second copy behind
+        assertEquals(transactions.size(), repository.count());
+        transactions.forEach(transaction -> repository.deleteById(transaction.getId()));
+        assertEquals(0, repository.count());
+    }
+    
+    private Transaction createTransaction(String accountNumber, LocalDateTime timestamp) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber(accountNumber)
+                .timestamp(timestamp)
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
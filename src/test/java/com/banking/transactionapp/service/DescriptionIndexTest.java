@@ -0,0 +1,109 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescriptionIndexTest {
+    
+    private final DescriptionIndex index = new DescriptionIndex();
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    
+    @Test
+    void tokenize_SplitsOnNonWordCharactersAndLowerCases() {
+        assertEquals(List.of("acme", "corp", "ref", "42", "café"),
+                List.copyOf(DescriptionIndex.tokenize("ACME Corp. - ref #42, acme café")));
+        assertTrue(DescriptionIndex.tokenize("  -- ").isEmpty());
+        assertTrue(DescriptionIndex.tokenize(null).isEmpty());
+    }
+    
+    @Test
+    void search_MatchesAllWordsNewestFirst() {
+        Transaction rent = index(createTransaction("Rent March ACME", now.minusSeconds(3)));
+        Transaction coffee = index(createTransaction("Coffee ACME", now.minusSeconds(2)));
+        Transaction refund = index(createTransaction("Refund ACME rent", now.minusSeconds(1)));
+        
+        assertEquals(List.of(refund.getId(), coffee.getId(), rent.getId()), index.search(Set.of("acme"), null, 10));
+        assertEquals(List.of(refund.getId(), rent.getId()), index.search(Set.of("rent", "acme"), null, 10));
+        assertEquals(List.of(), index.search(Set.of("rent", "coffee"), null, 10));
+        assertEquals(List.of(), index.search(Set.of("unknown"), null, 10));
+        assertEquals(List.of(), index.search(Set.of(), null, 10));
+    }
+    
+    @Test
+    void search_PagesFromCursor() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            transactions.add(index(createTransaction("Payment " + (i % 2 == 0 ? "even" : "odd"), now.minusSeconds(i))));
+        }
+        
+        List<UUID> first = index.search(Set.of("payment", "even"), null, 3);
+        List<UUID> rest = index.search(Set.of("payment", "even"), TransactionCursor.of(transactions.get(4)), 3);
+        
+        assertEquals(List.of(transactions.get(0).getId(), transactions.get(2).getId(), transactions.get(4).getId()), first);
+        assertEquals(List.of(transactions.get(6).getId(), transactions.get(8).getId()), rest);
+    }
+    
+    @Test
+    void put_RefilesChangedDescriptionAndRemoveUnfiles() {
+        Transaction transaction = index(createTransaction("Coffee", now));
+        Transaction updated = index(transaction.toBuilder().description("Tea").version(2).build());
+        // A late writer of the older version does not win
+        index.put(transaction);
+        
+        assertEquals(List.of(), index.search(Set.of("coffee"), null, 10));
+        assertEquals(List.of(updated.getId()), index.search(Set.of("tea"), null, 10));
+        
+        index.remove(updated.getId());
+        
+        assertEquals(List.of(), index.search(Set.of("tea"), null, 10));
+        assertEquals(0, index.size());
+    }
+    
+    @Test
+    void maxAge_IndexesOnlyRecentTransactions() {
+        DescriptionIndex recent = new DescriptionIndex(Duration.ofDays(30));
+        Transaction aged = createTransaction("Rent", now.minusDays(31));
+        Transaction ageing = createTransaction("Rent", now.minusDays(29));
+        Transaction fresh = createTransaction("Rent", now);
+        recent.put(aged);
+        recent.put(ageing);
+        recent.put(fresh);
+        
+        assertEquals(List.of(fresh.getId(), ageing.getId()), recent.search(Set.of("rent"), null, 10));
+        
+        recent.purgeOlderThan(now.minusDays(1));
+        
+        assertEquals(List.of(fresh.getId()), recent.search(Set.of("rent"), null, 10));
+        assertEquals(1, recent.size());
+    }
+    
+    private Transaction index(Transaction transaction) {
+        index.put(transaction);
+        return transaction;
+    }
+    
+    private Transaction createTransaction(String description, LocalDateTime timestamp) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description(description)
+                .type(TransactionType.PAYMENT)
+                .accountNumber("ACC1")
+                .timestamp(timestamp)
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+}
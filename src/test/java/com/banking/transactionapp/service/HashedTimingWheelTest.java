@@ -0,0 +1,57 @@
+package com.banking.transactionapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+    
+    private final HashedTimingWheel<String, Integer> wheel = new HashedTimingWheel<>(10, 8, 0);
+    
+    @Test
+    void advance_ExpiresTimeoutsOnTheirDeadlineTick() {
+        wheel.schedule("a", 1, 25);
+        wheel.schedule("b", 2, 30);
+        wheel.schedule("c", 3, 31);
+        
+        assertEquals(List.of(), wheel.advance(29));
+        assertEquals(List.of(new HashedTimingWheel.Expiry<>("a", 1), new HashedTimingWheel.Expiry<>("b", 2)),
+                wheel.advance(30));
+        assertEquals(List.of(new HashedTimingWheel.Expiry<>("c", 3)), wheel.advance(45));
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void advance_WaitsOutFurtherTurnsOfTheWheel() {
+        // Two and a half turns of 8 ticks of 10 ms
+        wheel.schedule("a", 1, 200);
+        wheel.schedule("b", 2, 40);
+        
+        assertEquals(List.of(new HashedTimingWheel.Expiry<>("b", 2)), wheel.advance(199));
+        assertEquals(List.of(new HashedTimingWheel.Expiry<>("a", 1)), wheel.advance(200));
+    }
+    
+    @Test
+    void advance_ExpiresPassedDeadlinesOnNextTick() {
+        wheel.advance(100);
+        wheel.schedule("a", 1, 50);
+        
+        assertEquals(List.of(new HashedTimingWheel.Expiry<>("a", 1)), wheel.advance(110));
+    }
+    
+    @Test
+    void cancel_AndSchedulingAgain_ReplaceTheTimeout() {
+        wheel.schedule("a", 1, 20);
+        wheel.schedule("b", 2, 20);
+        wheel.advance(0);
+        wheel.schedule("a", 3, 60);
+        
+        assertTrue(wheel.cancel("b"));
+        assertFalse(wheel.cancel("c"));
+        assertEquals(List.of(), wheel.advance(50));
+        assertEquals(List.of(new HashedTimingWheel.Expiry<>("a", 3)), wheel.advance(60));
+        assertEquals(0, wheel.size());
+    }
+}
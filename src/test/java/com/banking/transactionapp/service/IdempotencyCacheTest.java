@@ -0,0 +1,134 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.dto.TransactionCreateDTO;
+import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.exception.DuplicateTransactionException;
+import com.banking.transactionapp.exception.IdempotencyKeyReusedException;
+import com.banking.transactionapp.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+    
+    private final IdempotencyCache cache = new IdempotencyCache(100, Duration.ofHours(1));
+    private final TransactionCreateDTO request = createDTO("100.00");
+    
+    @Test
+    void execute_ReplaysFirstResponseForSameKey() {
+        AtomicInteger creates = new AtomicInteger();
+        
+        TransactionResponseDTO first = cache.execute("key-1", request, () -> create(creates));
+        TransactionResponseDTO retry = cache.execute("key-1", createDTO("100.00"), () -> create(creates));
+        TransactionResponseDTO other = cache.execute("key-2", request, () -> create(creates));
+        
+        assertSame(first, retry);
+        assertNotEquals(first.getId(), other.getId());
+        assertEquals(2, creates.get());
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    void execute_RejectsKeyReusedForDifferentRequest() {
+        cache.execute("key-1", request, () -> create(new AtomicInteger()));
+        
+        IdempotencyKeyReusedException exception = assertThrows(IdempotencyKeyReusedException.class,
+                () -> cache.execute("key-1", createDTO("200.00"), () -> fail("Must not create")));
+        
+        assertEquals("Idempotency key key-1 was already used for a different request", exception.getMessage());
+    }
+    
+    @Test
+    void execute_ReplaysRetryWithAmountAtDifferentScale() {
+        AtomicInteger creates = new AtomicInteger();
+        
+        TransactionResponseDTO first = cache.execute("key-1", request, () -> create(creates));
+        TransactionResponseDTO retry = cache.execute("key-1", createDTO("100.0"), () -> create(creates));
+        
+        assertSame(first, retry);
+        assertEquals(1, creates.get());
+    }
+    
+    @Test
+    void execute_DoesNotRememberFailedCreate() {
+        AtomicInteger creates = new AtomicInteger();
+        
+        assertThrows(DuplicateTransactionException.class, () -> cache.execute("key-1", request, () -> {
+            throw new DuplicateTransactionException(10);
+        }));
+        cache.execute("key-1", request, () -> create(creates));
+        
+        assertEquals(1, creates.get());
+    }
+    
+    @Test
+    void execute_CoalescesConcurrentRequestsWithSameKey() throws Exception {
+        AtomicInteger creates = new AtomicInteger();
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<TransactionResponseDTO> first = executor.submit(() -> cache.execute("key-1", request, () -> {
+                creating.countDown();
+                await(release);
+                return create(creates);
+            }));
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+            
+            List<Future<TransactionResponseDTO>> retries = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                retries.add(executor.submit(() -> cache.execute("key-1", request, () -> create(creates))));
+            }
+            release.countDown();
+            
+            TransactionResponseDTO response = first.get(5, TimeUnit.SECONDS);
+            for (Future<TransactionResponseDTO> retry : retries) {
+                assertSame(response, retry.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(1, creates.get());
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private TransactionResponseDTO create(AtomicInteger creates) {
+        creates.incrementAndGet();
+        return TransactionResponseDTO.builder()
+                .id(UUID.randomUUID())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .type(request.getType())
+                .accountNumber(request.getAccountNumber())
+                .build();
+    }
+    
+    private static TransactionCreateDTO createDTO(String amount) {
+        return TransactionCreateDTO.builder()
+                .amount(new BigDecimal(amount))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .build();
+    }
+}
@@ -1,28 +1,47 @@
 package com.banking.transactionapp.service;
 
+import com.banking.transactionapp.config.VelocityLimitProperties;
+import com.banking.transactionapp.dto.AccountBalanceDTO;
+import com.banking.transactionapp.dto.BatchCreateResponseDTO;
+import com.banking.transactionapp.dto.CursorPageResponseDTO;
 import com.banking.transactionapp.dto.PageResponseDTO;
 import com.banking.transactionapp.dto.TransactionCreateDTO;
 import com.banking.transactionapp.dto.TransactionResponseDTO;
+import com.banking.transactionapp.dto.TransactionStatsDTO;
 import com.banking.transactionapp.dto.TransactionUpdateDTO;
 import com.banking.transactionapp.exception.DuplicateTransactionException;
+import com.banking.transactionapp.exception.InvalidCursorException;
+import com.banking.transactionapp.exception.InvalidTimeRangeException;
 import com.banking.transactionapp.exception.TransactionNotFoundException;
+import com.banking.transactionapp.exception.TransactionVersionConflictException;
+import com.banking.transactionapp.exception.VelocityLimitExceededException;
+import com.banking.transactionapp.model.FixedPoint;
 import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionCursor;
 import com.banking.transactionapp.model.TransactionStatus;
 import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.repository.ReplaceResult;
 import com.banking.transactionapp.repository.TransactionRepository;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -34,6 +53,24 @@ class TransactionServiceImplTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private TransactionStatistics statistics = new TransactionStatistics();
+
+    // Times out right away, so expiry needs no waiting
+    @Spy
+    private PendingTransactionTimeouts timeouts =
+            new PendingTransactionTimeouts(true, Duration.ZERO, TransactionStatus.FAILED, 1);
+
+    @Spy
+    private DescriptionIndex descriptionIndex = new DescriptionIndex();
+
+    // One withdrawal per account and minute; other types are not limited
+    @Spy
+    private VelocityLimiter velocityLimiter = new VelocityLimiter(withdrawalLimit());
+
     @InjectMocks
     private TransactionServiceImpl transactionService;
 
@@ -74,8 +111,7 @@ class TransactionServiceImplTest {
 
     @Test
     void createTransaction_Success() {
-        when(transactionRepository.isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L))).thenReturn(false);
-        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L))).thenReturn(Optional.of(transaction));
 
         TransactionResponseDTO result = transactionService.createTransaction(createDTO);
 
@@ -87,23 +123,126 @@ class TransactionServiceImplTest {
         assertEquals(transaction.getAccountNumber(), result.getAccountNumber());
         assertEquals(transaction.getStatus(), result.getStatus());
         
-        verify(transactionRepository).isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L));
-        verify(transactionRepository).save(any(Transaction.class));
+        verify(transactionRepository).saveIfNotDuplicate(any(Transaction.class), eq(10L));
     }
 
     @Test
     void createTransaction_DuplicateTransaction() {
-        when(transactionRepository.isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L))).thenReturn(true);
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L))).thenReturn(Optional.empty());
 
         DuplicateTransactionException exception = assertThrows(DuplicateTransactionException.class, () -> {
             transactionService.createTransaction(createDTO);
         });
         
         assertEquals("A duplicate transaction was detected within 10 seconds", exception.getMessage());
-        verify(transactionRepository).isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L));
+        verify(transactionRepository).saveIfNotDuplicate(any(Transaction.class), eq(10L));
         verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
+    @Test
+    void createTransactions_MixedResults() {
+        TransactionCreateDTO invalidDTO = TransactionCreateDTO.builder()
+                .amount(new BigDecimal("-100.00"))
+                .description("Invalid Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .build();
+        TransactionCreateDTO duplicateDTO = TransactionCreateDTO.builder()
+                .amount(new BigDecimal("100.00"))
+                .description("Test Transaction")
+                .type(TransactionType.PAYMENT)
+                .accountNumber("123456789")
+                .build();
+        
+        // Only the first valid item is saved; the repository rejects the second as a duplicate
+        when(transactionRepository.saveAll(anyList(), eq(10L)))
+                .thenAnswer(invocation -> List.of(invocation.<List<Transaction>>getArgument(0).get(0)));
+
+        BatchCreateResponseDTO result = transactionService.createTransactions(
+                Arrays.asList(createDTO, invalidDTO, duplicateDTO));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(2, result.getFailed());
+        assertEquals(3, result.getResults().size());
+        assertEquals(201, result.getResults().get(0).getStatus());
+        assertEquals("Test Transaction", result.getResults().get(0).getTransaction().getDescription());
+        assertEquals(400, result.getResults().get(1).getStatus());
+        assertEquals("Validation failed: {amount=Amount must be positive}", result.getResults().get(1).getError());
+        assertEquals(409, result.getResults().get(2).getStatus());
+        assertEquals("A duplicate transaction was detected within 10 seconds", result.getResults().get(2).getError());
+        
+        // Both valid items go to the repository in a single call
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).saveAll(captor.capture(), eq(10L));
+        assertEquals(2, captor.getValue().size());
+        verify(transactionRepository, never()).saveIfNotDuplicate(any(Transaction.class), anyLong());
+    }
+
+    @Test
+    void createTransaction_VelocityLimitExceeded() {
+        TransactionCreateDTO withdrawalDTO = withdrawal("123456789", new BigDecimal("100.00"));
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L)))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+
+        // A duplicate is not created, so it leaves the limit to the next withdrawal
+        assertThrows(DuplicateTransactionException.class, () -> transactionService.createTransaction(withdrawalDTO));
+        transactionService.createTransaction(withdrawalDTO);
+        VelocityLimitExceededException exception = assertThrows(VelocityLimitExceededException.class,
+                () -> transactionService.createTransaction(withdrawalDTO));
+
+        assertEquals("Account 123456789 has reached its limit of WITHDRAWAL transactions within 60 seconds",
+                exception.getMessage());
+        verify(transactionRepository, times(2)).saveIfNotDuplicate(any(Transaction.class), eq(10L));
+        // Other accounts have limits of their own
+        transactionService.createTransaction(withdrawal("987654321", new BigDecimal("100.00")));
+    }
+
+    @Test
+    void createTransaction_SaveFails_ReleasesVelocityLimit() {
+        TransactionCreateDTO withdrawalDTO = withdrawal("123456789", new BigDecimal("100.00"));
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L)))
+                .thenThrow(new IllegalStateException("Store unavailable"))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+        when(transactionRepository.saveAll(anyList(), eq(10L)))
+                .thenThrow(new IllegalStateException("Store unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> transactionService.createTransaction(withdrawalDTO));
+        assertThrows(IllegalStateException.class, () -> transactionService.createTransactions(List.of(withdrawalDTO)));
+
+        // Neither failed attempt used up the account's one withdrawal
+        assertEquals(withdrawalDTO.getAmount(), transactionService.createTransaction(withdrawalDTO).getAmount());
+    }
+
+    @Test
+    void createTransactions_VelocityLimitExceeded() {
+        TransactionCreateDTO withdrawalDTO = withdrawal("123456789", new BigDecimal("100.00"));
+        when(transactionRepository.saveAll(anyList(), eq(10L))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        BatchCreateResponseDTO result = transactionService.createTransactions(
+                Arrays.asList(withdrawalDTO, withdrawal("123456789", new BigDecimal("5.00")), createDTO));
+
+        assertEquals(2, result.getCreated());
+        assertEquals(201, result.getResults().get(0).getStatus());
+        assertEquals(429, result.getResults().get(1).getStatus());
+        assertEquals(201, result.getResults().get(2).getStatus());
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).saveAll(captor.capture(), eq(10L));
+        assertEquals(2, captor.getValue().size());
+    }
+
+    @Test
+    void createTransactions_AllInvalid() {
+        BatchCreateResponseDTO result = transactionService.createTransactions(Arrays.asList(
+                TransactionCreateDTO.builder().build(), null));
+
+        assertEquals(0, result.getCreated());
+        assertEquals(2, result.getFailed());
+        assertEquals(400, result.getResults().get(0).getStatus());
+        assertEquals("Transaction is required", result.getResults().get(1).getError());
+        verify(transactionRepository, never()).saveAll(anyList(), anyLong());
+    }
+
     @Test
     void getTransactionById_Success() {
         when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
@@ -151,6 +290,17 @@ class TransactionServiceImplTest {
         verify(transactionRepository).findAll();
     }
 
+    @Test
+    void streamAllTransactions_MapsLazily() {
+        when(transactionRepository.streamAll()).thenReturn(Stream.of(transaction));
+
+        List<TransactionResponseDTO> results = transactionService.streamAllTransactions().collect(Collectors.toList());
+
+        assertEquals(1, results.size());
+        assertEquals(transaction.getId(), results.get(0).getId());
+        verify(transactionRepository, never()).findAll();
+    }
+
     @Test
     void getTransactionsPaginated_Success() {
         int page = 0;
@@ -185,20 +335,259 @@ class TransactionServiceImplTest {
         verify(transactionRepository).count();
     }
 
+    @Test
+    void getTransactionsAfter_FirstPageWithMore() {
+        Transaction transaction2 = Transaction.builder()
+                .id(UUID.randomUUID())
+                .amount(new BigDecimal("200.00"))
+                .description("Another Transaction")
+                .type(TransactionType.DEPOSIT)
+                .accountNumber("987654321")
+                .timestamp(LocalDateTime.now().minusSeconds(1))
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        
+        when(transactionRepository.findAllAfter(null, 2)).thenReturn(Arrays.asList(transaction, transaction2));
+
+        CursorPageResponseDTO<TransactionResponseDTO> result = transactionService.getTransactionsAfter(null, 1);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(transactionId, result.getContent().get(0).getId());
+        assertTrue(result.isHasNext());
+        assertEquals(TransactionCursor.of(transaction), TransactionCursor.decode(result.getNextCursor()));
+    }
+
+    @Test
+    void getTransactionsAfter_LastPage() {
+        TransactionCursor cursor = new TransactionCursor(FixedPoint.toEpochMicros(LocalDateTime.now()), UUID.randomUUID());
+        when(transactionRepository.findAllAfter(cursor, 11)).thenReturn(List.of(transaction));
+
+        CursorPageResponseDTO<TransactionResponseDTO> result = 
+                transactionService.getTransactionsAfter(cursor.encode(), 10);
+
+        assertEquals(1, result.getContent().size());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getTransactionsAfter_InvalidCursor() {
+        assertThrows(InvalidCursorException.class, () -> {
+            transactionService.getTransactionsAfter("not-a-cursor", 10);
+        });
+        
+        verify(transactionRepository, never()).findAllAfter(any(), anyInt());
+    }
+
+    @Test
+    void getTransactionsBetween_Success() {
+        LocalDateTime from = LocalDateTime.now().minusHours(1);
+        LocalDateTime to = LocalDateTime.now().plusHours(1);
+        when(transactionRepository.findByTimestampBetween(from, to, null, 11)).thenReturn(List.of(transaction));
+
+        CursorPageResponseDTO<TransactionResponseDTO> result = 
+                transactionService.getTransactionsBetween(from, to, null, 10);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(transactionId, result.getContent().get(0).getId());
+        assertFalse(result.isHasNext());
+    }
+
+    @Test
+    void getTransactionsBetween_InvalidRange() {
+        LocalDateTime from = LocalDateTime.now();
+        
+        assertThrows(InvalidTimeRangeException.class, () -> {
+            transactionService.getTransactionsBetween(from, from.minusSeconds(1), null, 10);
+        });
+        
+        verify(transactionRepository, never()).findByTimestampBetween(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getTransactionsByAccount_Success() {
+        when(transactionRepository.findByAccountNumber("123456789", null, 11)).thenReturn(List.of(transaction));
+
+        CursorPageResponseDTO<TransactionResponseDTO> result = 
+                transactionService.getTransactionsByAccount("123456789", null, 10);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(transactionId, result.getContent().get(0).getId());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void searchTransactions_FollowsDescriptionChanges() {
+        Transaction other = transaction.toBuilder().id(UUID.randomUUID()).description("Coffee at Test Cafe").build();
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L)))
+                .thenReturn(Optional.of(transaction))
+                .thenReturn(Optional.of(other));
+        when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
+        when(transactionRepository.findById(other.getId())).thenReturn(Optional.of(other));
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.REPLACED);
+        transactionService.createTransaction(createDTO);
+        transactionService.createTransaction(createDTO);
+
+        assertEquals(2, transactionService.searchTransactions("TEST", null, 10).getContent().size());
+        assertEquals(List.of(other.getId()), transactionService.searchTransactions("cafe, test", null, 10)
+                .getContent().stream().map(TransactionResponseDTO::getId).toList());
+        assertTrue(transactionService.searchTransactions("test bakery", null, 10).getContent().isEmpty());
+        
+        transactionService.updateTransaction(transactionId, updateDTO, null);
+        
+        when(transactionRepository.findById(transactionId))
+                .thenReturn(Optional.of(transaction.withDescription("Updated Transaction")));
+        assertEquals(List.of(transactionId), transactionService.searchTransactions("updated", null, 10)
+                .getContent().stream().map(TransactionResponseDTO::getId).toList());
+        assertEquals(List.of(other.getId()), transactionService.searchTransactions("test", null, 10)
+                .getContent().stream().map(TransactionResponseDTO::getId).toList());
+    }
+
+    @Test
+    void searchTransactions_ReadsOnPastStaleHits() {
+        LocalDateTime now = LocalDateTime.now();
+        Transaction deleted = transaction.toBuilder().id(UUID.randomUUID()).description("Rent").timestamp(now).build();
+        Transaction newer = transaction.toBuilder().id(UUID.randomUUID()).description("Rent").timestamp(now.minusSeconds(1)).build();
+        Transaction older = transaction.toBuilder().id(UUID.randomUUID()).description("Rent").timestamp(now.minusSeconds(2)).build();
+        List.of(deleted, newer, older).forEach(descriptionIndex::put);
+        // Deleted from the store, but not yet from the index
+        when(transactionRepository.findById(deleted.getId())).thenReturn(Optional.empty());
+        when(transactionRepository.findById(newer.getId())).thenReturn(Optional.of(newer));
+        when(transactionRepository.findById(older.getId())).thenReturn(Optional.of(older));
+
+        CursorPageResponseDTO<TransactionResponseDTO> page = transactionService.searchTransactions("rent", null, 1);
+
+        assertEquals(List.of(newer.getId()), page.getContent().stream().map(TransactionResponseDTO::getId).toList());
+        assertTrue(page.isHasNext());
+        assertEquals(TransactionCursor.of(newer).encode(), page.getNextCursor());
+    }
+
+    @Test
+    void claimPendingTransactions_SkipsTransactionsClaimedElsewhere() {
+        Transaction lost = transaction.withId(UUID.randomUUID());
+        Transaction next = transaction.withId(UUID.randomUUID());
+        when(transactionRepository.findOldestByStatus(TransactionStatus.PENDING, 2))
+                .thenReturn(List.of(lost, transaction));
+        when(transactionRepository.findOldestByStatus(TransactionStatus.PENDING, 1))
+                .thenReturn(List.of(next))
+                .thenReturn(List.of());
+        // Another worker claims the oldest one first
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenAnswer(invocation ->
+                invocation.<Transaction>getArgument(0).getId().equals(lost.getId())
+                        ? ReplaceResult.VERSION_CONFLICT
+                        : ReplaceResult.REPLACED);
+
+        List<TransactionResponseDTO> claimed = transactionService.claimPendingTransactions(2);
+
+        assertEquals(List.of(transactionId, next.getId()), claimed.stream().map(TransactionResponseDTO::getId).toList());
+        assertTrue(claimed.stream().allMatch(dto -> dto.getStatus() == TransactionStatus.PROCESSING && dto.getVersion() == 2));
+        assertEquals(2, transactionService.getStatistics().getCountByStatus().get(TransactionStatus.PROCESSING));
+    }
+
+    @Test
+    void getAccountBalance_ShowsAtLeastCents() {
+        when(transactionRepository.getBalance("123456789")).thenReturn(new BigDecimal("150.0000"));
+        when(transactionRepository.getBalance("987654321")).thenReturn(new BigDecimal("0.1250"));
+
+        AccountBalanceDTO result = transactionService.getAccountBalance("123456789");
+
+        assertEquals("123456789", result.getAccountNumber());
+        assertEquals(new BigDecimal("150.00"), result.getBalance());
+        assertEquals(new BigDecimal("0.125"), transactionService.getAccountBalance("987654321").getBalance());
+    }
+
+    @Test
+    void getStatistics_FollowsCreateUpdateAndDelete() {
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L))).thenReturn(Optional.of(transaction));
+        when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
+
+        transactionService.createTransaction(createDTO);
+        TransactionStatsDTO created = transactionService.getStatistics();
+        
+        assertEquals(1, created.getTotalCount());
+        assertEquals(0, new BigDecimal("100.00").compareTo(created.getTotalAmount()));
+        assertEquals(1, created.getCountByType().get(TransactionType.PAYMENT));
+        assertEquals(1, created.getCountByStatus().get(TransactionStatus.PENDING));
+        
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.REPLACED);
+        transactionService.updateTransaction(transactionId, updateDTO);
+        ArgumentCaptor<Transaction> replacement = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionRepository).replace(replacement.capture(), eq(1L), eq(10L));
+        // The delete accounts for the version the repository removed
+        when(transactionRepository.deleteById(transactionId)).thenReturn(Optional.of(replacement.getValue()));
+        TransactionStatsDTO updated = transactionService.getStatistics();
+        
+        assertEquals(1, updated.getTotalCount());
+        assertEquals(0, new BigDecimal("200.00").compareTo(updated.getTotalAmount()));
+        assertEquals(0, updated.getCountByType().get(TransactionType.PAYMENT));
+        assertEquals(0, BigDecimal.ZERO.compareTo(updated.getAmountByType().get(TransactionType.PAYMENT)));
+        assertEquals(0, new BigDecimal("200.00").compareTo(updated.getAmountByType().get(TransactionType.TRANSFER)));
+        assertEquals(1, updated.getCountByStatus().get(TransactionStatus.COMPLETED));
+        assertEquals(0, updated.getCountByStatus().get(TransactionStatus.PENDING));
+        
+        transactionService.deleteTransaction(transactionId);
+        TransactionStatsDTO deleted = transactionService.getStatistics();
+        
+        assertEquals(0, deleted.getTotalCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(deleted.getTotalAmount()));
+        assertEquals(0, deleted.getCountByType().get(TransactionType.TRANSFER));
+    }
+
     @Test
     void updateTransaction_Success() {
         when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
-        when(transactionRepository.isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L))).thenReturn(false);
-        when(transactionRepository.save(any(Transaction.class))).thenReturn(transaction);
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.REPLACED);
 
         TransactionResponseDTO result = transactionService.updateTransaction(transactionId, updateDTO);
 
         assertNotNull(result);
         assertEquals(transaction.getId(), result.getId());
+        assertEquals(2, result.getVersion());
+        assertEquals(updateDTO.getAmount(), result.getAmount());
+        // The stored version is replaced, not changed
+        assertEquals(1, transaction.getVersion());
+        
+        verify(transactionRepository).findById(transactionId);
+        verify(transactionRepository).replace(any(Transaction.class), eq(1L), eq(10L));
+    }
+
+    @Test
+    void updateTransaction_RetriesAfterConcurrentUpdate() {
+        Transaction concurrent = transaction.toBuilder().description("Changed elsewhere").version(2).build();
+        when(transactionRepository.findById(transactionId))
+                .thenReturn(Optional.of(transaction))
+                .thenReturn(Optional.of(concurrent));
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.VERSION_CONFLICT);
+        when(transactionRepository.replace(any(Transaction.class), eq(2L), eq(10L))).thenReturn(ReplaceResult.REPLACED);
+
+        TransactionResponseDTO result = transactionService.updateTransaction(transactionId, updateDTO, null);
+
+        assertEquals(3, result.getVersion());
+        verify(transactionRepository, times(2)).findById(transactionId);
+    }
+
+    @Test
+    void updateTransaction_ExpectedVersionMismatch() {
+        when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
+
+        assertThrows(TransactionVersionConflictException.class, () -> {
+            transactionService.updateTransaction(transactionId, updateDTO, 2L);
+        });
+        
+        verify(transactionRepository, never()).replace(any(Transaction.class), anyLong(), anyLong());
+    }
+
+    @Test
+    void updateTransaction_ExpectedVersionLostRace() {
+        when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.VERSION_CONFLICT);
+
+        assertThrows(TransactionVersionConflictException.class, () -> {
+            transactionService.updateTransaction(transactionId, updateDTO, 1L);
+        });
         
         verify(transactionRepository).findById(transactionId);
-        verify(transactionRepository).isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L));
-        verify(transactionRepository).save(any(Transaction.class));
     }
 
     @Test
@@ -210,14 +599,14 @@ class TransactionServiceImplTest {
         });
         
         verify(transactionRepository).findById(transactionId);
-        verify(transactionRepository, never()).isDuplicateWithinTimeWindow(any(Transaction.class), anyLong());
+        verify(transactionRepository, never()).replace(any(Transaction.class), anyLong(), anyLong());
         verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
     @Test
     void updateTransaction_DuplicateTransaction() {
         when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
-        when(transactionRepository.isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L))).thenReturn(true);
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.DUPLICATE);
 
         DuplicateTransactionException exception = assertThrows(DuplicateTransactionException.class, () -> {
             transactionService.updateTransaction(transactionId, updateDTO);
@@ -225,30 +614,86 @@ class TransactionServiceImplTest {
         
         assertEquals("A duplicate transaction was detected within 10 seconds", exception.getMessage());
         verify(transactionRepository).findById(transactionId);
-        verify(transactionRepository).isDuplicateWithinTimeWindow(any(Transaction.class), eq(10L));
+        verify(transactionRepository).replace(any(Transaction.class), eq(1L), eq(10L));
         verify(transactionRepository, never()).save(any(Transaction.class));
     }
 
+    @Test
+    void updateTransaction_StatusChangeEndsTimeout() {
+        when(transactionRepository.saveIfNotDuplicate(any(Transaction.class), eq(10L))).thenReturn(Optional.of(transaction));
+        when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.REPLACED);
+
+        transactionService.createTransaction(createDTO);
+        assertEquals(1, timeouts.size());
+        
+        transactionService.updateTransaction(transactionId, updateDTO, null);
+        
+        assertEquals(0, timeouts.size());
+        assertEquals(0, transactionService.expireStaleTransactions());
+    }
+
     @Test
     void deleteTransaction_Success() {
-        when(transactionRepository.existsById(transactionId)).thenReturn(true);
-        doNothing().when(transactionRepository).deleteById(transactionId);
+        when(transactionRepository.deleteById(transactionId)).thenReturn(Optional.of(transaction));
 
         transactionService.deleteTransaction(transactionId);
         
-        verify(transactionRepository).existsById(transactionId);
         verify(transactionRepository).deleteById(transactionId);
+        verify(statistics).recordDeleted(transaction);
     }
 
     @Test
     void deleteTransaction_NotFound() {
-        when(transactionRepository.existsById(transactionId)).thenReturn(false);
+        when(transactionRepository.deleteById(transactionId)).thenReturn(Optional.empty());
 
         assertThrows(TransactionNotFoundException.class, () -> {
             transactionService.deleteTransaction(transactionId);
         });
         
-        verify(transactionRepository).existsById(transactionId);
-        verify(transactionRepository, never()).deleteById(any(UUID.class));
+        verify(transactionRepository).deleteById(transactionId);
+        verify(statistics, never()).recordDeleted(any(Transaction.class));
+    }
+
+    @Test
+    void expireStaleTransactions_MovesTimedOutTransactionsToExpiredStatus() {
+        when(transactionRepository.findById(transactionId)).thenReturn(Optional.of(transaction));
+        when(transactionRepository.replace(any(Transaction.class), eq(1L), eq(10L))).thenReturn(ReplaceResult.REPLACED);
+        timeouts.track(transaction, transaction.getTimestamp());
+
+        assertEquals(1, transactionService.expireStaleTransactions());
+        assertEquals(0, transactionService.expireStaleTransactions());
+        
+        ArgumentCaptor<Transaction> expired = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionRepository).replace(expired.capture(), eq(1L), eq(10L));
+        assertEquals(TransactionStatus.FAILED, expired.getValue().getStatus());
+        assertEquals(2, expired.getValue().getVersion());
+    }
+
+    @Test
+    void expireStaleTransactions_SkipsTransactionsThatMovedOn() {
+        when(transactionRepository.findById(transactionId))
+                .thenReturn(Optional.of(transaction.withStatus(TransactionStatus.PROCESSING)));
+        timeouts.track(transaction, transaction.getTimestamp());
+
+        assertEquals(0, transactionService.expireStaleTransactions());
+        
+        verify(transactionRepository, never()).replace(any(Transaction.class), anyLong(), anyLong());
+    }
+
+    private static TransactionCreateDTO withdrawal(String accountNumber, BigDecimal amount) {
+        return TransactionCreateDTO.builder()
+                .amount(amount)
+                .description("Test Withdrawal")
+                .type(TransactionType.WITHDRAWAL)
+                .accountNumber(accountNumber)
+                .build();
+    }
+
+    private static VelocityLimitProperties withdrawalLimit() {
+        VelocityLimitProperties properties = new VelocityLimitProperties();
+        properties.setEnabled(true);
+        properties.getLimits().put(TransactionType.WITHDRAWAL, new VelocityLimitProperties.Limit(1, null));
+        return properties;
     }
 }
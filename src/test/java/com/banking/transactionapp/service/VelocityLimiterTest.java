@@ -0,0 +1,215 @@
+package com.banking.transactionapp.service;
+
+import com.banking.transactionapp.config.VelocityLimitProperties;
+import com.banking.transactionapp.exception.VelocityLimitExceededException;
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityLimiterTest {
+    
+    private final MutableClock clock = new MutableClock();
+    
+    @Test
+    void acquire_LimitsCountWithinSlidingWindow() {
+        VelocityLimiter limiter = new VelocityLimiter(limit(TransactionType.WITHDRAWAL, 2, null), clock);
+        
+        assertNotNull(limiter.acquire(withdrawal("ACC1", "10.00")));
+        clock.advance(Duration.ofSeconds(30));
+        limiter.acquire(withdrawal("ACC1", "10.00"));
+        assertThrows(VelocityLimitExceededException.class, () -> limiter.acquire(withdrawal("ACC1", "10.00")));
+        
+        // Other accounts and types are counted apart
+        limiter.acquire(withdrawal("ACC2", "10.00"));
+        assertNull(limiter.acquire(withdrawal("ACC1", "10.00").toBuilder().type(TransactionType.DEPOSIT).build()));
+        
+        // The first withdrawal slides out of the window, the second does not
+        clock.advance(Duration.ofSeconds(31));
+        limiter.acquire(withdrawal("ACC1", "10.00"));
+        assertThrows(VelocityLimitExceededException.class, () -> limiter.acquire(withdrawal("ACC1", "10.00")));
+    }
+    
+    @Test
+    void acquire_LimitsTotalAmount() {
+        VelocityLimiter limiter = new VelocityLimiter(limit(TransactionType.PAYMENT, null, new BigDecimal("150.00")), clock);
+        
+        limiter.acquire(payment("ACC1", "100.00"));
+        assertThrows(VelocityLimitExceededException.class, () -> limiter.acquire(payment("ACC1", "50.01")));
+        limiter.acquire(payment("ACC1", "50.00"));
+        assertThrows(VelocityLimitExceededException.class, () -> limiter.acquire(payment("ACC1", "0.01")));
+    }
+    
+    @Test
+    void release_GivesBackCountAndAmount() {
+        VelocityLimiter limiter = new VelocityLimiter(limit(TransactionType.PAYMENT, 1, new BigDecimal("100.00")), clock);
+        
+        VelocityLimiter.Permit permit = limiter.acquire(payment("ACC1", "100.00"));
+        limiter.release(permit);
+        limiter.release(null);
+        
+        assertNotNull(limiter.acquire(payment("ACC1", "100.00")));
+    }
+    
+    @Test
+    void acquire_DisabledByDefault() {
+        VelocityLimitProperties properties = new VelocityLimitProperties();
+        properties.getLimits().put(TransactionType.PAYMENT, new VelocityLimitProperties.Limit(1, null));
+        VelocityLimiter limiter = new VelocityLimiter(properties, clock);
+        
+        assertNull(limiter.acquire(payment("ACC1", "10.00")));
+        assertNull(limiter.acquire(payment("ACC1", "10.00")));
+    }
+    
+    @Test
+    void acquire_DisabledOrUnlimitedReturnsNoPermit() {
+        VelocityLimitProperties properties = limit(TransactionType.PAYMENT, 1, null);
+        properties.setEnabled(false);
+        VelocityLimiter limiter = new VelocityLimiter(properties, clock);
+        
+        assertNull(limiter.acquire(payment("ACC1", "10.00")));
+        assertNull(limiter.acquire(payment("ACC1", "10.00")));
+        assertEquals(0, limiter.windowCount());
+    }
+    
+    @Test
+    void purgeIdleWindows_DropsWindowsWithoutRecentTransactions() {
+        VelocityLimiter limiter = new VelocityLimiter(limit(TransactionType.PAYMENT, 1, null), clock);
+        limiter.acquire(payment("ACC1", "10.00"));
+        clock.advance(Duration.ofSeconds(30));
+        limiter.acquire(payment("ACC2", "10.00"));
+        
+        clock.advance(Duration.ofSeconds(35));
+        limiter.purgeIdleWindows();
+        
+        assertEquals(1, limiter.windowCount());
+        limiter.acquire(payment("ACC1", "10.00"));
+        assertThrows(VelocityLimitExceededException.class, () -> limiter.acquire(payment("ACC2", "10.00")));
+    }
+    
+    @Test
+    void acquire_ConcurrentCreatesNeverExceedLimit() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(limit(TransactionType.PAYMENT, 100, null), clock);
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try {
+                            limiter.acquire(payment("ACC1", "1.00"));
+                            acquired.incrementAndGet();
+                        } catch (VelocityLimitExceededException e) {
+                            // Expected once the limit is reached
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(100, acquired.get());
+    }
+    
+    @Test
+    void acquire_ConcurrentCreatesAcrossBucketsNeverExceedLimit() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(limit(TransactionType.PAYMENT, 100, null), clock);
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            // Moves the clock through several buckets while the creates run, but not out of the window
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 50; j++) {
+                    clock.advance(Duration.ofMillis(500));
+                    Thread.yield();
+                }
+            }));
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try {
+                            limiter.acquire(payment("ACC1", "1.00"));
+                            acquired.incrementAndGet();
+                        } catch (VelocityLimitExceededException e) {
+                            // Expected once the limit is reached
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(100, acquired.get());
+    }
+    
+    private static VelocityLimitProperties limit(TransactionType type, Integer maxCount, BigDecimal maxAmount) {
+        VelocityLimitProperties properties = new VelocityLimitProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMinutes(1));
+        properties.setBuckets(12);
+        properties.getLimits().put(type, new VelocityLimitProperties.Limit(maxCount, maxAmount));
+        return properties;
+    }
+    
+    private static Transaction withdrawal(String accountNumber, String amount) {
+        return payment(accountNumber, amount).toBuilder().type(TransactionType.WITHDRAWAL).build();
+    }
+    
+    private static Transaction payment(String accountNumber, String amount) {
+        return Transaction.builder()
+                .amount(new BigDecimal(amount))
+                .description("Test")
+                .type(TransactionType.PAYMENT)
+                .accountNumber(accountNumber)
+                .build();
+    }
+    
+    private static final class MutableClock extends Clock {
+        
+        private volatile Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+        
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
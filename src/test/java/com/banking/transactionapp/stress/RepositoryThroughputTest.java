@@ -0,0 +1,154 @@
+package com.banking.transactionapp.stress;
+
+import com.banking.transactionapp.model.Transaction;
+import com.banking.transactionapp.model.TransactionStatus;
+import com.banking.transactionapp.model.TransactionType;
+import com.banking.transactionapp.persistence.WriteAheadLog;
+import com.banking.transactionapp.repository.InMemoryTransactionRepository;
+import com.banking.transactionapp.repository.JdbcTransactionRepository;
+import com.banking.transactionapp.repository.LsmTransactionRepository;
+import com.banking.transactionapp.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the throughput of the LSM store with the journaled in-memory store, both
+ * durable through a write-ahead log. Both run with fsync disabled, so the numbers measure
+ * the stores rather than the disk.
+ * <p>
+ * Takes tens of seconds, so it only runs when asked for with {@code -Dbenchmark=true}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class RepositoryThroughputTest {
+    
+    private static final int NUM_THREADS = 8;
+    private static final int WRITES_PER_THREAD = 5_000;
+    private static final int READS_PER_THREAD = 20_000;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void throughput_InMemoryWithJournal() throws Exception {
+        WriteAheadLog journal = new WriteAheadLog(tempDir, false);
+        try {
+            measure("in-memory", new InMemoryTransactionRepository(journal));
+        } finally {
+            journal.close();
+        }
+    }
+    
+    @Test
+    void throughput_Lsm() throws Exception {
+        // A small memtable, so the burst is flushed and compacted while it is written
+        LsmTransactionRepository repository = new LsmTransactionRepository(tempDir, false, DataSize.ofMegabytes(1), 4);
+        try {
+            measure("lsm", repository);
+        } finally {
+            repository.close();
+        }
+    }
+    
+    @Test
+    void throughput_Jdbc() throws Exception {
+        JdbcTransactionRepository repository = new JdbcTransactionRepository(
+                "jdbc:h2:file:" + tempDir.resolve("transactions"), "sa", "", NUM_THREADS, 100_000);
+        try {
+            measure("jdbc", repository);
+        } finally {
+            repository.close();
+        }
+    }
+    
+    private void measure(String name, TransactionRepository repository) throws Exception {
+        List<List<UUID>> idsByThread = new ArrayList<>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            idsByThread.add(new ArrayList<>(WRITES_PER_THREAD));
+        }
+        
+        double writesPerSecond = run(thread -> {
+            for (int j = 0; j < WRITES_PER_THREAD; j++) {
+                Transaction transaction = createTransaction("ACC" + thread + "-" + (j % 100), "Burst " + thread + " - " + j);
+                repository.save(transaction);
+                idsByThread.get(thread).add(transaction.getId());
+            }
+        }, NUM_THREADS * WRITES_PER_THREAD);
+        assertEquals(NUM_THREADS * WRITES_PER_THREAD, repository.count());
+        
+        double readsPerSecond = run(thread -> {
+            Random random = new Random(thread);
+            List<UUID> ids = idsByThread.get(random.nextInt(NUM_THREADS));
+            for (int j = 0; j < READS_PER_THREAD; j++) {
+                assertTrue(repository.findById(ids.get(random.nextInt(ids.size()))).isPresent());
+            }
+        }, NUM_THREADS * READS_PER_THREAD);
+        
+        log.info("{} store: {} writes per second, {} reads by id per second", name,
+                Math.round(writesPerSecond), Math.round(readsPerSecond));
+    }
+    
+    /**
+     * Runs the task on every thread at once and returns the operations completed per second.
+     * An assertion that fails on any thread fails the test.
+     */
+    private double run(ThreadTask task, int totalOperations) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+        List<Future<?>> futures = new ArrayList<>(NUM_THREADS);
+        
+        long startTime = System.nanoTime();
+        try {
+            for (int i = 0; i < NUM_THREADS; i++) {
+                int thread = i;
+                futures.add(executorService.submit(() -> task.run(thread)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get(2, TimeUnit.MINUTES);
+                } catch (ExecutionException e) {
+                    fail("A benchmark thread failed", e.getCause());
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        
+        return totalOperations / (elapsedNanos / 1e9);
+    }
+    
+    private Transaction createTransaction(String accountNumber, String description) {
+        return Transaction.builder()
+                .amount(new BigDecimal("100.00"))
+                .description(description)
+                .type(TransactionType.PAYMENT)
+                .accountNumber(accountNumber)
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.COMPLETED)
+                .build();
+    }
+    
+    @FunctionalInterface
+    private interface ThreadTask {
+        
+        void run(int thread);
+    }
+}